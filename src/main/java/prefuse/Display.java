@@ -1,5 +1,6 @@
 package prefuse;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
@@ -10,6 +11,7 @@ import java.awt.Image;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
@@ -20,12 +22,19 @@ import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
 import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Logger;
 
 import javax.imageio.ImageIO;
@@ -43,6 +52,9 @@ import prefuse.data.expression.AndPredicate;
 import prefuse.data.expression.BooleanLiteral;
 import prefuse.data.expression.Predicate;
 import prefuse.data.expression.parser.ExpressionParser;
+import prefuse.render.AbstractShapeRenderer;
+import prefuse.render.LabelRenderer;
+import prefuse.render.PointRenderer;
 import prefuse.render.Renderer;
 import prefuse.util.ColorLib;
 import prefuse.util.StringLib;
@@ -53,8 +65,12 @@ import prefuse.util.display.Clip;
 import prefuse.util.display.DebugStatsPainter;
 import prefuse.util.display.ExportDisplayAction;
 import prefuse.util.display.ItemBoundsListener;
+import prefuse.util.display.FrameListener;
+import prefuse.util.display.FrameMetrics;
 import prefuse.util.display.PaintListener;
+import prefuse.util.display.RecordingGraphics2D;
 import prefuse.util.display.RenderingQueue;
+import prefuse.util.display.SpatialIndex;
 import prefuse.visual.VisualItem;
 import prefuse.visual.expression.VisiblePredicate;
 import prefuse.visual.sort.ItemSorter;
@@ -107,6 +123,9 @@ public class Display extends JComponent {
     private static final Logger s_logger 
         = Logger.getLogger(Display.class.getName());
     
+    // damaged regions are redrawn separately, up to this many
+    private static final int DEFAULT_DAMAGE_REGIONS = 8;
+    
     // visual item source
     protected Visualization m_vis;
     protected AndPredicate  m_predicate = new AndPredicate();
@@ -115,6 +134,7 @@ public class Display extends JComponent {
     protected CopyOnWriteArrayList m_controls = new CopyOnWriteArrayList();
     protected CopyOnWriteArrayList m_painters;
     protected CopyOnWriteArrayList m_bounders;
+    protected CopyOnWriteArrayList m_framers;
     
     // display
     protected BufferedImage m_offscreen;
@@ -124,6 +144,34 @@ public class Display extends JComponent {
     protected Rectangle2D   m_rclip = new Rectangle2D.Double();
     protected boolean       m_damageRedraw = true;
     protected boolean       m_highQuality = false;
+    protected boolean       m_fullRedraw = true;
+    
+    // level-of-detail rendering
+    protected double   m_lodThreshold = 0;
+    protected Renderer m_lodRenderer = new PointRenderer();
+    protected double   m_lodTextHeight = 0;
+    
+    // tiled, multi-threaded rendering
+    protected int             m_renderThreads = 1;
+    protected int             m_tileSize = 256;
+    protected BufferedImage[] m_tiles;
+    private ForkJoinPool      m_renderPool;
+    private int[][]           m_bins;      // queue indices, by tile
+    private int[]             m_binSizes;
+    private Renderer[]        m_binRenderers = new Renderer[0];
+    private double[]          m_binPoints = new double[8];
+    
+    // snapshot rendering: frames are recorded under the visualization lock,
+    // rasterized by the snapshot thread without it, and published to a
+    // front buffer that paintComponent draws without locking
+    protected boolean         m_snapshot = false;
+    protected volatile BufferedImage m_front;
+    private final Object      m_frontLock = new Object();
+    private SnapshotRenderer  m_snapshotThread;
+    // recorded frames
+    private final LinkedList<Snapshot> m_frames = new LinkedList<Snapshot>();
+    private BufferedImage     m_back;   // used by the snapshot thread only
+    private int               m_frameWidth = -1, m_frameHeight = -1;
     
     // optional background image
     protected BackgroundPainter m_bgpainter = null;
@@ -131,6 +179,7 @@ public class Display extends JComponent {
     // rendering queue
     protected RenderingQueue m_queue = new RenderingQueue();
     protected int            m_visibleCount = 0;
+    private int              m_visibleStamp = -1;
     
     // transform variables
     protected AffineTransform   m_transform  = new AffineTransform();
@@ -144,6 +193,9 @@ public class Display extends JComponent {
     private int sampleInterval = 10;
     private long mark = -1L;
     
+    // per-frame rendering metrics, null if disabled
+    protected FrameMetrics m_metrics = null;
+    
     /* Custom tooltip, null to use regular tooltip mechanisms */
     protected JToolTip m_customToolTip = null;
     
@@ -197,6 +249,7 @@ public class Display extends JComponent {
     public Display(Visualization visualization, Predicate predicate) {
         setDoubleBuffered(false);
         setBackground(Color.WHITE);
+        m_clip.setMaxRegions(DEFAULT_DAMAGE_REGIONS);
         
         // initialize text editor
         m_editing = false;
@@ -337,6 +390,41 @@ public class Display extends JComponent {
         return frameRate;
     }
     
+    /**
+     * Enables or disables the collection of per-frame rendering metrics.
+     * When enabled, the time taken by each phase of rendering, the number
+     * of items rendered and culled, and cache hit rates are recorded for
+     * every frame. Metrics are disabled by default, but are enabled when a
+     * {@link prefuse.util.display.FrameListener} is added.
+     * @param b true to enable metrics collection, false to disable it
+     * @see #getFrameMetrics()
+     */
+    public synchronized void setFrameMetricsEnabled(boolean b) {
+        if ( b && m_metrics == null )
+            m_metrics = new FrameMetrics();
+        else if ( !b )
+            m_metrics = null;
+    }
+    
+    /**
+     * Indicates if per-frame rendering metrics are being collected.
+     * @return true if metrics collection is enabled, false otherwise
+     */
+    public boolean isFrameMetricsEnabled() {
+        return m_metrics != null;
+    }
+    
+    /**
+     * Returns the rendering metrics collected by this Display. The returned
+     * object can be registered as a JMX MBean using
+     * {@link prefuse.util.display.FrameMetrics#register(String)}.
+     * @return the frame metrics, or null if metrics collection is disabled
+     * @see #setFrameMetricsEnabled(boolean)
+     */
+    public FrameMetrics getFrameMetrics() {
+        return m_metrics;
+    }
+    
     /**
      * Determines if the Display uses a higher quality rendering, using
      * anti-aliasing. This causes drawing to be much slower, however, and
@@ -358,6 +446,207 @@ public class Display extends JComponent {
         return m_highQuality;
     }
     
+    /**
+     * Sets the level-of-detail threshold. Items whose on-screen bounds are
+     * smaller than this size in both dimensions are drawn with the
+     * level-of-detail renderer (by default a one pixel
+     * {@link prefuse.render.PointRenderer}) rather than their own renderer.
+     * This keeps rendering cost low when zoomed far out on large data sets.
+     * @param pixels the size threshold, in pixels. A value of zero (the
+     * default) disables level-of-detail rendering.
+     */
+    public synchronized void setLevelOfDetailThreshold(double pixels) {
+        if ( m_lodThreshold != pixels )
+            damageReport();
+        m_lodThreshold = pixels;
+    }
+    
+    /**
+     * Returns the level-of-detail threshold.
+     * @return the size threshold, in pixels, below which items are drawn
+     * with the level-of-detail renderer. Zero if disabled.
+     */
+    public double getLevelOfDetailThreshold() {
+        return m_lodThreshold;
+    }
+    
+    /**
+     * Sets the renderer used to draw items that fall below the
+     * level-of-detail threshold.
+     * @param r the {@link prefuse.render.Renderer} to use
+     * @see #setLevelOfDetailThreshold(double)
+     */
+    public synchronized void setLevelOfDetailRenderer(Renderer r) {
+        if ( r == null )
+            throw new IllegalArgumentException("Renderer must not be null.");
+        damageReport();
+        m_lodRenderer = r;
+    }
+    
+    /**
+     * Returns the renderer used to draw items that fall below the
+     * level-of-detail threshold.
+     * @return the level-of-detail {@link prefuse.render.Renderer}
+     */
+    public Renderer getLevelOfDetailRenderer() {
+        return m_lodRenderer;
+    }
+    
+    /**
+     * Sets the minimum on-screen height, in pixels, of label text drawn by
+     * this Display. Labels drawn by a {@link prefuse.render.LabelRenderer}
+     * whose text would be smaller are drawn as their bounding box only,
+     * skipping text layout. This applies in addition to any minimum set on
+     * the renderer itself, see
+     * {@link prefuse.render.LabelRenderer#setMinimumTextHeight(double)},
+     * and is passed to renderers using the
+     * {@link prefuse.render.LabelRenderer#KEY_MIN_TEXT_HEIGHT} rendering
+     * hint.
+     * @param pixels the minimum text height, in pixels. A value of zero
+     * (the default) disables this behavior.
+     */
+    public synchronized void setLevelOfDetailTextHeight(double pixels) {
+        if ( m_lodTextHeight != pixels )
+            damageReport();
+        m_lodTextHeight = pixels;
+    }
+    
+    /**
+     * Returns the minimum on-screen height of label text drawn by this
+     * Display.
+     * @return the minimum text height, in pixels. Zero if disabled.
+     */
+    public double getLevelOfDetailTextHeight() {
+        return m_lodTextHeight;
+    }
+    
+    /**
+     * Returns the renderer that should draw the given item at the current
+     * scale, taking the level-of-detail threshold into account.
+     * @param item the item to draw
+     * @param scale the current display scale
+     * @return the {@link prefuse.render.Renderer} to use
+     */
+    protected Renderer getDetailRenderer(VisualItem item, double scale) {
+        if ( m_lodThreshold > 0 ) {
+            Rectangle2D b = item.getBounds();
+            if ( scale*b.getWidth()  < m_lodThreshold &&
+                 scale*b.getHeight() < m_lodThreshold )
+            {
+                return m_lodRenderer;
+            }
+        }
+        return item.getRenderer();
+    }
+    
+    /**
+     * Sets the number of threads used to render the Display. When more than
+     * one thread is requested, the offscreen buffer is split into square
+     * tiles that are rendered in parallel into separate images and then
+     * composited. As renderers may reuse internal state between calls,
+     * each tile is drawn with its own copies of the renderers, obtained
+     * from {@link #getThreadRenderer(Renderer)}. Calls into renderers that
+     * cannot be copied are serialized. Tiled rendering is disabled by
+     * default.
+     * @param n the number of rendering threads. A value of one or less
+     * disables tiled rendering.
+     */
+    public synchronized void setRenderThreadCount(int n) {
+        n = Math.max(1, n);
+        if ( n == m_renderThreads )
+            return;
+        if ( m_renderPool != null ) {
+            m_renderPool.shutdown();
+            m_renderPool = null;
+        }
+        m_renderThreads = n;
+        m_tiles = null;
+        damageReport();
+    }
+    
+    /**
+     * Returns the number of threads used to render the Display.
+     * @return the number of rendering threads, one if tiled rendering
+     * is disabled
+     */
+    public int getRenderThreadCount() {
+        return m_renderThreads;
+    }
+    
+    /**
+     * Sets the width and height, in pixels, of the tiles used when
+     * rendering with multiple threads.
+     * @param size the tile size in pixels
+     * @see #setRenderThreadCount(int)
+     */
+    public synchronized void setRenderTileSize(int size) {
+        if ( size < 1 )
+            throw new IllegalArgumentException(
+                    "Tile size must be at least one pixel.");
+        m_tileSize = size;
+        m_tiles = null;
+        damageReport();
+    }
+    
+    /**
+     * Returns the width and height, in pixels, of the tiles used when
+     * rendering with multiple threads.
+     * @return the tile size in pixels
+     */
+    public int getRenderTileSize() {
+        return m_tileSize;
+    }
+    
+    /**
+     * Sets whether or not the Display uses snapshot rendering. Normally the
+     * Display renders on the Swing event thread and must acquire the lock
+     * of its Visualization to do so, stalling repaints while actions run
+     * and stalling actions while the Display repaints. With snapshot
+     * rendering, each call to {@link #repaint()} records the drawing
+     * operations of a frame, together with copies of the shapes and
+     * graphics state they use, into a
+     * {@link prefuse.util.display.RecordingGraphics2D}. The frame is
+     * recorded immediately if the calling thread already holds the
+     * Visualization lock (as is the case for actions, including
+     * {@link prefuse.action.RepaintAction}), or else on a dedicated
+     * rendering thread. The rendering thread then rasterizes recorded
+     * frames into a back buffer without holding the Visualization lock,
+     * and swaps each finished frame in as the front buffer, which the event
+     * thread draws to the screen without acquiring the Visualization lock.
+     * Tiled rendering is not used while recording frames. Snapshot
+     * rendering is disabled by default.
+     * @param b true to enable snapshot rendering, false to disable it
+     */
+    public synchronized void setSnapshotRendering(boolean b) {
+        if ( b == m_snapshot )
+            return;
+        m_snapshot = b;
+        m_frameWidth = m_frameHeight = -1;
+        if ( !b ) {
+            if ( m_snapshotThread != null ) {
+                m_snapshotThread.finish();
+                m_snapshotThread = null;
+            }
+            synchronized ( m_frames ) {
+                m_frames.clear();
+            }
+            synchronized ( m_frontLock ) {
+                m_front = null;
+            }
+        }
+        damageReport();
+        repaint();
+    }
+    
+    /**
+     * Indicates if the Display uses snapshot rendering.
+     * @return true if snapshot rendering is enabled, false otherwise
+     * @see #setSnapshotRendering(boolean)
+     */
+    public boolean isSnapshotRendering() {
+        return m_snapshot;
+    }
+    
     /**
      * Returns the Visualization backing this Display.
      * @return this Display's {@link Visualization}
@@ -456,6 +745,19 @@ public class Display extends JComponent {
     public synchronized void setItemSorter(ItemSorter cmp) {
         damageReport();
         m_queue.sort = cmp;
+        m_queue.invalidateScores();
+    }
+    
+    /**
+     * Discard the rendering order retained from previous frames, causing
+     * all items to be re-scored by the ItemSorter on the next repaint.
+     * Changes to item fields and focus group membership are tracked
+     * automatically; call this method if the ItemSorter depends on
+     * any other state that has changed.
+     */
+    public synchronized void invalidateItemOrder() {
+        m_queue.invalidateScores();
+        damageReport();
     }
     
 
@@ -602,6 +904,30 @@ public class Display extends JComponent {
         m_clip.invalidate();
     }
     
+    /**
+     * Sets the maximum number of separate damaged regions tracked for
+     * damage/redraw rendering. Damaged areas far apart from each other are
+     * kept as separate rectangles, each of which is cleared and redrawn on
+     * its own, rather than redrawing their combined bounding box. Regions
+     * that overlap are merged, as are the closest regions once the maximum
+     * is reached. Tiled rendering always redraws the bounding box of the
+     * damaged regions.
+     * @param n the maximum number of damaged regions, one or more. A value
+     * of one redraws the bounding box of all damage.
+     */
+    public synchronized void setMaxDamageRegions(int n) {
+        m_clip.setMaxRegions(n);
+    }
+    
+    /**
+     * Returns the maximum number of separate damaged regions tracked for
+     * damage/redraw rendering.
+     * @return the maximum number of damaged regions
+     */
+    public synchronized int getMaxDamageRegions() {
+        return m_clip.getMaxRegions();
+    }
+    
     /**
      * Reports damage to the Display within in the specified region.
      * @param region the damaged region, in absolute coordinates
@@ -611,6 +937,17 @@ public class Display extends JComponent {
             m_clip.union(region);
     }
     
+    /**
+     * Reports damage to the Display caused by a change to the given item.
+     * The item's rendering order will be re-evaluated on the next repaint.
+     * @param item the changed item
+     * @param region the damaged region, in absolute coordinates
+     */
+    public synchronized void damageReport(VisualItem item, Rectangle2D region) {
+        m_queue.markDirty(item);
+        damageReport(region);
+    }
+    
     /**
      * Reports damage to the entire Display.
      */
@@ -656,11 +993,23 @@ public class Display extends JComponent {
     // Rendering
     
     /**
-     * Returns the offscreen buffer used for double buffering.
+     * Returns the offscreen buffer used for double buffering. With snapshot
+     * rendering enabled, this is a copy of the most recently published
+     * frame, or null if no frame has been published yet, as the buffers
+     * themselves are reused by later frames.
      * @return the offscreen buffer
      */
     public BufferedImage getOffscreenBuffer() {
-        return m_offscreen;
+        if ( !m_snapshot )
+            return m_offscreen;
+        synchronized ( m_frontLock ) {
+            BufferedImage front = m_front;
+            if ( front == null )
+                return null;
+            BufferedImage copy = new BufferedImage(front.getColorModel(),
+                front.copyData(null), front.isAlphaPremultiplied(), null);
+            return copy;
+        }
     }
     
     /**
@@ -708,6 +1057,7 @@ public class Display extends JComponent {
             boolean q = isHighQuality();
             setHighQuality(true);
             paintDisplay(g, d);
+            fireFrameRendered();
             setHighQuality(q);
             zoom(p, 1/scale); // also takes care of damage report
             
@@ -732,6 +1082,18 @@ public class Display extends JComponent {
      * @param g the Graphics context to paint to
      */
     protected void paintBufferToScreen(Graphics g) {
+        if ( m_snapshot ) {
+            synchronized ( m_frontLock ) {
+                if ( m_front != null ) {
+                    g.drawImage(m_front, 0, 0, null);
+                    return;
+                }
+            }
+            // no frame is available yet, so draw the background
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+            return;
+        }
         synchronized ( this ) {
             g.drawImage(m_offscreen, 0, 0, null);
         }
@@ -743,7 +1105,7 @@ public class Display extends JComponent {
      */
     public void repaintImmediate() {
         Graphics g = this.getGraphics();
-        if (g != null && m_offscreen != null) {
+        if (g != null && (m_offscreen != null || m_snapshot)) {
             paintBufferToScreen(g);
         }
     }
@@ -780,6 +1142,10 @@ public class Display extends JComponent {
         g.setRenderingHint(
             RenderingHints.KEY_INTERPOLATION,
             RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        if ( m_lodTextHeight > 0 ) {
+            g.setRenderingHint(LabelRenderer.KEY_MIN_TEXT_HEIGHT,
+                               Double.valueOf(m_lodTextHeight));
+        }
     }
 
 
@@ -787,24 +1153,38 @@ public class Display extends JComponent {
      * @see javax.swing.JComponent#paintComponent(java.awt.Graphics)
      */
     public void paintComponent(Graphics g) {
-        if (m_offscreen == null) {
-            m_offscreen = getNewOffscreenBuffer(getWidth(), getHeight());
-            damageReport();
-        }
         Graphics2D g2D = (Graphics2D)g;
-        Graphics2D buf_g2D = (Graphics2D) m_offscreen.getGraphics();
-        
-        // Why not fire a pre-paint event here?
-        // Pre-paint events are fired by the clearRegion method
-        
-        // paint the visualization
-        paintDisplay(buf_g2D, getSize());
-        paintBufferToScreen(g2D);       
-        
-        // fire post-paint events to any painters
-        firePostPaint(g2D);
-        
-        buf_g2D.dispose();
+        if ( m_snapshot ) {
+            // draw the latest published frame, requesting a new one
+            // if the Display has been resized since it was rendered
+            BufferedImage front = m_front;
+            if ( front == null || front.getWidth() != getWidth()
+                               || front.getHeight() != getHeight() )
+            {
+                requestSnapshot();
+            }
+            paintBufferToScreen(g2D);
+            firePostPaint(g2D);
+        } else {
+            if (m_offscreen == null) {
+                m_offscreen = getNewOffscreenBuffer(getWidth(), getHeight());
+                damageReport();
+            }
+            Graphics2D buf_g2D = (Graphics2D) m_offscreen.getGraphics();
+            
+            // Why not fire a pre-paint event here?
+            // Pre-paint events are fired by the clearRegion method
+            
+            // paint the visualization
+            paintDisplay(buf_g2D, getSize());
+            paintBufferToScreen(g2D);       
+            
+            // fire post-paint events to any painters
+            firePostPaint(g2D);
+            fireFrameRendered();
+            
+            buf_g2D.dispose();
+        }
         
         // compute frame rate
         nframes++;
@@ -819,6 +1199,190 @@ public class Display extends JComponent {
         }
     }
     
+    /**
+     * Repaints the Display. When snapshot rendering is enabled, a new frame
+     * is rendered before the repaint is issued.
+     * @see java.awt.Component#repaint()
+     * @see #setSnapshotRendering(boolean)
+     */
+    public void repaint() {
+        if ( m_snapshot )
+            requestSnapshot();
+        else
+            super.repaint();
+    }
+    
+    /**
+     * Requests that a new snapshot frame be rendered. If the current
+     * thread holds the Visualization lock the frame is recorded right away,
+     * otherwise it is recorded asynchronously by the snapshot rendering
+     * thread, so that the caller never waits on running actions. Recorded
+     * frames are always rasterized by the snapshot rendering thread.
+     */
+    protected void requestSnapshot() {
+        if ( m_vis == null ) return;
+        boolean record = Thread.holdsLock(m_vis);
+        if ( record )
+            recordSnapshot();
+        synchronized ( this ) {
+            if ( !m_snapshot ) return;
+            if ( m_snapshotThread == null ) {
+                m_snapshotThread = new SnapshotRenderer();
+                m_snapshotThread.start();
+            }
+            m_snapshotThread.request(!record);
+        }
+    }
+    
+    /**
+     * Records a frame while holding the Visualization lock, and queues it
+     * to be rasterized by {@link #renderSnapshots()}. Frames that only
+     * redraw damaged regions are rasterized over a copy of the previous
+     * frame, so a full redraw is recorded whenever the Display has been
+     * resized, and also whenever too many frames are waiting to be
+     * rasterized, in which case the waiting frames are discarded.
+     */
+    protected void recordSnapshot() {
+        int w = getWidth(), h = getHeight();
+        if ( m_vis == null || w <= 0 || h <= 0 )
+            return;
+        // if double-locking *ALWAYS* lock on the visualization first
+        synchronized ( m_vis ) {
+        synchronized ( this ) {
+            if ( !m_snapshot ) return;
+            
+            boolean resized = (w != m_frameWidth || h != m_frameHeight);
+            if ( !resized && m_clip.isEmpty() &&
+                 m_vis.getSpatialIndex() == null )
+            {
+                return; // nothing has changed since the last frame
+            }
+            synchronized ( m_frames ) {
+                if ( resized || m_frames.size() >= 4 )
+                    damageReport();
+            }
+            boolean incremental = m_damageRedraw && !m_clip.isInvalid();
+            
+            RecordingGraphics2D g = new RecordingGraphics2D(w, h);
+            paintDisplay(g, new Dimension(w, h));
+            g.dispose();
+            if ( incremental && g.getOperationCount() == 0 )
+                return; // no damage, nothing was drawn
+            
+            m_frameWidth = w;
+            m_frameHeight = h;
+            synchronized ( m_frames ) {
+                if ( !incremental )
+                    m_frames.clear();
+                m_frames.addLast(new Snapshot(g, w, h, incremental));
+            }
+        }}
+    }
+    
+    /**
+     * Rasterizes the queued frames in order, without holding the
+     * Visualization lock, publishing each one as the new front buffer and
+     * scheduling it to be drawn to the screen. Called only by the snapshot
+     * rendering thread.
+     */
+    private void renderSnapshots() {
+        while ( true ) {
+            Snapshot s;
+            synchronized ( m_frames ) {
+                if ( m_frames.isEmpty() ) return;
+                s = m_frames.removeFirst();
+            }
+            BufferedImage front = m_front;
+            BufferedImage back = m_back;
+            if ( back == null || back == front ||
+                 back.getWidth() != s.width || back.getHeight() != s.height )
+            {
+                back = getNewOffscreenBuffer(s.width, s.height);
+            }
+            
+            Graphics2D g = (Graphics2D)back.getGraphics();
+            if ( s.incremental && front != null )
+                g.drawImage(front, 0, 0, null);
+            s.recording.replay(g);
+            g.dispose();
+            
+            // publish the new frame. the event thread only draws the front
+            // buffer while holding the front lock, so the previous front
+            // buffer can be reused as the next back buffer.
+            synchronized ( m_frontLock ) {
+                if ( !m_snapshot ) return;
+                m_front = back;
+            }
+            m_back = front;
+            fireFrameRendered();
+            super.repaint();
+        }
+    }
+    
+    /**
+     * A recorded frame waiting to be rasterized.
+     */
+    private static class Snapshot {
+        final RecordingGraphics2D recording;
+        final int width, height;
+        final boolean incremental;
+        Snapshot(RecordingGraphics2D g, int w, int h, boolean incremental) {
+            this.recording = g;
+            this.width = w;
+            this.height = h;
+            this.incremental = incremental;
+        }
+    }
+    
+    /**
+     * Daemon thread that records snapshot frames requested by threads that
+     * do not hold the Visualization lock, and rasterizes all recorded
+     * frames. Pending requests are coalesced.
+     */
+    private class SnapshotRenderer extends Thread {
+        private boolean m_record = false;
+        private boolean m_pending = false;
+        private boolean m_running = true;
+        
+        SnapshotRenderer() {
+            super("prefuse_SnapshotRenderer");
+            setDaemon(true);
+        }
+        
+        synchronized void request(boolean record) {
+            m_record |= record;
+            m_pending = true;
+            notify();
+        }
+        
+        synchronized void finish() {
+            m_running = false;
+            notify();
+        }
+        
+        public void run() {
+            while ( true ) {
+                boolean record;
+                synchronized ( this ) {
+                    while ( m_running && !m_pending ) {
+                        try { wait(); } catch ( InterruptedException e ) { }
+                    }
+                    if ( !m_running ) return;
+                    record = m_record;
+                    m_record = m_pending = false;
+                }
+                try {
+                    if ( record )
+                        recordSnapshot();
+                    renderSnapshots();
+                } catch ( Exception e ) {
+                    s_logger.warning("Exception while rendering snapshot: "
+                        + e + "\n" + StringLib.getStackTrace(e));
+                }
+            }
+        }
+    }
+    
     /**
      * Renders the display within the given graphics context and size bounds.
      * @param g2D the <code>Graphics2D</code> context to use for rendering
@@ -829,9 +1393,22 @@ public class Display extends JComponent {
         synchronized ( m_vis ) {
         synchronized ( this ) {
             
+            // remember the incoming transform, used for tile compositing
+            AffineTransform base = g2D.getTransform();
+            
+            // with a spatial index, bring pending bounds up to date first,
+            // so that damage from moved items is included in the clip
+            SpatialIndex index = m_vis.getSpatialIndex();
+            if ( index != null )
+                validatePendingBounds();
+            
             if ( m_clip.isEmpty() )
                 return; // no damage, no render
             
+            FrameMetrics metrics = m_metrics;
+            if ( metrics != null )
+                metrics.beginFrame();
+            
             // map the screen bounds to absolute coords
             m_screen.setClip(0, 0, d.width+1, d.height+1);
             m_screen.transform(m_itransform);
@@ -841,6 +1418,11 @@ public class Display extends JComponent {
             // values too small will cause incorrect rendering
             double pixel = 1.0 + 1.0/getScale();
             
+            // note if the entire display is being redrawn
+            m_fullRedraw = !m_damageRedraw || m_clip.isInvalid();
+            boolean tiled = m_renderThreads > 1 && base.isIdentity()
+                && !(g2D instanceof RecordingGraphics2D);
+            
             if ( m_damageRedraw ) {  
                 if ( m_clip.isInvalid() ) {
                     // if clip is invalid, we clip to the entire screen
@@ -849,6 +1431,10 @@ public class Display extends JComponent {
                     // otherwise intersect damaged region with display bounds
                     m_clip.intersection(m_screen);
                 }
+                
+                // tiles are composited over the bounding box of all damage
+                if ( tiled )
+                    m_clip.mergeRegions();
   
                 // expand the clip by the extra pixel margin
                 m_clip.expand(pixel);
@@ -882,36 +1468,98 @@ public class Display extends JComponent {
                 prepareGraphics(g2D);
             }
 
-            // now clear the region
-            clearRegion(g2D, m_rclip);            
+            // now clear the region. separate damaged regions are cleared
+            // together by renderRegions.
+            int regions = m_damageRedraw ? m_clip.getRegionCount() : 1;
+            if ( regions <= 1 )
+                clearRegion(g2D, m_rclip);
             
             // -- render ----------------------------
             // the actual rendering  loop
             
-            // copy current item bounds into m_rclip, reset item bounds
+            // copy current item bounds into m_rclip
             getItemBounds(m_rclip);
-            m_bounds.reset();
             
             // fill the rendering and picking queues
+            long t0 = (metrics != null ? System.nanoTime() : 0L);
             m_queue.clear();   // clear the queue
-            Iterator items = m_vis.items(m_predicate);
-            for ( m_visibleCount=0; items.hasNext(); ++m_visibleCount ) {
-                VisualItem item = (VisualItem)items.next();
-                Rectangle2D bounds = item.getBounds();
-                m_bounds.union(bounds); // add to item bounds
-                
-                if ( m_clip.intersects(bounds, pixel) )
-                    m_queue.addToRenderQueue(item);
-                if ( item.isInteractive() )
-                    m_queue.addToPickingQueue(item);
+            if ( index != null && !isFullRedraw() ) {
+                // only visit items indexed within the damaged region. the
+                // item bounds from the last full pass are retained, grown to
+                // include any items drawn here. the visible count is only
+                // recomputed if item visibility has changed since.
+                int stamp = index.getVisibilityStamp();
+                if ( stamp != m_visibleStamp ) {
+                    m_visibleStamp = stamp;
+                    Iterator<?> items = m_vis.items(m_predicate);
+                    for ( m_visibleCount=0; items.hasNext(); ++m_visibleCount )
+                        items.next();
+                }
+                Iterator<?> items = index.items(
+                    m_clip.getMinX()-pixel, m_clip.getMinY()-pixel,
+                    m_clip.getMaxX()+pixel, m_clip.getMaxY()+pixel);
+                while ( items.hasNext() ) {
+                    VisualItem item = (VisualItem)items.next();
+                    if ( !item.isValid() || !m_predicate.getBoolean(item) )
+                        continue;
+                    Rectangle2D bounds = item.getBounds();
+                    m_bounds.union(bounds); // add to item bounds
+                    
+                    if ( m_clip.intersects(bounds, pixel) )
+                        m_queue.addToRenderQueue(item);
+                }
+            } else {
+                m_bounds.reset();
+                if ( index != null )
+                    m_visibleStamp = index.getVisibilityStamp();
+                Iterator<?> items = m_vis.items(m_predicate);
+                for ( m_visibleCount=0; items.hasNext(); ++m_visibleCount ) {
+                    VisualItem item = (VisualItem)items.next();
+                    Rectangle2D bounds = item.getBounds();
+                    m_bounds.union(bounds); // add to item bounds
+                    
+                    if ( m_clip.intersects(bounds, pixel) )
+                        m_queue.addToRenderQueue(item);
+                    if ( index == null && item.isInteractive() )
+                        m_queue.addToPickingQueue(item);
+                }
             }
             
             // sort the rendering queue
+            long t1 = (metrics != null ? System.nanoTime() : 0L);
             m_queue.sortRenderQueue();
+            long t2 = (metrics != null ? System.nanoTime() : 0L);
             
             // render each visual item
-            for ( int i=0; i<m_queue.rsize; ++i ) {
-                m_queue.ritems[i].render(g2D);
+            if ( metrics != null )
+                FrameMetrics.setCurrent(metrics);
+            try {
+                if ( tiled ) {
+                    renderTiles(g2D, d, pixel);
+                } else if ( regions > 1 ) {
+                    renderRegions(g2D, pixel);
+                } else {
+                    double scale = Math.abs(getScale());
+                    for ( int i=0; i<m_queue.rsize; ++i ) {
+                        VisualItem item = m_queue.ritems[i];
+                        if ( m_lodThreshold > 0 )
+                            getDetailRenderer(item, scale).render(g2D, item);
+                        else
+                            item.render(g2D);
+                    }
+                }
+            } finally {
+                if ( metrics != null )
+                    FrameMetrics.setCurrent(null);
+            }
+            
+            if ( metrics != null ) {
+                long t3 = System.nanoTime();
+                metrics.addTime(FrameMetrics.QUEUE, t1-t0);
+                metrics.addTime(FrameMetrics.SORT, t2-t1);
+                metrics.addTime(FrameMetrics.RENDER, t3-t2);
+                metrics.setItemCounts(m_queue.rsize,
+                        Math.max(0, m_visibleCount-m_queue.rsize));
             }
             
             // no more damage so reset the clip
@@ -924,6 +1572,289 @@ public class Display extends JComponent {
         }} // end synchronized block
     }
     
+    /**
+     * Renders the contents of the rendering queue separately within each
+     * damaged region. All regions are first cleared at once, clipped to
+     * their union, so that pre-paint events are fired only once per frame.
+     * Then only the items intersecting each region are drawn, clipped to
+     * the region. The context is expected to have its transform prepared
+     * for item rendering, and its clip is left set to the bounding box of
+     * all regions.
+     * @param g2D the graphics context to draw into
+     * @param pixel the size of an absolute pixel, used as a bleed margin
+     */
+    protected void renderRegions(Graphics2D g2D, double pixel) {
+        Shape bounds = g2D.getClip();
+        Rectangle2D r = new Rectangle2D.Double();
+        Clip region = new Clip();
+        double scale = Math.abs(getScale());
+        int n = m_clip.getRegionCount();
+        
+        // clear slightly beyond the regions, as for a single region
+        Area union = new Area();
+        for ( int k=0; k<n; ++k ) {
+            m_clip.getRegion(k, r);
+            union.add(new Area(r));
+        }
+        g2D.setClip(union);
+        r.setFrameFromDiagonal(
+                m_clip.getMinX()-pixel, m_clip.getMinY()-pixel,
+                m_clip.getMaxX()+pixel, m_clip.getMaxY()+pixel);
+        clearRegion(g2D, r);
+        
+        for ( int k=0; k<n; ++k ) {
+            m_clip.getRegion(k, r);
+            region.setClip(r);
+            g2D.setClip(r);
+            
+            for ( int i=0; i<m_queue.rsize; ++i ) {
+                VisualItem item = m_queue.ritems[i];
+                if ( !region.intersects(item.getBounds(), pixel) )
+                    continue;
+                if ( m_lodThreshold > 0 )
+                    getDetailRenderer(item, scale).render(g2D, item);
+                else
+                    item.render(g2D);
+            }
+        }
+        g2D.setClip(bounds);
+    }
+    
+    /**
+     * Renders the contents of the rendering queue by splitting the display
+     * into tiles, rendering the tiles in parallel, and then compositing
+     * them into the given graphics context. The context is expected to
+     * have its transform and clip already prepared for item rendering.
+     * @param g2D the graphics context to composite the tiles into
+     * @param d the rendering width and height of the Display
+     * @param pixel the size of an absolute pixel, used as a bleed margin
+     */
+    protected void renderTiles(Graphics2D g2D, Dimension d, double pixel) {
+        int ts = m_tileSize;
+        int nx = (d.width  + ts - 1) / ts;
+        int ny = (d.height + ts - 1) / ts;
+        if ( m_tiles == null || m_tiles.length != nx*ny ) {
+            m_tiles = new BufferedImage[nx*ny];
+            m_bins = new int[nx*ny][];
+            m_binSizes = new int[nx*ny];
+        }
+        if ( m_renderPool == null )
+            m_renderPool = new ForkJoinPool(m_renderThreads);
+        
+        // resolve the renderer of each queued item and bin the item into
+        // every tile its screen-space bounds overlap, in queue order
+        int n = m_queue.rsize;
+        if ( m_binRenderers.length < n ) {
+            int cap = Math.max(n, 3*m_binRenderers.length/2);
+            m_binRenderers = new Renderer[cap];
+        }
+        Arrays.fill(m_binSizes, 0);
+        double scale = Math.abs(getScale());
+        double[] pts = m_binPoints;
+        for ( int i=0; i<n; ++i ) {
+            VisualItem item = m_queue.ritems[i];
+            m_binRenderers[i] = getDetailRenderer(item, scale);
+            
+            Rectangle2D b = item.getBounds();
+            double x1 = b.getMinX()-pixel, y1 = b.getMinY()-pixel;
+            double x2 = b.getMaxX()+pixel, y2 = b.getMaxY()+pixel;
+            pts[0] = x1; pts[1] = y1; pts[2] = x2; pts[3] = y1;
+            pts[4] = x1; pts[5] = y2; pts[6] = x2; pts[7] = y2;
+            m_transform.transform(pts, 0, pts, 0, 4);
+            double minX = pts[0], maxX = pts[0], minY = pts[1], maxY = pts[1];
+            for ( int k=2; k<8; k+=2 ) {
+                minX = Math.min(minX, pts[k]);   maxX = Math.max(maxX, pts[k]);
+                minY = Math.min(minY, pts[k+1]); maxY = Math.max(maxY, pts[k+1]);
+            }
+            
+            int tx1 = Math.max(0,    (int)Math.floor(minX/ts));
+            int tx2 = Math.min(nx-1, (int)Math.floor(maxX/ts));
+            int ty1 = Math.max(0,    (int)Math.floor(minY/ts));
+            int ty2 = Math.min(ny-1, (int)Math.floor(maxY/ts));
+            for ( int ty=ty1; ty<=ty2; ++ty ) {
+                for ( int tx=tx1; tx<=tx2; ++tx ) {
+                    int t = ty*nx+tx;
+                    int[] bin = m_bins[t];
+                    int size = m_binSizes[t];
+                    if ( bin == null || bin.length == size ) {
+                        int[] nbin = new int[Math.max(16, 2*size)];
+                        if ( bin != null )
+                            System.arraycopy(bin, 0, nbin, 0, size);
+                        m_bins[t] = bin = nbin;
+                    }
+                    bin[size] = i;
+                    m_binSizes[t] = size+1;
+                }
+            }
+        }
+        
+        // the damaged region in screen space, used to skip clean tiles
+        Clip damage = new Clip();
+        damage.setClip(m_clip);
+        damage.transform(m_transform);
+        
+        ArrayList<TileTask> tasks = new ArrayList<TileTask>();
+        for ( int ty=0; ty<ny; ++ty ) {
+            for ( int tx=0; tx<nx; ++tx ) {
+                int x = tx*ts, y = ty*ts;
+                int w = Math.min(ts, d.width-x), h = Math.min(ts, d.height-y);
+                if ( m_binSizes[ty*nx+tx] == 0 ||
+                     damage.getMaxX() < x || damage.getMinX() > x+w ||
+                     damage.getMaxY() < y || damage.getMinY() > y+h )
+                {
+                    continue; // nothing to redraw in this tile
+                }
+                tasks.add(new TileTask(ty*nx+tx, x, y, w, h));
+            }
+        }
+        try {
+            m_renderPool.invoke(new TileBatch(tasks));
+        } finally {
+            Arrays.fill(m_binRenderers, 0, n, null);
+        }
+        
+        // composite the rendered tiles in screen space
+        AffineTransform at = g2D.getTransform();
+        g2D.setTransform(new AffineTransform());
+        for ( int i=0; i<tasks.size(); ++i ) {
+            TileTask t = tasks.get(i);
+            g2D.drawImage(m_tiles[t.index], t.x, t.y, null);
+        }
+        g2D.setTransform(at);
+    }
+    
+    /**
+     * Get a renderer to use in place of the given renderer within a single
+     * tile rendering thread. The returned renderer is used for one tile of
+     * one frame only. This implementation returns a copy of the stock
+     * renderers (subclasses of {@link prefuse.render.AbstractShapeRenderer}
+     * and {@link prefuse.render.PointRenderer}), which can then be called
+     * concurrently with the original. Any other renderer is returned as is,
+     * and calls into it are serialized. Subclasses can override this method
+     * to provide copies of custom renderers.
+     * @param r the renderer resolved for an item
+     * @return the renderer to use within the current thread, or the input
+     * renderer if it can not be copied
+     * @see #setRenderThreadCount(int)
+     */
+    protected Renderer getThreadRenderer(Renderer r) {
+        if ( r instanceof AbstractShapeRenderer )
+            return (Renderer)((AbstractShapeRenderer)r).clone();
+        if ( r instanceof PointRenderer )
+            return (Renderer)((PointRenderer)r).clone();
+        return r;
+    }
+    
+    /**
+     * Fork/join task that renders a collection of tiles in parallel.
+     */
+    private static class TileBatch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ArrayList<TileTask> m_tasks;
+        TileBatch(ArrayList<TileTask> tasks) {
+            m_tasks = tasks;
+        }
+        protected void compute() {
+            invokeAll(m_tasks);
+        }
+    }
+    
+    /**
+     * Fork/join task that renders the items binned into a single tile
+     * into that tile's image.
+     */
+    private class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final int index, x, y, w, h;
+        
+        TileTask(int index, int x, int y, int w, int h) {
+            this.index = index;
+            this.x = x; this.y = y;
+            this.w = w; this.h = h;
+        }
+        
+        protected void compute() {
+            BufferedImage img = m_tiles[index];
+            if ( img == null || img.getWidth() != w || img.getHeight() != h ) {
+                img = new BufferedImage(w, h,
+                        BufferedImage.TYPE_INT_ARGB_PRE);
+                m_tiles[index] = img;
+            }
+            Graphics2D g = img.createGraphics();
+            FrameMetrics prev = FrameMetrics.getCurrent();
+            FrameMetrics.setCurrent(m_metrics);
+            try {
+                // clear the tile to full transparency
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(0, 0, w, h);
+                g.setComposite(AlphaComposite.SrcOver);
+                
+                // map the tile into absolute coordinates
+                Clip tile = new Clip();
+                tile.setClip(x, y, w, h);
+                tile.transform(m_itransform);
+                tile.intersection(m_clip);
+                
+                g.translate(-x, -y);
+                prepareGraphics(g);
+                g.setClip(new Rectangle2D.Double(
+                    tile.getMinX(), tile.getMinY(),
+                    tile.getWidth(), tile.getHeight()));
+                
+                // draw with per-tile copies of the renderers
+                IdentityHashMap<Renderer,Renderer> copies =
+                    new IdentityHashMap<Renderer,Renderer>();
+                VisualItem[] items = m_queue.ritems;
+                int[] bin = m_bins[index];
+                for ( int k=0, size=m_binSizes[index]; k<size; ++k ) {
+                    int i = bin[k];
+                    Renderer r = m_binRenderers[i];
+                    Renderer c = copies.get(r);
+                    if ( c == null ) {
+                        c = getThreadRenderer(r);
+                        copies.put(r, c);
+                    }
+                    if ( c == r ) {
+                        synchronized ( r ) {
+                            r.render(g, items[i]);
+                        }
+                    } else {
+                        c.render(g, items[i]);
+                    }
+                }
+            } finally {
+                FrameMetrics.setCurrent(prev);
+                g.dispose();
+            }
+        }
+    }
+    
+    /**
+     * Indicates if the current (or most recent) paint is redrawing the
+     * entire Display, rather than only a damaged region.
+     * @return true if the full display is being redrawn, false otherwise
+     */
+    protected boolean isFullRedraw() {
+        return m_fullRedraw;
+    }
+    
+    /**
+     * Validates the bounds of any items that are currently invalidated.
+     * Used when a spatial index is present, as items are only added back
+     * to the index once their bounds have been validated. Only the items
+     * recorded as pending by the index are visited.
+     */
+    protected void validatePendingBounds() {
+        SpatialIndex index = m_vis.getSpatialIndex();
+        if ( index == null ) return;
+        VisualItem[] items = index.takePending();
+        for ( int i=0; i<items.length; ++i ) {
+            VisualItem item = items[i];
+            if ( item.isValid() && !item.isValidated() )
+                item.validateBounds();
+        }
+    }
+    
     /**
      * Immediately render the given VisualItem to the screen. This method
      * bypasses the Display's offscreen buffer.
@@ -952,6 +1883,7 @@ public class Display extends JComponent {
             m_highQuality = true;
             // Paint directly to the print graphics context.
             paintDisplay((Graphics2D) g, getSize());
+            fireFrameRendered();
         } finally {
             // Reset the quality to the state it was in before printing.
             m_highQuality = wasHighQuality;
@@ -1396,6 +2328,8 @@ public class Display extends JComponent {
      */
     protected void firePrePaint(Graphics2D g) {
         if ( m_painters != null && m_painters.size() > 0 ) {
+            FrameMetrics metrics = m_metrics;
+            long t0 = (metrics != null ? System.nanoTime() : 0L);
             Object[] listeners = m_painters.getArray();
             for ( int i=0; i<listeners.length; ++i ) {
                 try {
@@ -1406,6 +2340,8 @@ public class Display extends JComponent {
                         StringLib.getStackTrace(e));
                 }
             }
+            if ( metrics != null )
+                metrics.addTime(FrameMetrics.LISTENER, System.nanoTime()-t0);
         }
     }
     
@@ -1415,6 +2351,8 @@ public class Display extends JComponent {
      */
     protected void firePostPaint(Graphics2D g) {
         if ( m_painters != null && m_painters.size() > 0 ) {
+            FrameMetrics metrics = m_metrics;
+            long t0 = (metrics != null ? System.nanoTime() : 0L);
             Object[] listeners = m_painters.getArray();
             for ( int i=0; i<listeners.length; ++i ) {
                 try {
@@ -1425,6 +2363,8 @@ public class Display extends JComponent {
                         StringLib.getStackTrace(e));
                 }
             }
+            if ( metrics != null )
+                metrics.addTime(FrameMetrics.LISTENER, System.nanoTime()-t0);
         }
     }
     
@@ -1461,6 +2401,8 @@ public class Display extends JComponent {
             return; // nothing to do
         
         if ( m_bounders != null && m_bounders.size() > 0 ) {
+            FrameMetrics metrics = m_metrics;
+            long t0 = (metrics != null ? System.nanoTime() : 0L);
             Object[] listeners = m_bounders.getArray();
             for ( int i=0; i<listeners.length; ++i ) {
                 try {
@@ -1471,6 +2413,59 @@ public class Display extends JComponent {
                         StringLib.getStackTrace(e));
                 }
             }
+            if ( metrics != null )
+                metrics.addTime(FrameMetrics.LISTENER, System.nanoTime()-t0);
+        }
+    }
+    
+    
+    // ------------------------------------------------------------------------
+    // Frame Listeners
+    
+    /**
+     * Add a FrameListener to be notified each time this Display has
+     * rendered a frame. Adding a listener enables the collection of
+     * frame metrics.
+     * @param fl the {@link prefuse.util.display.FrameListener} to add
+     * @see #setFrameMetricsEnabled(boolean)
+     */
+    public void addFrameListener(FrameListener fl) {
+        setFrameMetricsEnabled(true);
+        if ( m_framers == null )
+            m_framers = new CopyOnWriteArrayList();
+        m_framers.add(fl);
+    }
+    
+    /**
+     * Remove a FrameListener from this Display. Frame metrics remain
+     * enabled.
+     * @param fl the {@link prefuse.util.display.FrameListener} to remove
+     */
+    public void removeFrameListener(FrameListener fl) {
+        if ( m_framers != null )
+            m_framers.remove(fl);
+    }
+    
+    /**
+     * Completes the frame metrics of a rendered frame and fires a
+     * notification to FrameListeners. Does nothing if metrics collection
+     * is disabled or no frame was rendered.
+     */
+    protected void fireFrameRendered() {
+        FrameMetrics metrics = m_metrics;
+        if ( metrics == null || !metrics.endFrame() )
+            return;
+        if ( m_framers != null && m_framers.size() > 0 ) {
+            Object[] listeners = m_framers.getArray();
+            for ( int i=0; i<listeners.length; ++i ) {
+                try {
+                    ((FrameListener)listeners[i]).frameRendered(this, metrics);
+                } catch ( Exception e ) {
+                    s_logger.warning(
+                        "Exception thrown by FrameListener: " + e + "\n" +
+                        StringLib.getStackTrace(e));
+                }
+            }
         }
     }
     
@@ -1503,6 +2498,21 @@ public class Display extends JComponent {
         // transform mouse point from screen space to item space
         Point2D p2 = (m_itransform==null ? p : 
                       m_itransform.transform(p, m_tmpPoint));
+        // with a spatial index, pick only from the items near the point
+        SpatialIndex index = (m_vis==null ? null : m_vis.getSpatialIndex());
+        if ( index != null ) {
+            m_queue.clearPickingQueue();
+            double x = p2.getX(), y = p2.getY();
+            Iterator<?> items = index.items(x, y, x, y);
+            while ( items.hasNext() ) {
+                VisualItem item = (VisualItem)items.next();
+                if ( item.isValid() && item.isInteractive() &&
+                     m_predicate.getBoolean(item) )
+                {
+                    m_queue.addToPickingQueue(item);
+                }
+            }
+        }
         // ensure that the picking queue has been z-sorted
         if ( !m_queue.psorted )
             m_queue.sortPickingQueue();
@@ -17,6 +17,7 @@ import prefuse.data.Schema;
 import prefuse.data.Table;
 import prefuse.data.Tree;
 import prefuse.data.Tuple;
+import prefuse.data.event.TupleSetListener;
 import prefuse.data.expression.Expression;
 import prefuse.data.expression.Predicate;
 import prefuse.data.expression.parser.ExpressionParser;
@@ -30,6 +31,7 @@ import prefuse.render.RendererFactory;
 import prefuse.util.PrefuseConfig;
 import prefuse.util.PrefuseLib;
 import prefuse.util.collections.CompositeIterator;
+import prefuse.util.display.SpatialIndex;
 import prefuse.visual.AggregateTable;
 import prefuse.visual.VisualGraph;
 import prefuse.visual.VisualItem;
@@ -185,6 +187,25 @@ public class Visualization {
     // displays
     private ArrayList m_displays;
     
+    // optional spatial index over item bounds
+    private SpatialIndex m_index;
+    
+    // reports focus group membership changes, which may affect item order
+    private TupleSetListener m_focusListener = new TupleSetListener() {
+        public void tupleSetChanged(TupleSet tset, Tuple[] add, Tuple[] rem) {
+            damageReport(add);
+            damageReport(rem);
+        }
+        private void damageReport(Tuple[] tuples) {
+            for ( int i=0; tuples!=null && i<tuples.length; ++i ) {
+                if ( tuples[i] instanceof VisualItem && tuples[i].isValid() ) {
+                    VisualItem item = (VisualItem)tuples[i];
+                    Visualization.this.damageReport(item, item.getBounds());
+                }
+            }
+        }
+    };
+    
     // ------------------------------------------------------------------------
     // Constructor
     
@@ -684,6 +705,7 @@ public class Visualization {
                 ((VisualItem)items.next()).setValidated(false);
             }
             ts.clear(); // trigger group removal callback
+            ts.removeTupleSetListener(m_focusListener);
             m_focus.remove(group);
             return true;
         }
@@ -737,6 +759,8 @@ public class Visualization {
         // finally clear out all map entries
         m_visual.clear();
         m_source.clear();
+        if ( m_index != null )
+            m_index.clear();
     }
     
     // ------------------------------------------------------------------------
@@ -861,8 +885,7 @@ public class Visualization {
      * @param group the name of the focus group to add
      */
     public void addFocusGroup(String group) {
-    	checkGroupExists(group);
-        m_focus.put(group, new DefaultTupleSet());
+        addFocusGroup(group, new DefaultTupleSet());
     }
 
     /**
@@ -873,6 +896,7 @@ public class Visualization {
     public void addFocusGroup(String group, TupleSet tSet) {
         checkGroupExists(group);
     	m_focus.put(group, tSet);
+    	tSet.addTupleSetListener(m_focusListener);
     }
     
     // ------------------------------------------------------------------------
@@ -1242,9 +1266,18 @@ public class Visualization {
      * visualization to be repainted.
      */
     public synchronized void repaint() {
-        Iterator items = items(ValidatedPredicate.FALSE);
-        while ( items.hasNext() ) {
-            ((VisualItem)items.next()).validateBounds();
+        if ( m_index != null ) {
+            // only the items recorded by the index can be invalid
+            VisualItem[] items = m_index.takePending();
+            for ( int i=0; i<items.length; ++i ) {
+                if ( items[i].isValid() )
+                    items[i].validateBounds();
+            }
+        } else {
+            Iterator<?> items = items(ValidatedPredicate.FALSE);
+            while ( items.hasNext() ) {
+                ((VisualItem)items.next()).validateBounds();
+            }
         }
         for ( int i=0; i<m_displays.size(); ++i ) {
             getDisplay(i).repaint();
@@ -1319,6 +1352,48 @@ public class Visualization {
         return m_displays.remove(display);
     }
     
+    // ------------------------------------------------------------------------
+    // Spatial Index
+    
+    /**
+     * Set the spatial index used to look up items by their bounds. When an
+     * index is set, it is kept up to date as item bounds are validated and
+     * invalidated, and associated Displays use it to redraw damaged regions
+     * and to find items under the mouse without visiting every item.
+     * All currently validated items are added to the new index, and all
+     * other items are recorded as pending validation.
+     * @param index the {@link prefuse.util.display.SpatialIndex} to use,
+     * or null to disable spatial indexing
+     */
+    public synchronized void setSpatialIndex(SpatialIndex index) {
+        if ( m_index == index )
+            return;
+        m_index = index;
+        if ( index != null ) {
+            index.clear();
+            Iterator<?> items = items();
+            while ( items.hasNext() ) {
+                VisualItem item = (VisualItem)items.next();
+                if ( item.isValidated() )
+                    index.update(item, item.getBounds());
+                else
+                    index.invalidate(item);
+            }
+        }
+        for ( int i=0; i<m_displays.size(); ++i ) {
+            getDisplay(i).damageReport();
+        }
+    }
+    
+    /**
+     * Get the spatial index used to look up items by their bounds.
+     * @return the {@link prefuse.util.display.SpatialIndex}, or null if
+     * spatial indexing is disabled (the default)
+     */
+    public SpatialIndex getSpatialIndex() {
+        return m_index;
+    }
+    
     /**
      * Report damage to associated displays, indicating a region that will need
      * to be redrawn.
@@ -1329,7 +1404,7 @@ public class Visualization {
         for ( int i=0; i<m_displays.size(); ++i ) {
             Display d = getDisplay(i);
             if ( d.getPredicate().getBoolean(item) ) {
-                d.damageReport(region);
+                d.damageReport(item, region);
             }
         }
     }
@@ -5,6 +5,9 @@ import java.util.Map;
 import java.util.logging.Logger;
 
 import prefuse.Constants;
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.column.DictionaryColumn;
 import prefuse.data.tuple.TupleSet;
 import prefuse.util.ColorLib;
 import prefuse.util.ColorMap;
@@ -38,6 +41,12 @@ import prefuse.visual.VisualItem;
  * {@link #setBinCount(int)}). This value will determine the number of
  * quantiles that the data should be divided into. 
  * </p>
+ * 
+ * <p>
+ * When a nominal or ordinal data field is stored in a
+ * {@link prefuse.data.column.DictionaryColumn}, colors are looked up by the
+ * column's integer value codes rather than by hashing each data value.
+ * </p>
  *
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
@@ -55,6 +64,13 @@ public class DataColorAction extends ColorAction {
     private ColorMap m_cMap = new ColorMap(null,0,1);
     private int[]    m_palette;
     
+    // dictionary code lookup for nominal and ordinal data
+    private Table            m_dTable;
+    private DictionaryColumn m_dCol;
+    private int              m_dColIdx;
+    private int[]            m_dIndex;
+    private int              m_dVersion;
+    
     
     /**
      * Create a new DataColorAction
@@ -296,10 +312,36 @@ public class DataColorAction extends ColorAction {
         } else {
             if ( m_oList == null )
                 m_oMap = DataLib.ordinalMap(ts, m_dataField);
+            setupDictionary(ts);
             return new double[] { 0, m_oMap.size()-1 };
         }
     }
     
+    /**
+     * If the data field is dictionary-encoded, map the dictionary codes to
+     * their ordinal index, so that colors can be looked up by code.
+     */
+    private void setupDictionary(TupleSet ts) {
+        m_dTable = null;
+        m_dCol = null;
+        m_dIndex = null;
+        if ( !(ts instanceof Table) ) return;
+        
+        Table t = (Table)ts;
+        Column col = t.getColumn(m_dataField);
+        if ( !(col instanceof DictionaryColumn) ) return;
+        
+        m_dTable = t;
+        m_dCol = (DictionaryColumn)col;
+        m_dColIdx = t.getColumnNumber(m_dataField);
+        m_dVersion = m_dCol.getDictionaryVersion();
+        m_dIndex = new int[m_dCol.getDictionarySize()];
+        for ( int c=0; c<m_dIndex.length; ++c ) {
+            Integer idx = (Integer)m_oMap.get(m_dCol.getValue(c));
+            m_dIndex[c] = ( idx==null ? -1 : idx.intValue() );
+        }
+    }
+    
     /**
      * Create a color palette of the requested type and size.
      */
@@ -338,6 +380,14 @@ public class DataColorAction extends ColorAction {
             double f = MathLib.interp(m_scale, v, m_dist);
             return m_cMap.getColor(f);
         default:
+            if ( m_dIndex != null && item.getTable() == m_dTable
+                 && m_dCol.getDictionaryVersion() == m_dVersion )
+            {
+                int row = m_dTable.getColumnRow(item.getRow(), m_dColIdx);
+                int code = m_dCol.getCode(row);
+                if ( code < m_dIndex.length && m_dIndex[code] >= 0 )
+                    return m_cMap.getColor(m_dIndex[code]);
+            }
             Integer idx = (Integer) m_oMap.get(item.get(m_dataField));
             return m_cMap.getColor(idx.doubleValue());
         }
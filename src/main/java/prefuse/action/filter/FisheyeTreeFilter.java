@@ -8,6 +8,7 @@ import prefuse.action.GroupAction;
 import prefuse.data.Graph;
 import prefuse.data.Tree;
 import prefuse.data.expression.Predicate;
+import prefuse.data.util.TreeOrderIndex;
 import prefuse.util.PrefuseLib;
 import prefuse.visual.EdgeItem;
 import prefuse.visual.NodeItem;
@@ -41,8 +42,10 @@ public class FisheyeTreeFilter extends GroupAction {
     
     private int m_threshold;
     
+    private Tree m_tree;
     private NodeItem m_root;
     private double m_divisor;
+    private int[] m_counts = new int[8]; // next child number, by level
     
     /**
      * Create a new FisheyeTreeFilter that processes the given group.
@@ -129,9 +132,9 @@ public class FisheyeTreeFilter extends GroupAction {
      * @see prefuse.action.GroupAction#run(double)
      */
     public void run(double frac) {
-        Tree tree = ((Graph)m_vis.getGroup(m_group)).getSpanningTree();
-        m_divisor = tree.getNodeCount();
-        m_root = (NodeItem)tree.getRoot();
+        m_tree = ((Graph)m_vis.getGroup(m_group)).getSpanningTree();
+        m_divisor = m_tree.getNodeCount();
+        m_root = (NodeItem)m_tree.getRoot();
         
         // mark the items
         Iterator items = m_vis.visibleItems(m_group);
@@ -192,23 +195,46 @@ public class FisheyeTreeFilter extends GroupAction {
     }
     
     /**
-     * Traverse tree descendants.
+     * Traverse tree descendants. The subtree is read in pre-order from the
+     * structure index of the tree, skipping the subtrees of nodes that
+     * fall beyond the distance threshold.
      */
     private void visitDescendants(NodeItem p, NodeItem skip) {
         int lIdx = ( skip == null ? 0 : p.getChildIndex(skip) );
         
-        Iterator children = p.children();
+        p.setExpanded(p.getChildCount() > 0);
         
-        p.setExpanded(children.hasNext());
+        TreeOrderIndex index = m_tree.getOrderIndex();
+        int r = p.getRow();
+        int base = index.getDepth(r);
+        int end = index.getPreOrder(r) + index.getSubtreeSize(r);
         
-        for ( int i=0; children.hasNext(); ++i ) {
-            NodeItem c = (NodeItem)children.next();
-            if ( c == skip ) { continue; }             
+        m_counts[1] = 0;
+        for ( int i=index.getPreOrder(r)+1; i<end; ) {
+            r = index.getPreOrderRow(i);
+            NodeItem c = (NodeItem)m_tree.getNode(r);
+            int level = index.getDepth(r) - base;
+            if ( level+1 >= m_counts.length ) {
+                int[] counts = new int[2*m_counts.length];
+                System.arraycopy(m_counts, 0, counts, 0, m_counts.length);
+                m_counts = counts;
+            }
+            int num = m_counts[level]++;
+            m_counts[level+1] = 0;
+            if ( c == skip ) {
+                i += index.getSubtreeSize(r);
+                continue;
+            }
             
-            int doi = (int)(p.getDOI()-1);            
-            visit(c, c, doi, Math.abs(lIdx-i));
-            if ( doi > m_threshold )
-                visitDescendants(c, null);   
+            NodeItem cp = (NodeItem)c.getParent();
+            int doi = (int)(cp.getDOI()-1);
+            visit(c, c, doi, Math.abs((level==1 ? lIdx : 0) - num));
+            if ( doi > m_threshold ) {
+                c.setExpanded(c.getChildCount() > 0);
+                ++i;
+            } else {
+                i += index.getSubtreeSize(r);
+            }
         }
     }
     
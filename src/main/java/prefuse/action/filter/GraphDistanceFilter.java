@@ -1,16 +1,22 @@
 package prefuse.action.filter;
 
+import java.util.BitSet;
 import java.util.Iterator;
 
 import prefuse.Constants;
 import prefuse.Visualization;
 import prefuse.action.GroupAction;
 import prefuse.data.Graph;
+import prefuse.data.Table;
 import prefuse.data.expression.Predicate;
 import prefuse.data.tuple.TupleSet;
+import prefuse.data.util.BitmapIndex;
 import prefuse.data.util.BreadthFirstIterator;
 import prefuse.data.util.FilterIterator;
+import prefuse.data.util.GraphTraversal;
+import prefuse.data.util.Index;
 import prefuse.util.PrefuseLib;
+import prefuse.visual.NodeItem;
 import prefuse.visual.VisualItem;
 import prefuse.visual.expression.InGroupPredicate;
 
@@ -18,6 +24,12 @@ import prefuse.visual.expression.InGroupPredicate;
  * Filter Action that sets visible all items within a specified graph distance
  * from a set of focus items; all other items will be set to invisible.
  * 
+ * <p>If the group is a Graph, it is traversed using a
+ * {@link GraphTraversal}, and the items to hide are found using the bitmap
+ * indices over the visibility flags of its node and edge tables, where
+ * available. Other groups are traversed using a
+ * {@link BreadthFirstIterator}.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class GraphDistanceFilter extends GroupAction {
@@ -25,7 +37,15 @@ public class GraphDistanceFilter extends GroupAction {
     protected int m_distance;
     protected String m_sources;
     protected Predicate m_groupP;
+    /**
+     * @deprecated only used for groups that are not a Graph, which are
+     * otherwise traversed using {@link #m_traversal}
+     */
+    @Deprecated
     protected BreadthFirstIterator m_bfs;
+    protected GraphTraversal m_traversal;
+    private int[] m_roots = new int[16];
+    private BitSet m_reached = new BitSet();
    
     /**
      * Create a new GraphDistanceFilter that processes the given data group
@@ -116,6 +136,72 @@ public class GraphDistanceFilter extends GroupAction {
      * @see prefuse.action.GroupAction#run(double)
      */
     public void run(double frac) {
+        TupleSet ts = m_vis.getGroup(m_group);
+        if ( !(ts instanceof Graph) ) {
+            runIterator();
+            return;
+        }
+        Graph g = (Graph)ts;
+        if ( m_traversal == null || m_traversal.getGraph() != g )
+            m_traversal = new GraphTraversal(g);
+        
+        // collect the source nodes
+        TupleSet src = m_vis.getGroup(m_sources);
+        Iterator<?> srcs = new FilterIterator(src.tuples(), m_groupP);
+        int nroots = 0;
+        while ( srcs.hasNext() ) {
+            if ( nroots == m_roots.length ) {
+                int[] r = new int[2*nroots];
+                System.arraycopy(m_roots, 0, r, 0, nroots);
+                m_roots = r;
+            }
+            m_roots[nroots++] = ((VisualItem)srcs.next()).getRow();
+        }
+        
+        // traverse the graph
+        m_traversal.breadthFirst(m_roots, nroots, m_distance,
+                                 Graph.UNDIRECTED, true, null);
+        
+        // mark unreached items
+        BitSet nodes = getVisibleRows(g.getNodeTable());
+        BitSet edges = getVisibleRows(g.getEdgeTable());
+        if ( nodes != null && edges != null ) {
+            m_reached.clear();
+            nodes.andNot(m_traversal.getVisitedNodes(m_reached));
+            for ( int r=nodes.nextSetBit(0); r>=0; r=nodes.nextSetBit(r+1) )
+                hide((VisualItem)g.getNode(r));
+            m_reached.clear();
+            edges.andNot(m_traversal.getVisitedEdges(m_reached));
+            for ( int r=edges.nextSetBit(0); r>=0; r=edges.nextSetBit(r+1) )
+                hide((VisualItem)g.getEdge(r));
+        } else {
+            Iterator<?> items = m_vis.visibleItems(m_group);
+            while ( items.hasNext() ) {
+                VisualItem item = (VisualItem)items.next();
+                int row = item.getRow();
+                int d = ( item instanceof NodeItem
+                          ? m_traversal.getDepth(row)
+                          : m_traversal.getEdgeDepth(row) );
+                if ( d < 0 ) hide(item);
+            }
+        }
+        
+        // mark reached items
+        for ( int i=0; i<m_traversal.getNodeCount(); ++i ) {
+            int row = m_traversal.getNode(i);
+            mark((VisualItem)g.getNode(row), m_traversal.getDepth(row));
+        }
+        for ( int i=0; i<m_traversal.getEdgeCount(); ++i ) {
+            int row = m_traversal.getEdge(i);
+            mark((VisualItem)g.getEdge(row), m_traversal.getEdgeDepth(row));
+        }
+    }
+    
+    /**
+     * Run the filter using a breadth-first iterator over the tuples, for
+     * groups that are not a Graph.
+     */
+    private void runIterator() {
         // mark the items
         Iterator items = m_vis.visibleItems(m_group);
         while ( items.hasNext() ) {
@@ -131,10 +217,7 @@ public class GraphDistanceFilter extends GroupAction {
         // traverse the graph
         while ( m_bfs.hasNext() ) {
             VisualItem item = (VisualItem)m_bfs.next();
-            int d = m_bfs.getDepth(item);
-            PrefuseLib.updateVisible(item, true);
-            item.setDOI(-d);
-            item.setExpanded(d < m_distance);
+            mark(item, m_bfs.getDepth(item));
         }
         
         // mark unreached items
@@ -147,6 +230,30 @@ public class GraphDistanceFilter extends GroupAction {
             }
         }
     }
+    
+    /**
+     * Get the rows of the visible items in a table, using its bitmap index
+     * over the visibility flags.
+     * @return a new BitSet of visible rows, or null if the table has no
+     * bitmap index over the visibility flags
+     */
+    private static BitSet getVisibleRows(Table t) {
+        Index index = t.getIndex(VisualItem.VISIBLE);
+        if ( !(index instanceof BitmapIndex) ) return null;
+        return ((BitmapIndex)index).getRows(Boolean.TRUE);
+    }
+    
+    private void hide(VisualItem item) {
+        item.setDOI(Constants.MINIMUM_DOI);
+        PrefuseLib.updateVisible(item, false);
+        item.setExpanded(false);
+    }
+    
+    private void mark(VisualItem item, int d) {
+        PrefuseLib.updateVisible(item, true);
+        item.setDOI(-d);
+        item.setExpanded(d < m_distance);
+    }
 
     /**
      * Clears references to graph tuples. The group and visualization are
@@ -154,6 +261,7 @@ public class GraphDistanceFilter extends GroupAction {
      */
     public void reset() {
         m_bfs = new BreadthFirstIterator();
+        m_traversal = null;
     }
 
 } // end of class GraphDistanceFilter
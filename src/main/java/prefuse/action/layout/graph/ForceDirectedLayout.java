@@ -2,17 +2,24 @@ package prefuse.action.layout.graph;
 
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.Iterator;
 
 import prefuse.action.layout.Layout;
 import prefuse.data.Graph;
 import prefuse.data.Schema;
+import prefuse.data.Table;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.TableListener;
 import prefuse.data.tuple.TupleSet;
 import prefuse.util.PrefuseLib;
 import prefuse.util.force.DragForce;
 import prefuse.util.force.ForceItem;
 import prefuse.util.force.ForceSimulator;
 import prefuse.util.force.NBodyForce;
+import prefuse.util.force.Spring;
 import prefuse.util.force.SpringForce;
 import prefuse.visual.EdgeItem;
 import prefuse.visual.NodeItem;
@@ -40,6 +47,18 @@ import prefuse.visual.VisualItem;
  * to a {@link prefuse.util.force.Spring} instance for storing the state
  * of the simulation. See the {@link prefuse.util.force} package for more.</p>
  * 
+ * <p>When run in animated fashion with incremental updates enabled, the
+ * force items and springs loaded into the simulator are kept from one step
+ * to the next. The layout listens to the node and edge tables, and on each
+ * step only registers or removes the items and springs of nodes and edges
+ * that have been added, removed, shown or hidden since the previous step,
+ * and only reloads the locations, masses and spring parameters of rows that
+ * have been updated. Incremental updates are enabled by default for this
+ * class, but not for subclasses, which may load the simulator differently
+ * by overriding {@link #initSimulator(ForceSimulator)}. Otherwise, the
+ * simulator is cleared and reloaded on every step.
+ * See {@link #setIncrementalUpdates(boolean)}.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class ForceDirectedLayout extends Layout {
@@ -56,6 +75,21 @@ public class ForceDirectedLayout extends Layout {
     protected String m_nodeGroup;
     protected String m_edgeGroup;
     
+    // simulator state kept across animation steps
+    private boolean m_incremental = (getClass() == ForceDirectedLayout.class);
+    private boolean m_positioning;
+    private ForceSimulator m_loaded;
+    private Table m_nodes, m_edges;
+    private int m_nodeVisCol, m_fitemCol, m_edgeVisCol, m_srcCol, m_tgtCol;
+    private BitSet m_nodeSkip = new BitSet(), m_edgeSkip = new BitSet();
+    private ForceItem[] m_fitems = new ForceItem[0];
+    private Spring[] m_springs = new Spring[0];
+    private BitSet m_nodeRows = new BitSet(), m_edgeRows = new BitSet();
+    private BitSet m_dirtyNodes = new BitSet(), m_dirtyEdges = new BitSet();
+    private BitSet m_staleNodes = new BitSet(), m_staleEdges = new BitSet();
+    private HashSet<Object> m_removed = new HashSet<Object>();
+    private Listener m_listener = new Listener();
+    
     /**
      * Create a new ForceDirectedLayout. By default, this layout will not
      * restrict the layout to the layout bounds and will assume it is being
@@ -213,7 +247,32 @@ public class ForceDirectedLayout extends Layout {
         m_nodeGroup = nodeGroup;
         m_edgeGroup = edgeGroup;
     }
-    
+
+    /**
+     * Indicates if the simulator is updated incrementally between animated
+     * layout steps, rather than being cleared and reloaded using
+     * {@link #initSimulator(ForceSimulator)} on every step.
+     * @return true if incremental updates are enabled
+     */
+    public boolean isIncrementalUpdates() {
+        return m_incremental;
+    }
+
+    /**
+     * Set if the simulator is updated incrementally between animated
+     * layout steps, rather than being cleared and reloaded using
+     * {@link #initSimulator(ForceSimulator)} on every step. This is enabled
+     * by default for ForceDirectedLayout, and disabled for subclasses.
+     * Subclasses that enable it must not rely on initSimulator being called
+     * on every step, and their masses and spring parameters are only
+     * recomputed when the corresponding node or edge rows are updated.
+     * @param b true to enable incremental updates, false to disable them
+     */
+    public void setIncrementalUpdates(boolean b) {
+        if ( !b ) release();
+        m_incremental = b;
+    }
+
     // ------------------------------------------------------------------------
     
     /**
@@ -230,6 +289,7 @@ public class ForceDirectedLayout extends Layout {
                 item.setX(anchor.getX());
                 item.setY(anchor.getY());
             }
+            release();
             m_fsim.clear();
             long timestep = 1000L;
             initSimulator(m_fsim);
@@ -254,8 +314,10 @@ public class ForceDirectedLayout extends Layout {
             m_lasttime = time;
             
             // run force simulator
-            m_fsim.clear();
-            initSimulator(m_fsim);
+            if ( !updateSimulator(m_fsim) ) {
+                m_fsim.clear();
+                initSimulator(m_fsim);
+            }
             m_fsim.runSimulator(timestep);
             updateNodePositions();
         }
@@ -272,7 +334,18 @@ public class ForceDirectedLayout extends Layout {
             x2 = bounds.getMaxX(); y2 = bounds.getMaxY();
         }
         
-        // update positions
+        // update positions, which does not make the loaded items stale
+        m_positioning = true;
+        try {
+            updateNodePositions(bounds, x1, y1, x2, y2);
+        } finally {
+            m_positioning = false;
+        }
+    }
+    
+    private void updateNodePositions(Rectangle2D bounds,
+            double x1, double y1, double x2, double y2)
+    {
         Iterator iter = m_vis.visibleItems(m_nodeGroup);
         while ( iter.hasNext() ) {
             VisualItem item = (VisualItem)iter.next();
@@ -289,6 +362,9 @@ public class ForceDirectedLayout extends Layout {
                     setX(item, referrer, 0.0);
                     setY(item, referrer, 0.0);
                 }
+                // the simulator may have moved it, so reload its location
+                if ( item.getTable() == m_nodes )
+                    m_staleNodes.set(item.getRow());
                 continue;
             }
             
@@ -303,6 +379,8 @@ public class ForceDirectedLayout extends Layout {
                 if ( x-hw < x1 ) x = x1+hw;
                 if ( y+hh > y2 ) y = y2-hh;
                 if ( y-hh < y1 ) y = y1+hh;
+                fitem.location[0] = (float)x;
+                fitem.location[1] = (float)y;
             }
             
             // set the actual position
@@ -328,6 +406,7 @@ public class ForceDirectedLayout extends Layout {
             }
         }
         m_lasttime = -1L;
+        release();
     }
     
     /**
@@ -342,20 +421,14 @@ public class ForceDirectedLayout extends Layout {
             ts.addColumns(FORCEITEM_SCHEMA);
         } catch ( IllegalArgumentException iae ) { /* ignored */ }
         
-        float startX = (referrer == null ? 0f : (float)referrer.getX());
-        float startY = (referrer == null ? 0f : (float)referrer.getY());
-        startX = Float.isNaN(startX) ? 0f : startX;
-        startY = Float.isNaN(startY) ? 0f : startY;
+        float startX = getStartX();
+        float startY = getStartY();
        
         Iterator iter = m_vis.visibleItems(m_nodeGroup);
         while ( iter.hasNext() ) {
             VisualItem item = (VisualItem)iter.next();
             ForceItem fitem = (ForceItem)item.get(FORCEITEM);
-            fitem.mass = getMassValue(item);
-            double x = item.getEndX();
-            double y = item.getEndY();
-            fitem.location[0] = (Double.isNaN(x) ? startX : (float)x);
-            fitem.location[1] = (Double.isNaN(y) ? startY : (float)y);
+            loadItem(item, fitem, startX, startY);
             fsim.addItem(fitem);
         }
         if ( m_edgeGroup != null ) {
@@ -373,6 +446,283 @@ public class ForceDirectedLayout extends Layout {
         }
     }
     
+    /**
+     * Brings the simulator up to date for an animation step, reusing the
+     * force items and springs loaded in previous steps. Only the nodes and
+     * edges that were added, removed, shown or hidden since the previous
+     * step are registered with or removed from the simulator, after which
+     * the locations, masses and spring parameters of the loaded items whose
+     * rows have been updated are refreshed.
+     * @param fsim the force simulator driving this layout
+     * @return true if the simulator was updated, false if it must instead
+     * be cleared and reloaded using {@link #initSimulator(ForceSimulator)}.
+     * This is the case when incremental updates are disabled, or when the
+     * node and edge groups are not backed by tables.
+     */
+    protected boolean updateSimulator(ForceSimulator fsim) {
+        TupleSet nodes = m_vis.getGroup(m_nodeGroup);
+        TupleSet edges = ( m_edgeGroup==null ? null : m_vis.getGroup(m_edgeGroup) );
+        if ( !m_incremental || !(nodes instanceof Table) ||
+             (edges != null && !(edges instanceof Table)) )
+        {
+            release();
+            return false;
+        }
+        if ( fsim != m_loaded || nodes != m_nodes || edges != m_edges ) {
+            load(fsim, (Table)nodes, (Table)edges);
+        } else {
+            lookupColumns();
+        }
+        updateNodes(fsim);
+        if ( m_edges != null )
+            updateEdges(fsim);
+        refresh();
+        return true;
+    }
+    
+    /**
+     * Clear the simulator and start tracking the given tables. All rows
+     * are marked as changed, so that the next update loads them.
+     */
+    private void load(ForceSimulator fsim, Table nodes, Table edges) {
+        release();
+        try {
+            nodes.addColumns(FORCEITEM_SCHEMA);
+        } catch ( IllegalArgumentException iae ) { /* ignored */ }
+        fsim.clear();
+        
+        m_loaded = fsim;
+        m_nodes = nodes;
+        m_edges = edges;
+        lookupColumns();
+        m_nodes.addTableListener(m_listener);
+        m_dirtyNodes.set(0, m_nodes.getMaximumRow()+1);
+        if ( m_edges != null ) {
+            m_edges.addTableListener(m_listener);
+            m_dirtyEdges.set(0, m_edges.getMaximumRow()+1);
+        }
+    }
+    
+    /**
+     * Stop tracking the node and edge tables. The next update will
+     * reload the simulator.
+     */
+    private void release() {
+        if ( m_nodes != null ) m_nodes.removeTableListener(m_listener);
+        if ( m_edges != null ) m_edges.removeTableListener(m_listener);
+        m_loaded = null;
+        m_nodes = m_edges = null;
+        Arrays.fill(m_fitems, null);
+        Arrays.fill(m_springs, null);
+        m_nodeRows.clear();
+        m_edgeRows.clear();
+        m_dirtyNodes.clear();
+        m_dirtyEdges.clear();
+        m_staleNodes.clear();
+        m_staleEdges.clear();
+    }
+    
+    /**
+     * Look up the columns whose updates affect the loaded items, and the
+     * columns updated while rendering and animating, which do not.
+     */
+    private void lookupColumns() {
+        m_nodeVisCol = m_nodes.getColumnNumber(VisualItem.VISIBLE);
+        m_fitemCol = m_nodes.getColumnNumber(FORCEITEM);
+        lookupSkipColumns(m_nodes, m_nodeSkip);
+        if ( m_edges != null ) {
+            lookupSkipColumns(m_edges, m_edgeSkip);
+            String src = Graph.DEFAULT_SOURCE_KEY;
+            String tgt = Graph.DEFAULT_TARGET_KEY;
+            TupleSet g = m_vis.getGroup(m_group);
+            if ( g instanceof Graph ) {
+                src = ((Graph)g).getEdgeSourceField();
+                tgt = ((Graph)g).getEdgeTargetField();
+            }
+            m_edgeVisCol = m_edges.getColumnNumber(VisualItem.VISIBLE);
+            m_srcCol = m_edges.getColumnNumber(src);
+            m_tgtCol = m_edges.getColumnNumber(tgt);
+        }
+    }
+    
+    private static void lookupSkipColumns(Table t, BitSet skip) {
+        skip.clear();
+        for ( int i=0; i<SKIP_FIELDS.length; ++i ) {
+            int col = t.getColumnNumber(SKIP_FIELDS[i]);
+            if ( col >= 0 ) skip.set(col);
+        }
+    }
+    
+    /**
+     * Register and remove the force items of changed node rows.
+     */
+    private void updateNodes(ForceSimulator fsim) {
+        boolean replaced = false;
+        m_staleNodes.or(m_dirtyNodes);
+        
+        // remove the items that are no longer valid
+        for ( int r = m_dirtyNodes.nextSetBit(0); r >= 0;
+              r = m_dirtyNodes.nextSetBit(r+1) )
+        {
+            ForceItem cur = ( r < m_fitems.length ? m_fitems[r] : null );
+            if ( cur == null ) continue;
+            ForceItem fitem = getForceItem(r);
+            if ( fitem == cur ) {
+                m_dirtyNodes.clear(r);
+            } else {
+                m_removed.add(cur);
+                m_fitems[r] = null;
+                m_nodeRows.clear(r);
+                replaced |= ( fitem != null );
+            }
+        }
+        if ( !m_removed.isEmpty() ) {
+            fsim.removeItems(m_removed);
+            m_removed.clear();
+        }
+        
+        // register the new items
+        for ( int r = m_dirtyNodes.nextSetBit(0); r >= 0;
+              r = m_dirtyNodes.nextSetBit(r+1) )
+        {
+            ForceItem fitem = getForceItem(r);
+            if ( fitem == null ) continue;
+            if ( r >= m_fitems.length ) {
+                ForceItem[] a = new ForceItem[Math.max(2*m_fitems.length, r+1)];
+                System.arraycopy(m_fitems, 0, a, 0, m_fitems.length);
+                m_fitems = a;
+            }
+            m_fitems[r] = fitem;
+            m_nodeRows.set(r);
+            fsim.addItem(fitem);
+        }
+        m_dirtyNodes.clear();
+        
+        // springs may still refer to a replaced force item
+        if ( replaced )
+            m_dirtyEdges.or(m_edgeRows);
+    }
+    
+    /**
+     * Register and remove the springs of changed edge rows.
+     */
+    private void updateEdges(ForceSimulator fsim) {
+        m_staleEdges.or(m_dirtyEdges);
+        // remove the springs that are no longer valid
+        for ( int r = m_dirtyEdges.nextSetBit(0); r >= 0;
+              r = m_dirtyEdges.nextSetBit(r+1) )
+        {
+            Spring cur = ( r < m_springs.length ? m_springs[r] : null );
+            if ( cur == null ) continue;
+            EdgeItem e = getEdgeItem(r);
+            if ( e != null &&
+                 cur.item1 == e.getSourceItem().get(FORCEITEM) &&
+                 cur.item2 == e.getTargetItem().get(FORCEITEM) )
+            {
+                m_dirtyEdges.clear(r);
+            } else {
+                m_removed.add(cur);
+                m_springs[r] = null;
+                m_edgeRows.clear(r);
+            }
+        }
+        if ( !m_removed.isEmpty() ) {
+            fsim.removeSprings(m_removed);
+            m_removed.clear();
+        }
+        
+        // register the new springs
+        for ( int r = m_dirtyEdges.nextSetBit(0); r >= 0;
+              r = m_dirtyEdges.nextSetBit(r+1) )
+        {
+            EdgeItem e = getEdgeItem(r);
+            if ( e == null ) continue;
+            ForceItem f1 = (ForceItem)e.getSourceItem().get(FORCEITEM);
+            ForceItem f2 = (ForceItem)e.getTargetItem().get(FORCEITEM);
+            if ( r >= m_springs.length ) {
+                Spring[] a = new Spring[Math.max(2*m_springs.length, r+1)];
+                System.arraycopy(m_springs, 0, a, 0, m_springs.length);
+                m_springs = a;
+            }
+            m_springs[r] = fsim.addSpring(f1, f2);
+            m_edgeRows.set(r);
+        }
+        m_dirtyEdges.clear();
+    }
+    
+    /**
+     * Refresh the locations, masses and spring parameters of the loaded
+     * force items and springs whose rows have been updated.
+     */
+    private void refresh() {
+        float startX = getStartX();
+        float startY = getStartY();
+        m_staleNodes.and(m_nodeRows);
+        for ( int r = m_staleNodes.nextSetBit(0); r >= 0;
+              r = m_staleNodes.nextSetBit(r+1) )
+        {
+            loadItem((VisualItem)m_nodes.getTuple(r), m_fitems[r],
+                     startX, startY);
+        }
+        m_staleNodes.clear();
+        
+        m_staleEdges.and(m_edgeRows);
+        for ( int r = m_staleEdges.nextSetBit(0); r >= 0;
+              r = m_staleEdges.nextSetBit(r+1) )
+        {
+            EdgeItem e = (EdgeItem)m_edges.getTuple(r);
+            Spring s = m_springs[r];
+            float coeff = getSpringCoefficient(e);
+            float slen = getSpringLength(e);
+            s.coeff = (coeff>=0?coeff:-1.f);
+            s.length = (slen>=0?slen:-1.f);
+        }
+        m_staleEdges.clear();
+    }
+    
+    /**
+     * Get the force item of a visible node row, or null if the row is
+     * invalid or not visible.
+     */
+    private ForceItem getForceItem(int row) {
+        if ( !m_nodes.isValidRow(row) ) return null;
+        VisualItem item = (VisualItem)m_nodes.getTuple(row);
+        return ( item.isVisible() ? (ForceItem)item.get(FORCEITEM) : null );
+    }
+    
+    /**
+     * Get the item of a visible edge row, or null if the row is invalid
+     * or not visible.
+     */
+    private EdgeItem getEdgeItem(int row) {
+        if ( !m_edges.isValidRow(row) ) return null;
+        EdgeItem e = (EdgeItem)m_edges.getTuple(row);
+        return ( e.isVisible() ? e : null );
+    }
+    
+    /**
+     * Set the mass and location of a force item from its visual item.
+     */
+    private void loadItem(VisualItem item, ForceItem fitem,
+                          float startX, float startY)
+    {
+        fitem.mass = getMassValue(item);
+        double x = item.getEndX();
+        double y = item.getEndY();
+        fitem.location[0] = (Double.isNaN(x) ? startX : (float)x);
+        fitem.location[1] = (Double.isNaN(y) ? startY : (float)y);
+    }
+    
+    private float getStartX() {
+        float x = (referrer == null ? 0f : (float)referrer.getX());
+        return Float.isNaN(x) ? 0f : x;
+    }
+    
+    private float getStartY() {
+        float y = (referrer == null ? 0f : (float)referrer.getY());
+        return Float.isNaN(y) ? 0f : y;
+    }
+    
     /**
      * Get the mass value associated with the given node. Subclasses should
      * override this method to perform custom mass assignment.
@@ -446,4 +796,38 @@ public class ForceDirectedLayout extends Layout {
                                    new ForceItem());
     }
     
+    /**
+     * Fields updated while rendering and animating, which do not affect
+     * the loaded force items and springs.
+     */
+    private static final String[] SKIP_FIELDS = {
+        VisualItem.X, VisualItem.Y, VisualItem.STARTX, VisualItem.STARTY,
+        VisualItem.BOUNDS, VisualItem.VALIDATED
+    };
+    
+    /**
+     * Marks the node and edge rows whose changes affect the simulator.
+     * Rows that are added, removed, shown, hidden or re-linked are marked
+     * dirty, other updated rows are marked stale.
+     */
+    private class Listener implements TableListener {
+        public void tableChanged(Table t, int start, int end,
+                                 int col, int type)
+        {
+            if ( m_positioning ) return;
+            boolean nodes = ( t == m_nodes );
+            if ( type == EventConstants.UPDATE &&
+                 col != EventConstants.ALL_COLUMNS &&
+                 ( nodes ? col != m_nodeVisCol && col != m_fitemCol
+                   : col != m_edgeVisCol && col != m_srcCol
+                     && col != m_tgtCol ) )
+            {
+                if ( !(nodes ? m_nodeSkip : m_edgeSkip).get(col) )
+                    (nodes ? m_staleNodes : m_staleEdges).set(start, end+1);
+                return;
+            }
+            (nodes ? m_dirtyNodes : m_dirtyEdges).set(start, end+1);
+        }
+    } // end of inner class Listener
+    
 } // end of class ForceDirectedLayout
@@ -8,7 +8,9 @@ import prefuse.Constants;
 import prefuse.Display;
 import prefuse.data.Graph;
 import prefuse.data.Schema;
+import prefuse.data.Tree;
 import prefuse.data.tuple.TupleSet;
+import prefuse.data.util.TreeOrderIndex;
 import prefuse.util.ArrayLib;
 import prefuse.visual.NodeItem;
 
@@ -27,6 +29,11 @@ import prefuse.visual.NodeItem;
  * generalizes Reingold and Tilford's method for tidy drawings of trees to
  * support trees with an arbitrary number of children at any given node.</p>
  * 
+ * <p>The nodes to lay out are read in order from the
+ * {@link TreeOrderIndex} of the spanning tree, and both passes of the
+ * algorithm run as loops over that order rather than as recursive
+ * traversals, so the depth of the tree is not limited by the stack.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class NodeLinkTreeLayout extends TreeLayout {
@@ -40,6 +47,14 @@ public class NodeLinkTreeLayout extends TreeLayout {
     private double[] m_depths = new double[10];
     private int      m_maxDepth = 0;
     
+    // nodes being laid out in pre-order, with their depths below the root
+    private NodeItem[] m_items = new NodeItem[0];
+    private int[]      m_levels = new int[0];
+    // working state for the layout passes
+    private int[]      m_stack = new int[0];
+    private NodeItem[] m_ancestors = new NodeItem[0];
+    private double[]   m_mods = new double[0];
+    
     private double m_ax, m_ay; // for holding anchor co-ordinates
     
     /**
@@ -249,21 +264,88 @@ public class NodeLinkTreeLayout extends TreeLayout {
         NodeItem root = getLayoutRoot();
         Params rp = getParams(root);
 
-        g.getSpanningTree(root);
+        Tree tree = g.getSpanningTree(root);
+        int n = order(tree, root);
 
         // do first pass - compute breadth information, collect depth info
-        firstWalk(root, 0, 1);
+        firstWalk(n);
         
         // sum up the depth info
         determineDepths();
         
         // do second pass - assign layout positions
-        secondWalk(root, null, -rp.prelim, 0);
+        secondWalk(n, -rp.prelim);
+        
+        Arrays.fill(m_items, 0, n, null);
+        Arrays.fill(m_ancestors, 0, n, null);
+    }
+
+    /**
+     * Collect the nodes to lay out in pre-order, skipping the subtrees of
+     * collapsed nodes, and number each node among its siblings.
+     * @return the number of nodes to lay out
+     */
+    private int order(Tree tree, NodeItem root) {
+        TreeOrderIndex index = tree.getOrderIndex();
+        int r = root.getRow();
+        int start = index.getPreOrder(r);
+        int end = start + index.getSubtreeSize(r);
+        int base = index.getDepth(r);
+        
+        int size = end - start;
+        if ( m_items.length < size ) {
+            m_items = new NodeItem[size];
+            m_levels = new int[size];
+            m_stack = new int[size+1];
+            m_ancestors = new NodeItem[size];
+            m_mods = new double[size+1];
+        }
+        
+        // the stack holds the next sibling number at each level
+        int[] count = m_stack;
+        count[0] = 0;
+        int n = 0;
+        for ( int i=start; i<end; ++n ) {
+            r = index.getPreOrderRow(i);
+            NodeItem item = (NodeItem)tree.getNode(r);
+            int level = index.getDepth(r) - base;
+            m_items[n] = item;
+            m_levels[n] = level;
+            getParams(item).number = count[level]++;
+            count[level+1] = 0;
+            i += ( item.isExpanded() ? 1 : index.getSubtreeSize(r) );
+        }
+        return n;
+    }
+    
+    /**
+     * Visit the ordered nodes in post-order, keeping the path from the root
+     * on a stack. Each node is apportioned against its left siblings as
+     * soon as its own subtree is complete.
+     */
+    private void firstWalk(int n) {
+        int sp = 0;
+        for ( int k=0; k<=n; ++k ) {
+            int level = ( k < n ? m_levels[k] : -1 );
+            while ( sp > 0 && m_levels[m_stack[sp-1]] >= level ) {
+                int j = m_stack[--sp];
+                NodeItem c = m_items[j];
+                firstWalk(c, m_levels[j]+1);
+                if ( sp > 0 ) {
+                    int p = m_stack[sp-1];
+                    NodeItem a = m_ancestors[p];
+                    m_ancestors[p] = apportion(c, a==null ? c : a);
+                }
+            }
+            if ( k < n ) {
+                m_ancestors[k] = null;
+                m_stack[sp++] = k;
+            }
+        }
     }
 
-    private void firstWalk(NodeItem n, int num, int depth) {
+    private void firstWalk(NodeItem n, int depth) {
         Params np = getParams(n);
-        np.number = num;
         updateDepths(depth, n);
         
         boolean expanded = n.isExpanded();
@@ -278,15 +360,9 @@ public class NodeLinkTreeLayout extends TreeLayout {
         }
         else if ( expanded )
         {
+            // the children have already been walked and apportioned
             NodeItem leftMost = (NodeItem)n.getFirstChild();
             NodeItem rightMost = (NodeItem)n.getLastChild();
-            NodeItem defaultAncestor = leftMost;
-            NodeItem c = leftMost;
-            for ( int i=0; c != null; ++i, c = (NodeItem)c.getNextSibling() )
-            {
-                firstWalk(c, i, depth+1);
-                defaultAncestor = apportion(c, defaultAncestor);
-            }
             
             executeShifts(n);
             
@@ -402,21 +478,22 @@ public class NodeLinkTreeLayout extends TreeLayout {
         }
     }
     
-    private void secondWalk(NodeItem n, NodeItem p, double m, int depth) {
-        Params np = getParams(n);
-        setBreadth(n, p, np.prelim + m);
-        setDepth(n, p, m_depths[depth]);
-        
-        if ( n.isExpanded() ) {
-            depth += 1;
-            for ( NodeItem c = (NodeItem)n.getFirstChild();
-                  c != null; c = (NodeItem)c.getNextSibling() )
-            {
-                secondWalk(c, n, m + np.mod, depth);
-            }
+    /**
+     * Assign the final positions in pre-order. The modifier sums along the
+     * path from the root are kept by level.
+     */
+    private void secondWalk(int n, double m) {
+        m_mods[0] = m;
+        for ( int k=0; k<n; ++k ) {
+            NodeItem c = m_items[k];
+            NodeItem p = ( k == 0 ? null : (NodeItem)c.getParent() );
+            int depth = m_levels[k];
+            Params np = getParams(c);
+            setBreadth(c, p, np.prelim + m_mods[depth]);
+            setDepth(c, p, m_depths[depth]);
+            m_mods[depth+1] = m_mods[depth] + np.mod;
+            np.clear();
         }
-        
-        np.clear();
     }
     
     private void setBreadth(NodeItem n, NodeItem p, double b) {
@@ -14,6 +14,7 @@ import prefuse.data.event.TableListener;
 import prefuse.data.expression.BooleanLiteral;
 import prefuse.data.expression.Expression;
 import prefuse.data.expression.Predicate;
+import prefuse.data.expression.compiler.ExpressionCompiler;
 import prefuse.data.tuple.TableTuple;
 import prefuse.data.util.AcceptAllColumnProjection;
 import prefuse.data.util.CascadedRowManager;
@@ -55,6 +56,8 @@ public class CascadedTable extends Table {
     /** Selection Predicate determining which rows of the parent table
      * are included in this table. */
     protected Predicate    m_rowFilter;
+    /** Compiled version of the row filter, used to test parent rows. */
+    private Predicate      m_filter;
     
     /** An internal listener class */
     protected Listener m_listener;
@@ -220,20 +223,28 @@ public class CascadedTable extends Table {
         IntIterator crows = m_rows.rows();
         while ( crows.hasNext() ) {
             int crow = crows.nextInt();
-            if ( !m_rowFilter.getBoolean(
+            if ( !m_filter.getBoolean(
                     m_parent.getTuple(rowMan.getParentRow(crow))) )
             {
                 removeCascadedRow(crow);
             }
         }
         
-        Iterator pTuples = m_parent.tuples(m_rowFilter);
-        while ( pTuples.hasNext() ) {
-            Tuple pt = (Tuple)pTuples.next();
-            int prow = pt.getRow();
-            if ( rowMan.getChildRow(prow) == -1 )
-                addCascadedRow(prow);
+        IntIterator prows = m_parent.rows(m_rowFilter);
+        int[] rows = new int[16];
+        int n = 0;
+        while ( prows.hasNext() ) {
+            int prow = prows.nextInt();
+            if ( rowMan.getChildRow(prow) == -1 ) {
+                if ( n == rows.length ) {
+                    int[] a = new int[(3*n)/2+1];
+                    System.arraycopy(rows, 0, a, 0, n);
+                    rows = a;
+                }
+                rows[n++] = prow;
+            }
         }
+        addCascadedRows(rows, n);
     }
     
     /**
@@ -282,9 +293,18 @@ public class CascadedTable extends Table {
         m_rowFilter = rowFilter==null ? BooleanLiteral.TRUE : rowFilter;
         if ( m_rowFilter != BooleanLiteral.TRUE )
             m_rowFilter.addExpressionListener(m_listener);
+        compileRowFilter();
         filterRows();
     }
     
+    /**
+     * Compile the row filter for evaluation against the parent table.
+     */
+    private void compileRowFilter() {
+        m_filter = ( m_parent == null ? m_rowFilter
+                : ExpressionCompiler.compile(m_rowFilter, m_parent.getSchema()) );
+    }
+    
     // ------------------------------------------------------------------------
     // Table Metadata
     
@@ -363,6 +383,18 @@ public class CascadedTable extends Table {
         }
     }
     
+    /**
+     * @see prefuse.data.Table#addRows(java.lang.String[], java.lang.Object[])
+     */
+    public int addRows(String[] fields, Object[] data) {
+        if ( m_parent != null ) {
+            throw new IllegalStateException(
+                "Add rows not supported for CascadedTable.");
+        } else {
+            return super.addRows(fields, data);
+        }
+    }
+    
     /**
      * @see prefuse.data.Table#removeRow(int)
      */
@@ -391,6 +423,24 @@ public class CascadedTable extends Table {
         return r;
     }
     
+    /**
+     * Internal method for adding a set of new cascaded rows, firing a
+     * single insert event for each contiguous range of added rows.
+     * @param prows the parent table rows to add
+     * @param len the number of parent rows in the array
+     */
+    protected void addCascadedRows(int[] prows, int len) {
+        if ( len <= 0 ) return;
+        CascadedRowManager rowMan = (CascadedRowManager)m_rows;
+        int[] rows = new int[len];
+        for ( int i=0; i<len; ++i ) {
+            rows[i] = m_rows.addRow();
+            rowMan.put(rows[i], prows[i]);
+        }
+        updateRowCount();
+        fireRowEvents(rows, len, TableModelEvent.INSERT);
+    }
+    
     /**
      * Internal method for removing a cascaded row from this table.
      * @param row the row to remove
@@ -506,7 +556,7 @@ public class CascadedTable extends Table {
                 for (int r = start, cr; r<=end; ++r ) {
                     if ( (cr=rowMan.getChildRow(r)) != -1 ) {
                         // the parent row has a corresponding row in this table
-                        if ( m_rowFilter.getBoolean(m_parent.getTuple(r)) ) {
+                        if ( m_filter.getBoolean(m_parent.getTuple(r)) ) {
                             // row still passes the filter, check the column
                             int idx = getColumnNumber(m_parent.getColumnName(col));
                             if ( idx >= getLocalColumnCount() )
@@ -517,7 +567,7 @@ public class CascadedTable extends Table {
                         }
                     } else {
                         // does it now pass the filter due to the update?
-                        if ( m_rowFilter.getBoolean(m_parent.getTuple(r)) ) {
+                        if ( m_filter.getBoolean(m_parent.getTuple(r)) ) {
                             if ( rowMan.getChildRow(r) < 0 )
                                 addCascadedRow(r);
                         }
@@ -542,12 +592,15 @@ public class CascadedTable extends Table {
             case EventConstants.INSERT:
                 if ( col == EventConstants.ALL_COLUMNS ) {
                     // entire rows added
+                    int[] rows = new int[end-start+1];
+                    int n = 0;
                     for ( int r=start; r<=end; ++r ) {
-                        if ( m_rowFilter.getBoolean(m_parent.getTuple(r)) ) {
+                        if ( m_filter.getBoolean(m_parent.getTuple(r)) ) {
                             if ( rowMan.getChildRow(r) < 0 )
-                                addCascadedRow(r);
+                                rows[n++] = r;
                         }
                     }
+                    addCascadedRows(rows, n);
                 } else {
                     // column added
                     filterColumns();
@@ -562,8 +615,10 @@ public class CascadedTable extends Table {
         }
     
         public void expressionChanged(Expression expr) {
-            if ( expr == m_rowFilter )
+            if ( expr == m_rowFilter ) {
+                compileRowFilter();
                 filterRows();
+            }
         }
     }
     
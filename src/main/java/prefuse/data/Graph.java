@@ -13,6 +13,7 @@ import prefuse.data.tuple.TableEdge;
 import prefuse.data.tuple.TableNode;
 import prefuse.data.tuple.TupleManager;
 import prefuse.data.tuple.TupleSet;
+import prefuse.data.util.AdjacencySnapshot;
 import prefuse.data.util.Index;
 import prefuse.data.util.NeighborIterator;
 import prefuse.util.PrefuseConfig;
@@ -124,6 +125,10 @@ public class Graph extends CompositeTupleSet {
     protected Index m_nidx;
     /** Indicates if the key values are of type long */
     protected boolean m_longKey = false;
+    /** Adjacency snapshot of the graph structure, created on request. */
+    protected AdjacencySnapshot m_adjacency;
+    /** Indicates if neighbor iterators and traversals use the snapshot */
+    protected boolean m_adjacencyEnabled = false;
     /** Update listener */
     private Listener m_listener;
     /** Listener list */
@@ -403,8 +408,9 @@ public class Graph extends CompositeTupleSet {
         // update degree counts
         m_links.setInt(s, OUTDEGREE, od+incr);
         m_links.setInt(t, INDEGREE, id+incr);
-        // link structure changed, invalidate spanning tree
+        // link structure changed, invalidate spanning tree and snapshot
         m_spanning = null;
+        if ( m_adjacency != null ) m_adjacency.invalidate();
     }
     
     /**
@@ -1031,6 +1037,50 @@ public class Graph extends CompositeTupleSet {
         return edgeRows(node, OUTEDGES);
     }
     
+    /**
+     * Get the adjacency snapshot of this graph, creating it if necessary.
+     * The snapshot stores the graph's adjacency lists in flat arrays for
+     * fast traversal, and is rebuilt on the first query after each change
+     * to the graph structure. The snapshot is kept in addition to the
+     * link table of the graph, not in place of it.
+     * @return the adjacency snapshot of this graph
+     * @see AdjacencySnapshot
+     * @see #setAdjacencyEnabled(boolean)
+     */
+    public AdjacencySnapshot getAdjacency() {
+        if ( m_adjacency == null )
+            m_adjacency = new AdjacencySnapshot(this);
+        return m_adjacency;
+    }
+    
+    /**
+     * Set whether the neighbor iterators of this graph, and breadth-first
+     * traversals over it, read from the adjacency snapshot returned by
+     * {@link #getAdjacency()}. This is disabled by default. The snapshot
+     * holds the edges stored in the link table, so it should only be
+     * enabled if the {@link #edges(Node)}, {@link #inEdges(Node)}, and
+     * {@link #outEdges(Node)} methods are not overridden to report other
+     * edges. As the snapshot is rebuilt after each structural change, it
+     * is best enabled for graphs that are traversed much more often than
+     * they are edited.
+     * @param b true to use the adjacency snapshot, false to use the
+     * link table
+     * @see prefuse.data.util.BreadthFirstIterator
+     */
+    public void setAdjacencyEnabled(boolean b) {
+        m_adjacencyEnabled = b;
+    }
+    
+    /**
+     * Indicates if the neighbor iterators of this graph, and breadth-first
+     * traversals over it, read from the adjacency snapshot.
+     * @return true if the adjacency snapshot is used, false otherwise
+     * @see #setAdjacencyEnabled(boolean)
+     */
+    public boolean isAdjacencyEnabled() {
+        return m_adjacencyEnabled;
+    }
+    
     // -- tuple iterators --
     
     /**
@@ -1047,6 +1097,10 @@ public class Graph extends CompositeTupleSet {
      * @return an iterator over all Nodes connected to the input node
      */
     public Iterator neighbors(Node n) {
+        if ( m_adjacencyEnabled ) {
+            nodeCheck(n, true);
+            return new NeighborIterator(n, getAdjacency(), UNDIRECTED);
+        }
         return new NeighborIterator(n, edges(n));
     }
 
@@ -1056,6 +1110,10 @@ public class Graph extends CompositeTupleSet {
      * @return an iterator over all Nodes that point to the input target node
      */
     public Iterator inNeighbors(Node n) {
+        if ( m_adjacencyEnabled ) {
+            nodeCheck(n, true);
+            return new NeighborIterator(n, getAdjacency(), INEDGES);
+        }
         return new NeighborIterator(n, inEdges(n));
     }
 
@@ -1065,6 +1123,10 @@ public class Graph extends CompositeTupleSet {
      * @return an iterator over all Nodes pointed to by the input source node
      */
     public Iterator outNeighbors(Node n) {
+        if ( m_adjacencyEnabled ) {
+            nodeCheck(n, true);
+            return new NeighborIterator(n, getAdjacency(), OUTEDGES);
+        }
         return new NeighborIterator(n, outEdges(n));
     }
     
@@ -1248,6 +1310,7 @@ public class Graph extends CompositeTupleSet {
      */
     public void removeAllGraphModelListeners() {
     	m_listeners.clear();
+    	m_adjacency = null; // can no longer track changes
     }
     
     /**
@@ -1335,7 +1398,7 @@ public class Graph extends CompositeTupleSet {
                     if ( col == EventConstants.ALL_COLUMNS ) {
                         boolean added = type==EventConstants.INSERT;
                         for ( int r=start; r<=end; ++r )
-                            updateDegrees(start, added?1:-1);
+                            updateDegrees(r, added?1:-1);
                     }
                 }
                 // clear the spanning tree reference
@@ -2,6 +2,7 @@ package prefuse.data;
 
 import java.util.HashMap;
 
+import prefuse.data.column.ColumnFactory;
 import prefuse.util.PrefuseLib;
 
 /**
@@ -17,6 +18,18 @@ import prefuse.util.PrefuseLib;
  * If a schema is not locked, clients are free to add new columns and
  * edit default values.</p>
  * 
+ * <p>Each column also carries a storage hint, one of the
+ * {@link ColumnFactory} storage constants, that determines the column
+ * implementation used by tables instantiated from the schema. Columns
+ * can be marked as sparse, indicating that most rows are expected to keep
+ * the default value; a {@link prefuse.data.column.SparseColumn} is then
+ * used, so that memory use follows the number of non-default values rather
+ * than the number of rows. Columns can also be placed in off-heap buffers
+ * using a {@link prefuse.data.column.BufferColumn}, for very large tables,
+ * and columns with many repeated values can be dictionary-encoded using a
+ * {@link prefuse.data.column.DictionaryColumn}.
+ * Storage hints do not affect schema equality.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class Schema implements Cloneable {
@@ -24,6 +37,7 @@ public class Schema implements Cloneable {
     private String[] m_names;
     private Class[]  m_types;
     private Object[] m_dflts;
+    private int[]    m_storage;
     private HashMap  m_lookup;
     private int      m_size;
     private boolean  m_locked;
@@ -47,6 +61,7 @@ public class Schema implements Cloneable {
         m_names = new String[ncols];
         m_types = new Class[ncols];
         m_dflts = new Object[ncols];
+        m_storage = new int[ncols];
         m_size = 0;
         m_locked = false;
     }
@@ -101,6 +116,7 @@ public class Schema implements Cloneable {
         Schema s = new Schema(m_size);
         for ( int i=0; i<m_size; ++i ) {
             s.addColumn(m_names[i], m_types[i], m_dflts[i]);
+            s.m_storage[i] = m_storage[i];
         }
         return s;
     }
@@ -185,12 +201,15 @@ public class Schema implements Cloneable {
             String[] names = new String[capacity];
             Class[]  types = new Class[capacity];
             Object[] dflts = new Object[capacity];
+            int[] storage = new int[capacity];
             System.arraycopy(m_names, 0, names, 0, m_size);
             System.arraycopy(m_types, 0, types, 0, m_size);
             System.arraycopy(m_dflts, 0, dflts, 0, m_size);
+            System.arraycopy(m_storage, 0, storage, 0, m_size);
             m_names = names;
             m_types = types;
             m_dflts = dflts;
+            m_storage = storage;
         }
         
         m_names[m_size] = name;
@@ -379,6 +398,77 @@ public class Schema implements Cloneable {
         setDefault(field, val ? Boolean.TRUE : Boolean.FALSE);
     }
     
+    /**
+     * Get the storage type of the column at the given position.
+     * @param col the column index
+     * @return the storage type, one of {@link ColumnFactory#DENSE},
+     * {@link ColumnFactory#SPARSE}, {@link ColumnFactory#BUFFER}, or
+     * {@link ColumnFactory#DICTIONARY}
+     */
+    public int getStorage(int col) {
+        return m_storage[col];
+    }
+    
+    /**
+     * Get the storage type of the column with the given name.
+     * @param field the column name
+     * @return the storage type, one of {@link ColumnFactory#DENSE},
+     * {@link ColumnFactory#SPARSE}, {@link ColumnFactory#BUFFER}, or
+     * {@link ColumnFactory#DICTIONARY}
+     */
+    public int getStorage(String field) {
+        int idx = getColumnIndex(field);
+        return ( idx<0 ? ColumnFactory.DENSE : m_storage[idx] );
+    }
+    
+    /**
+     * Set the storage type of the given field. The storage type determines
+     * the column implementation used when the schema is instantiated.
+     * @param col the column index of the field
+     * @param storage the storage type, one of {@link ColumnFactory#DENSE},
+     * {@link ColumnFactory#SPARSE}, {@link ColumnFactory#BUFFER}, or
+     * {@link ColumnFactory#DICTIONARY}
+     */
+    public void setStorage(int col, int storage) {
+        // check lock status
+        if ( m_locked ) {
+            throw new IllegalStateException(
+                "Can not update storage of a locked Schema.");
+        }
+        if ( storage < ColumnFactory.DENSE || storage > ColumnFactory.DICTIONARY ) {
+            throw new IllegalArgumentException(
+                "Unknown storage type: "+storage);
+        }
+        m_storage[col] = storage;
+    }
+    
+    /**
+     * Set the storage type of the given field.
+     * @param field the name of the column
+     * @param storage the storage type, one of {@link ColumnFactory#DENSE},
+     * {@link ColumnFactory#SPARSE}, {@link ColumnFactory#BUFFER}, or
+     * {@link ColumnFactory#DICTIONARY}
+     * @see #setStorage(int, int)
+     */
+    public void setStorage(String field, int storage) {
+        setStorage(getColumnIndex(field), storage);
+    }
+    
+    /**
+     * Set the storage type of the current, start, and end columns of an
+     * interpolated column.
+     * @param field the field name of the interpolated column
+     * @param storage the storage type, one of {@link ColumnFactory#DENSE},
+     * {@link ColumnFactory#SPARSE}, {@link ColumnFactory#BUFFER}, or
+     * {@link ColumnFactory#DICTIONARY}
+     * @see #setStorage(int, int)
+     */
+    public void setInterpolatedStorage(String field, int storage) {
+        setStorage(field, storage);
+        setStorage(PrefuseLib.getStartField(field), storage);
+        setStorage(PrefuseLib.getEndField(field), storage);
+    }
+    
     /**
      * Set default values for the current, start, and end columns of an
      * interpolated column.
@@ -548,7 +638,7 @@ public class Schema implements Cloneable {
     public Table instantiate(int nrows) {
         Table t = new Table(nrows, m_size);
         for ( int i=0; i<m_size; ++i ) {
-            t.addColumn(m_names[i], m_types[i], m_dflts[i]);
+            t.addColumn(m_names[i], m_types[i], m_dflts[i], m_storage[i]);
         }
         return t;
     }
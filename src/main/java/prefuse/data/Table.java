@@ -1,15 +1,19 @@
 package prefuse.data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 
 import javax.swing.event.TableModelEvent;
 
+import prefuse.data.column.BufferColumn;
 import prefuse.data.column.Column;
 import prefuse.data.column.ColumnFactory;
 import prefuse.data.column.ColumnMetadata;
+import prefuse.data.column.DictionaryColumn;
+import prefuse.data.column.SparseColumn;
 import prefuse.data.event.ColumnListener;
 import prefuse.data.event.EventConstants;
 import prefuse.data.event.TableListener;
@@ -19,6 +23,7 @@ import prefuse.data.expression.parser.ExpressionParser;
 import prefuse.data.tuple.AbstractTupleSet;
 import prefuse.data.tuple.TableTuple;
 import prefuse.data.tuple.TupleManager;
+import prefuse.data.util.BitmapIndex;
 import prefuse.data.util.FilterIteratorFactory;
 import prefuse.data.util.Index;
 import prefuse.data.util.RowManager;
@@ -263,6 +268,12 @@ public class Table extends AbstractTupleSet implements ColumnListener {
             for ( int i=0; i<getColumnCount(); ++i ) {
                 s.addColumn(getColumnName(i), getColumnType(i), 
                             getColumn(i).getDefaultValue());
+                if ( getColumn(i) instanceof SparseColumn )
+                    s.setStorage(i, ColumnFactory.SPARSE);
+                else if ( getColumn(i) instanceof BufferColumn )
+                    s.setStorage(i, ColumnFactory.BUFFER);
+                else if ( getColumn(i) instanceof DictionaryColumn )
+                    s.setStorage(i, ColumnFactory.DICTIONARY);
             }
             s.lockSchema();
             m_schema = s;
@@ -335,12 +346,156 @@ public class Table extends AbstractTupleSet implements ColumnListener {
     /**
      * Add a given number of rows to this table. All data columns will be
      * notified and will take on the appropriate default values for the
-     * added rows.
+     * added rows. Listeners receive a single insert event for each
+     * contiguous range of added rows, rather than one event per row.
      * @param nrows the number of rows to add.
      */
     public void addRows(int nrows) {
+        if ( nrows <= 0 ) return;
+        int[] rows = new int[nrows];
         for ( int i=0; i<nrows; ++i ) {
-            addRow();
+            rows[i] = m_rows.addRow();
+        }
+        updateRowCount();
+        fireRowEvents(rows, nrows, TableModelEvent.INSERT);
+    }
+
+    /**
+     * Add a block of rows to this table, populating the given data fields
+     * from arrays of column values. Each entry of the data array holds the
+     * values for the corresponding field, and must be an array of type
+     * <code>int[]</code>, <code>long[]</code>, <code>float[]</code>,
+     * <code>double[]</code>, <code>boolean[]</code>, or
+     * <code>Object[]</code>. All arrays must have the same length, which
+     * determines the number of rows added. Fields not included take on
+     * their default values.
+     *
+     * <p>The new rows are appended after the current maximum row, and so
+     * form a contiguous range. Column values are filled in before the rows
+     * become valid, and listeners then receive a single insert event for
+     * the whole range. Indices and derived tables are therefore updated
+     * once for the batch, seeing the final values, rather than once for
+     * each row and cell.</p>
+     * @param fields the names of the data fields to populate
+     * @param data the column value arrays, one per data field
+     * @return the row number of the first added row, or -1 if the value
+     * arrays are empty
+     * @throws IllegalArgumentException if no fields are given, if a field
+     * is unknown, or if the value arrays are of differing lengths or
+     * unsupported types
+     * @throws DataTypeException if a value array does not match the data
+     * type of its column
+     */
+    public int addRows(String[] fields, Object[] data) {
+        if ( fields.length != data.length ) {
+            throw new IllegalArgumentException(
+                "Number of fields and value arrays must match.");
+        } else if ( fields.length == 0 ) {
+            throw new IllegalArgumentException(
+                "At least one data field must be given.");
+        }
+
+        // validate the payload before modifying the table
+        int nrows = -1;
+        Column[] cols = new Column[fields.length];
+        for ( int i=0; i<fields.length; ++i ) {
+            int col = getColumnNumber(fields[i]);
+            if ( col < 0 ) {
+                throw new IllegalArgumentException(
+                    "Unknown data field: "+fields[i]);
+            }
+            cols[i] = getColumn(col);
+            int len = getLength(cols[i], data[i]);
+            if ( nrows == -1 ) {
+                nrows = len;
+            } else if ( len != nrows ) {
+                throw new IllegalArgumentException(
+                    "Value arrays must have the same length.");
+            }
+        }
+        if ( nrows <= 0 )
+            return -1;
+
+        // grow the columns and fill in values while the rows are still
+        // invalid, so that column listeners ignore the individual changes
+        int r0 = m_rows.getMaximumRow() + 1;
+        for ( Iterator<?> iter = getColumns(); iter.hasNext(); ) {
+            ((Column)iter.next()).setMaximumRow(r0 + nrows);
+        }
+        try {
+            for ( int i=0; i<cols.length; ++i ) {
+                setValues(cols[i], data[i], r0, nrows);
+            }
+        } catch ( RuntimeException e ) {
+            // discard the partially filled rows
+            for ( int i=0; i<cols.length; ++i ) {
+                if ( cols[i].isReadOnly() ) continue;
+                for ( int r=r0; r<r0+nrows; ++r )
+                    cols[i].revertToDefault(r);
+            }
+            updateRowCount();
+            throw e;
+        }
+
+        // now make the rows valid and notify listeners
+        m_rows.addRows(nrows);
+        updateRowCount();
+        fireTableEvent(r0, r0+nrows-1, TableModelEvent.ALL_COLUMNS,
+                       TableModelEvent.INSERT);
+        return r0;
+    }
+
+    /**
+     * Get the length of a column value array, checking that the array
+     * type can be stored in the given column.
+     */
+    private static int getLength(Column c, Object values) {
+        if ( values instanceof int[] ) {
+            if ( !c.canSetInt() ) throw new DataTypeException(int.class);
+            return ((int[])values).length;
+        } else if ( values instanceof long[] ) {
+            if ( !c.canSetLong() ) throw new DataTypeException(long.class);
+            return ((long[])values).length;
+        } else if ( values instanceof float[] ) {
+            if ( !c.canSetFloat() ) throw new DataTypeException(float.class);
+            return ((float[])values).length;
+        } else if ( values instanceof double[] ) {
+            if ( !c.canSetDouble() ) throw new DataTypeException(double.class);
+            return ((double[])values).length;
+        } else if ( values instanceof boolean[] ) {
+            if ( !c.canSetBoolean() )
+                throw new DataTypeException(boolean.class);
+            return ((boolean[])values).length;
+        } else if ( values instanceof Object[] ) {
+            return ((Object[])values).length;
+        } else {
+            throw new IllegalArgumentException(
+                "Unsupported value array: "+values);
+        }
+    }
+
+    /**
+     * Copy a column value array into a column, starting at the given row.
+     */
+    private static void setValues(Column c, Object values, int r0, int n) {
+        if ( values instanceof int[] ) {
+            int[] a = (int[])values;
+            for ( int i=0; i<n; ++i ) c.setInt(a[i], r0+i);
+        } else if ( values instanceof long[] ) {
+            long[] a = (long[])values;
+            for ( int i=0; i<n; ++i ) c.setLong(a[i], r0+i);
+        } else if ( values instanceof float[] ) {
+            float[] a = (float[])values;
+            for ( int i=0; i<n; ++i ) c.setFloat(a[i], r0+i);
+        } else if ( values instanceof double[] ) {
+            double[] a = (double[])values;
+            for ( int i=0; i<n; ++i ) c.setDouble(a[i], r0+i);
+        } else if ( values instanceof boolean[] ) {
+            boolean[] a = (boolean[])values;
+            for ( int i=0; i<n; ++i ) c.setBoolean(a[i], r0+i);
+        } else {
+            Object[] a = (Object[])values;
+            for ( int i=0; i<n; ++i ) c.set(a[i], r0+i);
         }
     }
     
@@ -490,6 +645,41 @@ public class Table extends AbstractTupleSet implements ColumnListener {
         addColumn(name, col);
     }
     
+    /**
+     * Add a column with the given name, data type, and storage type to
+     * this table.
+     * @param name the data field name for the column
+     * @param type the data type, as a Java Class, for the column
+     * @param defaultValue the default value for column data values
+     * @param storage the storage type, one of {@link ColumnFactory#DENSE},
+     * {@link ColumnFactory#SPARSE}, {@link ColumnFactory#BUFFER}, or
+     * {@link ColumnFactory#DICTIONARY}
+     * @see prefuse.data.column.ColumnFactory#getColumn(Class, int, Object, int)
+     */
+    public void addColumn(String name, Class<?> type, Object defaultValue,
+                          int storage)
+    {
+        Column col = ColumnFactory.getColumn(type, 
+                        m_rows.getMaximumRow()+1, defaultValue, storage);
+        addColumn(name, col);
+    }
+    
+    /**
+     * Add the data fields of the given Schema to this table, using the
+     * storage type the schema specifies for each field.
+     * @see prefuse.data.tuple.TupleSet#addColumns(prefuse.data.Schema)
+     */
+    public void addColumns(Schema schema) {
+        for ( int i=0; i<schema.getColumnCount(); ++i ) {
+            try {
+                addColumn(schema.getColumnName(i), 
+                          schema.getColumnType(i),
+                          schema.getDefault(i),
+                          schema.getStorage(i));
+            } catch ( IllegalArgumentException ignored) {}
+        }
+    }
+    
     /**
      * Add a derived column to this table, using an Expression instance to
      * dynamically calculate the column data values.
@@ -694,6 +884,29 @@ public class Table extends AbstractTupleSet implements ColumnListener {
         return e.index;
     }
     
+    /**
+     * Create (if necessary) and return a bitmap index over the given data
+     * field. Bitmap indices keep a set of rows for each distinct value,
+     * and are suited to boolean and other low-cardinality columns. Any
+     * other index previously created for the field is replaced.
+     * @param field the data field name of the column to index
+     * @return the bitmap index over the specified data column
+     * @see BitmapIndex
+     */
+    public BitmapIndex bitmapIndex(String field) {
+        ColumnEntry e = (ColumnEntry)m_entries.get(field);
+        if ( e == null ) {
+            throw new IllegalArgumentException("Unknown column name: "+field);
+        } else if ( e.index instanceof BitmapIndex ) {
+            return (BitmapIndex)e.index; // already indexed
+        } else if ( e.index != null ) {
+            e.index.dispose();
+        }
+        
+        e.index = new BitmapIndex(this, m_rows, e.column, null);
+        return (BitmapIndex)e.index;
+    }
+    
     /**
      * Retrieve, without creating, an index for the given data field.
      * @param field the data field name of the column
@@ -1886,6 +2099,24 @@ public class Table extends AbstractTupleSet implements ColumnListener {
             }
         }
     }
+
+    /**
+     * Fire a table event covering all columns for each contiguous range
+     * of the given rows, in ascending row order.
+     * @param rows the affected rows, in any order. This array is sorted
+     * in place.
+     * @param len the number of rows in the array
+     * @param type the table event type
+     */
+    protected void fireRowEvents(int[] rows, int len, int type) {
+        Arrays.sort(rows, 0, len);
+        for ( int i=0; i<len; ) {
+            int row0 = rows[i], row1 = row0;
+            for ( ++i; i<len && rows[i]==row1+1; ++i )
+                ++row1;
+            fireTableEvent(row0, row1, EventConstants.ALL_COLUMNS, type);
+        }
+    }
     
     // ------------------------------------------------------------------------
     // String Methods
@@ -3,6 +3,7 @@ package prefuse.data;
 import java.util.Iterator;
 import java.util.logging.Logger;
 
+import prefuse.data.util.TreeOrderIndex;
 import prefuse.util.PrefuseConfig;
 import prefuse.util.collections.IntIterator;
 
@@ -52,6 +53,9 @@ public class Tree extends Graph {
     /** The node table row number for the root node of the tree. */
     protected int m_root = -1;
     
+    /** Optional index over the tree structure, created on request. */
+    protected TreeOrderIndex m_orderIndex;
+    
     // ------------------------------------------------------------------------
     // Constructors
     
@@ -436,6 +440,8 @@ public class Tree extends Graph {
     public int getDepth(int node) {
         if ( !getNodeTable().isValidRow(node) )
             return -1;
+        if ( m_orderIndex != null )
+            return m_orderIndex.getDepth(node);
         
         int depth = 0;
         if ( node!=m_root && getParent(node) < 0 ) return -1;
@@ -497,6 +503,71 @@ public class Tree extends Graph {
         return ( p < 0 ? null : getNode(p) );
     }
     
+    // ------------------------------------------------------------------------
+    // Tree Index
+    
+    /**
+     * Get the index over the structure of this tree, creating it if
+     * necessary. Once created, the index is kept in sync with changes to the
+     * tree and is used to answer {@link #getDepth(int)} in constant time.
+     * It also answers ancestry and subtree queries, see
+     * {@link TreeOrderIndex}. The index is rebuilt on the first query after
+     * each structural change, so it pays off for trees that are queried
+     * repeatedly between edits.
+     * @return the structure index for this tree
+     */
+    public TreeOrderIndex getOrderIndex() {
+        if ( m_orderIndex == null )
+            m_orderIndex = new TreeOrderIndex(this);
+        return m_orderIndex;
+    }
+    
+    /**
+     * Indicates if the structure index of this tree has been created.
+     * Iterators and queries that can use the index, but do not require it,
+     * only do so once it exists.
+     * @return true if the structure index exists, false otherwise
+     * @see #getOrderIndex()
+     */
+    public boolean hasOrderIndex() {
+        return m_orderIndex != null;
+    }
+    
+    /**
+     * Indicates if one node is a proper ancestor of another. This
+     * uses the structure index of the tree, creating it if necessary.
+     * @param ancestor the candidate ancestor node id (node table row number)
+     * @param node the candidate descendant node id (node table row number)
+     * @return true if ancestor lies on the path from the root to node, and
+     * the two nodes are not the same, false otherwise
+     * @see #getOrderIndex()
+     */
+    public boolean isAncestor(int ancestor, int node) {
+        return getOrderIndex().isAncestor(ancestor, node);
+    }
+    
+    /**
+     * Get the number of nodes in the subtree rooted at the given node,
+     * including the node itself. This uses the structure index of the tree,
+     * creating it if necessary.
+     * @param node a node id (node table row number)
+     * @return the subtree size, or 0 if the node is not in the tree
+     * @see #getOrderIndex()
+     */
+    public int getSubtreeSize(int node) {
+        return getOrderIndex().getSubtreeSize(node);
+    }
+    
+    /**
+     * Removes all listeners on this tree, discarding the structure index,
+     * which can no longer track changes to the tree.
+     * @see prefuse.data.Graph#removeAllGraphModelListeners()
+     */
+    public void removeAllGraphModelListeners() {
+        super.removeAllGraphModelListeners();
+        m_orderIndex = null;
+    }
+    
     // ------------------------------------------------------------------------
     // Iterators
     
@@ -0,0 +1,171 @@
+package prefuse.data.column;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import prefuse.data.DataReadOnlyException;
+
+/**
+ * Abstract base class for columns that store fixed-width primitive values
+ * in a {@link java.nio.ByteBuffer} rather than in a Java array. By default
+ * the buffer is allocated in direct (off-heap) memory, so that very large
+ * tables place little load on the garbage collector and are not bounded
+ * by the maximum heap size. A buffer can also be provided by the caller,
+ * for example a {@link java.nio.MappedByteBuffer} backed by a file.
+ *
+ * <p>A single buffer can address at most 2GB, which limits the number of
+ * rows to <code>Integer.MAX_VALUE / width</code>, where width is the
+ * number of bytes per value. If the column grows past the capacity of its
+ * current buffer, the data is copied into a new, larger direct buffer;
+ * a column that was created from a memory-mapped buffer is no longer
+ * backed by the file after that point.</p>
+ */
+public abstract class BufferColumn extends AbstractColumn {
+
+    /** The buffer holding the column values. */
+    protected ByteBuffer m_buffer;
+    /** The number of bytes used to store a single value. */
+    protected final int  m_width;
+    /** The number of rows in the column. */
+    protected int        m_size;
+
+    /**
+     * Create a new BufferColumn.
+     * @param type the data type stored by this column
+     * @param defaultValue the default value for the column
+     * @param width the number of bytes used to store a single value
+     * @param nRows the initial size of the column
+     * @param capacity the initial capacity of the column, in rows
+     */
+    protected BufferColumn(Class<?> type, Object defaultValue, int width,
+                           int nRows, int capacity)
+    {
+        super(type, defaultValue);
+        if ( capacity < nRows ) {
+            throw new IllegalArgumentException(
+                "Capacity value can not be less than the row count.");
+        }
+        m_width = width;
+        m_buffer = allocate(capacity, width);
+        m_size = nRows;
+        fill(0, capacity);
+    }
+
+    /**
+     * Create a new BufferColumn backed by the given buffer. The buffer
+     * contents, from position zero, are used as the initial column values.
+     * If the buffer is read-only, the column is made read-only as well.
+     * @param type the data type stored by this column
+     * @param defaultValue the default value for the column
+     * @param width the number of bytes used to store a single value
+     * @param buffer the buffer holding the column values
+     * @param nRows the initial size of the column
+     */
+    protected BufferColumn(Class<?> type, Object defaultValue, int width,
+                           ByteBuffer buffer, int nRows)
+    {
+        super(type, defaultValue);
+        if ( buffer.capacity() / width < nRows ) {
+            throw new IllegalArgumentException(
+                "Buffer capacity can not be less than the row count.");
+        }
+        m_width = width;
+        m_buffer = buffer;
+        m_size = nRows;
+        m_readOnly = buffer.isReadOnly();
+    }
+
+    /**
+     * Allocate a new direct buffer in native byte order.
+     * @param capacity the number of values the buffer should hold
+     * @param width the number of bytes per value
+     * @return the new buffer
+     */
+    protected static ByteBuffer allocate(int capacity, int width) {
+        if ( capacity > Integer.MAX_VALUE / width ) {
+            throw new IllegalArgumentException(
+                "Capacity exceeds the maximum buffer size: "+capacity);
+        }
+        return ByteBuffer.allocateDirect(capacity*width)
+                         .order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Fill the given range of buffer slots with the current default value.
+     * @param start the first row to fill, inclusive
+     * @param end the last row to fill, exclusive
+     */
+    protected abstract void fill(int start, int end);
+
+    /**
+     * Returns a read-only view of the buffer holding the column values.
+     * The first {@link #getRowCount()} values of the buffer are in use.
+     * @return a read-only view of the column buffer
+     */
+    public ByteBuffer getBuffer() {
+        return m_buffer.asReadOnlyBuffer().order(m_buffer.order());
+    }
+
+    /**
+     * Returns the number of rows that fit in the current buffer.
+     * @return the column capacity, in rows
+     */
+    public int getCapacity() {
+        return m_buffer.capacity() / m_width;
+    }
+
+    // ------------------------------------------------------------------------
+    // Column Metadata
+
+    /**
+     * @see prefuse.data.column.Column#getRowCount()
+     */
+    public int getRowCount() {
+        return m_size;
+    }
+
+    /**
+     * @see prefuse.data.column.Column#setMaximumRow(int)
+     */
+    public void setMaximumRow(int nRows) {
+        int cap = getCapacity();
+        if ( nRows > cap ) {
+            long grow = Math.min((3L*cap)/2 + 1, Integer.MAX_VALUE/m_width);
+            int capacity = Math.max((int)grow, nRows);
+            ByteBuffer values = allocate(capacity, m_width);
+            values.order(m_buffer.order()); // keep caller's byte order
+            ByteBuffer src = m_buffer.duplicate();
+            src.clear().limit(m_size*m_width);
+            values.put(src);
+            m_buffer = values;
+            fill(m_size, capacity);
+        } else if ( nRows > m_size && !m_buffer.isReadOnly() ) {
+            // slots may hold stale values if the column was shrunk
+            fill(m_size, nRows);
+        }
+        m_size = nRows;
+    }
+
+    /**
+     * Check that the given row index can be read.
+     * @param row the row index
+     */
+    protected final void checkRead(int row) {
+        if ( row < 0 || row > m_size ) {
+            throw new IllegalArgumentException("Row index out of bounds: "+row);
+        }
+    }
+
+    /**
+     * Check that the given row index can be written.
+     * @param row the row index
+     */
+    protected final void checkWrite(int row) {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( row < 0 || row >= m_size ) {
+            throw new IllegalArgumentException("Row index out of bounds: "+row);
+        }
+    }
+
+} // end of class BufferColumn
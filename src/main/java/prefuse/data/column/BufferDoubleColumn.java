@@ -0,0 +1,163 @@
+package prefuse.data.column;
+
+import java.nio.ByteBuffer;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+
+/**
+ * Column implementation for storing double values in a ByteBuffer, by default
+ * allocated in direct (off-heap) memory.
+ * 
+ * @see BufferColumn
+ */
+public class BufferDoubleColumn extends BufferColumn {
+
+    /**
+     * Create a new empty BufferDoubleColumn. 
+     */
+    public BufferDoubleColumn() {
+        this(0, 10, 0);
+    }
+
+    /**
+     * Create a new BufferDoubleColumn. 
+     * @param nRows the initial size of the column
+     */
+    public BufferDoubleColumn(int nRows) {
+        this(nRows, nRows, 0);
+    }
+    
+    /**
+     * Create a new BufferDoubleColumn. 
+     * @param nRows the initial size of the column
+     * @param capacity the initial capacity of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferDoubleColumn(int nRows, int capacity, double defaultValue) {
+        super(double.class, Double.valueOf(defaultValue), 8, nRows, capacity);
+    }
+    
+    /**
+     * Create a new BufferDoubleColumn backed by the given buffer.
+     * @param buffer the buffer holding the column values
+     * @param nRows the initial size of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferDoubleColumn(ByteBuffer buffer, int nRows, double defaultValue) {
+        super(double.class, Double.valueOf(defaultValue), 8, buffer, nRows);
+    }
+    
+    /**
+     * @see prefuse.data.column.BufferColumn#fill(int, int)
+     */
+    protected void fill(int start, int end) {
+        double dflt = ((Double)m_defaultValue).doubleValue();
+        for ( int i=start; i<end; ++i )
+            m_buffer.putDouble(i<<3, dflt);
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods    
+    
+    /**
+     * @see prefuse.data.column.Column#get(int)
+     */
+    public Object get(int row) {
+        return Double.valueOf(getDouble(row));
+    }
+
+    /**
+     * @see prefuse.data.column.Column#set(java.lang.Object, int)
+     */
+    public void set(Object val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( val != null ) {
+            if ( val instanceof Number ) {
+                setDouble(((Number)val).doubleValue(), row);
+            } else if ( val instanceof String ) {
+                setString((String)val, row);
+            } else {
+                throw new DataTypeException(val.getClass());
+            }
+        } else {
+            throw new DataTypeException("Column does not accept null values");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+    
+    /**
+     * @see prefuse.data.column.AbstractColumn#getDouble(int)
+     */
+    public double getDouble(int row) throws DataTypeException {
+        checkRead(row);
+        return m_buffer.getDouble(row<<3);
+    }
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#setDouble(double, int)
+     */
+    public void setDouble(double val, int row) throws DataTypeException {
+        checkWrite(row);
+        
+        // get the previous value
+        double prev = m_buffer.getDouble(row<<3);
+        
+        // exit early if no change
+        if ( prev == val ) return;
+        
+        // set the new value
+        m_buffer.putDouble(row<<3, val);
+        
+        // fire a change event
+        fireColumnEvent(row, prev);
+    }
+    
+    // ------------------------------------------------------------------------
+    
+    /**
+     * @see prefuse.data.column.Column#getInt(int)
+     */
+    public int getInt(int row) throws DataTypeException {
+        return (int)getDouble(row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#setInt(int, int)
+     */
+    public void setInt(int val, int row) throws DataTypeException {
+        setDouble(val, row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#getLong(int)
+     */
+    public long getLong(int row) throws DataTypeException {
+        return (long)getDouble(row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#setLong(long, int)
+     */
+    public void setLong(long val, int row) throws DataTypeException {
+        setDouble(val, row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#getFloat(int)
+     */
+    public float getFloat(int row) throws DataTypeException {
+        return (float)getDouble(row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#setFloat(float, int)
+     */
+    public void setFloat(float val, int row) throws DataTypeException {
+        setDouble(val, row);
+    }
+    
+} // end of class BufferDoubleColumn
@@ -0,0 +1,142 @@
+package prefuse.data.column;
+
+import java.nio.ByteBuffer;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+
+/**
+ * Column implementation for storing float values in a ByteBuffer, by default
+ * allocated in direct (off-heap) memory.
+ * 
+ * @see BufferColumn
+ */
+public class BufferFloatColumn extends BufferColumn {
+
+    /**
+     * Create a new empty BufferFloatColumn. 
+     */
+    public BufferFloatColumn() {
+        this(0, 10, 0f);
+    }
+
+    /**
+     * Create a new BufferFloatColumn. 
+     * @param nRows the initial size of the column
+     */
+    public BufferFloatColumn(int nRows) {
+        this(nRows, nRows, 0f);
+    }
+    
+    /**
+     * Create a new BufferFloatColumn. 
+     * @param nRows the initial size of the column
+     * @param capacity the initial capacity of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferFloatColumn(int nRows, int capacity, float defaultValue) {
+        super(float.class, Float.valueOf(defaultValue), 4, nRows, capacity);
+    }
+    
+    /**
+     * Create a new BufferFloatColumn backed by the given buffer.
+     * @param buffer the buffer holding the column values
+     * @param nRows the initial size of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferFloatColumn(ByteBuffer buffer, int nRows, float defaultValue) {
+        super(float.class, Float.valueOf(defaultValue), 4, buffer, nRows);
+    }
+    
+    /**
+     * @see prefuse.data.column.BufferColumn#fill(int, int)
+     */
+    protected void fill(int start, int end) {
+        float dflt = ((Float)m_defaultValue).floatValue();
+        for ( int i=start; i<end; ++i )
+            m_buffer.putFloat(i<<2, dflt);
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods    
+    
+    /**
+     * @see prefuse.data.column.Column#get(int)
+     */
+    public Object get(int row) {
+        return Float.valueOf(getFloat(row));
+    }
+
+    /**
+     * @see prefuse.data.column.Column#set(java.lang.Object, int)
+     */
+    public void set(Object val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( val != null ) {
+            if ( val instanceof Number ) {
+                setFloat(((Number)val).floatValue(), row);
+            } else if ( val instanceof String ) {
+                setString((String)val, row);
+            } else {
+                throw new DataTypeException(val.getClass());
+            }
+        } else {
+            throw new DataTypeException("Column does not accept null values");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+    
+    /**
+     * @see prefuse.data.column.AbstractColumn#getFloat(int)
+     */
+    public float getFloat(int row) throws DataTypeException {
+        checkRead(row);
+        return m_buffer.getFloat(row<<2);
+    }
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#setFloat(float, int)
+     */
+    public void setFloat(float val, int row) throws DataTypeException {
+        checkWrite(row);
+        
+        // get the previous value
+        float prev = m_buffer.getFloat(row<<2);
+        
+        // exit early if no change
+        if ( prev == val ) return;
+        
+        // set the new value
+        m_buffer.putFloat(row<<2, val);
+        
+        // fire a change event
+        fireColumnEvent(row, prev);
+    }
+    
+    // ------------------------------------------------------------------------
+    
+    /**
+     * @see prefuse.data.column.Column#getInt(int)
+     */
+    public int getInt(int row) throws DataTypeException {
+        return (int)getFloat(row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#getLong(int)
+     */
+    public long getLong(int row) throws DataTypeException {
+        return (long)getFloat(row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#getDouble(int)
+     */
+    public double getDouble(int row) throws DataTypeException {
+        return getFloat(row);
+    }
+
+} // end of class BufferFloatColumn
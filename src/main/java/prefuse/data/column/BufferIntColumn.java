@@ -0,0 +1,142 @@
+package prefuse.data.column;
+
+import java.nio.ByteBuffer;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+
+/**
+ * Column implementation for storing int values in a ByteBuffer, by default
+ * allocated in direct (off-heap) memory.
+ * 
+ * @see BufferColumn
+ */
+public class BufferIntColumn extends BufferColumn {
+
+    /**
+     * Create a new empty BufferIntColumn. 
+     */
+    public BufferIntColumn() {
+        this(0, 10, -1);
+    }
+
+    /**
+     * Create a new BufferIntColumn. 
+     * @param nRows the initial size of the column
+     */
+    public BufferIntColumn(int nRows) {
+        this(nRows, nRows, -1);
+    }
+    
+    /**
+     * Create a new BufferIntColumn. 
+     * @param nRows the initial size of the column
+     * @param capacity the initial capacity of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferIntColumn(int nRows, int capacity, int defaultValue) {
+        super(int.class, Integer.valueOf(defaultValue), 4, nRows, capacity);
+    }
+    
+    /**
+     * Create a new BufferIntColumn backed by the given buffer.
+     * @param buffer the buffer holding the column values
+     * @param nRows the initial size of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferIntColumn(ByteBuffer buffer, int nRows, int defaultValue) {
+        super(int.class, Integer.valueOf(defaultValue), 4, buffer, nRows);
+    }
+    
+    /**
+     * @see prefuse.data.column.BufferColumn#fill(int, int)
+     */
+    protected void fill(int start, int end) {
+        int dflt = ((Integer)m_defaultValue).intValue();
+        for ( int i=start; i<end; ++i )
+            m_buffer.putInt(i<<2, dflt);
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods    
+    
+    /**
+     * @see prefuse.data.column.Column#get(int)
+     */
+    public Object get(int row) {
+        return Integer.valueOf(getInt(row));
+    }
+
+    /**
+     * @see prefuse.data.column.Column#set(java.lang.Object, int)
+     */
+    public void set(Object val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( val != null ) {
+            if ( val instanceof Number ) {
+                setInt(((Number)val).intValue(), row);
+            } else if ( val instanceof String ) {
+                setString((String)val, row);
+            } else {
+                throw new DataTypeException(val.getClass());
+            }
+        } else {
+            throw new DataTypeException("Column does not accept null values");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+    
+    /**
+     * @see prefuse.data.column.AbstractColumn#getInt(int)
+     */
+    public int getInt(int row) throws DataTypeException {
+        checkRead(row);
+        return m_buffer.getInt(row<<2);
+    }
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#setInt(int, int)
+     */
+    public void setInt(int val, int row) throws DataTypeException {
+        checkWrite(row);
+        
+        // get the previous value
+        int prev = m_buffer.getInt(row<<2);
+        
+        // exit early if no change
+        if ( prev == val ) return;
+        
+        // set the new value
+        m_buffer.putInt(row<<2, val);
+        
+        // fire a change event
+        fireColumnEvent(row, prev);
+    }
+    
+    // ------------------------------------------------------------------------
+    
+    /**
+     * @see prefuse.data.column.Column#getLong(int)
+     */
+    public long getLong(int row) throws DataTypeException {
+        return getInt(row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#getFloat(int)
+     */
+    public float getFloat(int row) throws DataTypeException {
+        return getInt(row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#getDouble(int)
+     */
+    public double getDouble(int row) throws DataTypeException {
+        return getInt(row);
+    }    
+
+} // end of class BufferIntColumn
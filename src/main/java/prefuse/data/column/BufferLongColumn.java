@@ -0,0 +1,142 @@
+package prefuse.data.column;
+
+import java.nio.ByteBuffer;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+
+/**
+ * Column implementation for storing long values in a ByteBuffer, by default
+ * allocated in direct (off-heap) memory.
+ * 
+ * @see BufferColumn
+ */
+public class BufferLongColumn extends BufferColumn {
+
+    /**
+     * Create a new empty BufferLongColumn. 
+     */
+    public BufferLongColumn() {
+        this(0, 10, 0L);
+    }
+
+    /**
+     * Create a new BufferLongColumn. 
+     * @param nRows the initial size of the column
+     */
+    public BufferLongColumn(int nRows) {
+        this(nRows, nRows, 0L);
+    }
+    
+    /**
+     * Create a new BufferLongColumn. 
+     * @param nRows the initial size of the column
+     * @param capacity the initial capacity of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferLongColumn(int nRows, int capacity, long defaultValue) {
+        super(long.class, Long.valueOf(defaultValue), 8, nRows, capacity);
+    }
+    
+    /**
+     * Create a new BufferLongColumn backed by the given buffer.
+     * @param buffer the buffer holding the column values
+     * @param nRows the initial size of the column
+     * @param defaultValue the default value for the column
+     */
+    public BufferLongColumn(ByteBuffer buffer, int nRows, long defaultValue) {
+        super(long.class, Long.valueOf(defaultValue), 8, buffer, nRows);
+    }
+    
+    /**
+     * @see prefuse.data.column.BufferColumn#fill(int, int)
+     */
+    protected void fill(int start, int end) {
+        long dflt = ((Long)m_defaultValue).longValue();
+        for ( int i=start; i<end; ++i )
+            m_buffer.putLong(i<<3, dflt);
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods    
+    
+    /**
+     * @see prefuse.data.column.Column#get(int)
+     */
+    public Object get(int row) {
+        return Long.valueOf(getLong(row));
+    }
+
+    /**
+     * @see prefuse.data.column.Column#set(java.lang.Object, int)
+     */
+    public void set(Object val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( val != null ) {
+            if ( val instanceof Number ) {
+                setLong(((Number)val).longValue(), row);
+            } else if ( val instanceof String ) {
+                setString((String)val, row);
+            } else {
+                throw new DataTypeException(val.getClass());
+            }
+        } else {
+            throw new DataTypeException("Column does not accept null values");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+    
+    /**
+     * @see prefuse.data.column.AbstractColumn#getLong(int)
+     */
+    public long getLong(int row) throws DataTypeException {
+        checkRead(row);
+        return m_buffer.getLong(row<<3);
+    }
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#setLong(long, int)
+     */
+    public void setLong(long val, int row) throws DataTypeException {
+        checkWrite(row);
+        
+        // get the previous value
+        long prev = m_buffer.getLong(row<<3);
+        
+        // exit early if no change
+        if ( prev == val ) return;
+        
+        // set the new value
+        m_buffer.putLong(row<<3, val);
+        
+        // fire a change event
+        fireColumnEvent(row, prev);
+    }
+    
+    // ------------------------------------------------------------------------
+    
+    /**
+     * @see prefuse.data.column.Column#getInt(int)
+     */
+    public int getInt(int row) throws DataTypeException {
+        return (int)getLong(row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#getFloat(int)
+     */
+    public float getFloat(int row) throws DataTypeException {
+        return getLong(row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#getDouble(int)
+     */
+    public double getDouble(int row) throws DataTypeException {
+        return getLong(row);
+    }
+    
+} // end of class BufferLongColumn
@@ -14,6 +14,21 @@ import prefuse.data.expression.Expression;
  */
 public class ColumnFactory {
     
+    /** Storage type for columns backed by Java arrays. */
+    public static final int DENSE  = 0;
+    /** Storage type for columns storing only non-default values. */
+    public static final int SPARSE = 1;
+    /** Storage type for columns backed by direct (off-heap) buffers. */
+    public static final int BUFFER = 2;
+    /** Storage type for dictionary-encoded columns. */
+    public static final int DICTIONARY = 3;
+    
+    /**
+     * Columns expected to have at most this fraction of non-default
+     * values are created as sparse columns.
+     */
+    public static final double SPARSE_DENSITY = 0.125;
+    
     /**
      * Get a new column of the given type.
      * @param type the column data type
@@ -50,14 +65,20 @@ public class ColumnFactory {
      * Get a new column of the given type.
      * @param type the column data type
      * @param nRows the number of rows to include in the column
-     * @param nnz the number of expected non-zero entries (NOTE: currently
-     * this value is not being used)
+     * @param nnz the number of expected non-zero entries, that is, entries
+     * that differ from the default value. If this is at most a
+     * {@link #SPARSE_DENSITY} fraction of the number of rows, a sparse
+     * column is returned where one is available for the data type.
      * @param defaultValue the default value for the column
      * @return the new column
      */
     public static final Column getColumn(Class type, int nRows, int nnz,
                                          Object defaultValue)
     {
+        if ( nnz < nRows && nnz <= SPARSE_DENSITY*nRows ) {
+            return getSparseColumn(type, nRows, defaultValue);
+        }
+        
         if ( type == byte.class )
         {
             if ( defaultValue == null ) {
@@ -134,6 +155,169 @@ public class ColumnFactory {
         }
     }
     
+    /**
+     * Get a new column of the given type and storage type.
+     * @param type the column data type
+     * @param nRows the number of rows to include in the column
+     * @param defaultValue the default value for the column
+     * @param storage the storage type, one of {@link #DENSE},
+     * {@link #SPARSE}, {@link #BUFFER}, or {@link #DICTIONARY}
+     * @return the new column
+     */
+    public static final Column getColumn(Class<?> type, int nRows,
+                                         Object defaultValue, int storage)
+    {
+        switch ( storage ) {
+        case SPARSE:
+            return getSparseColumn(type, nRows, defaultValue);
+        case BUFFER:
+            return getBufferColumn(type, nRows, defaultValue);
+        case DICTIONARY:
+            return getDictionaryColumn(type, nRows, defaultValue);
+        default:
+            return getColumn(type, nRows, nRows, defaultValue);
+        }
+    }
+    
+    /**
+     * Get a new sparse column of the given type, storing only the values
+     * that differ from the default value. Sparse columns are available
+     * for int, long, float, double and Object types. Other types, as well
+     * as Date types and Object types with a cloneable default value, are
+     * given a regular dense column.
+     * @param type the column data type
+     * @param nRows the number of rows to include in the column
+     * @param defaultValue the default value for the column
+     * @return the new column
+     * @see SparseColumn
+     */
+    public static final Column getSparseColumn(Class<?> type, int nRows,
+                                               Object defaultValue)
+    {
+        if ( type == int.class )
+        {
+            if ( defaultValue == null ) {
+                return new SparseIntColumn(nRows);
+            } else {
+                int def = ((Number)defaultValue).intValue();
+                return new SparseIntColumn(nRows, def);
+            }
+        }
+        else if ( type == long.class )
+        {
+            if ( defaultValue == null ) {
+                return new SparseLongColumn(nRows);
+            } else {
+                long def = ((Number)defaultValue).longValue();
+                return new SparseLongColumn(nRows, def);
+            }
+        }
+        else if ( type == float.class )
+        {
+            if ( defaultValue == null ) {
+                return new SparseFloatColumn(nRows);
+            } else {
+                float def = ((Number)defaultValue).floatValue();
+                return new SparseFloatColumn(nRows, def);
+            }
+        }
+        else if ( type == double.class )
+        {
+            if ( defaultValue == null ) {
+                return new SparseDoubleColumn(nRows);
+            } else {
+                double def = ((Number)defaultValue).doubleValue();
+                return new SparseDoubleColumn(nRows, def);
+            }
+        }
+        else if ( type.isPrimitive() || Date.class.isAssignableFrom(type)
+                  || defaultValue instanceof Cloneable )
+        {
+            return getColumn(type, nRows, nRows, defaultValue);
+        }
+        else
+        {
+            return new SparseObjectColumn(type, nRows, defaultValue);
+        }
+    }
+    
+    /**
+     * Get a new column of the given type whose values are stored in a
+     * direct (off-heap) buffer. Buffer columns are available for int,
+     * long, float, and double types; other types are given a regular
+     * dense column.
+     * @param type the column data type
+     * @param nRows the number of rows to include in the column
+     * @param defaultValue the default value for the column
+     * @return the new column
+     * @see BufferColumn
+     */
+    public static final Column getBufferColumn(Class<?> type, int nRows,
+                                               Object defaultValue)
+    {
+        if ( type == int.class )
+        {
+            if ( defaultValue == null ) {
+                return new BufferIntColumn(nRows);
+            } else {
+                int def = ((Number)defaultValue).intValue();
+                return new BufferIntColumn(nRows, nRows, def);
+            }
+        }
+        else if ( type == long.class )
+        {
+            if ( defaultValue == null ) {
+                return new BufferLongColumn(nRows);
+            } else {
+                long def = ((Number)defaultValue).longValue();
+                return new BufferLongColumn(nRows, nRows, def);
+            }
+        }
+        else if ( type == float.class )
+        {
+            if ( defaultValue == null ) {
+                return new BufferFloatColumn(nRows);
+            } else {
+                float def = ((Number)defaultValue).floatValue();
+                return new BufferFloatColumn(nRows, nRows, def);
+            }
+        }
+        else if ( type == double.class )
+        {
+            if ( defaultValue == null ) {
+                return new BufferDoubleColumn(nRows);
+            } else {
+                double def = ((Number)defaultValue).doubleValue();
+                return new BufferDoubleColumn(nRows, nRows, def);
+            }
+        }
+        else
+        {
+            return getColumn(type, nRows, nRows, defaultValue);
+        }
+    }
+    
+    /**
+     * Get a new dictionary-encoded column of the given type, storing an
+     * integer code per row along with a dictionary of distinct values.
+     * Dictionary columns are available for Object types other than Date;
+     * primitive and Date types are given a regular dense column.
+     * @param type the column data type
+     * @param nRows the number of rows to include in the column
+     * @param defaultValue the default value for the column
+     * @return the new column
+     * @see DictionaryColumn
+     */
+    public static final Column getDictionaryColumn(Class<?> type, int nRows,
+                                                   Object defaultValue)
+    {
+        if ( type.isPrimitive() || Date.class.isAssignableFrom(type) ) {
+            return getColumn(type, nRows, nRows, defaultValue);
+        } else {
+            return new DictionaryColumn(type, nRows, nRows, defaultValue);
+        }
+    }
+    
     /**
      * Get a new column based on the given expression.
      * @param t the table the column should be added to
@@ -274,7 +274,14 @@ public class ColumnMetadata implements ColumnListener {
     public Object[] getOrdinalArray() {
         accessCheck();
         if ( m_ordinalA == null && m_dynamic ) {
-            m_ordinalA = DataLib.ordinalArray(m_table.tuples(),m_field,m_cmp);
+            Column col = m_table.getColumn(m_field);
+            if ( col instanceof DictionaryColumn ) {
+                m_ordinalA = DataLib.ordinalArray(
+                        m_table, (DictionaryColumn)col, m_cmp);
+            } else {
+                m_ordinalA = DataLib.ordinalArray(
+                        m_table.tuples(), m_field, m_cmp);
+            }
         }
         return m_ordinalA;
     }
@@ -0,0 +1,448 @@
+package prefuse.data.column;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+import prefuse.util.collections.DefaultLiteralComparator;
+import prefuse.util.collections.LiteralComparator;
+
+/**
+ * Column implementation that stores Object values, typically Strings,
+ * using dictionary encoding. Each distinct value is assigned an integer
+ * code, and the column keeps one code per row along with a shared
+ * dictionary mapping codes to values. For columns with many repeated
+ * values, such as categories or labels, this greatly reduces memory use,
+ * and allows grouping and equality tests to compare integer codes rather
+ * than the values themselves.
+ *
+ * <p>Values are considered equal if they are equal according to their
+ * <code>equals</code> method, so rows holding equal values share a single
+ * instance. Values should therefore be immutable. The column counts the
+ * rows using each code. Once no row uses a value other than the default
+ * value, the value is removed from the dictionary and its code is freed
+ * for reuse by a later value. Freed codes map to null until reused.</p>
+ */
+public class DictionaryColumn extends AbstractColumn {
+
+    private int[]     m_codes;
+    private int       m_size;
+    private ArrayList<Object> m_dict;         // code -> value
+    private HashMap<Object,Integer> m_lookup; // value -> code
+    private int[]     m_counts = new int[0]; // code -> number of rows
+    private int[]     m_stamps = new int[0]; // code -> version when assigned
+    private int[]     m_free = new int[0];   // freed codes
+    private int       m_nfree = 0;
+    private int       m_version = 0;
+
+    /**
+     * Create a new empty DictionaryColumn. The type is assumed to be
+     * String.
+     */
+    public DictionaryColumn() {
+        this(String.class);
+    }
+
+    /**
+     * Create a new DictionaryColumn.
+     * @param type the data type of Objects in this column
+     */
+    public DictionaryColumn(Class<?> type) {
+        this(type, 0, 10, null);
+    }
+
+    /**
+     * Create a new DictionaryColumn.
+     * @param type the data type of Objects in this column
+     * @param nRows the initial size of the column
+     */
+    public DictionaryColumn(Class<?> type, int nRows) {
+        this(type, nRows, nRows, null);
+    }
+
+    /**
+     * Create a new DictionaryColumn.
+     * @param type the data type of Objects in this column
+     * @param nRows the initial size of the column
+     * @param capacity the initial capacity of the column
+     * @param defaultValue the default value for the column
+     */
+    public DictionaryColumn(Class<?> type, int nRows, int capacity,
+                            Object defaultValue)
+    {
+        super(type, defaultValue);
+        if ( capacity < nRows ) {
+            throw new IllegalArgumentException(
+                "Capacity value can not be less than the row count.");
+        }
+        m_dict = new ArrayList<Object>();
+        m_lookup = new HashMap<Object,Integer>();
+        m_codes = new int[capacity];
+        int code = encode(defaultValue);
+        Arrays.fill(m_codes, code);
+        m_counts[code] = nRows;
+        m_size = nRows;
+    }
+
+    // ------------------------------------------------------------------------
+    // Column Metadata
+
+    /**
+     * @see prefuse.data.column.Column#getRowCount()
+     */
+    public int getRowCount() {
+        return m_size;
+    }
+
+    /**
+     * @see prefuse.data.column.Column#setMaximumRow(int)
+     */
+    public void setMaximumRow(int nRows) {
+        if ( nRows < m_size ) {
+            // release the values of the removed rows
+            int size = m_size;
+            m_size = nRows;
+            for ( int r=nRows; r<size; ++r ) {
+                int code = m_codes[r];
+                if ( --m_counts[code] == 0 ) release(code);
+            }
+            return;
+        }
+        int dflt = encode(m_defaultValue);
+        if ( nRows > m_codes.length ) {
+            int capacity = Math.max((3*m_codes.length)/2 + 1, nRows);
+            int[] codes = new int[capacity];
+            System.arraycopy(m_codes, 0, codes, 0, m_size);
+            Arrays.fill(codes, m_size, capacity, dflt);
+            m_codes = codes;
+        } else if ( nRows > m_size ) {
+            // the default value may have changed since the slots were filled
+            Arrays.fill(m_codes, m_size, nRows, dflt);
+        }
+        m_counts[dflt] += nRows - m_size;
+        m_size = nRows;
+    }
+
+    // ------------------------------------------------------------------------
+    // Dictionary Methods
+
+    /**
+     * Get the size of the dictionary. Valid codes range from zero up to,
+     * but not including, this value. Codes freed for reuse are included.
+     * @return the dictionary size
+     */
+    public int getDictionarySize() {
+        return m_dict.size();
+    }
+
+    /**
+     * Get the dictionary value for the given code.
+     * @param code the value code
+     * @return the value assigned the given code, or null if the code is
+     * currently unused
+     */
+    public Object getValue(int code) {
+        return m_dict.get(code);
+    }
+
+    /**
+     * Get the code assigned to the given value.
+     * @param val the value to look up
+     * @return the code for the value, or -1 if the value is not in the
+     * dictionary
+     */
+    public int getCode(Object val) {
+        Integer code = m_lookup.get(val);
+        return ( code == null ? -1 : code.intValue() );
+    }
+
+    /**
+     * Get the value code at the specified row.
+     * @param row the row from which to retrieve the code
+     * @return the dictionary code of the row's value
+     */
+    public int getCode(int row) {
+        if ( row < 0 || row >= m_size ) {
+            throw new IllegalArgumentException(
+                "Row index out of bounds: "+row);
+        }
+        return m_codes[row];
+    }
+
+    /**
+     * Get the version of the dictionary. The version changes whenever a
+     * freed code is assigned to a new value, so that callers caching
+     * information by code can detect when the cache has become stale.
+     * @return the dictionary version
+     */
+    public int getDictionaryVersion() {
+        return m_version;
+    }
+
+    /**
+     * Get the code for a value, adding the value to the dictionary if it
+     * is not already present. Freed codes are reused before new codes
+     * are allocated.
+     */
+    private int encode(Object val) {
+        Integer code = m_lookup.get(val);
+        if ( code != null )
+            return code.intValue();
+
+        int c;
+        if ( m_nfree > 0 ) {
+            c = m_free[--m_nfree];
+            m_dict.set(c, val);
+            m_stamps[c] = ++m_version;
+        } else {
+            c = m_dict.size();
+            m_dict.add(val);
+            if ( c >= m_counts.length ) {
+                int capacity = Math.max(2*m_counts.length, 16);
+                int[] counts = new int[capacity];
+                int[] stamps = new int[capacity];
+                System.arraycopy(m_counts, 0, counts, 0, c);
+                System.arraycopy(m_stamps, 0, stamps, 0, c);
+                m_counts = counts;
+                m_stamps = stamps;
+            }
+            m_stamps[c] = m_version;
+        }
+        m_lookup.put(val, Integer.valueOf(c));
+        return c;
+    }
+
+    /**
+     * Remove the value of a code no longer used by any row from the
+     * dictionary, freeing the code. The code of the default value is
+     * kept, as new rows take on the default value.
+     */
+    private void release(int code) {
+        Object val = m_dict.get(code);
+        if ( val == null ? m_defaultValue == null
+                         : val.equals(m_defaultValue) )
+            return;
+        m_lookup.remove(val);
+        m_dict.set(code, null);
+        if ( m_nfree == m_free.length ) {
+            int[] free = new int[Math.max(2*m_free.length, 16)];
+            System.arraycopy(m_free, 0, free, 0, m_nfree);
+            m_free = free;
+        }
+        m_free[m_nfree++] = code;
+    }
+
+    /**
+     * Get a comparator over dictionary codes that orders codes by their
+     * values. Codes are compared using a cached ranking of the dictionary
+     * values, so that most comparisons are integer comparisons. The
+     * ranking is recomputed as the dictionary grows and as freed codes
+     * are reused.
+     * @param cmp the comparator for dictionary values, or null to use
+     * the {@link DefaultLiteralComparator}
+     * @return a comparator over dictionary codes
+     */
+    public CodeComparator getCodeComparator(Comparator<?> cmp) {
+        return new CodeComparator(cmp);
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods
+
+    /**
+     * Get the data value at the specified row
+     * @param row the row from which to retrieve the value
+     * @return the data value
+     */
+    public Object get(int row) {
+        return m_dict.get(getCode(row));
+    }
+
+    /**
+     * Set the data value at the specified row
+     * @param val the value to set
+     * @param row the row at which to set the value
+     */
+    public void set(Object val, int row) {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( row < 0 || row >= m_size ) {
+            throw new IllegalArgumentException(
+                "Row index out of bounds: "+row);
+        } else if ( val == null || canSet(val.getClass()) ) {
+            // get the previous value
+            int prev = m_codes[row];
+            int code = encode(val);
+
+            // exit early if no change
+            if ( prev == code ) return;
+
+            // set the new value
+            m_codes[row] = code;
+            ++m_counts[code];
+
+            // fire a change event, then free the previous code if it is
+            // no longer used, so listeners can still resolve it
+            fireColumnEvent(row, m_dict.get(prev));
+            if ( --m_counts[prev] == 0 ) release(prev);
+        } else {
+            throw new DataTypeException(val.getClass());
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Comparator over the codes of a DictionaryColumn, ordering codes by
+     * the sort order of their values. Only int arguments are treated as
+     * codes; arguments of all other types are treated as values and
+     * compared directly. The cached ranking of the dictionary values is
+     * replaced rather than updated, so a comparator may be used by
+     * multiple threads as long as the column is not being modified.
+     */
+    public class CodeComparator implements LiteralComparator {
+
+        private Comparator<Object> m_cmp;
+        private volatile Ranking m_ranking = new Ranking(new int[0], 0, 0);
+
+        @SuppressWarnings("unchecked")
+        private CodeComparator(Comparator<?> cmp) {
+            m_cmp = (Comparator<Object>)( cmp==null
+                ? DefaultLiteralComparator.getInstance() : cmp );
+        }
+
+        /**
+         * Get the comparator used for dictionary values.
+         * @return the value comparator
+         */
+        public Comparator<Object> getValueComparator() {
+            return m_cmp;
+        }
+
+        /**
+         * Compare two codes by the sort order of their values.
+         * @see prefuse.util.collections.LiteralComparator#compare(int, int)
+         */
+        public int compare(int c1, int c2) {
+            if ( c1 == c2 ) return 0;
+            Ranking r = m_ranking;
+            int size = m_dict.size(), stale = m_version - r.version;
+            if ( size - r.ranked + stale > r.ranked/2 + 16 ) {
+                r = rank(size);
+                m_ranking = r;
+            }
+            if ( r.isRanked(c1) && r.isRanked(c2) ) {
+                int r1 = r.rank[c1], r2 = r.rank[c2];
+                return ( r1 < r2 ? -1 : (r1 > r2 ? 1 : 0) );
+            }
+            return m_cmp.compare(m_dict.get(c1), m_dict.get(c2));
+        }
+
+        /**
+         * Rank the current dictionary values. The relative order of the
+         * values of existing codes never changes, so comparisons made with
+         * an earlier ranking remain consistent. Codes assigned to new values
+         * after a ranking was made are compared by value until the next
+         * ranking.
+         */
+        private Ranking rank(int size) {
+            Integer[] codes = new Integer[size];
+            for ( int i=0; i<size; ++i )
+                codes[i] = Integer.valueOf(i);
+            Arrays.sort(codes, new Comparator<Integer>() {
+                public int compare(Integer o1, Integer o2) {
+                    return m_cmp.compare(
+                        m_dict.get(o1.intValue()), m_dict.get(o2.intValue()));
+                }
+            });
+            // values that compare as equal share a rank
+            int[] rank = new int[size];
+            for ( int i=1, r=0; i<size; ++i ) {
+                Object prev = m_dict.get(codes[i-1].intValue());
+                Object cur  = m_dict.get(codes[i].intValue());
+                if ( m_cmp.compare(prev, cur) != 0 ) ++r;
+                rank[codes[i].intValue()] = r;
+            }
+            return new Ranking(rank, size, m_version);
+        }
+
+        /**
+         * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+         */
+        public int compare(Object o1, Object o2) {
+            return m_cmp.compare(o1, o2);
+        }
+
+        /**
+         * @see prefuse.util.collections.LiteralComparator#compare(byte, byte)
+         */
+        public int compare(byte x1, byte x2) {
+            if ( m_cmp instanceof LiteralComparator )
+                return ((LiteralComparator)m_cmp).compare(x1, x2);
+            return m_cmp.compare(Byte.valueOf(x1), Byte.valueOf(x2));
+        }
+
+        /**
+         * @see prefuse.util.collections.LiteralComparator#compare(long, long)
+         */
+        public int compare(long x1, long x2) {
+            if ( m_cmp instanceof LiteralComparator )
+                return ((LiteralComparator)m_cmp).compare(x1, x2);
+            return m_cmp.compare(Long.valueOf(x1), Long.valueOf(x2));
+        }
+
+        /**
+         * @see prefuse.util.collections.LiteralComparator#compare(float, float)
+         */
+        public int compare(float x1, float x2) {
+            if ( m_cmp instanceof LiteralComparator )
+                return ((LiteralComparator)m_cmp).compare(x1, x2);
+            return m_cmp.compare(Float.valueOf(x1), Float.valueOf(x2));
+        }
+
+        /**
+         * @see prefuse.util.collections.LiteralComparator#compare(double, double)
+         */
+        public int compare(double x1, double x2) {
+            if ( m_cmp instanceof LiteralComparator )
+                return ((LiteralComparator)m_cmp).compare(x1, x2);
+            return m_cmp.compare(Double.valueOf(x1), Double.valueOf(x2));
+        }
+
+        /**
+         * @see prefuse.util.collections.LiteralComparator#compare(boolean, boolean)
+         */
+        public int compare(boolean x1, boolean x2) {
+            if ( m_cmp instanceof LiteralComparator )
+                return ((LiteralComparator)m_cmp).compare(x1, x2);
+            return m_cmp.compare(Boolean.valueOf(x1), Boolean.valueOf(x2));
+        }
+
+    } // end of inner class CodeComparator
+
+    /**
+     * Immutable ranking of the dictionary values, by code.
+     */
+    private class Ranking {
+        final int[] rank;
+        final int   ranked;
+        final int   version;
+
+        Ranking(int[] rank, int ranked, int version) {
+            this.rank = rank;
+            this.ranked = ranked;
+            this.version = version;
+        }
+
+        /**
+         * Indicates if a code has kept the value it had when ranked.
+         */
+        boolean isRanked(int code) {
+            return code < ranked && m_stamps[code] <= version;
+        }
+    }
+
+} // end of class DictionaryColumn
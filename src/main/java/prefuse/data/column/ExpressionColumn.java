@@ -9,8 +9,10 @@ import prefuse.data.Table;
 import prefuse.data.event.ColumnListener;
 import prefuse.data.event.EventConstants;
 import prefuse.data.event.ExpressionListener;
+import prefuse.data.expression.AbstractExpression;
 import prefuse.data.expression.Expression;
 import prefuse.data.expression.ExpressionAnalyzer;
+import prefuse.data.expression.compiler.ExpressionCompiler;
 
 /**
  * <p>Column instance that stores values provided by an Expression
@@ -34,7 +36,12 @@ import prefuse.data.expression.ExpressionAnalyzer;
  */
 public class ExpressionColumn extends AbstractColumn {
     
+    /** The number of rows computed at once by batch evaluation. */
+    private static final int BATCH = 64;
+    
     private Expression m_expr;
+    private Expression m_eval; // compiled version of m_expr
+    private AbstractExpression m_batch; // m_eval, if evaluated in batches
     private Table m_table;
     private Set m_columns;
     
@@ -42,6 +49,11 @@ public class ExpressionColumn extends AbstractColumn {
     private Column m_cache;
     private Listener m_listener;
     
+    // batch evaluation buffers
+    private int[] m_rows;
+    private Object m_values;
+    private BitSet m_bits;
+    
     /**
      * Create a new ExpressionColumn.
      * @param table the table this column is a member of
@@ -51,6 +63,8 @@ public class ExpressionColumn extends AbstractColumn {
         super(expr.getType(table.getSchema()));
         m_table = table;
         m_expr = expr;
+        m_eval = ExpressionCompiler.compile(expr, table.getSchema());
+        m_batch = getBatchExpression(m_eval);
         m_listener = new Listener();
         
         init();
@@ -94,6 +108,22 @@ public class ExpressionColumn extends AbstractColumn {
         }
     }
     
+    /**
+     * Get the expression to use for batch evaluation, or null if the
+     * expression should be evaluated one tuple at a time. Only
+     * expressions that solely read data fields and literals are evaluated
+     * in batches, so that computing values ahead of their use has no
+     * side effects.
+     */
+    private static AbstractExpression getBatchExpression(Expression expr) {
+        if ( expr instanceof AbstractExpression
+                && ExpressionAnalyzer.isColumnOnly(expr) )
+        {
+            return (AbstractExpression)expr;
+        }
+        return null;
+    }
+    
     // ------------------------------------------------------------------------
     // Column Metadata
     
@@ -159,7 +189,9 @@ public class ExpressionColumn extends AbstractColumn {
         if ( isCacheValid(row) ) {
             return m_cache.get(row);
         }
-        Object val = m_expr.get(m_table.getTuple(row));
+        if ( m_batch != null )
+            return computeValues(row);
+        Object val = m_eval.get(m_table.getTuple(row));
         Class type = val==null ? Object.class : val.getClass();
         if ( m_cache.canSet(type) ) {
             m_cache.set(val, row);
@@ -192,8 +224,10 @@ public class ExpressionColumn extends AbstractColumn {
         
         if ( isCacheValid(row) ) {
             return m_cache.getBoolean(row);
+        } else if ( m_batch != null ) {
+            return computeBooleans(row);
         } else {
-            boolean value = m_expr.getBoolean(m_table.getTuple(row));
+            boolean value = m_eval.getBoolean(m_table.getTuple(row));
             m_cache.setBoolean(value, row);
             m_valid.set(row);
             return value;
@@ -201,18 +235,147 @@ public class ExpressionColumn extends AbstractColumn {
     }
 
     private void computeNumber(int row) {
+        if ( m_batch != null ) {
+            computeNumbers(row);
+            return;
+        }
         if ( m_columnType == int.class || m_columnType == byte.class ) {
-            m_cache.setInt(m_expr.getInt(m_table.getTuple(row)), row);
+            m_cache.setInt(m_eval.getInt(m_table.getTuple(row)), row);
         } else if ( m_columnType == long.class ) {
-            m_cache.setLong(m_expr.getLong(m_table.getTuple(row)), row);
+            m_cache.setLong(m_eval.getLong(m_table.getTuple(row)), row);
         } else if ( m_columnType == float.class ) {
-            m_cache.setFloat(m_expr.getFloat(m_table.getTuple(row)), row);
+            m_cache.setFloat(m_eval.getFloat(m_table.getTuple(row)), row);
         } else {
-            m_cache.setDouble(m_expr.getDouble(m_table.getTuple(row)), row);
+            m_cache.setDouble(m_eval.getDouble(m_table.getTuple(row)), row);
         }
         m_valid.set(row);
     }
     
+    // ------------------------------------------------------------------------
+    // Batch Evaluation
+    
+    /**
+     * Collect the rows to compute in a batch: the given row, followed by
+     * the valid table rows without a cached value in the next block of
+     * rows. If evaluating the batch throws an exception, the batch is
+     * retried with the given row alone, so that only a failure of the
+     * requested row itself reaches the caller.
+     * @return the number of rows collected into m_rows
+     */
+    private int collectRows(int row) {
+        if ( m_rows == null )
+            m_rows = new int[BATCH];
+        int len = 0;
+        m_rows[len++] = row;
+        int end = Math.min(row+BATCH, getRowCount());
+        for ( int r=row+1; r<end; ++r ) {
+            if ( !m_valid.get(r) && m_table.isValidRow(r) )
+                m_rows[len++] = r;
+        }
+        return len;
+    }
+    
+    /**
+     * Compute and cache the numeric values of a block of rows.
+     */
+    private void computeNumbers(int row) {
+        int len = collectRows(row);
+        try {
+            evalNumbers(len);
+        } catch ( RuntimeException e ) {
+            if ( len == 1 ) throw e;
+            evalNumbers(1);
+        }
+    }
+    
+    private void evalNumbers(int len) {
+        if ( m_columnType == int.class || m_columnType == byte.class ) {
+            if ( !(m_values instanceof int[]) ) m_values = new int[BATCH];
+            int[] v = (int[])m_values;
+            m_batch.getInts(m_table, m_rows, len, v);
+            for ( int i=0; i<len; ++i )
+                m_cache.setInt(v[i], m_rows[i]);
+        } else if ( m_columnType == long.class ) {
+            if ( !(m_values instanceof long[]) ) m_values = new long[BATCH];
+            long[] v = (long[])m_values;
+            m_batch.getLongs(m_table, m_rows, len, v);
+            for ( int i=0; i<len; ++i )
+                m_cache.setLong(v[i], m_rows[i]);
+        } else if ( m_columnType == float.class ) {
+            if ( !(m_values instanceof float[]) ) m_values = new float[BATCH];
+            float[] v = (float[])m_values;
+            m_batch.getFloats(m_table, m_rows, len, v);
+            for ( int i=0; i<len; ++i )
+                m_cache.setFloat(v[i], m_rows[i]);
+        } else {
+            if ( !(m_values instanceof double[]) ) m_values = new double[BATCH];
+            double[] v = (double[])m_values;
+            m_batch.getDoubles(m_table, m_rows, len, v);
+            for ( int i=0; i<len; ++i )
+                m_cache.setDouble(v[i], m_rows[i]);
+        }
+        for ( int i=0; i<len; ++i )
+            m_valid.set(m_rows[i]);
+    }
+    
+    /**
+     * Compute and cache the boolean values of a block of rows.
+     * @return the value of the given row
+     */
+    private boolean computeBooleans(int row) {
+        int len = collectRows(row);
+        try {
+            return evalBooleans(len);
+        } catch ( RuntimeException e ) {
+            if ( len == 1 ) throw e;
+            return evalBooleans(1);
+        }
+    }
+    
+    private boolean evalBooleans(int len) {
+        if ( m_bits == null )
+            m_bits = new BitSet(BATCH);
+        m_bits.clear();
+        m_batch.getBooleans(m_table, m_rows, len, m_bits);
+        for ( int i=0; i<len; ++i ) {
+            m_cache.setBoolean(m_bits.get(i), m_rows[i]);
+            m_valid.set(m_rows[i]);
+        }
+        return m_bits.get(0);
+    }
+    
+    /**
+     * Compute and cache the Object values of a block of rows.
+     * @return the value of the given row
+     */
+    private Object computeValues(int row) {
+        int len = collectRows(row);
+        try {
+            return evalValues(len);
+        } catch ( RuntimeException e ) {
+            if ( len == 1 ) throw e;
+            return evalValues(1);
+        }
+    }
+    
+    private Object evalValues(int len) {
+        if ( !(m_values instanceof Object[]) ) m_values = new Object[BATCH];
+        Object[] v = (Object[])m_values;
+        m_batch.getValues(m_table, m_rows, len, v);
+        Object val = v[0];
+        for ( int i=0; i<len; ++i ) {
+            Class<?> type = v[i]==null ? Object.class : v[i].getClass();
+            if ( m_cache.canSet(type) ) {
+                m_cache.set(v[i], m_rows[i]);
+                m_valid.set(m_rows[i]);
+            }
+            v[i] = null;
+        }
+        return val;
+    }
+    
+    // ------------------------------------------------------------------------
+    
     /**
      * @see prefuse.data.column.Column#getInt(int)
      */
@@ -332,6 +495,9 @@ public class ExpressionColumn extends AbstractColumn {
         }
     
         public void expressionChanged(Expression expr) {
+            // recompile the modified expression
+            m_eval = ExpressionCompiler.compile(m_expr, m_table.getSchema());
+            m_batch = getBatchExpression(m_eval);
             // mark everything as changed
             columnChanged(0, m_cache.getRowCount()-1);
             // re-initialize our setup
@@ -0,0 +1,21 @@
+package prefuse.data.column;
+
+/**
+ * Interface for columns that store only those cells whose values differ
+ * from the column default, rather than allocating storage for every row.
+ * Sparse columns are created by the {@link ColumnFactory} when few
+ * non-default values are expected, and can be requested for a table
+ * column through the {@link prefuse.data.Schema}.
+ * 
+ * @see ColumnFactory#getSparseColumn(Class, int, Object)
+ */
+public interface SparseColumn extends Column {
+
+    /**
+     * Get the number of cells whose values are stored explicitly. This is
+     * the number of rows holding a value other than the default.
+     * @return the number of stored cells
+     */
+    public int getStoredCount();
+    
+} // end of interface SparseColumn
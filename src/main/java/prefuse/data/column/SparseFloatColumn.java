@@ -0,0 +1,181 @@
+package prefuse.data.column;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+import prefuse.util.collections.IntIntHashMap;
+
+/**
+ * Sparse column implementation for storing float values. Only cells whose
+ * values differ from the column default are stored, in a hash map keyed by
+ * row number, so that memory use follows the number of non-default cells
+ * rather than the number of rows. Access is slower than with a
+ * {@link FloatColumn}, so this implementation is best suited to columns
+ * in which most rows keep the default value.
+ */
+public class SparseFloatColumn extends AbstractColumn implements SparseColumn {
+
+    private static final int INITIAL_CAPACITY = 11;
+    
+    private IntIntHashMap m_values; // values of non-default cells
+    private float         m_fill;   // the value of all other cells
+    private int           m_size;
+    
+    /**
+     * Create a new empty SparseFloatColumn. 
+     */
+    public SparseFloatColumn() {
+        this(0, 0f);
+    }
+
+    /**
+     * Create a new SparseFloatColumn. 
+     * @param nRows the initial size of the column
+     */
+    public SparseFloatColumn(int nRows) {
+        this(nRows, 0f);
+    }
+    
+    /**
+     * Create a new SparseFloatColumn. 
+     * @param nRows the initial size of the column
+     * @param defaultValue the default value for the column
+     */
+    public SparseFloatColumn(int nRows, float defaultValue) {
+        super(float.class, Float.valueOf(defaultValue));
+        m_values = new IntIntHashMap(INITIAL_CAPACITY);
+        m_fill = defaultValue;
+        m_size = nRows;
+    }
+    
+    // ------------------------------------------------------------------------
+    // Column Metadata
+    
+    /**
+     * @see prefuse.data.column.Column#getRowCount()
+     */
+    public int getRowCount() {
+        return m_size;
+    }
+    
+    /**
+     * @see prefuse.data.column.SparseColumn#getStoredCount()
+     */
+    public int getStoredCount() {
+        return m_values.size();
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#setMaximumRow(int)
+     */
+    public void setMaximumRow(int nRows) {
+        if ( nRows < m_size ) {
+            // drop stored values past the new end of the column
+            int[] rows = new int[m_values.size()];
+            m_values.keys(rows);
+            for ( int i=0; i<rows.length; ++i ) {
+                if ( rows[i] >= nRows )
+                    m_values.removeKey(rows[i]);
+            }
+        } else {
+            // new rows take the current default value
+            float dflt = ((Float)m_defaultValue).floatValue();
+            if ( Float.compare(dflt, m_fill) != 0 ) {
+                for ( int r=m_size; r<nRows; ++r )
+                    m_values.put(r, Float.floatToRawIntBits(dflt));
+            }
+        }
+        m_size = nRows;
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods    
+    
+    /**
+     * @see prefuse.data.column.Column#get(int)
+     */
+    public Object get(int row) {
+        return Float.valueOf(getFloat(row));
+    }
+
+    /**
+     * @see prefuse.data.column.Column#set(java.lang.Object, int)
+     */
+    public void set(Object val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( val != null ) {
+            if ( val instanceof Number ) {
+                setFloat(((Number)val).floatValue(), row);
+            } else if ( val instanceof String ) {
+                setString((String)val, row);
+            } else {
+                throw new DataTypeException(val.getClass());
+            }
+        } else {
+            throw new DataTypeException("Column does not accept null values");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+    
+    /**
+     * @see prefuse.data.column.AbstractColumn#getFloat(int)
+     */
+    public float getFloat(int row) throws DataTypeException {
+        if ( row < 0 || row > m_size ) {
+            throw new IllegalArgumentException("Row index out of bounds: "+row);
+        }
+        int bits = m_values.get(row, Float.floatToRawIntBits(m_fill));
+        return Float.intBitsToFloat(bits);
+    }
+
+    /**
+     * @see prefuse.data.column.AbstractColumn#setFloat(float, int)
+     */
+    public void setFloat(float val, int row) throws DataTypeException {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( row < 0 || row >= m_size ) {
+            throw new IllegalArgumentException("Row index out of bounds: "+row);
+        }
+        // get the previous value
+        float prev = getFloat(row);
+        
+        // exit early if no change
+        if ( prev == val ) return;
+        
+        // store only values that differ from the fill value
+        if ( Float.compare(val, m_fill) == 0 )
+            m_values.removeKey(row);
+        else
+            m_values.put(row, Float.floatToRawIntBits(val));
+        
+        // fire a change event
+        fireColumnEvent(row, prev);
+    }
+    
+    // ------------------------------------------------------------------------
+    
+    /**
+     * @see prefuse.data.column.Column#getInt(int)
+     */
+    public int getInt(int row) throws DataTypeException {
+        return (int)getFloat(row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#getLong(int)
+     */
+    public long getLong(int row) throws DataTypeException {
+        return (long)getFloat(row);
+    }
+    
+    /**
+     * @see prefuse.data.column.Column#getDouble(int)
+     */
+    public double getDouble(int row) throws DataTypeException {
+        return getFloat(row);
+    }
+
+} // end of class SparseFloatColumn
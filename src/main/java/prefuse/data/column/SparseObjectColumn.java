@@ -0,0 +1,149 @@
+package prefuse.data.column;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.DataTypeException;
+import prefuse.util.collections.IntObjectHashMap;
+
+/**
+ * Sparse column implementation for storing arbitrary Object values. Only
+ * cells whose values differ from the column default (by reference) are
+ * stored, in a hash map keyed by row number, so that memory use follows
+ * the number of non-default cells rather than the number of rows.
+ *
+ * <p>Unlike {@link ObjectColumn}, the default value is shared by all rows
+ * that have not been set, and is never cloned. Sparse object columns
+ * should therefore only be used with immutable default values, such as
+ * Strings, Fonts, or null. The {@link ColumnFactory} uses a dense column
+ * whenever the default value is cloneable.</p>
+ */
+public class SparseObjectColumn extends AbstractColumn implements SparseColumn {
+
+    private static final int INITIAL_CAPACITY = 11;
+
+    // placeholder for stored null values, as the map returns null when
+    // a key is missing
+    private static final Object NULL = new Object();
+
+    private IntObjectHashMap m_values; // values of non-default cells
+    private Object           m_fill;   // the value of all other cells
+    private int              m_size;
+
+    /**
+     * Create a new empty SparseObjectColumn. The type is assumed to be
+     * Object.
+     */
+    public SparseObjectColumn() {
+        this(Object.class);
+    }
+
+    /**
+     * Create a new SparseObjectColumn.
+     * @param type the data type of Objects in this column
+     */
+    public SparseObjectColumn(Class<?> type) {
+        this(type, 0, null);
+    }
+
+    /**
+     * Create a new SparseObjectColumn.
+     * @param type the data type of Objects in this column
+     * @param nRows the initial size of the column
+     * @param defaultValue the default value for the column. The reference
+     * is shared by all rows that hold the default value.
+     */
+    public SparseObjectColumn(Class<?> type, int nRows, Object defaultValue) {
+        super(type, defaultValue);
+        m_values = new IntObjectHashMap(INITIAL_CAPACITY);
+        m_fill = defaultValue;
+        m_size = nRows;
+    }
+
+    // ------------------------------------------------------------------------
+    // Column Metadata
+
+    /**
+     * @see prefuse.data.column.Column#getRowCount()
+     */
+    public int getRowCount() {
+        return m_size;
+    }
+
+    /**
+     * @see prefuse.data.column.SparseColumn#getStoredCount()
+     */
+    public int getStoredCount() {
+        return m_values.size();
+    }
+
+    /**
+     * @see prefuse.data.column.Column#setMaximumRow(int)
+     */
+    public void setMaximumRow(int nRows) {
+        if ( nRows < m_size ) {
+            // drop stored values past the new end of the column
+            int[] rows = new int[m_values.size()];
+            m_values.keys(rows);
+            for ( int i=0; i<rows.length; ++i ) {
+                if ( rows[i] >= nRows )
+                    m_values.removeKey(rows[i]);
+            }
+        } else if ( m_defaultValue != m_fill ) {
+            // new rows take the current default value
+            Object dflt = (m_defaultValue == null ? NULL : m_defaultValue);
+            for ( int r=m_size; r<nRows; ++r )
+                m_values.put(r, dflt);
+        }
+        m_size = nRows;
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods
+
+    /**
+     * Get the data value at the specified row
+     * @param row the row from which to retrieve the value
+     * @return the data value
+     */
+    public Object get(int row) {
+        if ( row < 0 || row > m_size ) {
+            throw new IllegalArgumentException(
+                "Row index out of bounds: "+row);
+        }
+        Object val = m_values.get(row);
+        if ( val == null )
+            return m_fill;
+        return ( val == NULL ? null : val );
+    }
+
+    /**
+     * Set the data value at the specified row
+     * @param val the value to set
+     * @param row the row at which to set the value
+     */
+    public void set(Object val, int row) {
+        if ( m_readOnly ) {
+            throw new DataReadOnlyException();
+        } else if ( row < 0 || row > m_size ) {
+            throw new IllegalArgumentException(
+                "Row index out of bounds: "+row);
+        } else if ( val == null || canSet(val.getClass()) ) {
+            // get the previous value
+            Object prev = get(row);
+
+            // exit early if no change
+            if ( prev == val ) return;
+
+            // store only values that differ from the fill value
+            if ( val == m_fill )
+                m_values.removeKey(row);
+            else
+                m_values.put(row, val == null ? NULL : val);
+
+            // fire a change event
+            fireColumnEvent(row, prev);
+        } else {
+            throw new DataTypeException(val.getClass());
+        }
+    }
+
+} // end of class SparseObjectColumn
@@ -1,5 +1,9 @@
 package prefuse.data.expression;
 
+import java.util.Arrays;
+import java.util.BitSet;
+
+import prefuse.data.Table;
 import prefuse.data.Tuple;
 import prefuse.data.event.ExpressionListener;
 import prefuse.util.collections.CopyOnWriteArrayList;
@@ -9,6 +13,12 @@ import prefuse.util.collections.CopyOnWriteArrayList;
  * listeners and defaults every Expression evaluation method to an
  * unsupported operation.
  * 
+ * <p>AbstractExpression also supports batch evaluation over a set of table
+ * rows, with results written into a primitive array or a BitSet. By
+ * default, batch methods evaluate the Tuple for each row in turn.
+ * Subclasses can override them to evaluate a whole batch at once, reading
+ * column values directly and avoiding per-tuple dispatch and boxing.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public abstract class AbstractExpression
@@ -132,5 +142,324 @@ public abstract class AbstractExpression
     public boolean getBoolean(Tuple t) {
         throw new UnsupportedOperationException();
     }
+
+    // ------------------------------------------------------------------------
+    // Batch Evaluation
+    
+    /**
+     * Evaluate this expression as an int for a batch of table rows.
+     * @param t the Table containing the rows
+     * @param rows the table rows to evaluate
+     * @param len the number of rows in the array to evaluate
+     * @param out the array into which the result for <code>rows[i]</code>
+     * is written at index <code>i</code>
+     */
+    public void getInts(Table t, int[] rows, int len, int[] out) {
+        for ( int i=0; i<len; ++i )
+            out[i] = getInt(t.getTuple(rows[i]));
+    }
+    
+    /**
+     * Evaluate this expression as a long for a batch of table rows.
+     * @param t the Table containing the rows
+     * @param rows the table rows to evaluate
+     * @param len the number of rows in the array to evaluate
+     * @param out the array into which the result for <code>rows[i]</code>
+     * is written at index <code>i</code>
+     */
+    public void getLongs(Table t, int[] rows, int len, long[] out) {
+        for ( int i=0; i<len; ++i )
+            out[i] = getLong(t.getTuple(rows[i]));
+    }
+    
+    /**
+     * Evaluate this expression as a float for a batch of table rows.
+     * @param t the Table containing the rows
+     * @param rows the table rows to evaluate
+     * @param len the number of rows in the array to evaluate
+     * @param out the array into which the result for <code>rows[i]</code>
+     * is written at index <code>i</code>
+     */
+    public void getFloats(Table t, int[] rows, int len, float[] out) {
+        for ( int i=0; i<len; ++i )
+            out[i] = getFloat(t.getTuple(rows[i]));
+    }
+    
+    /**
+     * Evaluate this expression as a double for a batch of table rows.
+     * @param t the Table containing the rows
+     * @param rows the table rows to evaluate
+     * @param len the number of rows in the array to evaluate
+     * @param out the array into which the result for <code>rows[i]</code>
+     * is written at index <code>i</code>
+     */
+    public void getDoubles(Table t, int[] rows, int len, double[] out) {
+        for ( int i=0; i<len; ++i )
+            out[i] = getDouble(t.getTuple(rows[i]));
+    }
+    
+    /**
+     * Evaluate this expression as an Object for a batch of table rows.
+     * @param t the Table containing the rows
+     * @param rows the table rows to evaluate
+     * @param len the number of rows in the array to evaluate
+     * @param out the array into which the result for <code>rows[i]</code>
+     * is written at index <code>i</code>
+     */
+    public void getValues(Table t, int[] rows, int len, Object[] out) {
+        for ( int i=0; i<len; ++i )
+            out[i] = get(t.getTuple(rows[i]));
+    }
+    
+    /**
+     * Evaluate this expression as a boolean for a batch of table rows.
+     * Bit <code>i</code> of the output is set to the result for
+     * <code>rows[i]</code>. Bits at or beyond <code>len</code> are not
+     * modified.
+     * @param t the Table containing the rows
+     * @param rows the table rows to evaluate
+     * @param len the number of rows in the array to evaluate
+     * @param out the BitSet into which results are written
+     */
+    public void getBooleans(Table t, int[] rows, int len, BitSet out) {
+        for ( int i=0; i<len; ++i )
+            out.set(i, getBoolean(t.getTuple(rows[i])));
+    }
+    
+    // -- batch evaluation of arbitrary expressions ---------------------------
+    
+    /**
+     * Evaluate an expression as an int for a batch of table rows, using
+     * batch evaluation if the expression supports it.
+     * @see #getInts(Table, int[], int, int[])
+     */
+    protected static void evalInts(Expression e, Table t,
+                                   int[] rows, int len, int[] out)
+    {
+        if ( e instanceof AbstractExpression ) {
+            ((AbstractExpression)e).getInts(t, rows, len, out);
+        } else {
+            for ( int i=0; i<len; ++i )
+                out[i] = e.getInt(t.getTuple(rows[i]));
+        }
+    }
+    
+    /**
+     * Evaluate an expression as a long for a batch of table rows, using
+     * batch evaluation if the expression supports it.
+     * @see #getLongs(Table, int[], int, long[])
+     */
+    protected static void evalLongs(Expression e, Table t,
+                                    int[] rows, int len, long[] out)
+    {
+        if ( e instanceof AbstractExpression ) {
+            ((AbstractExpression)e).getLongs(t, rows, len, out);
+        } else {
+            for ( int i=0; i<len; ++i )
+                out[i] = e.getLong(t.getTuple(rows[i]));
+        }
+    }
+    
+    /**
+     * Evaluate an expression as a float for a batch of table rows, using
+     * batch evaluation if the expression supports it.
+     * @see #getFloats(Table, int[], int, float[])
+     */
+    protected static void evalFloats(Expression e, Table t,
+                                     int[] rows, int len, float[] out)
+    {
+        if ( e instanceof AbstractExpression ) {
+            ((AbstractExpression)e).getFloats(t, rows, len, out);
+        } else {
+            for ( int i=0; i<len; ++i )
+                out[i] = e.getFloat(t.getTuple(rows[i]));
+        }
+    }
+    
+    /**
+     * Evaluate an expression as a double for a batch of table rows, using
+     * batch evaluation if the expression supports it.
+     * @see #getDoubles(Table, int[], int, double[])
+     */
+    protected static void evalDoubles(Expression e, Table t,
+                                      int[] rows, int len, double[] out)
+    {
+        if ( e instanceof AbstractExpression ) {
+            ((AbstractExpression)e).getDoubles(t, rows, len, out);
+        } else {
+            for ( int i=0; i<len; ++i )
+                out[i] = e.getDouble(t.getTuple(rows[i]));
+        }
+    }
+    
+    /**
+     * Evaluate an expression as an Object for a batch of table rows, using
+     * batch evaluation if the expression supports it.
+     * @see #getValues(Table, int[], int, Object[])
+     */
+    protected static void evalValues(Expression e, Table t,
+                                     int[] rows, int len, Object[] out)
+    {
+        if ( e instanceof AbstractExpression ) {
+            ((AbstractExpression)e).getValues(t, rows, len, out);
+        } else {
+            for ( int i=0; i<len; ++i )
+                out[i] = e.get(t.getTuple(rows[i]));
+        }
+    }
+    
+    /**
+     * Evaluate an expression as a boolean for a batch of table rows, using
+     * batch evaluation if the expression supports it.
+     * @see #getBooleans(Table, int[], int, BitSet)
+     */
+    protected static void evalBooleans(Expression e, Table t,
+                                       int[] rows, int len, BitSet out)
+    {
+        if ( e instanceof AbstractExpression ) {
+            ((AbstractExpression)e).getBooleans(t, rows, len, out);
+        } else {
+            for ( int i=0; i<len; ++i )
+                out.set(i, e.getBoolean(t.getTuple(rows[i])));
+        }
+    }
+    
+    // -- scratch buffers ------------------------------------------------------
+    
+    /**
+     * Per-thread scratch buffers for the intermediate results of batch
+     * evaluation. Buffers are handed out in frames, one per level of a
+     * nested batch evaluation: an expression acquires a frame with
+     * {@link #push()} before evaluating its sub-expressions, and returns it
+     * with {@link #pop()} once it has consumed their results. Frames are
+     * reused by later evaluations on the same thread, so batch evaluation
+     * does not allocate new arrays for every batch. Buffers longer than
+     * {@link #MAX_LENGTH} are not retained.
+     */
+    static final class Scratch {
+        
+        /** The longest buffer retained for reuse. */
+        static final int MAX_LENGTH = 4096;
+        
+        private static final ThreadLocal<Scratch> s_scratch =
+            new ThreadLocal<Scratch>() {
+            protected Scratch initialValue() {
+                return new Scratch();
+            }
+        };
+        
+        private Frame[] m_frames = new Frame[4];
+        private int m_depth = 0;
+        
+        /**
+         * Get the scratch buffers of the current thread.
+         */
+        static Scratch get() {
+            return s_scratch.get();
+        }
+        
+        /**
+         * Acquire the next frame of buffers.
+         */
+        Frame push() {
+            if ( m_depth == m_frames.length ) {
+                Frame[] f = new Frame[2*m_depth];
+                System.arraycopy(m_frames, 0, f, 0, m_depth);
+                m_frames = f;
+            }
+            Frame f = m_frames[m_depth];
+            if ( f == null )
+                f = m_frames[m_depth] = new Frame();
+            ++m_depth;
+            return f;
+        }
+        
+        /**
+         * Release the most recently acquired frame of buffers.
+         */
+        void pop() {
+            m_frames[--m_depth].release();
+        }
+    }
+    
+    /**
+     * A set of scratch buffers, holding up to three arrays of each type.
+     */
+    static final class Frame {
+        private final int[][]    m_ints    = new int[3][];
+        private final long[][]   m_longs   = new long[3][];
+        private final float[][]  m_floats  = new float[3][];
+        private final double[][] m_doubles = new double[3][];
+        private final Object[][] m_values  = new Object[3][];
+        private final int[]      m_nvalues = new int[3];
+        private BitSet m_bits;
+        
+        int[] ints(int slot, int len) {
+            int[] a = m_ints[slot];
+            if ( a == null || a.length < len ) {
+                a = new int[len];
+                if ( len <= Scratch.MAX_LENGTH ) m_ints[slot] = a;
+            }
+            return a;
+        }
+        
+        long[] longs(int slot, int len) {
+            long[] a = m_longs[slot];
+            if ( a == null || a.length < len ) {
+                a = new long[len];
+                if ( len <= Scratch.MAX_LENGTH ) m_longs[slot] = a;
+            }
+            return a;
+        }
+        
+        float[] floats(int slot, int len) {
+            float[] a = m_floats[slot];
+            if ( a == null || a.length < len ) {
+                a = new float[len];
+                if ( len <= Scratch.MAX_LENGTH ) m_floats[slot] = a;
+            }
+            return a;
+        }
+        
+        double[] doubles(int slot, int len) {
+            double[] a = m_doubles[slot];
+            if ( a == null || a.length < len ) {
+                a = new double[len];
+                if ( len <= Scratch.MAX_LENGTH ) m_doubles[slot] = a;
+            }
+            return a;
+        }
+        
+        Object[] values(int slot, int len) {
+            Object[] a = m_values[slot];
+            if ( a == null || a.length < len ) {
+                a = new Object[len];
+                if ( len > Scratch.MAX_LENGTH ) return a;
+                m_values[slot] = a;
+            }
+            m_nvalues[slot] = Math.max(m_nvalues[slot], len);
+            return a;
+        }
+        
+        BitSet bits(int len) {
+            if ( len > Scratch.MAX_LENGTH )
+                return new BitSet(len);
+            if ( m_bits == null )
+                m_bits = new BitSet(len);
+            return m_bits;
+        }
+        
+        /**
+         * Clear references to the values held in the Object buffers.
+         */
+        void release() {
+            for ( int i=0; i<m_values.length; ++i ) {
+                if ( m_nvalues[i] > 0 ) {
+                    Arrays.fill(m_values[i], 0, m_nvalues[i], null);
+                    m_nvalues[i] = 0;
+                }
+            }
+        }
+    }
     
 } // end of abstract class AbstractExpression
@@ -1,7 +1,9 @@
 package prefuse.data.expression;
 
+import java.util.BitSet;
 import java.util.Iterator;
 
+import prefuse.data.Table;
 import prefuse.data.Tuple;
 
 /**
@@ -52,6 +54,17 @@ public class AndPredicate extends CompositePredicate {
         return true;
     }
     
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getBooleans(prefuse.data.Table, int[], int, java.util.BitSet)
+     */
+    public void getBooleans(Table t, int[] rows, int len, BitSet out) {
+        if ( m_clauses.size() == 0 ) {
+            out.clear(0, len);
+        } else {
+            getBooleans(t, rows, len, out, false);
+        }
+    }
+    
     /**
      * @see java.lang.Object#toString()
      */
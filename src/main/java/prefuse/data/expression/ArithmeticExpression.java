@@ -1,6 +1,7 @@
 package prefuse.data.expression;
 
 import prefuse.data.Schema;
+import prefuse.data.Table;
 import prefuse.data.Tuple;
 import prefuse.util.TypeLib;
 
@@ -173,6 +174,173 @@ public class ArithmeticExpression extends BinaryExpression {
         throw new IllegalStateException("Unknown operation type.");
     }
 
+    // ------------------------------------------------------------------------
+    // Batch Evaluation
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getInts(prefuse.data.Table, int[], int, int[])
+     */
+    public void getInts(Table t, int[] rows, int len, int[] out) {
+        Scratch scratch = Scratch.get();
+        int[] y = scratch.push().ints(0, len);
+        try {
+            evalInts(m_left,  t, rows, len, out);
+            evalInts(m_right, t, rows, len, y);
+            compute(out, y, len);
+        } finally {
+            scratch.pop();
+        }
+    }
+    
+    private void compute(int[] out, int[] y, int len) {
+        // compute return values
+        switch ( m_op ) {
+        case ADD:
+            for ( int i=0; i<len; ++i ) out[i] += y[i];
+            break;
+        case SUB:
+            for ( int i=0; i<len; ++i ) out[i] -= y[i];
+            break;
+        case MUL:
+            for ( int i=0; i<len; ++i ) out[i] *= y[i];
+            break;
+        case DIV:
+            for ( int i=0; i<len; ++i ) out[i] /= y[i];
+            break;
+        case POW:
+            for ( int i=0; i<len; ++i ) out[i] = (int)Math.pow(out[i],y[i]);
+            break;
+        case MOD:
+            for ( int i=0; i<len; ++i ) out[i] = out[i]%y[i];
+            break;
+        default:
+            throw new IllegalStateException("Unknown operation type.");
+        }
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getLongs(prefuse.data.Table, int[], int, long[])
+     */
+    public void getLongs(Table t, int[] rows, int len, long[] out) {
+        Scratch scratch = Scratch.get();
+        long[] y = scratch.push().longs(0, len);
+        try {
+            evalLongs(m_left,  t, rows, len, out);
+            evalLongs(m_right, t, rows, len, y);
+            compute(out, y, len);
+        } finally {
+            scratch.pop();
+        }
+    }
+    
+    private void compute(long[] out, long[] y, int len) {
+        // compute return values
+        switch ( m_op ) {
+        case ADD:
+            for ( int i=0; i<len; ++i ) out[i] += y[i];
+            break;
+        case SUB:
+            for ( int i=0; i<len; ++i ) out[i] -= y[i];
+            break;
+        case MUL:
+            for ( int i=0; i<len; ++i ) out[i] *= y[i];
+            break;
+        case DIV:
+            for ( int i=0; i<len; ++i ) out[i] /= y[i];
+            break;
+        case POW:
+            for ( int i=0; i<len; ++i ) out[i] = (long)Math.pow(out[i],y[i]);
+            break;
+        case MOD:
+            for ( int i=0; i<len; ++i ) out[i] = out[i]%y[i];
+            break;
+        default:
+            throw new IllegalStateException("Unknown operation type.");
+        }
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getFloats(prefuse.data.Table, int[], int, float[])
+     */
+    public void getFloats(Table t, int[] rows, int len, float[] out) {
+        Scratch scratch = Scratch.get();
+        float[] y = scratch.push().floats(0, len);
+        try {
+            evalFloats(m_left,  t, rows, len, out);
+            evalFloats(m_right, t, rows, len, y);
+            compute(out, y, len);
+        } finally {
+            scratch.pop();
+        }
+    }
+    
+    private void compute(float[] out, float[] y, int len) {
+        // compute return values
+        switch ( m_op ) {
+        case ADD:
+            for ( int i=0; i<len; ++i ) out[i] += y[i];
+            break;
+        case SUB:
+            for ( int i=0; i<len; ++i ) out[i] -= y[i];
+            break;
+        case MUL:
+            for ( int i=0; i<len; ++i ) out[i] *= y[i];
+            break;
+        case DIV:
+            for ( int i=0; i<len; ++i ) out[i] /= y[i];
+            break;
+        case POW:
+            for ( int i=0; i<len; ++i ) out[i] = (float)Math.pow(out[i],y[i]);
+            break;
+        case MOD:
+            for ( int i=0; i<len; ++i ) out[i] = (float)Math.IEEEremainder(out[i],y[i]);
+            break;
+        default:
+            throw new IllegalStateException("Unknown operation type.");
+        }
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getDoubles(prefuse.data.Table, int[], int, double[])
+     */
+    public void getDoubles(Table t, int[] rows, int len, double[] out) {
+        Scratch scratch = Scratch.get();
+        double[] y = scratch.push().doubles(0, len);
+        try {
+            evalDoubles(m_left,  t, rows, len, out);
+            evalDoubles(m_right, t, rows, len, y);
+            compute(out, y, len);
+        } finally {
+            scratch.pop();
+        }
+    }
+    
+    private void compute(double[] out, double[] y, int len) {
+        // compute return values
+        switch ( m_op ) {
+        case ADD:
+            for ( int i=0; i<len; ++i ) out[i] += y[i];
+            break;
+        case SUB:
+            for ( int i=0; i<len; ++i ) out[i] -= y[i];
+            break;
+        case MUL:
+            for ( int i=0; i<len; ++i ) out[i] *= y[i];
+            break;
+        case DIV:
+            for ( int i=0; i<len; ++i ) out[i] /= y[i];
+            break;
+        case POW:
+            for ( int i=0; i<len; ++i ) out[i] = Math.pow(out[i],y[i]);
+            break;
+        case MOD:
+            for ( int i=0; i<len; ++i ) out[i] = Math.IEEEremainder(out[i],y[i]);
+            break;
+        default:
+            throw new IllegalStateException("Unknown operation type.");
+        }
+    }
+    
     /**
      * @see java.lang.Object#toString()
      */
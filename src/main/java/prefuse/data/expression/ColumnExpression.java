@@ -1,7 +1,11 @@
 package prefuse.data.expression;
 
+import java.util.BitSet;
+
 import prefuse.data.Schema;
+import prefuse.data.Table;
 import prefuse.data.Tuple;
+import prefuse.data.column.Column;
 
 /**
  * Expression instance that returns the value stored in a Tuple data field.
@@ -80,6 +84,93 @@ public class ColumnExpression extends AbstractExpression implements Predicate {
         return t.getBoolean(m_field);
     }
 
+    // ------------------------------------------------------------------------
+    // Batch Evaluation
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getInts(prefuse.data.Table, int[], int, int[])
+     */
+    public void getInts(Table t, int[] rows, int len, int[] out) {
+        int col = t.getColumnNumber(m_field);
+        if ( col < 0 ) {
+            super.getInts(t, rows, len, out);
+            return;
+        }
+        Column c = t.getColumn(col);
+        for ( int i=0; i<len; ++i )
+            out[i] = c.getInt(t.getColumnRow(rows[i], col));
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getLongs(prefuse.data.Table, int[], int, long[])
+     */
+    public void getLongs(Table t, int[] rows, int len, long[] out) {
+        int col = t.getColumnNumber(m_field);
+        if ( col < 0 ) {
+            super.getLongs(t, rows, len, out);
+            return;
+        }
+        Column c = t.getColumn(col);
+        for ( int i=0; i<len; ++i )
+            out[i] = c.getLong(t.getColumnRow(rows[i], col));
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getFloats(prefuse.data.Table, int[], int, float[])
+     */
+    public void getFloats(Table t, int[] rows, int len, float[] out) {
+        int col = t.getColumnNumber(m_field);
+        if ( col < 0 ) {
+            super.getFloats(t, rows, len, out);
+            return;
+        }
+        Column c = t.getColumn(col);
+        for ( int i=0; i<len; ++i )
+            out[i] = c.getFloat(t.getColumnRow(rows[i], col));
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getDoubles(prefuse.data.Table, int[], int, double[])
+     */
+    public void getDoubles(Table t, int[] rows, int len, double[] out) {
+        int col = t.getColumnNumber(m_field);
+        if ( col < 0 ) {
+            super.getDoubles(t, rows, len, out);
+            return;
+        }
+        Column c = t.getColumn(col);
+        for ( int i=0; i<len; ++i )
+            out[i] = c.getDouble(t.getColumnRow(rows[i], col));
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getValues(prefuse.data.Table, int[], int, java.lang.Object[])
+     */
+    public void getValues(Table t, int[] rows, int len, Object[] out) {
+        int col = t.getColumnNumber(m_field);
+        if ( col < 0 ) {
+            super.getValues(t, rows, len, out);
+            return;
+        }
+        Column c = t.getColumn(col);
+        for ( int i=0; i<len; ++i )
+            out[i] = c.get(t.getColumnRow(rows[i], col));
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getBooleans(prefuse.data.Table, int[], int, java.util.BitSet)
+     */
+    public void getBooleans(Table t, int[] rows, int len, BitSet out) {
+        int col = t.getColumnNumber(m_field);
+        if ( col < 0 ) {
+            super.getBooleans(t, rows, len, out);
+            return;
+        }
+        Column c = t.getColumn(col);
+        for ( int i=0; i<len; ++i )
+            out.set(i, c.getBoolean(t.getColumnRow(rows[i], col)));
+    }
+    
     /**
      * @see java.lang.Object#toString()
      */
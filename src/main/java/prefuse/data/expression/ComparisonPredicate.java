@@ -1,8 +1,10 @@
 package prefuse.data.expression;
 
+import java.util.BitSet;
 import java.util.Comparator;
 
 import prefuse.data.Schema;
+import prefuse.data.Table;
 import prefuse.data.Tuple;
 import prefuse.util.TypeLib;
 import prefuse.util.collections.DefaultLiteralComparator;
@@ -108,7 +110,15 @@ public class ComparisonPredicate extends BinaryExpression implements Predicate {
         } else {
             c = m_cmp.compare(m_left.get(t), m_right.get(t));
         }
-       
+        return test(c);
+    }
+    
+    /**
+     * Test a comparison result against the comparison operation.
+     * @param c the comparison result
+     * @return true if the comparison result satisfies the operation
+     */
+    private boolean test(int c) {
         switch ( m_op ) {
         case LT:
             return ( c == -1 );
@@ -127,6 +137,81 @@ public class ComparisonPredicate extends BinaryExpression implements Predicate {
         }
     }
 
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getBooleans(prefuse.data.Table, int[], int, java.util.BitSet)
+     */
+    public void getBooleans(Table t, int[] rows, int len, BitSet out) {
+        Scratch scratch = Scratch.get();
+        Frame f = scratch.push();
+        try {
+            getBooleans(t, rows, len, out, f);
+        } finally {
+            scratch.pop();
+        }
+    }
+    
+    private void getBooleans(Table t, int[] rows, int len, BitSet out,
+                             Frame f)
+    {
+        Class<?> lType = m_left.getType(t.getSchema());
+        Class<?> rType = m_right.getType(t.getSchema());
+        
+        // the default comparator is compared inline for primitive types
+        boolean dflt = ( m_cmp == DefaultLiteralComparator.getInstance() );
+        
+        if ( TypeLib.isNumericType(lType) && TypeLib.isNumericType(rType) ) {
+            LiteralComparator lc = (LiteralComparator)m_cmp;
+            Class<?> type = TypeLib.getNumericType(lType, rType);
+            if ( type == int.class || type == byte.class ) {
+                int[] x = f.ints(0, len), y = f.ints(1, len);
+                evalInts(m_left,  t, rows, len, x);
+                evalInts(m_right, t, rows, len, y);
+                for ( int i=0; i<len; ++i ) {
+                    int c = ( dflt ? (x[i]<y[i] ? -1 : x[i]>y[i] ? 1 : 0)
+                                   : lc.compare(x[i], y[i]) );
+                    out.set(i, test(c));
+                }
+            } else if ( type == long.class ) {
+                long[] x = f.longs(0, len), y = f.longs(1, len);
+                evalLongs(m_left,  t, rows, len, x);
+                evalLongs(m_right, t, rows, len, y);
+                for ( int i=0; i<len; ++i ) {
+                    int c = ( dflt ? (x[i]<y[i] ? -1 : x[i]>y[i] ? 1 : 0)
+                                   : lc.compare(x[i], y[i]) );
+                    out.set(i, test(c));
+                }
+            } else if ( type == float.class ) {
+                float[] x = f.floats(0, len), y = f.floats(1, len);
+                evalFloats(m_left,  t, rows, len, x);
+                evalFloats(m_right, t, rows, len, y);
+                for ( int i=0; i<len; ++i ) {
+                    int c = ( dflt ? Float.compare(x[i], y[i])
+                                   : lc.compare(x[i], y[i]) );
+                    out.set(i, test(c));
+                }
+            } else if ( type == double.class ) {
+                double[] x = f.doubles(0, len), y = f.doubles(1, len);
+                evalDoubles(m_left,  t, rows, len, x);
+                evalDoubles(m_right, t, rows, len, y);
+                for ( int i=0; i<len; ++i ) {
+                    int c = ( dflt ? Double.compare(x[i], y[i])
+                                   : lc.compare(x[i], y[i]) );
+                    out.set(i, test(c));
+                }
+            } else {
+                throw new IllegalStateException();
+            }
+        } else {
+            Object[] x = f.values(0, len), y = f.values(1, len);
+            evalValues(m_left,  t, rows, len, x);
+            evalValues(m_right, t, rows, len, y);
+            @SuppressWarnings("unchecked")
+            Comparator<Object> cmp = m_cmp;
+            for ( int i=0; i<len; ++i )
+                out.set(i, test(cmp.compare(x[i], y[i])));
+        }
+    }
+
     /**
      * @see prefuse.data.expression.Expression#get(prefuse.data.Tuple)
      */
@@ -1,8 +1,11 @@
 package prefuse.data.expression;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 
+import prefuse.data.Table;
+
 /**
  * Abstract base class for Predicate instances that maintain one or
  * more sub-predicates (clauses).
@@ -151,6 +154,62 @@ public abstract class CompositePredicate extends AbstractPredicate {
     
     // ------------------------------------------------------------------------
     
+    /**
+     * Evaluate the clauses of this predicate for a batch of table rows,
+     * short-circuiting in the manner of a conditional "and" or "or". Each
+     * clause is evaluated only for the rows whose result has not yet been
+     * determined by an earlier clause. A row's result is determined once
+     * a clause evaluates to the given short-circuit value; rows for which
+     * no clause does so take on the opposite value.
+     * @param t the Table containing the rows
+     * @param rows the table rows to evaluate
+     * @param len the number of rows in the array to evaluate
+     * @param out the BitSet into which results are written
+     * @param shortValue the clause value that determines a row's result,
+     * false for an "and", true for an "or"
+     * @see AbstractExpression#getBooleans(Table, int[], int, BitSet)
+     */
+    protected void getBooleans(Table t, int[] rows, int len, BitSet out,
+                               boolean shortValue)
+    {
+        out.set(0, len, !shortValue);
+        
+        Scratch scratch = Scratch.get();
+        Frame f = scratch.push();
+        try {
+            // sel holds the output positions of the undetermined rows
+            int[] sel = f.ints(0, len);
+            int[] sub = rows;
+            for ( int i=0; i<len; ++i )
+                sel[i] = i;
+            
+            BitSet b = f.bits(len);
+            int n = len;
+            for ( int c=0; c<m_clauses.size() && n > 0; ++c ) {
+                evalBooleans((Predicate)m_clauses.get(c), t, sub, n, b);
+                int m = 0;
+                for ( int i=0; i<n; ++i ) {
+                    if ( b.get(i) == shortValue ) {
+                        out.set(sel[i], shortValue);
+                    } else {
+                        sel[m++] = sel[i];
+                    }
+                }
+                if ( m < n ) {
+                    // compact the rows still to be evaluated
+                    if ( sub == rows ) sub = f.ints(1, len);
+                    for ( int i=0; i<m; ++i )
+                        sub[i] = rows[sel[i]];
+                    n = m;
+                }
+            }
+        } finally {
+            scratch.pop();
+        }
+    }
+    
+    // ------------------------------------------------------------------------
+    
     /**
      * @see prefuse.data.expression.AbstractExpression#addChildListeners()
      */
@@ -35,6 +35,53 @@ public class ExpressionAnalyzer {
         return cc.getColumnSet();
     }
     
+    /**
+     * Determine if an expression computes its value from data fields and
+     * literals alone, using only column references, literals, arithmetic,
+     * comparisons, ranges, and And, Or, and Not combinations of these.
+     * Such expressions are evaluated on table rows in batches without
+     * creating any tuples, and do not modify any state when evaluated. A
+     * compiled expression is analyzed in terms of its source expression.
+     * @param expr the expression to analyze
+     * @return true if the expression only reads data fields and literals
+     */
+    public static boolean isColumnOnly(Expression expr) {
+        ColumnOnlyChecker cc = new ColumnOnlyChecker();
+        expr.visit(cc);
+        return cc.m_pure;
+    }
+    
+    /**
+     * ExpressionVisitor that checks that an expression only consists of
+     * expression types that read data fields and literals.
+     */
+    private static class ColumnOnlyChecker implements ExpressionVisitor {
+        private boolean m_pure = true;
+        
+        public void visitExpression(Expression expr) {
+            Class<?> type = expr.getClass();
+            if ( !(type == ColumnExpression.class
+                   || type == BooleanLiteral.class
+                   || type == NumericLiteral.class
+                   || type == ObjectLiteral.class
+                   || type == ArithmeticExpression.class
+                   || type == ComparisonPredicate.class
+                   || type == RangePredicate.class
+                   || type == NotPredicate.class
+                   || type == AndPredicate.class
+                   || type == OrPredicate.class) )
+            {
+                m_pure = false;
+            }
+        }
+        public void down() {
+            // do nothing
+        }
+        public void up() {
+            // do nothing
+        }
+    }
+    
     /**
      * ExpressionVisitor that collects all referenced columns / data fields
      * in an Expression.
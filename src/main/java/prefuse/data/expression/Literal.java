@@ -1,5 +1,9 @@
 package prefuse.data.expression;
 
+import java.util.Arrays;
+import java.util.BitSet;
+
+import prefuse.data.Table;
 import prefuse.data.Tuple;
 import prefuse.util.TypeLib;
 
@@ -85,4 +89,52 @@ public abstract class Literal extends AbstractExpression {
         }
     }
     
+    // ------------------------------------------------------------------------
+    // Batch Evaluation
+    
+    // a literal does not depend on the tuple, so its value is computed
+    // once and copied into the output
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getInts(prefuse.data.Table, int[], int, int[])
+     */
+    public void getInts(Table t, int[] rows, int len, int[] out) {
+        if ( len > 0 ) Arrays.fill(out, 0, len, getInt(null));
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getLongs(prefuse.data.Table, int[], int, long[])
+     */
+    public void getLongs(Table t, int[] rows, int len, long[] out) {
+        if ( len > 0 ) Arrays.fill(out, 0, len, getLong(null));
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getFloats(prefuse.data.Table, int[], int, float[])
+     */
+    public void getFloats(Table t, int[] rows, int len, float[] out) {
+        if ( len > 0 ) Arrays.fill(out, 0, len, getFloat(null));
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getDoubles(prefuse.data.Table, int[], int, double[])
+     */
+    public void getDoubles(Table t, int[] rows, int len, double[] out) {
+        if ( len > 0 ) Arrays.fill(out, 0, len, getDouble(null));
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getValues(prefuse.data.Table, int[], int, java.lang.Object[])
+     */
+    public void getValues(Table t, int[] rows, int len, Object[] out) {
+        if ( len > 0 ) Arrays.fill(out, 0, len, get(null));
+    }
+    
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getBooleans(prefuse.data.Table, int[], int, java.util.BitSet)
+     */
+    public void getBooleans(Table t, int[] rows, int len, BitSet out) {
+        if ( len > 0 ) out.set(0, len, getBoolean(null));
+    }
+    
 } // end of abstract class Literal
@@ -1,5 +1,8 @@
 package prefuse.data.expression;
 
+import java.util.BitSet;
+
+import prefuse.data.Table;
 import prefuse.data.Tuple;
 
 /**
@@ -34,6 +37,14 @@ public class NotPredicate extends AbstractPredicate {
         return !m_predicate.getBoolean(t);
     }
 
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getBooleans(prefuse.data.Table, int[], int, java.util.BitSet)
+     */
+    public void getBooleans(Table t, int[] rows, int len, BitSet out) {
+        evalBooleans(m_predicate, t, rows, len, out);
+        out.flip(0, len);
+    }
+
     /**
      * @see prefuse.data.expression.Expression#visit(prefuse.data.expression.ExpressionVisitor)
      */
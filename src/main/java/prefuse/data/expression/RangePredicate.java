@@ -1,8 +1,10 @@
 package prefuse.data.expression;
 
+import java.util.BitSet;
 import java.util.Comparator;
 
 import prefuse.data.Schema;
+import prefuse.data.Table;
 import prefuse.data.Tuple;
 import prefuse.util.TypeLib;
 import prefuse.util.collections.DefaultLiteralComparator;
@@ -168,8 +170,16 @@ public class RangePredicate extends BinaryExpression implements Predicate {
             c1 = m_cmp.compare(x, lo);
             c2 = m_cmp.compare(x, hi);
         }
-       
-        // check the comparison values to see if it is in-range
+        return test(c1, c2);
+    }
+    
+    /**
+     * Check the comparison values to see if a value is in-range.
+     * @param c1 the comparison of the value to the lower bound
+     * @param c2 the comparison of the value to the upper bound
+     * @return true if the value is within the range
+     */
+    private boolean test(int c1, int c2) {
         switch ( m_op ) {
         case IN_IN:
             return ( c1 >= 0 && c2 <= 0 );
@@ -184,6 +194,124 @@ public class RangePredicate extends BinaryExpression implements Predicate {
         }
     }
     
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getBooleans(prefuse.data.Table, int[], int, java.util.BitSet)
+     */
+    public void getBooleans(Table t, int[] rows, int len, BitSet out) {
+        Scratch scratch = Scratch.get();
+        Frame f = scratch.push();
+        try {
+            getBooleans(t, rows, len, out, f);
+        } finally {
+            scratch.pop();
+        }
+    }
+    
+    private void getBooleans(Table t, int[] rows, int len, BitSet out,
+                             Frame f)
+    {
+        Class<?> lType = m_left.getType(t.getSchema());
+        Class<?> rType = m_right.getType(t.getSchema());
+        Class<?> mType = m_middle.getType(t.getSchema());
+        Class<?> sType = null;
+        
+        // see if we can match the end-points' type
+        if ( lType.isAssignableFrom(rType) ) {
+            sType = lType;
+        } else if ( rType.isAssignableFrom(lType) ) {
+            sType = rType;
+        }
+        
+        if ( sType != null && TypeLib.isNumericType(sType) && 
+                TypeLib.isNumericType(mType) )
+        {
+            // the range is of numeric types
+            LiteralComparator lc = (LiteralComparator)m_cmp;
+            boolean dflt = ( m_cmp == DefaultLiteralComparator.getInstance() );
+            Class<?> type = TypeLib.getNumericType(sType, mType);
+            if ( type == int.class ) {
+                int[] lo = f.ints(0, len);
+                int[] hi = f.ints(1, len);
+                int[] x  = f.ints(2, len);
+                evalInts(m_left,   t, rows, len, lo);
+                evalInts(m_right,  t, rows, len, hi);
+                evalInts(m_middle, t, rows, len, x);
+                for ( int i=0; i<len; ++i ) {
+                    if ( dflt ) {
+                        out.set(i, test(x[i]<lo[i] ? -1 : x[i]>lo[i] ? 1 : 0,
+                                        x[i]<hi[i] ? -1 : x[i]>hi[i] ? 1 : 0));
+                    } else {
+                        out.set(i, test(lc.compare(x[i], lo[i]),
+                                        lc.compare(x[i], hi[i])));
+                    }
+                }
+            } else if ( type == long.class ) {
+                long[] lo = f.longs(0, len);
+                long[] hi = f.longs(1, len);
+                long[] x  = f.longs(2, len);
+                evalLongs(m_left,   t, rows, len, lo);
+                evalLongs(m_right,  t, rows, len, hi);
+                evalLongs(m_middle, t, rows, len, x);
+                for ( int i=0; i<len; ++i ) {
+                    if ( dflt ) {
+                        out.set(i, test(x[i]<lo[i] ? -1 : x[i]>lo[i] ? 1 : 0,
+                                        x[i]<hi[i] ? -1 : x[i]>hi[i] ? 1 : 0));
+                    } else {
+                        out.set(i, test(lc.compare(x[i], lo[i]),
+                                        lc.compare(x[i], hi[i])));
+                    }
+                }
+            } else if ( type == float.class ) {
+                float[] lo = f.floats(0, len);
+                float[] hi = f.floats(1, len);
+                float[] x  = f.floats(2, len);
+                evalFloats(m_left,   t, rows, len, lo);
+                evalFloats(m_right,  t, rows, len, hi);
+                evalFloats(m_middle, t, rows, len, x);
+                for ( int i=0; i<len; ++i ) {
+                    if ( dflt ) {
+                        out.set(i, test(Float.compare(x[i], lo[i]),
+                                        Float.compare(x[i], hi[i])));
+                    } else {
+                        out.set(i, test(lc.compare(x[i], lo[i]),
+                                        lc.compare(x[i], hi[i])));
+                    }
+                }
+            } else if ( type == double.class ) {
+                double[] lo = f.doubles(0, len);
+                double[] hi = f.doubles(1, len);
+                double[] x  = f.doubles(2, len);
+                evalDoubles(m_left,   t, rows, len, lo);
+                evalDoubles(m_right,  t, rows, len, hi);
+                evalDoubles(m_middle, t, rows, len, x);
+                for ( int i=0; i<len; ++i ) {
+                    if ( dflt ) {
+                        out.set(i, test(Double.compare(x[i], lo[i]),
+                                        Double.compare(x[i], hi[i])));
+                    } else {
+                        out.set(i, test(lc.compare(x[i], lo[i]),
+                                        lc.compare(x[i], hi[i])));
+                    }
+                }
+            } else {
+                throw new IllegalStateException();
+            }
+        } else {
+            Object[] lo = f.values(0, len);
+            Object[] hi = f.values(1, len);
+            Object[] x  = f.values(2, len);
+            evalValues(m_left,   t, rows, len, lo);
+            evalValues(m_right,  t, rows, len, hi);
+            evalValues(m_middle, t, rows, len, x);
+            @SuppressWarnings("unchecked")
+            Comparator<Object> cmp = m_cmp;
+            for ( int i=0; i<len; ++i ) {
+                out.set(i, test(cmp.compare(x[i], lo[i]),
+                                cmp.compare(x[i], hi[i])));
+            }
+        }
+    }
+    
     /**
      * @see prefuse.data.expression.Expression#getType(prefuse.data.Schema)
      */
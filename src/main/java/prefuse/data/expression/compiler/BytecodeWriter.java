@@ -0,0 +1,481 @@
+package prefuse.data.expression.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Minimal writer for Java class files, supporting just what the
+ * {@link ExpressionCompiler} needs: a public final class with a no-argument
+ * constructor and a set of methods built from straight-line and branching
+ * bytecode. Classes are written using class file version 49.0 (Java 5), so
+ * that no stack map frames are required.
+ */
+final class BytecodeWriter {
+
+    // -- opcodes -------------------------------------------------------------
+
+    static final int ICONST_M1 = 2;
+    static final int ICONST_0  = 3;
+    static final int ICONST_1  = 4;
+    static final int BIPUSH    = 16;
+    static final int SIPUSH    = 17;
+    static final int LDC_W     = 19;
+    static final int ILOAD     = 21;
+    static final int ALOAD     = 25;
+    static final int IALOAD    = 46;
+    static final int LALOAD    = 47;
+    static final int FALOAD    = 48;
+    static final int DALOAD    = 49;
+    static final int AALOAD    = 50;
+    static final int ISTORE    = 54;
+    static final int ASTORE    = 58;
+    static final int IADD      = 96;
+    static final int ISUB      = 100;
+    static final int IMUL      = 104;
+    static final int IDIV      = 108;
+    static final int IREM      = 112;
+    static final int IXOR      = 130;
+    static final int I2L       = 133;
+    static final int I2D       = 135;
+    static final int L2D       = 138;
+    static final int F2D       = 141;
+    static final int D2I       = 142;
+    static final int D2L       = 143;
+    static final int D2F       = 144;
+    static final int LCMP      = 148;
+    static final int IFEQ      = 153;
+    static final int IFNE      = 154;
+    static final int IFLT      = 155;
+    static final int IFGE      = 156;
+    static final int IFGT      = 157;
+    static final int IFLE      = 158;
+    static final int IF_ICMPNE = 160;
+    static final int GOTO      = 167;
+    static final int IRETURN   = 172;
+    static final int RETURN    = 177;
+    static final int GETFIELD  = 180;
+    static final int INVOKEVIRTUAL   = 182;
+    static final int INVOKESPECIAL   = 183;
+    static final int INVOKESTATIC    = 184;
+    static final int INVOKEINTERFACE = 185;
+    static final int CHECKCAST = 192;
+
+    // -- constant pool tags --------------------------------------------------
+
+    private static final int UTF8          = 1;
+    private static final int INTEGER       = 3;
+    private static final int CLASS         = 7;
+    private static final int FIELD         = 9;
+    private static final int METHOD        = 10;
+    private static final int IMETHOD       = 11;
+    private static final int NAME_AND_TYPE = 12;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL  = 0x0010;
+    private static final int ACC_SUPER  = 0x0020;
+
+    private final String m_super;
+
+    private ByteArrayOutputStream m_pool = new ByteArrayOutputStream();
+    private DataOutputStream m_cp = new DataOutputStream(m_pool);
+    private HashMap<String,Integer> m_entries = new HashMap<String,Integer>();
+    private int m_count = 1;
+
+    private ArrayList<Code> m_methods = new ArrayList<Code>();
+
+    /**
+     * Create a new BytecodeWriter.
+     * @param superName the internal name of the superclass, which must
+     * have an accessible no-argument constructor
+     */
+    BytecodeWriter(String superName) {
+        m_super = superName;
+
+        // write the default constructor
+        Code init = method("<init>", "()V");
+        init.var(ALOAD, 0, 1);
+        init.invoke(INVOKESPECIAL, m_super, "<init>", "()V");
+        init.op(RETURN, 0);
+    }
+
+    /**
+     * Start a new public method.
+     * @param name the method name
+     * @param desc the method descriptor
+     * @return the Code instance for writing the method body
+     */
+    Code method(String name, String desc) {
+        Code c = new Code(name, desc);
+        m_methods.add(c);
+        return c;
+    }
+
+    /**
+     * Write the class file.
+     * @param name the internal name of the class to write, using slashes
+     * as package separators
+     * @return the class file bytes
+     */
+    byte[] toByteArray(String name) {
+        try {
+            int thisIdx = cls(name);
+            int superIdx = cls(m_super);
+            int codeIdx = utf8("Code");
+            int[] nameIdx = new int[m_methods.size()];
+            int[] descIdx = new int[m_methods.size()];
+            for ( int i=0; i<m_methods.size(); ++i ) {
+                Code c = m_methods.get(i);
+                nameIdx[i] = utf8(c.m_mname);
+                descIdx[i] = utf8(c.m_desc);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);  // minor version
+            out.writeShort(49); // major version
+            out.writeShort(m_count);
+            m_pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIdx);
+            out.writeShort(superIdx);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(m_methods.size());
+            for ( int i=0; i<m_methods.size(); ++i ) {
+                Code c = m_methods.get(i);
+                byte[] code = c.m_code.toByteArray();
+                out.writeShort(ACC_PUBLIC);
+                out.writeShort(nameIdx[i]);
+                out.writeShort(descIdx[i]);
+                out.writeShort(1); // attributes
+                out.writeShort(codeIdx);
+                out.writeInt(12 + code.length);
+                out.writeShort(c.m_maxStack);
+                out.writeShort(c.m_maxLocals);
+                out.writeInt(code.length);
+                out.write(code);
+                out.writeShort(0); // exception table
+                out.writeShort(0); // attributes
+            }
+            out.writeShort(0); // class attributes
+            out.flush();
+            return bytes.toByteArray();
+        } catch ( IOException e ) {
+            // can't happen for in-memory streams
+            throw new IllegalStateException(e.toString());
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Constant Pool
+
+    private int entry(String key) {
+        Integer idx = m_entries.get(key);
+        return ( idx == null ? -1 : idx.intValue() );
+    }
+
+    private int add(String key, int size) {
+        int idx = m_count;
+        m_count += size;
+        if ( m_count > 0xFFFF )
+            throw new IllegalStateException("Constant pool overflow.");
+        m_entries.put(key, Integer.valueOf(idx));
+        return idx;
+    }
+
+    int utf8(String s) {
+        String key = "U"+s;
+        int idx = entry(key);
+        if ( idx < 0 ) {
+            try {
+                m_cp.writeByte(UTF8);
+                m_cp.writeUTF(s);
+            } catch ( IOException e ) {
+                throw new IllegalStateException(e.toString());
+            }
+            idx = add(key, 1);
+        }
+        return idx;
+    }
+
+    int integer(int value) {
+        String key = "I"+value;
+        int idx = entry(key);
+        if ( idx < 0 ) {
+            write(INTEGER, value);
+            idx = add(key, 1);
+        }
+        return idx;
+    }
+
+    int cls(String name) {
+        String key = "C"+name;
+        int idx = entry(key);
+        if ( idx < 0 ) {
+            int n = utf8(name);
+            write(CLASS, n, -1);
+            idx = add(key, 1);
+        }
+        return idx;
+    }
+
+    private int nameAndType(String name, String desc) {
+        String key = "N"+name+' '+desc;
+        int idx = entry(key);
+        if ( idx < 0 ) {
+            int n = utf8(name), d = utf8(desc);
+            write(NAME_AND_TYPE, n, d);
+            idx = add(key, 1);
+        }
+        return idx;
+    }
+
+    private int member(int tag, String owner, String name, String desc) {
+        String key = String.valueOf(tag)+owner+'.'+name+' '+desc;
+        int idx = entry(key);
+        if ( idx < 0 ) {
+            int c = cls(owner), nt = nameAndType(name, desc);
+            write(tag, c, nt);
+            idx = add(key, 1);
+        }
+        return idx;
+    }
+
+    private void write(int tag, int value) {
+        try {
+            m_cp.writeByte(tag);
+            m_cp.writeInt(value);
+        } catch ( IOException e ) {
+            throw new IllegalStateException(e.toString());
+        }
+    }
+
+    private void write(int tag, int a, int b) {
+        try {
+            m_cp.writeByte(tag);
+            m_cp.writeShort(a);
+            if ( b >= 0 ) m_cp.writeShort(b);
+        } catch ( IOException e ) {
+            throw new IllegalStateException(e.toString());
+        }
+    }
+
+    /**
+     * Get the number of stack slots used by a value of the descriptor
+     * type starting with the given character.
+     */
+    private static int slots(char c) {
+        return ( c == 'J' || c == 'D' ? 2 : c == 'V' ? 0 : 1 );
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * A label marking a position in a method's bytecode, used as the
+     * target of branch instructions.
+     */
+    static final class Label {
+        private int m_pos = -1;
+        private int m_depth = -1;
+        // branch positions
+        private ArrayList<Integer> m_fixups = new ArrayList<Integer>();
+    }
+
+    /**
+     * Writer for the bytecode of a single method. The maximum stack depth
+     * is tracked as instructions are written.
+     */
+    final class Code {
+
+        private final String m_mname;
+        private final String m_desc;
+        private ByteArrayOutputStream m_code = new ByteArrayOutputStream();
+        private int m_depth = 0;
+        private int m_maxStack = 0;
+        private int m_maxLocals;
+        private boolean m_reachable = true;
+
+        private Code(String name, String desc) {
+            m_mname = name;
+            m_desc = desc;
+            // "this" plus the parameters
+            int locals = 1;
+            for ( int i=1; desc.charAt(i) != ')'; ++i ) {
+                char c = desc.charAt(i);
+                locals += slots(c);
+                if ( c == '[' ) {
+                    while ( desc.charAt(i) == '[' ) ++i;
+                    c = desc.charAt(i);
+                }
+                if ( c == 'L' ) i = desc.indexOf(';', i);
+            }
+            m_maxLocals = locals;
+        }
+
+        /**
+         * Allocate a new local variable.
+         * @param size the number of slots, 2 for longs and doubles
+         * @return the local variable index
+         */
+        int local(int size) {
+            int idx = m_maxLocals;
+            m_maxLocals += size;
+            return idx;
+        }
+
+        void u1(int b) {
+            m_code.write(b);
+        }
+
+        void u2(int s) {
+            m_code.write((s >> 8) & 0xFF);
+            m_code.write(s & 0xFF);
+        }
+
+        /**
+         * Write an opcode, adjusting the stack depth by the given delta.
+         */
+        void op(int opcode, int delta) {
+            u1(opcode);
+            stack(delta);
+            if ( opcode == GOTO || (opcode >= IRETURN && opcode <= RETURN) )
+                m_reachable = false;
+        }
+
+        private void stack(int delta) {
+            m_depth += delta;
+            if ( m_depth > m_maxStack )
+                m_maxStack = m_depth;
+        }
+
+        /**
+         * Push an int constant.
+         */
+        void push(int value) {
+            if ( value >= -1 && value <= 5 ) {
+                op(ICONST_0 + value, 1);
+            } else if ( value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE ) {
+                op(BIPUSH, 1);
+                u1(value);
+            } else if ( value >= Short.MIN_VALUE && value <= Short.MAX_VALUE ) {
+                op(SIPUSH, 1);
+                u2(value);
+            } else {
+                op(LDC_W, 1);
+                u2(integer(value));
+            }
+        }
+
+        /**
+         * Load or store a local variable.
+         * @param opcode the xLOAD or xSTORE opcode for index 0-255
+         * @param idx the local variable index
+         * @param size the variable size, 2 for longs and doubles
+         */
+        void var(int opcode, int idx, int size) {
+            if ( idx > 0xFF )
+                throw new IllegalStateException("Too many local variables.");
+            op(opcode, opcode < ISTORE ? size : -size);
+            u1(idx);
+        }
+
+        /**
+         * Read an instance field of the given object.
+         */
+        void getfield(String owner, String name, String desc) {
+            op(GETFIELD, slots(desc.charAt(0)) - 1);
+            u2(member(FIELD, owner, name, desc));
+        }
+
+        /**
+         * Write a method invocation.
+         */
+        void invoke(int opcode, String owner, String name, String desc) {
+            int args = 0;
+            int i = 1;
+            for ( ; desc.charAt(i) != ')'; ++i ) {
+                char c = desc.charAt(i);
+                args += slots(c);
+                if ( c == '[' ) {
+                    while ( desc.charAt(i) == '[' ) ++i;
+                    c = desc.charAt(i);
+                }
+                if ( c == 'L' ) i = desc.indexOf(';', i);
+            }
+            int ret = slots(desc.charAt(i+1));
+            int self = ( opcode == INVOKESTATIC ? 0 : 1 );
+            u1(opcode);
+            stack(ret - args - self);
+            if ( opcode == INVOKEINTERFACE ) {
+                u2(member(IMETHOD, owner, name, desc));
+                u1(args + 1);
+                u1(0);
+            } else {
+                u2(member(METHOD, owner, name, desc));
+            }
+        }
+
+        /**
+         * Write a checkcast instruction.
+         */
+        void checkcast(String type) {
+            op(CHECKCAST, 0);
+            u2(cls(type));
+        }
+
+        /**
+         * Write a branch instruction to the given label.
+         * @param opcode the branch opcode
+         * @param label the branch target
+         * @param delta the stack delta of the branch instruction
+         */
+        void jump(int opcode, Label label, int delta) {
+            int at = m_code.size();
+            op(opcode, delta);
+            if ( label.m_depth < 0 ) label.m_depth = m_depth;
+            if ( label.m_pos >= 0 ) {
+                u2(offset(label.m_pos - at));
+            } else {
+                label.m_fixups.add(Integer.valueOf(at));
+                u2(0);
+            }
+        }
+
+        /**
+         * Place a label at the current position.
+         */
+        void mark(Label label) {
+            label.m_pos = m_code.size();
+            if ( !m_reachable ) {
+                m_depth = label.m_depth;
+                m_reachable = true;
+            } else if ( label.m_depth < 0 ) {
+                label.m_depth = m_depth;
+            }
+            byte[] code = null;
+            for ( int i=0; i<label.m_fixups.size(); ++i ) {
+                if ( code == null ) code = m_code.toByteArray();
+                int at = label.m_fixups.get(i).intValue();
+                int off = offset(label.m_pos - at);
+                code[at+1] = (byte)((off >> 8) & 0xFF);
+                code[at+2] = (byte)(off & 0xFF);
+            }
+            if ( code != null ) {
+                m_code.reset();
+                m_code.write(code, 0, code.length);
+            }
+        }
+
+        private int offset(int off) {
+            if ( off < Short.MIN_VALUE || off > Short.MAX_VALUE )
+                throw new IllegalStateException("Method too large.");
+            return off;
+        }
+
+    } // end of inner class Code
+
+} // end of class BytecodeWriter
@@ -0,0 +1,403 @@
+package prefuse.data.expression.compiler;
+
+import java.util.BitSet;
+
+import prefuse.data.Schema;
+import prefuse.data.Table;
+import prefuse.data.Tuple;
+import prefuse.data.column.Column;
+import prefuse.data.expression.AbstractExpression;
+import prefuse.data.expression.Expression;
+import prefuse.data.expression.ExpressionVisitor;
+import prefuse.data.expression.Predicate;
+
+/**
+ * Abstract base class for expressions generated by the
+ * {@link ExpressionCompiler}. A compiled expression evaluates the same
+ * values as the source expression it was compiled from, but does so using
+ * generated bytecode that reads data columns directly, rather than walking
+ * the expression tree and looking up each data field by name.
+ *
+ * <p>A compiled expression is bound to the data columns of the Table
+ * backing the tuples it is evaluated on, resolving referenced data fields
+ * by name the first time a table is seen. If a table does not contain the
+ * referenced fields with the data types the expression was compiled for,
+ * or if a tuple is not backed by a table, evaluation falls back to the
+ * source expression.</p>
+ *
+ * <p>A compiled expression reflects the structure of its source at the
+ * time of compilation. If the source expression is later modified, the
+ * compiled expression will continue to evaluate the old structure unless
+ * an {@link prefuse.data.event.ExpressionListener} is registered with the
+ * compiled expression, in which case the change is detected and all
+ * further evaluation is delegated to the source expression.</p>
+ */
+public abstract class CompiledExpression extends AbstractExpression
+    implements Predicate
+{
+    /** Sub-expressions evaluated by the interpreter. */
+    protected Expression[] m_nodes;
+    /** int constants used by the generated code. */
+    protected int[]        m_ints;
+    /** long constants used by the generated code. */
+    protected long[]       m_longs;
+    /** float constants used by the generated code. */
+    protected float[]      m_floats;
+    /** double constants used by the generated code. */
+    protected double[]     m_doubles;
+    /** Object constants used by the generated code. */
+    protected Object[]     m_objects;
+
+    private Expression m_source;
+    private String[]   m_fields;
+    private Class<?>[] m_types;
+    private volatile Binding m_binding;
+    private volatile boolean m_stale = false;
+
+    /**
+     * Create a new CompiledExpression. Instances are created by the
+     * {@link ExpressionCompiler}.
+     */
+    protected CompiledExpression() {
+    }
+
+    /**
+     * Initialize this instance with its source expression and constants.
+     */
+    final void init(Expression source, String[] fields, Class<?>[] types,
+                    Expression[] nodes, int[] ints, long[] longs,
+                    float[] floats, double[] doubles, Object[] objects)
+    {
+        m_source  = source;
+        m_fields  = fields;
+        m_types   = types;
+        m_nodes   = nodes;
+        m_ints    = ints;
+        m_longs   = longs;
+        m_floats  = floats;
+        m_doubles = doubles;
+        m_objects = objects;
+    }
+
+    /**
+     * Get the source expression this expression was compiled from.
+     * @return the source expression
+     */
+    public Expression getSourceExpression() {
+        return m_source;
+    }
+
+    // ------------------------------------------------------------------------
+    // Column Binding
+
+    /**
+     * The data columns of a table referenced by the expression.
+     */
+    private static final class Binding {
+        Table    table;
+        Schema   schema;
+        Column[] cols;
+        int[]    idx;
+        boolean  valid;
+    }
+
+    /**
+     * Get the column binding for the given tuple's table, or null if the
+     * source expression should be used to evaluate the tuple.
+     */
+    private Binding bind(Tuple t) {
+        if ( m_stale || !t.isValid() )
+            return null;
+        Table table = t.getTable();
+        if ( table == null )
+            return null;
+        return bind(table);
+    }
+
+    /**
+     * Get the column binding for the given table, or null if the source
+     * expression should be used to evaluate the table's rows.
+     */
+    private Binding bind(Table table) {
+        if ( m_stale )
+            return null;
+
+        // check the current binding, the table's columns may have changed
+        Binding b = m_binding;
+        if ( b != null && b.table == table ) {
+            boolean current = ( b.valid ? isBound(b, table)
+                                        : b.schema == table.getSchema() );
+            if ( current )
+                return ( b.valid ? b : null );
+        }
+
+        // create a new binding
+        b = new Binding();
+        b.table = table;
+        b.schema = table.getSchema();
+        b.cols = new Column[m_fields.length];
+        b.idx = new int[m_fields.length];
+        b.valid = true;
+        for ( int i=0; i<m_fields.length; ++i ) {
+            int idx = table.getColumnNumber(m_fields[i]);
+            if ( idx < 0 || table.getColumnType(idx) != m_types[i] ) {
+                b.valid = false;
+                break;
+            }
+            b.idx[i] = idx;
+            b.cols[i] = table.getColumn(idx);
+        }
+        m_binding = b;
+        return ( b.valid ? b : null );
+    }
+
+    /**
+     * Check that a binding still refers to the table's current columns.
+     */
+    private static boolean isBound(Binding b, Table table) {
+        int ncols = table.getColumnCount();
+        for ( int i=0; i<b.idx.length; ++i ) {
+            if ( b.idx[i] >= ncols || table.getColumn(b.idx[i]) != b.cols[i] )
+                return false;
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+    // Expression Interface
+
+    /**
+     * @see prefuse.data.expression.Expression#getType(prefuse.data.Schema)
+     */
+    public Class<?> getType(Schema s) {
+        return m_source.getType(s);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#visit(prefuse.data.expression.ExpressionVisitor)
+     */
+    public void visit(ExpressionVisitor v) {
+        m_source.visit(v);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#get(prefuse.data.Tuple)
+     */
+    public Object get(Tuple t) {
+        Binding b = bind(t);
+        if ( b == null ) return m_source.get(t);
+        return evalObject(t, b.table, t.getRow(), b.cols, b.idx);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#getInt(prefuse.data.Tuple)
+     */
+    public int getInt(Tuple t) {
+        Binding b = bind(t);
+        if ( b == null ) return m_source.getInt(t);
+        return evalInt(t, b.table, t.getRow(), b.cols, b.idx);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#getLong(prefuse.data.Tuple)
+     */
+    public long getLong(Tuple t) {
+        Binding b = bind(t);
+        if ( b == null ) return m_source.getLong(t);
+        return evalLong(t, b.table, t.getRow(), b.cols, b.idx);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#getFloat(prefuse.data.Tuple)
+     */
+    public float getFloat(Tuple t) {
+        Binding b = bind(t);
+        if ( b == null ) return m_source.getFloat(t);
+        return evalFloat(t, b.table, t.getRow(), b.cols, b.idx);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#getDouble(prefuse.data.Tuple)
+     */
+    public double getDouble(Tuple t) {
+        Binding b = bind(t);
+        if ( b == null ) return m_source.getDouble(t);
+        return evalDouble(t, b.table, t.getRow(), b.cols, b.idx);
+    }
+
+    /**
+     * @see prefuse.data.expression.Expression#getBoolean(prefuse.data.Tuple)
+     */
+    public boolean getBoolean(Tuple t) {
+        Binding b = bind(t);
+        if ( b == null ) return m_source.getBoolean(t);
+        return evalBoolean(t, b.table, t.getRow(), b.cols, b.idx);
+    }
+
+    // ------------------------------------------------------------------------
+    // Batch Evaluation
+
+    // the tuples of the rows are only needed by interpreted sub-expressions
+
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getInts(prefuse.data.Table, int[], int, int[])
+     */
+    public void getInts(Table t, int[] rows, int len, int[] out) {
+        Binding b = bind(t);
+        if ( b == null ) {
+            evalInts(m_source, t, rows, len, out);
+            return;
+        }
+        boolean tuples = ( m_nodes.length > 0 );
+        for ( int i=0; i<len; ++i ) {
+            int row = rows[i];
+            out[i] = evalInt(tuples ? t.getTuple(row) : null,
+                             t, row, b.cols, b.idx);
+        }
+    }
+
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getLongs(prefuse.data.Table, int[], int, long[])
+     */
+    public void getLongs(Table t, int[] rows, int len, long[] out) {
+        Binding b = bind(t);
+        if ( b == null ) {
+            evalLongs(m_source, t, rows, len, out);
+            return;
+        }
+        boolean tuples = ( m_nodes.length > 0 );
+        for ( int i=0; i<len; ++i ) {
+            int row = rows[i];
+            out[i] = evalLong(tuples ? t.getTuple(row) : null,
+                              t, row, b.cols, b.idx);
+        }
+    }
+
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getFloats(prefuse.data.Table, int[], int, float[])
+     */
+    public void getFloats(Table t, int[] rows, int len, float[] out) {
+        Binding b = bind(t);
+        if ( b == null ) {
+            evalFloats(m_source, t, rows, len, out);
+            return;
+        }
+        boolean tuples = ( m_nodes.length > 0 );
+        for ( int i=0; i<len; ++i ) {
+            int row = rows[i];
+            out[i] = evalFloat(tuples ? t.getTuple(row) : null,
+                               t, row, b.cols, b.idx);
+        }
+    }
+
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getDoubles(prefuse.data.Table, int[], int, double[])
+     */
+    public void getDoubles(Table t, int[] rows, int len, double[] out) {
+        Binding b = bind(t);
+        if ( b == null ) {
+            evalDoubles(m_source, t, rows, len, out);
+            return;
+        }
+        boolean tuples = ( m_nodes.length > 0 );
+        for ( int i=0; i<len; ++i ) {
+            int row = rows[i];
+            out[i] = evalDouble(tuples ? t.getTuple(row) : null,
+                                t, row, b.cols, b.idx);
+        }
+    }
+
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getValues(prefuse.data.Table, int[], int, java.lang.Object[])
+     */
+    public void getValues(Table t, int[] rows, int len, Object[] out) {
+        Binding b = bind(t);
+        if ( b == null ) {
+            evalValues(m_source, t, rows, len, out);
+            return;
+        }
+        boolean tuples = ( m_nodes.length > 0 );
+        for ( int i=0; i<len; ++i ) {
+            int row = rows[i];
+            out[i] = evalObject(tuples ? t.getTuple(row) : null,
+                                t, row, b.cols, b.idx);
+        }
+    }
+
+    /**
+     * @see prefuse.data.expression.AbstractExpression#getBooleans(prefuse.data.Table, int[], int, java.util.BitSet)
+     */
+    public void getBooleans(Table t, int[] rows, int len, BitSet out) {
+        Binding b = bind(t);
+        if ( b == null ) {
+            evalBooleans(m_source, t, rows, len, out);
+            return;
+        }
+        boolean tuples = ( m_nodes.length > 0 );
+        for ( int i=0; i<len; ++i ) {
+            int row = rows[i];
+            out.set(i, evalBoolean(tuples ? t.getTuple(row) : null,
+                                   t, row, b.cols, b.idx));
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Source Listener
+
+    /**
+     * @see prefuse.data.expression.AbstractExpression#addChildListeners()
+     */
+    protected void addChildListeners() {
+        m_source.addExpressionListener(this);
+    }
+
+    /**
+     * @see prefuse.data.expression.AbstractExpression#removeChildListeners()
+     */
+    protected void removeChildListeners() {
+        m_source.removeExpressionListener(this);
+    }
+
+    /**
+     * Marks this compiled expression as out of date, so that evaluation is
+     * delegated to the modified source expression, and relays the event.
+     * @see prefuse.data.event.ExpressionListener#expressionChanged(prefuse.data.expression.Expression)
+     */
+    public void expressionChanged(Expression expr) {
+        m_stale = true;
+        super.expressionChanged(expr);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return m_source.toString();
+    }
+
+    // ------------------------------------------------------------------------
+    // Generated Methods
+
+    // Each method evaluates the expression for a valid tuple. The table row
+    // is the tuple's row, and cols and idx hold the referenced data columns
+    // and their column numbers in the table, in compilation order.
+
+    protected abstract Object evalObject(Tuple t, Table table, int row,
+                                         Column[] cols, int[] idx);
+
+    protected abstract int evalInt(Tuple t, Table table, int row,
+                                   Column[] cols, int[] idx);
+
+    protected abstract long evalLong(Tuple t, Table table, int row,
+                                     Column[] cols, int[] idx);
+
+    protected abstract float evalFloat(Tuple t, Table table, int row,
+                                       Column[] cols, int[] idx);
+
+    protected abstract double evalDouble(Tuple t, Table table, int row,
+                                         Column[] cols, int[] idx);
+
+    protected abstract boolean evalBoolean(Tuple t, Table table, int row,
+                                           Column[] cols, int[] idx);
+
+} // end of abstract class CompiledExpression
@@ -0,0 +1,755 @@
+package prefuse.data.expression.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import prefuse.data.Schema;
+import prefuse.data.expression.AndPredicate;
+import prefuse.data.expression.ArithmeticExpression;
+import prefuse.data.expression.BooleanLiteral;
+import prefuse.data.expression.ColumnExpression;
+import prefuse.data.expression.ComparisonPredicate;
+import prefuse.data.expression.CompositePredicate;
+import prefuse.data.expression.Expression;
+import prefuse.data.expression.ExpressionAnalyzer;
+import prefuse.data.expression.IfExpression;
+import prefuse.data.expression.NotPredicate;
+import prefuse.data.expression.NumericLiteral;
+import prefuse.data.expression.ObjectLiteral;
+import prefuse.data.expression.OrPredicate;
+import prefuse.data.expression.Predicate;
+import prefuse.data.expression.RangePredicate;
+import prefuse.data.expression.XorPredicate;
+import prefuse.data.expression.compiler.BytecodeWriter.Code;
+import prefuse.data.expression.compiler.BytecodeWriter.Label;
+import prefuse.util.PrefuseConfig;
+import prefuse.util.TypeLib;
+import prefuse.util.collections.DefaultLiteralComparator;
+import prefuse.util.collections.LiteralComparator;
+
+/**
+ * <p>Compiles expressions into Java bytecode. Given an expression and the
+ * Schema of the data it will be evaluated against, the compiler generates a
+ * {@link CompiledExpression} subclass that evaluates data columns, literals,
+ * arithmetic, comparisons, ranges, boolean logic, and if-then-else
+ * expressions directly, reading primitive values from the referenced
+ * data columns without boxing or field name lookups.</p>
+ *
+ * <p>Any sub-expression that can not be compiled, including all function
+ * expressions and any custom Expression implementations, is evaluated by
+ * the interpreter from within the generated code. If nothing in an
+ * expression can be compiled, if the expression does not reference any data
+ * fields, or if compilation fails, the original expression is returned
+ * unchanged.</p>
+ *
+ * <p>Generated classes depend only on the structure of the expression and
+ * the data types of the referenced columns, not on literal values or data
+ * field names. Generated classes are cached, keyed on a canonical text of
+ * the expression written while its code is generated, which records the
+ * structure, operations, and the value types resolved against the schema.
+ * Expressions that differ only in their constants (for example, range
+ * queries updated by a slider) thus share a single generated class.
+ * Generated classes are defined in groups by a shared class loader, and a
+ * group is unloaded once none of its classes are cached or in use.</p>
+ *
+ * <p>Compilation is disabled by default, and can be enabled by setting the
+ * <code>data.expression.compile</code> configuration property to
+ * <code>true</code>.</p>
+ *
+ * @see prefuse.util.PrefuseConfig
+ */
+public class ExpressionCompiler {
+
+    private static final Logger s_logger
+        = Logger.getLogger(ExpressionCompiler.class.getName());
+
+    private static final String CLASS
+        = "prefuse/data/expression/compiler/Generated";
+    private static final String SUPER
+        = "prefuse/data/expression/compiler/CompiledExpression";
+    private static final String TABLE = "prefuse/data/Table";
+    private static final String COLUMN = "prefuse/data/column/Column";
+    private static final String EXPRESSION
+        = "prefuse/data/expression/Expression";
+    private static final String LITERAL_COMPARATOR
+        = "prefuse/util/collections/LiteralComparator";
+    private static final String COMPARATOR = "java/util/Comparator";
+    private static final String ARGS = "(Lprefuse/data/Tuple;"
+        + "Lprefuse/data/Table;I[Lprefuse/data/column/Column;[I)";
+
+    // value types, ordered to match the typed variants of the opcodes
+    private static final int INT     = 0;
+    private static final int LONG    = 1;
+    private static final int FLOAT   = 2;
+    private static final int DOUBLE  = 3;
+    private static final int OBJECT  = 4;
+    private static final int BOOLEAN = 5;
+
+    private static final String[] METHODS = { "evalInt", "evalLong",
+        "evalFloat", "evalDouble", "evalObject", "evalBoolean" };
+    private static final String[] GETTERS = { "getInt", "getLong",
+        "getFloat", "getDouble", "get", "getBoolean" };
+    private static final String[] DESCS = { "I", "J", "F", "D",
+        "Ljava/lang/Object;", "Z" };
+    private static final String[] ARRAYS = { "m_ints", "m_longs",
+        "m_floats", "m_doubles", "m_objects" };
+    private static final int[] SIZES = { 1, 2, 1, 2, 1, 1 };
+
+    /** Maximum number of generated classes to cache. */
+    private static final int CACHE_SIZE = 64;
+
+    /** Number of generated classes defined by a single class loader. */
+    private static final int LOADER_SIZE = 16;
+
+    /** Cache of generated classes, keyed on their expression key. */
+    private static final Map<String,Class<?>> s_cache =
+        new LinkedHashMap<String,Class<?>>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+        protected boolean removeEldestEntry(
+            Map.Entry<String,Class<?>> eldest)
+        {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /** The class loader defining new generated classes. */
+    private static Loader s_loader;
+
+    // ------------------------------------------------------------------------
+    // Compilation
+
+    /**
+     * Compile an expression for evaluation against data with the given
+     * schema. If compilation is disabled, fails, or would not compile any
+     * part of the expression, the input expression is returned.
+     * @param expr the expression to compile
+     * @param schema the schema of the data the expression will be
+     * evaluated on
+     * @return a compiled version of the expression, or the original
+     * expression if it could not be compiled
+     */
+    public static Expression compile(Expression expr, Schema schema) {
+        if ( expr == null || schema == null
+                || expr instanceof CompiledExpression
+                || !PrefuseConfig.getBoolean("data.expression.compile") )
+        {
+            return expr;
+        }
+        try {
+            ExpressionCompiler c = new ExpressionCompiler(expr, schema);
+            return c.generate();
+        } catch ( Exception e ) {
+            s_logger.warning("Expression compilation failed, "
+                + "using interpreter: " + expr + "\n" + e);
+            return expr;
+        } catch ( LinkageError e ) {
+            s_logger.warning("Generated expression rejected, "
+                + "using interpreter: " + expr + "\n" + e);
+            return expr;
+        }
+    }
+
+    /**
+     * Compile a predicate for evaluation against data with the given
+     * schema. If compilation is disabled, fails, or would not compile any
+     * part of the predicate, the input predicate is returned.
+     * @param p the predicate to compile
+     * @param schema the schema of the data the predicate will be
+     * evaluated on
+     * @return a compiled version of the predicate, or the original
+     * predicate if it could not be compiled
+     */
+    public static Predicate compile(Predicate p, Schema schema) {
+        return (Predicate)compile((Expression)p, schema);
+    }
+
+    /**
+     * Get the generated class for the given expression key, defining it
+     * from the written code if it is not yet in the cache.
+     */
+    private static Class<?> load(String key, BytecodeWriter w) {
+        synchronized ( s_cache ) {
+            Class<?> cls = s_cache.get(key);
+            if ( cls == null ) {
+                if ( s_loader == null || s_loader.count == LOADER_SIZE )
+                    s_loader = new Loader();
+                cls = s_loader.define(w);
+                s_cache.put(key, cls);
+            }
+            return cls;
+        }
+    }
+
+    /**
+     * Class loader for a group of generated classes. Once a loader has
+     * defined its share of classes, a new loader is started, so that
+     * the classes of a loader can be unloaded together once none of them
+     * are cached or in use any more.
+     */
+    private static final class Loader extends ClassLoader {
+        int count = 0;
+        Loader() {
+            super(CompiledExpression.class.getClassLoader());
+        }
+        Class<?> define(BytecodeWriter w) {
+            String name = CLASS + (count++);
+            byte[] b = w.toByteArray(name);
+            return defineClass(name.replace('/', '.'), b, 0, b.length);
+        }
+    } // end of inner class Loader
+
+    // ------------------------------------------------------------------------
+    // Code Generation
+
+    private Expression m_expr;
+    private Schema     m_schema;
+    private String[]   m_fields;
+    private Class<?>[] m_types;
+
+    // constants and interpreted nodes, indexed by slot
+    private ArrayList<ArrayList<Object>> m_consts =
+        new ArrayList<ArrayList<Object>>(OBJECT+1);
+    private ArrayList<IdentityHashMap<Object,Integer>> m_slots =
+        new ArrayList<IdentityHashMap<Object,Integer>>(OBJECT+1);
+    private ArrayList<Expression> m_nodes = new ArrayList<Expression>();
+    private IdentityHashMap<Expression,Integer> m_nodeSlots =
+        new IdentityHashMap<Expression,Integer>();
+
+    // the number of compiled (not interpreted) nodes
+    private int m_compiled = 0;
+
+    // the cache key, written along with the code
+    private StringBuffer m_key = new StringBuffer();
+
+    private ExpressionCompiler(Expression expr, Schema schema) {
+        m_expr = expr;
+        m_schema = schema;
+        for ( int i=0; i<=OBJECT; ++i ) {
+            m_consts.add(new ArrayList<Object>());
+            m_slots.add(new IdentityHashMap<Object,Integer>());
+        }
+
+        // resolve all referenced fields, as the types of interpreted
+        // sub-expressions may depend upon them too
+        Set<?> cols = ExpressionAnalyzer.getReferencedColumns(expr);
+        m_fields = cols.toArray(new String[cols.size()]);
+        Arrays.sort(m_fields);
+        m_types = new Class<?>[m_fields.length];
+        for ( int i=0; i<m_fields.length; ++i ) {
+            m_types[i] = schema.getColumnType(m_fields[i]);
+        }
+    }
+
+    /**
+     * Generate, load, and initialize the compiled expression.
+     */
+    private Expression generate() throws Exception {
+        if ( m_fields.length == 0 )
+            return m_expr; // no data to read
+        for ( int i=0; i<m_types.length; ++i ) {
+            if ( m_types[i] == null ) return m_expr; // unknown field
+        }
+
+        BytecodeWriter w = new BytecodeWriter(SUPER);
+        for ( int want=INT; want<=BOOLEAN; ++want ) {
+            Code c = w.method(METHODS[want], ARGS+DESCS[want]);
+            emit(c, m_expr, want);
+            c.op(want==BOOLEAN ? BytecodeWriter.IRETURN
+                               : BytecodeWriter.IRETURN + want, -SIZES[want]);
+        }
+        if ( m_compiled == 0 )
+            return m_expr; // nothing to gain
+
+        Class<?> cls = load(m_key.toString(), w);
+        CompiledExpression ce = (CompiledExpression)
+            cls.getDeclaredConstructor().newInstance();
+
+        int[] ints = new int[m_consts.get(INT).size()];
+        for ( int i=0; i<ints.length; ++i )
+            ints[i] = ((Number)m_consts.get(INT).get(i)).intValue();
+        long[] longs = new long[m_consts.get(LONG).size()];
+        for ( int i=0; i<longs.length; ++i )
+            longs[i] = ((Number)m_consts.get(LONG).get(i)).longValue();
+        float[] floats = new float[m_consts.get(FLOAT).size()];
+        for ( int i=0; i<floats.length; ++i )
+            floats[i] = ((Number)m_consts.get(FLOAT).get(i)).floatValue();
+        double[] doubles = new double[m_consts.get(DOUBLE).size()];
+        for ( int i=0; i<doubles.length; ++i )
+            doubles[i] = ((Number)m_consts.get(DOUBLE).get(i)).doubleValue();
+
+        ce.init(m_expr, m_fields, m_types,
+                m_nodes.toArray(new Expression[m_nodes.size()]),
+                ints, longs, floats, doubles, m_consts.get(OBJECT).toArray());
+        return ce;
+    }
+
+    /**
+     * Get the constant slot for the given key, adding the value to the
+     * constants of the given type if the key has not been seen yet.
+     */
+    private int slot(int type, Object key, Object value) {
+        Integer slot = m_slots.get(type).get(key);
+        if ( slot == null ) {
+            slot = Integer.valueOf(m_consts.get(type).size());
+            m_consts.get(type).add(value);
+            m_slots.get(type).put(key, slot);
+        }
+        m_key.append(" k").append(type).append(':').append(slot);
+        return slot.intValue();
+    }
+
+    /**
+     * Load a constant from the constant array of the given type.
+     */
+    private void constant(Code c, int type, Object key, Object value) {
+        c.var(BytecodeWriter.ALOAD, 0, 1);
+        c.getfield(SUPER, ARRAYS[type], "["+DESCS[type]);
+        c.push(slot(type, key, value));
+        c.op(BytecodeWriter.IALOAD + type, SIZES[type]-2);
+    }
+
+    /**
+     * Get the value type for a primitive numeric class.
+     */
+    private static int numericType(Class<?> type) {
+        if ( type == long.class ) {
+            return LONG;
+        } else if ( type == float.class ) {
+            return FLOAT;
+        } else if ( type == double.class ) {
+            return DOUBLE;
+        } else {
+            return INT;
+        }
+    }
+
+    /**
+     * Write code that leaves the value of the expression, of the wanted
+     * type, on the stack.
+     */
+    private void emit(Code c, Expression e, int want) {
+        Class<?> type = e.getClass();
+        boolean done = false;
+        m_key.append(" (").append(type.getName()).append('/').append(want);
+        if ( type == ColumnExpression.class ) {
+            done = emitColumn(c, (ColumnExpression)e, want);
+        } else if ( type == NumericLiteral.class ) {
+            if ( want <= DOUBLE ) {
+                constant(c, want, e, e.get(null));
+                done = true;
+            } else if ( want == OBJECT ) {
+                constant(c, OBJECT, e, e.get(null));
+                done = true;
+            }
+        } else if ( type == ObjectLiteral.class ) {
+            if ( want == OBJECT ) {
+                constant(c, OBJECT, e, e.get(null));
+                done = true;
+            }
+        } else if ( type == ArithmeticExpression.class ) {
+            if ( want <= DOUBLE )
+                done = emitArithmetic(c, (ArithmeticExpression)e, want);
+        } else if ( type == IfExpression.class ) {
+            emitIf(c, (IfExpression)e, want);
+            done = true;
+        } else if ( want == BOOLEAN || want == OBJECT ) {
+            done = emitPredicate(c, e);
+            if ( done && want == OBJECT ) {
+                c.invoke(BytecodeWriter.INVOKESTATIC, "java/lang/Boolean",
+                         "valueOf", "(Z)Ljava/lang/Boolean;");
+            }
+        }
+
+        if ( done ) {
+            ++m_compiled;
+        } else {
+            emitInterpreted(c, e, want);
+        }
+        m_key.append(')');
+    }
+
+    /**
+     * Write code that evaluates the expression using the interpreter.
+     */
+    private void emitInterpreted(Code c, Expression e, int want) {
+        Integer slot = m_nodeSlots.get(e);
+        if ( slot == null ) {
+            slot = Integer.valueOf(m_nodes.size());
+            m_nodes.add(e);
+            m_nodeSlots.put(e, slot);
+        }
+        m_key.append(" n").append(slot);
+        c.var(BytecodeWriter.ALOAD, 0, 1);
+        c.getfield(SUPER, "m_nodes", "[L"+EXPRESSION+";");
+        c.push(slot.intValue());
+        c.op(BytecodeWriter.AALOAD, -1);
+        c.var(BytecodeWriter.ALOAD, 1, 1);
+        c.invoke(BytecodeWriter.INVOKEINTERFACE, EXPRESSION, GETTERS[want],
+                 "(Lprefuse/data/Tuple;)"+DESCS[want]);
+    }
+
+    /**
+     * Write code that reads a data column value.
+     */
+    private boolean emitColumn(Code c, ColumnExpression e, int want) {
+        int k = Arrays.binarySearch(m_fields, e.getColumnName());
+        if ( k < 0 ) return false;
+        m_key.append(" f").append(k);
+
+        // cols[k].getX(table.getColumnRow(row, idx[k]))
+        c.var(BytecodeWriter.ALOAD, 4, 1);
+        c.push(k);
+        c.op(BytecodeWriter.AALOAD, -1);
+        c.var(BytecodeWriter.ALOAD, 2, 1);
+        c.var(BytecodeWriter.ILOAD, 3, 1);
+        c.var(BytecodeWriter.ALOAD, 5, 1);
+        c.push(k);
+        c.op(BytecodeWriter.IALOAD, -1);
+        c.invoke(BytecodeWriter.INVOKEVIRTUAL, TABLE, "getColumnRow", "(II)I");
+        c.invoke(BytecodeWriter.INVOKEINTERFACE, COLUMN, GETTERS[want],
+                 "(I)"+DESCS[want]);
+        return true;
+    }
+
+    /**
+     * Write code for an arithmetic expression of a primitive numeric type.
+     */
+    private boolean emitArithmetic(Code c, ArithmeticExpression e, int want) {
+        int op = e.getOperation();
+        if ( op < ArithmeticExpression.ADD || op > ArithmeticExpression.MOD )
+            return false;
+        m_key.append(" a").append(op);
+
+        if ( op == ArithmeticExpression.POW ||
+             (op == ArithmeticExpression.MOD && want >= FLOAT) )
+        {
+            emit(c, e.getLeftExpression(), want);
+            toDouble(c, want);
+            emit(c, e.getRightExpression(), want);
+            toDouble(c, want);
+            c.invoke(BytecodeWriter.INVOKESTATIC, "java/lang/Math",
+                ( op == ArithmeticExpression.POW ? "pow" : "IEEEremainder" ),
+                "(DD)D");
+            fromDouble(c, want);
+        } else {
+            emit(c, e.getLeftExpression(), want);
+            emit(c, e.getRightExpression(), want);
+            int opcode;
+            switch ( op ) {
+            case ArithmeticExpression.ADD:
+                opcode = BytecodeWriter.IADD; break;
+            case ArithmeticExpression.SUB:
+                opcode = BytecodeWriter.ISUB; break;
+            case ArithmeticExpression.MUL:
+                opcode = BytecodeWriter.IMUL; break;
+            case ArithmeticExpression.DIV:
+                opcode = BytecodeWriter.IDIV; break;
+            default:
+                opcode = BytecodeWriter.IREM; break;
+            }
+            c.op(opcode + want, -SIZES[want]);
+        }
+        return true;
+    }
+
+    private static void toDouble(Code c, int type) {
+        switch ( type ) {
+        case INT:
+            c.op(BytecodeWriter.I2D, 1); break;
+        case LONG:
+            c.op(BytecodeWriter.L2D, 0); break;
+        case FLOAT:
+            c.op(BytecodeWriter.F2D, 1); break;
+        }
+    }
+
+    private static void fromDouble(Code c, int type) {
+        switch ( type ) {
+        case INT:
+            c.op(BytecodeWriter.D2I, -1); break;
+        case LONG:
+            c.op(BytecodeWriter.D2L, 0); break;
+        case FLOAT:
+            c.op(BytecodeWriter.D2F, -1); break;
+        }
+    }
+
+    /**
+     * Write code for an if-then-else expression.
+     */
+    private void emitIf(Code c, IfExpression e, int want) {
+        Label other = new Label(), end = new Label();
+        emit(c, e.getTestPredicate(), BOOLEAN);
+        c.jump(BytecodeWriter.IFEQ, other, -1);
+        emit(c, e.getThenExpression(), want);
+        c.jump(BytecodeWriter.GOTO, end, 0);
+        c.mark(other);
+        emit(c, e.getElseExpression(), want);
+        c.mark(end);
+    }
+
+    /**
+     * Write code that leaves the boolean value of a predicate on the stack.
+     * @return false if the predicate is not supported
+     */
+    private boolean emitPredicate(Code c, Expression e) {
+        Class<?> type = e.getClass();
+        if ( type == BooleanLiteral.class ) {
+            boolean b = ((BooleanLiteral)e).getBoolean(null);
+            m_key.append(b ? " T" : " F");
+            c.push(b ? 1 : 0);
+            return true;
+        } else if ( type == ComparisonPredicate.class ) {
+            return emitComparison(c, (ComparisonPredicate)e);
+        } else if ( type == RangePredicate.class ) {
+            return emitRange(c, (RangePredicate)e);
+        } else if ( type == NotPredicate.class ) {
+            emit(c, ((NotPredicate)e).getPredicate(), BOOLEAN);
+            c.push(1);
+            c.op(BytecodeWriter.IXOR, -1);
+            return true;
+        } else if ( type == AndPredicate.class || type == OrPredicate.class ) {
+            emitLogic(c, (CompositePredicate)e, type == AndPredicate.class);
+            return true;
+        } else if ( type == XorPredicate.class ) {
+            CompositePredicate p = (CompositePredicate)e;
+            if ( p.size() == 0 ) {
+                c.push(0);
+            } else {
+                emit(c, p.get(0), BOOLEAN);
+                for ( int i=1; i<p.size(); ++i ) {
+                    emit(c, p.get(i), BOOLEAN);
+                    c.op(BytecodeWriter.IXOR, -1);
+                }
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Write short-circuiting code for an AND or OR predicate.
+     */
+    private void emitLogic(Code c, CompositePredicate p, boolean and) {
+        if ( p.size() == 0 ) {
+            c.push(0);
+            return;
+        }
+        // branch out as soon as the result is known
+        Label shortcut = new Label(), end = new Label();
+        for ( int i=0; i<p.size(); ++i ) {
+            emit(c, p.get(i), BOOLEAN);
+            c.jump(and ? BytecodeWriter.IFEQ : BytecodeWriter.IFNE,
+                   shortcut, -1);
+        }
+        c.push(and ? 1 : 0);
+        c.jump(BytecodeWriter.GOTO, end, 0);
+        c.mark(shortcut);
+        c.push(and ? 0 : 1);
+        c.mark(end);
+    }
+
+    /**
+     * Push a true or false value depending on whether or not the code
+     * branched to the given label.
+     */
+    private static void emitResult(Code c, Label isFalse) {
+        Label end = new Label();
+        c.push(1);
+        c.jump(BytecodeWriter.GOTO, end, 0);
+        c.mark(isFalse);
+        c.push(0);
+        c.mark(end);
+    }
+
+    /**
+     * Write code for a comparison predicate, mirroring the evaluation
+     * performed by ComparisonPredicate.
+     */
+    private boolean emitComparison(Code c, ComparisonPredicate e) {
+        int op = e.getOperation();
+        if ( op < ComparisonPredicate.LT || op > ComparisonPredicate.GTEQ )
+            return false;
+
+        Expression l = e.getLeftExpression();
+        Expression r = e.getRightExpression();
+        Comparator<?> cmp = e.getComparator();
+        Class<?> lType = l.getType(m_schema);
+        Class<?> rType = r.getType(m_schema);
+
+        if ( TypeLib.isNumericType(lType) && TypeLib.isNumericType(rType) ) {
+            if ( !(cmp instanceof LiteralComparator) )
+                return false;
+            int type = numericType(TypeLib.getNumericType(lType, rType));
+            m_key.append(" c").append(op).append('/').append(type);
+            int slot = comparator(c, e, cmp, true);
+            emit(c, l, type);
+            widen(c, type, slot);
+            emit(c, r, type);
+            widen(c, type, slot);
+            compare(c, type, slot);
+        } else {
+            m_key.append(" c").append(op).append('/').append(OBJECT);
+            comparator(c, e, cmp, false);
+            emit(c, l, OBJECT);
+            emit(c, r, OBJECT);
+            compare(c, OBJECT, 0);
+        }
+
+        // test the comparison result, exactly as ComparisonPredicate does
+        Label isFalse = new Label();
+        switch ( op ) {
+        case ComparisonPredicate.LT:
+            c.push(-1);
+            c.jump(BytecodeWriter.IF_ICMPNE, isFalse, -2);
+            break;
+        case ComparisonPredicate.GT:
+            c.push(1);
+            c.jump(BytecodeWriter.IF_ICMPNE, isFalse, -2);
+            break;
+        case ComparisonPredicate.EQ:
+            c.jump(BytecodeWriter.IFNE, isFalse, -1);
+            break;
+        case ComparisonPredicate.NEQ:
+            c.jump(BytecodeWriter.IFEQ, isFalse, -1);
+            break;
+        case ComparisonPredicate.LTEQ:
+            c.jump(BytecodeWriter.IFGT, isFalse, -1);
+            break;
+        case ComparisonPredicate.GTEQ:
+            c.jump(BytecodeWriter.IFLT, isFalse, -1);
+            break;
+        }
+        emitResult(c, isFalse);
+        return true;
+    }
+
+    /**
+     * Write code for a range predicate, mirroring the evaluation
+     * performed by RangePredicate.
+     */
+    private boolean emitRange(Code c, RangePredicate e) {
+        int op = e.getOperation();
+        if ( op < RangePredicate.IN_IN || op > RangePredicate.EX_EX )
+            return false;
+
+        Expression l = e.getLeftExpression();
+        Expression r = e.getRightExpression();
+        Expression m = e.getMiddleExpression();
+        Comparator<?> cmp = e.getComparator();
+        Class<?> lType = l.getType(m_schema);
+        Class<?> rType = r.getType(m_schema);
+        Class<?> mType = m.getType(m_schema);
+        Class<?> sType = null;
+
+        // see if we can match the end-points' type
+        if ( lType.isAssignableFrom(rType) ) {
+            sType = lType;
+        } else if ( rType.isAssignableFrom(lType) ) {
+            sType = rType;
+        }
+
+        int type = OBJECT;
+        if ( sType != null && TypeLib.isNumericType(sType) &&
+                TypeLib.isNumericType(mType) )
+        {
+            if ( !(cmp instanceof LiteralComparator) )
+                return false;
+            type = numericType(TypeLib.getNumericType(sType, mType));
+        }
+        int size = SIZES[type];
+        m_key.append(" r").append(op).append('/').append(type);
+
+        // evaluate the end-points and the value in interpreter order
+        int lo = c.local(size), hi = c.local(size), x = c.local(size);
+        emit(c, l, type);
+        c.var(BytecodeWriter.ISTORE + type, lo, size);
+        emit(c, r, type);
+        c.var(BytecodeWriter.ISTORE + type, hi, size);
+        emit(c, m, type);
+        c.var(BytecodeWriter.ISTORE + type, x, size);
+
+        // compute both comparisons
+        int c1 = c.local(1);
+        int slot = comparator(c, e, cmp, type != OBJECT);
+        c.var(BytecodeWriter.ILOAD + type, x, size);
+        widen(c, type, slot);
+        c.var(BytecodeWriter.ILOAD + type, lo, size);
+        widen(c, type, slot);
+        compare(c, type, slot);
+        c.var(BytecodeWriter.ISTORE, c1, 1);
+        comparator(c, e, cmp, type != OBJECT);
+        c.var(BytecodeWriter.ILOAD + type, x, size);
+        widen(c, type, slot);
+        c.var(BytecodeWriter.ILOAD + type, hi, size);
+        widen(c, type, slot);
+        compare(c, type, slot);
+
+        // test c2 (on the stack), then c1
+        Label isFalse = new Label();
+        boolean inLo = ( op == RangePredicate.IN_IN || op == RangePredicate.IN_EX );
+        boolean inHi = ( op == RangePredicate.IN_IN || op == RangePredicate.EX_IN );
+        c.jump(inHi ? BytecodeWriter.IFGT : BytecodeWriter.IFGE, isFalse, -1);
+        c.var(BytecodeWriter.ILOAD, c1, 1);
+        c.jump(inLo ? BytecodeWriter.IFLT : BytecodeWriter.IFLE, isFalse, -1);
+        emitResult(c, isFalse);
+        return true;
+    }
+
+    /**
+     * Push the comparator used by a predicate, unless it is the default
+     * comparator of a primitive comparison, which is compared inline.
+     * @return the comparator slot, or -1 for an inline comparison
+     */
+    private int comparator(Code c, Expression e, Comparator<?> cmp,
+                           boolean primitive)
+    {
+        if ( primitive && cmp == DefaultLiteralComparator.getInstance() ) {
+            m_key.append(" i");
+            return -1;
+        }
+        constant(c, OBJECT, e, cmp);
+        c.checkcast(primitive ? LITERAL_COMPARATOR : COMPARATOR);
+        return 0;
+    }
+
+    /**
+     * Widen an int value to a long for an inline comparison.
+     */
+    private static void widen(Code c, int type, int slot) {
+        if ( slot < 0 && type == INT )
+            c.op(BytecodeWriter.I2L, 1);
+    }
+
+    /**
+     * Compare the two values on the stack, leaving -1, 0, or 1 (or any
+     * result of a custom comparator) on the stack.
+     */
+    private static void compare(Code c, int type, int slot) {
+        if ( type == OBJECT ) {
+            c.invoke(BytecodeWriter.INVOKEINTERFACE, COMPARATOR, "compare",
+                     "(Ljava/lang/Object;Ljava/lang/Object;)I");
+        } else if ( slot >= 0 ) {
+            String d = DESCS[type];
+            c.invoke(BytecodeWriter.INVOKEINTERFACE, LITERAL_COMPARATOR,
+                     "compare", "("+d+d+")I");
+        } else if ( type == INT || type == LONG ) {
+            c.op(BytecodeWriter.LCMP, -3);
+        } else if ( type == FLOAT ) {
+            c.invoke(BytecodeWriter.INVOKESTATIC, "java/lang/Float",
+                     "compare", "(FF)I");
+        } else {
+            c.invoke(BytecodeWriter.INVOKESTATIC, "java/lang/Double",
+                     "compare", "(DD)I");
+        }
+    }
+
+} // end of class ExpressionCompiler
@@ -0,0 +1,499 @@
+package prefuse.data.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Date;
+
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.Table;
+import prefuse.data.column.BufferDoubleColumn;
+import prefuse.data.column.BufferFloatColumn;
+import prefuse.data.column.BufferIntColumn;
+import prefuse.data.column.BufferLongColumn;
+import prefuse.data.column.Column;
+import prefuse.data.column.ColumnFactory;
+
+/**
+ * TableReader for tables stored in the binary columnar format written by
+ * {@link BinaryTableWriter}. When reading from a file, the int, long,
+ * float, and double columns are memory-mapped rather than copied, so that
+ * even very large tables open quickly and the column data is shared
+ * through the operating system's page cache. Other columns are read into
+ * regular in-memory columns. When reading from a stream, fixed-width
+ * columns are copied into direct (off-heap) buffers.
+ *
+ * <p>By default, files are mapped in private (copy-on-write) mode, so the
+ * loaded table can be modified without changing the underlying file. In
+ * read-only mode, or if the file is not writable by this process, the
+ * files are mapped read-only. Mapped columns are then read-only, and
+ * attempts to modify them, or to add or remove rows, result in a
+ * {@link prefuse.data.DataReadOnlyException}. Rows are checked before any
+ * listeners are notified, so a rejected change leaves the table intact.</p>
+ */
+public class BinaryTableReader extends AbstractTableReader {
+
+    private boolean m_readOnly;
+
+    /**
+     * Create a new BinaryTableReader that maps files in private
+     * (copy-on-write) mode.
+     */
+    public BinaryTableReader() {
+        this(false);
+    }
+
+    /**
+     * Create a new BinaryTableReader.
+     * @param readOnly true to map files in read-only mode, false to map
+     * them in private (copy-on-write) mode
+     */
+    public BinaryTableReader(boolean readOnly) {
+        m_readOnly = readOnly;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Indicates if files are mapped in read-only mode.
+     * @return true if mapped columns are read-only, false if they are
+     * mapped in private (copy-on-write) mode
+     */
+    public boolean isReadOnly() {
+        return m_readOnly;
+    }
+
+    /**
+     * Sets if files are mapped in read-only mode.
+     * @param readOnly true to map files in read-only mode, false to map
+     * them in private (copy-on-write) mode
+     */
+    public void setReadOnly(boolean readOnly) {
+        m_readOnly = readOnly;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Read in a table from the given location. If the location names an
+     * existing file, the file is memory-mapped. Otherwise, the location is
+     * resolved as described in {@link AbstractTableReader} and read as a
+     * stream.
+     * @see prefuse.data.io.TableReader#readTable(java.lang.String)
+     */
+    public Table readTable(String location) throws DataIOException {
+        File f = new File(location);
+        if ( f.isFile() ) {
+            return readTable(f);
+        } else {
+            return super.readTable(location);
+        }
+    }
+
+    /**
+     * Read in a table from the given File, memory-mapping the fixed-width
+     * columns.
+     * @see prefuse.data.io.TableReader#readTable(java.io.File)
+     */
+    public Table readTable(File f) throws DataIOException {
+        RandomAccessFile raf = null;
+        try {
+            // private mappings require a channel opened for writing,
+            // although the file itself is never modified
+            boolean priv = !m_readOnly && f.canWrite();
+            raf = new RandomAccessFile(f, priv ? "rw" : "r");
+            FileChannel ch = raf.getChannel();
+            FileChannel.MapMode mode = ( priv
+                    ? FileChannel.MapMode.PRIVATE
+                    : FileChannel.MapMode.READ_ONLY );
+
+            // read the header
+            ByteBuffer b = ByteBuffer.allocate(16);
+            readFully(ch, b, 0);
+            checkFormat(b.getInt(0), b.getInt(4));
+            long pos = 8;
+            byte[] hdr = new byte[(int)b.getLong(8)];
+            readFully(ch, ByteBuffer.wrap(hdr), pos+8);
+            pos += 8 + hdr.length;
+            Header h = new Header(new DataInputStream(
+                    new ByteArrayInputStream(hdr)));
+
+            // read the valid rows
+            pos = align(pos);
+            long len = readLength(ch, pos);
+            byte[] bits = new byte[(int)len];
+            readFully(ch, ByteBuffer.wrap(bits), pos+8);
+            pos += 8 + len;
+            ColumnTable t = h.createTable(bits);
+
+            // read the columns
+            boolean mapped = false;
+            for ( int c=0; c<h.ncols; ++c ) {
+                pos = align(pos);
+                len = readLength(ch, pos);
+                Column col;
+                if ( BinaryTableWriter.getWidth(h.enc[c]) > 0 ) {
+                    if ( len > Integer.MAX_VALUE ) {
+                        throw new DataIOException(
+                            "Column too large for a single buffer: "+len);
+                    }
+                    ByteBuffer buf = ch.map(mode, pos+8, len);
+                    col = h.createColumn(c, buf);
+                    mapped = true;
+                } else {
+                    ch.position(pos+8);
+                    DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(Channels.newInputStream(ch)));
+                    col = h.readColumn(c, in);
+                }
+                t.addStoredColumn(h.names[c], col);
+                pos += 8 + len;
+            }
+            t.setReadOnly(mapped && !priv);
+            return t;
+        } catch ( IOException e ) {
+            throw new DataIOException(e);
+        } catch ( ClassNotFoundException e ) {
+            throw new DataIOException(e);
+        } finally {
+            // mapped buffers remain valid after the file is closed
+            if ( raf != null ) {
+                try { raf.close(); } catch ( IOException e ) { }
+            }
+        }
+    }
+
+    /**
+     * Read in a table from the given InputStream, copying fixed-width
+     * columns into direct buffers.
+     * @see prefuse.data.io.TableReader#readTable(java.io.InputStream)
+     */
+    public Table readTable(InputStream is) throws DataIOException {
+        try {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(is, 1<<16));
+            checkFormat(in.readInt(), in.readInt());
+            long pos = 8;
+            byte[] hdr = new byte[(int)in.readLong()];
+            in.readFully(hdr);
+            pos += 8 + hdr.length;
+            Header h = new Header(new DataInputStream(
+                    new ByteArrayInputStream(hdr)));
+
+            // read the valid rows
+            pos = skip(in, pos);
+            long len = in.readLong();
+            byte[] bits = new byte[(int)len];
+            in.readFully(bits);
+            pos += 8 + len;
+            ColumnTable t = h.createTable(bits);
+
+            // read the columns
+            byte[] chunk = new byte[1<<16];
+            for ( int c=0; c<h.ncols; ++c ) {
+                pos = skip(in, pos);
+                len = in.readLong();
+                Column col;
+                if ( BinaryTableWriter.getWidth(h.enc[c]) > 0 ) {
+                    if ( len > Integer.MAX_VALUE ) {
+                        throw new DataIOException(
+                            "Column too large for a single buffer: "+len);
+                    }
+                    ByteBuffer buf = ByteBuffer.allocateDirect((int)len);
+                    for ( long rem=len; rem > 0; ) {
+                        int n = (int)Math.min(rem, chunk.length);
+                        in.readFully(chunk, 0, n);
+                        buf.put(chunk, 0, n);
+                        rem -= n;
+                    }
+                    col = h.createColumn(c, buf);
+                } else {
+                    SectionInputStream sec = new SectionInputStream(in, len);
+                    col = h.readColumn(c, new DataInputStream(sec));
+                    sec.close();
+                }
+                t.addStoredColumn(h.names[c], col);
+                pos += 8 + len;
+            }
+            return t;
+        } catch ( IOException e ) {
+            throw new DataIOException(e);
+        } catch ( ClassNotFoundException e ) {
+            throw new DataIOException(e);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static void checkFormat(int magic, int version)
+        throws DataIOException
+    {
+        if ( magic != BinaryTableWriter.MAGIC ) {
+            throw new DataIOException("Not a binary table file.");
+        } else if ( version != BinaryTableWriter.VERSION ) {
+            throw new DataIOException(
+                "Unsupported binary table version: "+version);
+        }
+    }
+
+    private static long align(long pos) {
+        int a = BinaryTableWriter.ALIGN;
+        return (pos + a - 1) / a * a;
+    }
+
+    private static long skip(DataInputStream in, long pos) throws IOException {
+        long next = align(pos);
+        in.skipBytes((int)(next-pos));
+        return next;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer b, long pos)
+        throws IOException
+    {
+        while ( b.hasRemaining() ) {
+            int n = ch.read(b, pos);
+            if ( n < 0 ) throw new EOFException();
+            pos += n;
+        }
+    }
+
+    private static long readLength(FileChannel ch, long pos)
+        throws IOException
+    {
+        ByteBuffer b = ByteBuffer.allocate(8);
+        readFully(ch, b, pos);
+        return b.getLong(0);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * The table metadata stored in the file header.
+     */
+    private static class Header {
+        int nrows;
+        int ncols;
+        String[] names;
+        Class<?>[] types;
+        byte[] enc;
+        Object[] dflts;
+
+        Header(DataInputStream in) throws IOException, ClassNotFoundException {
+            nrows = in.readInt();
+            ncols = in.readInt();
+            names = new String[ncols];
+            types = new Class<?>[ncols];
+            enc = new byte[ncols];
+            dflts = new Object[ncols];
+            for ( int c=0; c<ncols; ++c ) {
+                names[c] = in.readUTF();
+                String type = in.readUTF();
+                enc[c] = in.readByte();
+                types[c] = getType(enc[c], type);
+                dflts[c] = readValue(in, enc[c]);
+            }
+        }
+
+        /**
+         * Create an empty table with the stored rows.
+         */
+        ColumnTable createTable(byte[] bits) {
+            ColumnTable t = new ColumnTable(nrows, ncols);
+            if ( bits.length > 0 ) {
+                for ( int r=0; r<nrows; ++r ) {
+                    if ( (bits[r>>3] & (1 << (r & 7))) == 0 )
+                        t.removeRow(r);
+                }
+            }
+            return t;
+        }
+
+        /**
+         * Create a fixed-width column backed by the given buffer.
+         */
+        Column createColumn(int c, ByteBuffer buf) {
+            buf.order(ByteOrder.BIG_ENDIAN);
+            Number d = (Number)dflts[c];
+            switch ( enc[c] ) {
+            case BinaryTableWriter.INT:
+                return new BufferIntColumn(buf, nrows, d.intValue());
+            case BinaryTableWriter.LONG:
+                return new BufferLongColumn(buf, nrows, d.longValue());
+            case BinaryTableWriter.FLOAT:
+                return new BufferFloatColumn(buf, nrows, d.floatValue());
+            default:
+                return new BufferDoubleColumn(buf, nrows, d.doubleValue());
+            }
+        }
+
+        /**
+         * Read a variable-width column from the given section stream.
+         */
+        Column readColumn(int c, DataInputStream in)
+            throws IOException, ClassNotFoundException
+        {
+            Column col = ColumnFactory.getColumn(types[c], nrows, dflts[c]);
+            if ( enc[c] == BinaryTableWriter.OBJECT ) {
+                ObjectInputStream ois = new ObjectInputStream(in);
+                for ( int r=0; r<nrows; ++r )
+                    col.set(ois.readObject(), r);
+            } else if ( enc[c] == BinaryTableWriter.DATE ) {
+                for ( int r=0; r<nrows; ++r )
+                    col.setLong(in.readLong(), r);
+            } else {
+                for ( int r=0; r<nrows; ++r )
+                    col.set(readValue(in, enc[c]), r);
+            }
+            return col;
+        }
+    }
+
+    /**
+     * Resolve the column type for the given encoding and type name.
+     */
+    private static Class<?> getType(byte encoding, String name)
+        throws ClassNotFoundException
+    {
+        switch ( encoding ) {
+        case BinaryTableWriter.INT:     return int.class;
+        case BinaryTableWriter.LONG:    return long.class;
+        case BinaryTableWriter.FLOAT:   return float.class;
+        case BinaryTableWriter.DOUBLE:  return double.class;
+        case BinaryTableWriter.BOOLEAN: return boolean.class;
+        case BinaryTableWriter.BYTE:    return byte.class;
+        default:                        return Class.forName(name);
+        }
+    }
+
+    /**
+     * Read a single value in the given encoding.
+     */
+    private static Object readValue(DataInputStream in, byte encoding)
+        throws IOException, ClassNotFoundException
+    {
+        switch ( encoding ) {
+        case BinaryTableWriter.INT:
+            return Integer.valueOf(in.readInt());
+        case BinaryTableWriter.LONG:
+            return Long.valueOf(in.readLong());
+        case BinaryTableWriter.FLOAT:
+            return Float.valueOf(in.readFloat());
+        case BinaryTableWriter.DOUBLE:
+            return Double.valueOf(in.readDouble());
+        case BinaryTableWriter.BOOLEAN:
+            return ( in.readBoolean() ? Boolean.TRUE : Boolean.FALSE );
+        case BinaryTableWriter.BYTE:
+            return Byte.valueOf(in.readByte());
+        case BinaryTableWriter.DATE:
+            return new Date(in.readLong());
+        case BinaryTableWriter.STRING:
+            byte[] s = readBytes(in);
+            return ( s==null ? null : new String(s, "UTF-8") );
+        default:
+            byte[] b = readBytes(in);
+            if ( b == null ) return null;
+            ObjectInputStream ois = new ObjectInputStream(
+                    new ByteArrayInputStream(b));
+            return ois.readObject();
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if ( len < 0 ) return null;
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return b;
+    }
+
+    /**
+     * Input stream limited to a single section of the underlying stream,
+     * so that section readers can not consume data past the section end.
+     * The remainder of the section is skipped when the stream is closed.
+     */
+    private static class SectionInputStream extends InputStream {
+        private InputStream m_in;
+        private long m_remaining;
+
+        SectionInputStream(InputStream in, long len) {
+            m_in = in;
+            m_remaining = len;
+        }
+        public int read() throws IOException {
+            if ( m_remaining <= 0 ) return -1;
+            int b = m_in.read();
+            if ( b >= 0 ) --m_remaining;
+            return b;
+        }
+        public int read(byte[] b, int off, int len) throws IOException {
+            if ( m_remaining <= 0 ) return -1;
+            int n = m_in.read(b, off, (int)Math.min(len, m_remaining));
+            if ( n > 0 ) m_remaining -= n;
+            return n;
+        }
+        public void close() throws IOException {
+            while ( m_remaining > 0 ) {
+                long n = m_in.skip(m_remaining);
+                if ( n <= 0 ) {
+                    if ( m_in.read() < 0 ) throw new EOFException();
+                    n = 1;
+                }
+                m_remaining -= n;
+            }
+        }
+    }
+
+    /**
+     * Table allowing the reader to add the pre-built columns it reads.
+     * Once marked read-only, rows can no longer be added or removed; such
+     * changes are rejected before any listeners are notified, as the
+     * mapped columns could neither grow nor revert the affected rows.
+     */
+    private static class ColumnTable extends Table {
+        private boolean m_readOnly = false;
+        
+        ColumnTable(int nrows, int ncols) {
+            super(nrows, ncols);
+        }
+        void addStoredColumn(String name, Column col) {
+            addColumn(name, col);
+        }
+        void setReadOnly(boolean readOnly) {
+            m_readOnly = readOnly;
+        }
+        private void checkWritable() {
+            if ( m_readOnly ) {
+                throw new DataReadOnlyException(
+                    "Rows of a read-only mapped table can not be changed.");
+            }
+        }
+        public int addRow() {
+            checkWritable();
+            return super.addRow();
+        }
+        public void addRows(int nrows) {
+            checkWritable();
+            super.addRows(nrows);
+        }
+        public int addRows(String[] fields, Object[] data) {
+            checkWritable();
+            return super.addRows(fields, data);
+        }
+        public boolean removeRow(int row) {
+            if ( isValidRow(row) )
+                checkWritable();
+            return super.removeRow(row);
+        }
+    }
+
+} // end of class BinaryTableReader
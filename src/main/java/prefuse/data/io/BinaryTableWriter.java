@@ -0,0 +1,342 @@
+package prefuse.data.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Date;
+
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+
+/**
+ * TableWriter that writes tables in a binary columnar format that can be
+ * memory-mapped by a {@link BinaryTableReader}. All values are written in
+ * big-endian byte order. The file layout is:
+ *
+ * <pre>
+ * int     magic number (0x50465442)
+ * int     format version
+ * long    header length, followed by the header:
+ *           int   number of rows (the table's maximum row + 1)
+ *           int   number of columns
+ *           for each column:
+ *             UTF   column name
+ *             UTF   column type, as a Java class name
+ *             byte  value encoding
+ *             value default value, in the column encoding
+ * section valid row bitmap, or empty if all rows are valid
+ * section one per column, holding the value of every row
+ * </pre>
+ *
+ * <p>Each section begins at an offset that is a multiple of eight bytes
+ * with a long giving the section length, followed by the section data.
+ * Columns of type int, long, float, and double are written as contiguous
+ * arrays of fixed-width values, which the reader maps directly into
+ * {@link prefuse.data.column.BufferColumn} instances. Boolean, byte, Date,
+ * and String columns are written as sequences of values and copied into
+ * regular columns when read. Columns of other types are written using Java
+ * serialization, and so must hold Serializable values.</p>
+ *
+ * <p>Invalid (deleted) rows are written using the column default value.
+ * Derived columns, such as expression columns, are written as their
+ * current values. The data of non-fixed-width columns is buffered in
+ * memory one column at a time before being written.</p>
+ */
+public class BinaryTableWriter extends AbstractTableWriter {
+
+    /** Magic number identifying the binary table format. */
+    public static final int MAGIC = 0x50465442;
+    /** The version of the binary table format written by this class. */
+    public static final int VERSION = 1;
+
+    // value encodings
+    static final byte INT     = 1;
+    static final byte LONG    = 2;
+    static final byte FLOAT   = 3;
+    static final byte DOUBLE  = 4;
+    static final byte BOOLEAN = 5;
+    static final byte BYTE    = 6;
+    static final byte DATE    = 7;
+    static final byte STRING  = 8;
+    static final byte OBJECT  = 9;
+
+    /** Alignment of section data, in bytes. */
+    static final int ALIGN = 8;
+
+    private long m_pos; // number of bytes written so far
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Write a table to the given File. The file is closed once the table
+     * has been written.
+     * @see prefuse.data.io.TableWriter#writeTable(prefuse.data.Table, java.io.File)
+     */
+    public void writeTable(Table table, File f) throws DataIOException {
+        OutputStream os = null;
+        try {
+            os = new FileOutputStream(f);
+            writeTable(table, os);
+        } catch ( FileNotFoundException e ) {
+            throw new DataIOException(e);
+        } finally {
+            if ( os != null ) {
+                try { os.close(); } catch ( IOException e ) { }
+            }
+        }
+    }
+
+    /**
+     * @see prefuse.data.io.TableWriter#writeTable(prefuse.data.Table, java.io.OutputStream)
+     */
+    public void writeTable(Table table, OutputStream os) throws DataIOException {
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(os, 1<<16));
+            int nrows = table.getMaximumRow() + 1;
+            int ncols = table.getColumnCount();
+
+            // write the header
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            DataOutputStream hdr = new DataOutputStream(buf);
+            byte[] enc = new byte[ncols];
+            hdr.writeInt(nrows);
+            hdr.writeInt(ncols);
+            for ( int c=0; c<ncols; ++c ) {
+                Column col = table.getColumn(c);
+                enc[c] = getEncoding(col.getColumnType());
+                hdr.writeUTF(table.getColumnName(c));
+                hdr.writeUTF(col.getColumnType().getName());
+                hdr.writeByte(enc[c]);
+                writeValue(hdr, enc[c], col.getDefaultValue());
+            }
+            hdr.flush();
+
+            m_pos = 0;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            m_pos += 8;
+            writeSection(out, buf);
+
+            // write the valid rows
+            buf.reset();
+            if ( table.getRowCount() < nrows ) {
+                byte[] bits = new byte[(nrows+7)/8];
+                for ( int r=0; r<nrows; ++r ) {
+                    if ( table.isValidRow(r) )
+                        bits[r>>3] |= (1 << (r & 7));
+                }
+                buf.write(bits);
+            }
+            writeSection(out, buf);
+
+            // write the columns
+            for ( int c=0; c<ncols; ++c ) {
+                int width = getWidth(enc[c]);
+                if ( width > 0 ) {
+                    pad(out);
+                    long len = (long)nrows * width;
+                    out.writeLong(len);
+                    writeFixed(out, table, c, enc[c], nrows);
+                    m_pos += 8 + len;
+                } else {
+                    buf.reset();
+                    writeValues(buf, table, c, enc[c], nrows);
+                    writeSection(out, buf);
+                }
+            }
+            out.flush();
+        } catch ( IOException e ) {
+            throw new DataIOException(e);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the value encoding for the given column data type.
+     */
+    static byte getEncoding(Class<?> type) {
+        if ( type == int.class )
+            return INT;
+        else if ( type == long.class )
+            return LONG;
+        else if ( type == float.class )
+            return FLOAT;
+        else if ( type == double.class )
+            return DOUBLE;
+        else if ( type == boolean.class )
+            return BOOLEAN;
+        else if ( type == byte.class )
+            return BYTE;
+        else if ( Date.class.isAssignableFrom(type) )
+            return DATE;
+        else if ( type == String.class )
+            return STRING;
+        else
+            return OBJECT;
+    }
+
+    /**
+     * Get the width in bytes of values of the given encoding, or zero if
+     * the encoding does not use fixed-width values stored contiguously.
+     */
+    static int getWidth(byte encoding) {
+        switch ( encoding ) {
+        case INT:
+        case FLOAT:
+            return 4;
+        case LONG:
+        case DOUBLE:
+            return 8;
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Write padding bytes up to the next section boundary.
+     */
+    private void pad(DataOutputStream out) throws IOException {
+        while ( m_pos % ALIGN != 0 ) {
+            out.writeByte(0);
+            ++m_pos;
+        }
+    }
+
+    /**
+     * Write a length-prefixed section holding the contents of the buffer.
+     */
+    private void writeSection(DataOutputStream out, ByteArrayOutputStream buf)
+        throws IOException
+    {
+        pad(out);
+        out.writeLong(buf.size());
+        buf.writeTo(out);
+        m_pos += 8 + buf.size();
+    }
+
+    /**
+     * Write the contiguous values of a fixed-width column.
+     */
+    private void writeFixed(DataOutputStream out, Table table, int col,
+                            byte encoding, int nrows) throws IOException
+    {
+        Column column = table.getColumn(col);
+        Number dflt = (Number)column.getDefaultValue();
+        for ( int r=0; r<nrows; ++r ) {
+            int cr = ( table.isValidRow(r) ? table.getColumnRow(r, col) : -1 );
+            switch ( encoding ) {
+            case INT:
+                out.writeInt(cr<0 ? dflt.intValue() : column.getInt(cr));
+                break;
+            case LONG:
+                out.writeLong(cr<0 ? dflt.longValue() : column.getLong(cr));
+                break;
+            case FLOAT:
+                out.writeFloat(cr<0 ? dflt.floatValue() : column.getFloat(cr));
+                break;
+            case DOUBLE:
+                out.writeDouble(cr<0 ? dflt.doubleValue()
+                                     : column.getDouble(cr));
+                break;
+            }
+        }
+    }
+
+    /**
+     * Write the values of a variable-width column to the buffer.
+     */
+    private void writeValues(ByteArrayOutputStream buf, Table table, int col,
+                             byte encoding, int nrows) throws IOException
+    {
+        Object dflt = table.getColumn(col).getDefaultValue();
+        if ( encoding == OBJECT ) {
+            ObjectOutputStream out = new ObjectOutputStream(buf);
+            for ( int r=0; r<nrows; ++r ) {
+                out.writeObject(get(table, r, col, dflt));
+                if ( r % 1024 == 0 ) out.reset(); // bound the handle table
+            }
+            out.flush();
+        } else {
+            DataOutputStream out = new DataOutputStream(buf);
+            for ( int r=0; r<nrows; ++r ) {
+                writeValue(out, encoding,
+                           get(table, r, col, dflt));
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Get a table value, or the default value if the row is not valid.
+     */
+    private static Object get(Table table, int row, int col, Object dflt) {
+        return ( table.isValidRow(row) ? table.get(row, col) : dflt );
+    }
+
+    /**
+     * Write a single value in the given encoding.
+     */
+    static void writeValue(DataOutputStream out, byte encoding, Object val)
+        throws IOException
+    {
+        switch ( encoding ) {
+        case INT:
+            out.writeInt(val==null ? 0 : ((Number)val).intValue());
+            break;
+        case LONG:
+            out.writeLong(val==null ? 0L : ((Number)val).longValue());
+            break;
+        case FLOAT:
+            out.writeFloat(val==null ? 0f : ((Number)val).floatValue());
+            break;
+        case DOUBLE:
+            out.writeDouble(val==null ? 0.0 : ((Number)val).doubleValue());
+            break;
+        case BOOLEAN:
+            out.writeBoolean(val!=null && ((Boolean)val).booleanValue());
+            break;
+        case BYTE:
+            out.writeByte(val==null ? 0 : ((Number)val).byteValue());
+            break;
+        case DATE:
+            out.writeLong(val==null ? 0L : ((Date)val).getTime());
+            break;
+        case STRING:
+            writeBytes(out, val==null ? null : ((String)val).getBytes("UTF-8"));
+            break;
+        default:
+            byte[] b = null;
+            if ( val != null ) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                ObjectOutputStream oos = new ObjectOutputStream(bos);
+                oos.writeObject(val);
+                oos.close();
+                b = bos.toByteArray();
+            }
+            writeBytes(out, b);
+        }
+    }
+
+    /**
+     * Write a length-prefixed byte array, using a length of -1 for null.
+     */
+    private static void writeBytes(DataOutputStream out, byte[] b)
+        throws IOException
+    {
+        if ( b == null ) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(b.length);
+            out.write(b);
+        }
+    }
+
+} // end of class BinaryTableWriter
@@ -0,0 +1,364 @@
+package prefuse.data.util;
+
+import prefuse.data.Graph;
+import prefuse.data.Table;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.GraphListener;
+import prefuse.util.collections.CompositeIntIterator;
+import prefuse.util.collections.IntArrayIterator;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * <p>Read-only snapshot of the adjacency structure of a
+ * {@link prefuse.data.Graph}, stored in compressed sparse row (CSR) form.
+ * For both the out-links and the in-links of the graph, an offset array
+ * indexed by node id (node table row number) delimits each node's range
+ * within a pair of flat arrays holding the incident edge ids and the
+ * adjacent node ids. Traversals can then walk contiguous arrays instead of
+ * looking up a separate adjacency array for each node in the graph's link
+ * table, and need not resolve edge endpoints through the edge table.</p>
+ *
+ * <p>The undirected adjacency of a node consists of its out-links followed
+ * by its in-links, matching the order used by
+ * {@link prefuse.data.Graph#edgeRows(int, int)}.</p>
+ *
+ * <p>The snapshot is stored in addition to the graph's link table, which
+ * remains the primary adjacency store, so it adds about four ints per edge
+ * and two per node to the memory used by the graph.</p>
+ *
+ * <p>The snapshot listens for changes to the graph structure, and is
+ * rebuilt lazily upon the next query after a change. Each rebuild
+ * allocates new arrays, so arrays and iterators obtained earlier remain a
+ * consistent (if stale) view of the graph.</p>
+ */
+public class AdjacencySnapshot implements GraphListener {
+
+    private static final int[] EMPTY = new int[0];
+
+    private Graph   m_graph;
+    private boolean m_valid = false;
+
+    private int[] m_outOffsets = new int[1];
+    private int[] m_outEdges   = EMPTY;
+    private int[] m_outNodes   = EMPTY;
+    private int[] m_inOffsets  = new int[1];
+    private int[] m_inEdges    = EMPTY;
+    private int[] m_inNodes    = EMPTY;
+
+    /**
+     * Create a new AdjacencySnapshot of the given graph.
+     * @param g the Graph to take a snapshot of
+     */
+    public AdjacencySnapshot(Graph g) {
+        m_graph = g;
+        m_graph.addGraphModelListener(this);
+    }
+
+    /**
+     * Stop listening to the graph. Once disposed, the snapshot no longer
+     * tracks changes to the graph and should not be used.
+     */
+    public void dispose() {
+        m_graph.removeGraphModelListener(this);
+        m_valid = false;
+    }
+
+    /**
+     * Get the Graph this is a snapshot of.
+     * @return the backing Graph
+     */
+    public Graph getGraph() {
+        return m_graph;
+    }
+
+    /**
+     * Indicates if the snapshot is currently up to date with the graph
+     * structure. Queries on an invalid snapshot will first rebuild it.
+     * @return true if the snapshot is valid, false if it needs rebuilding
+     */
+    public boolean isValid() {
+        return m_valid;
+    }
+
+    /**
+     * Mark the snapshot as invalid, causing it to be rebuilt upon the next
+     * query.
+     */
+    public void invalidate() {
+        m_valid = false;
+    }
+
+    // ------------------------------------------------------------------------
+    // Snapshot Construction
+
+    /**
+     * Rebuild the snapshot from the graph's current adjacency lists.
+     */
+    public void index() {
+        Graph g = m_graph;
+        Table nodes = g.getNodeTable();
+        int n = nodes.getMaximumRow() + 1;
+
+        // compute the offsets from the node degrees
+        int[] outOffsets = new int[n+1];
+        int[] inOffsets = new int[n+1];
+        for ( IntIterator rows = nodes.rows(); rows.hasNext(); ) {
+            int r = rows.nextInt();
+            outOffsets[r+1] = g.getOutDegree(r);
+            inOffsets[r+1] = g.getInDegree(r);
+        }
+        for ( int i=0; i<n; ++i ) {
+            outOffsets[i+1] += outOffsets[i];
+            inOffsets[i+1] += inOffsets[i];
+        }
+
+        // copy the edges and resolve the adjacent nodes
+        int[] outEdges = new int[outOffsets[n]];
+        int[] outNodes = new int[outOffsets[n]];
+        int[] inEdges = new int[inOffsets[n]];
+        int[] inNodes = new int[inOffsets[n]];
+        for ( IntIterator rows = nodes.rows(); rows.hasNext(); ) {
+            int r = rows.nextInt();
+            int k = outOffsets[r];
+            for ( IntIterator edges = g.outEdgeRows(r); edges.hasNext(); ) {
+                int e = edges.nextInt();
+                outEdges[k] = e;
+                outNodes[k++] = g.getTargetNode(e);
+            }
+            k = inOffsets[r];
+            for ( IntIterator edges = g.inEdgeRows(r); edges.hasNext(); ) {
+                int e = edges.nextInt();
+                inEdges[k] = e;
+                inNodes[k++] = g.getSourceNode(e);
+            }
+        }
+
+        m_outOffsets = outOffsets; m_outEdges = outEdges; m_outNodes = outNodes;
+        m_inOffsets  = inOffsets;  m_inEdges  = inEdges;  m_inNodes  = inNodes;
+        m_valid = true;
+    }
+
+    private void check() {
+        if ( !m_valid ) index();
+    }
+
+    // ------------------------------------------------------------------------
+    // Graph Listener
+
+    /**
+     * Invalidates the snapshot when nodes or edges are added or removed,
+     * or when an edge's source or target key, or a node's key, is updated.
+     * @see prefuse.data.event.GraphListener#graphChanged(prefuse.data.Graph, java.lang.String, int, int, int, int)
+     */
+    public void graphChanged(Graph g, String table,
+            int start, int end, int col, int type)
+    {
+        if ( m_valid && isStructureChange(g, table, col, type) )
+            m_valid = false;
+    }
+
+    /**
+     * Indicates if a graph change event may change the graph structure.
+     * This is the case for node and edge inserts and deletes, and for
+     * updates to an edge's source or target key, or to a node's key.
+     * Updates to all other data fields leave the structure unchanged.
+     * @param g the Graph that changed
+     * @param table the name of the changed table, {@link Graph#NODES} or
+     * {@link Graph#EDGES}
+     * @param col the changed column, or
+     * {@link EventConstants#ALL_COLUMNS}
+     * @param type the event type
+     * @return true if the graph structure may have changed
+     */
+    static boolean isStructureChange(Graph g, String table, int col, int type)
+    {
+        if ( type != EventConstants.UPDATE
+                || col == EventConstants.ALL_COLUMNS )
+            return true;
+
+        // only changes to the linkage fields affect the structure
+        String field;
+        if ( Graph.EDGES.equals(table) ) {
+            field = g.getEdgeTable().getColumnName(col);
+            return field.equals(g.getEdgeSourceField()) ||
+                   field.equals(g.getEdgeTargetField());
+        } else if ( g.getNodeKeyField() != null ) {
+            field = g.getNodeTable().getColumnName(col);
+            return field.equals(g.getNodeKeyField());
+        }
+        return false;
+    }
+
+    // ------------------------------------------------------------------------
+    // Raw Arrays
+
+    /**
+     * Get the offset array for the given direction. The adjacency of node
+     * <code>n</code> occupies the range from <code>offsets[n]</code>
+     * (inclusive) to <code>offsets[n+1]</code> (exclusive) of the edge and
+     * node arrays. The returned array must not be modified.
+     * @param direction {@link prefuse.data.Graph#OUTEDGES} or
+     * {@link prefuse.data.Graph#INEDGES}
+     * @return the offset array, of length one greater than the node
+     * capacity of the snapshot
+     */
+    public int[] getOffsets(int direction) {
+        check();
+        return ( direction == Graph.INEDGES ? m_inOffsets : m_outOffsets );
+    }
+
+    /**
+     * Get the edge id array for the given direction. The returned array
+     * must not be modified.
+     * @param direction {@link prefuse.data.Graph#OUTEDGES} or
+     * {@link prefuse.data.Graph#INEDGES}
+     * @return the array of edge ids, grouped by node
+     * @see #getOffsets(int)
+     */
+    public int[] getEdges(int direction) {
+        check();
+        return ( direction == Graph.INEDGES ? m_inEdges : m_outEdges );
+    }
+
+    /**
+     * Get the adjacent node id array for the given direction. For out-links
+     * these are the edge targets, and for in-links the edge sources. The
+     * returned array must not be modified.
+     * @param direction {@link prefuse.data.Graph#OUTEDGES} or
+     * {@link prefuse.data.Graph#INEDGES}
+     * @return the array of adjacent node ids, grouped by node
+     * @see #getOffsets(int)
+     */
+    public int[] getNodes(int direction) {
+        check();
+        return ( direction == Graph.INEDGES ? m_inNodes : m_outNodes );
+    }
+
+    // ------------------------------------------------------------------------
+    // Queries
+
+    /**
+     * Get the number of node ids covered by the snapshot, one more than
+     * the largest node id in the graph when the snapshot was built.
+     * @return the node capacity of the snapshot
+     */
+    public int getNodeCapacity() {
+        check();
+        return m_outOffsets.length - 1;
+    }
+
+    /**
+     * Get the degree of a node.
+     * @param node a node id (node table row number)
+     * @param direction one of {@link prefuse.data.Graph#INEDGES},
+     * {@link prefuse.data.Graph#OUTEDGES}, or
+     * {@link prefuse.data.Graph#UNDIRECTED}
+     * @return the number of incident edges in the given direction
+     */
+    public int getDegree(int node, int direction) {
+        check();
+        if ( node < 0 || node >= m_outOffsets.length-1 )
+            return 0;
+        int od = m_outOffsets[node+1] - m_outOffsets[node];
+        int id = m_inOffsets[node+1] - m_inOffsets[node];
+        switch ( direction ) {
+        case Graph.OUTEDGES:
+            return od;
+        case Graph.INEDGES:
+            return id;
+        case Graph.UNDIRECTED:
+            return od + id;
+        default:
+            throw new IllegalArgumentException(
+                    "Unrecognized edge type: " + direction);
+        }
+    }
+
+    /**
+     * Get an incident edge of a node.
+     * @param node a node id (node table row number)
+     * @param direction one of {@link prefuse.data.Graph#INEDGES},
+     * {@link prefuse.data.Graph#OUTEDGES}, or
+     * {@link prefuse.data.Graph#UNDIRECTED}
+     * @param i the index of the edge, less than the node's degree in the
+     * given direction
+     * @return the edge id (edge table row number)
+     */
+    public int getEdge(int node, int direction, int i) {
+        check();
+        if ( direction == Graph.INEDGES )
+            return m_inEdges[m_inOffsets[node]+i];
+        int od = m_outOffsets[node+1] - m_outOffsets[node];
+        if ( direction == Graph.UNDIRECTED && i >= od )
+            return m_inEdges[m_inOffsets[node]+i-od];
+        return m_outEdges[m_outOffsets[node]+i];
+    }
+
+    /**
+     * Get the node at the other end of an incident edge of a node.
+     * @param node a node id (node table row number)
+     * @param direction one of {@link prefuse.data.Graph#INEDGES},
+     * {@link prefuse.data.Graph#OUTEDGES}, or
+     * {@link prefuse.data.Graph#UNDIRECTED}
+     * @param i the index of the edge, less than the node's degree in the
+     * given direction
+     * @return the adjacent node id (node table row number)
+     */
+    public int getNeighbor(int node, int direction, int i) {
+        check();
+        if ( direction == Graph.INEDGES )
+            return m_inNodes[m_inOffsets[node]+i];
+        int od = m_outOffsets[node+1] - m_outOffsets[node];
+        if ( direction == Graph.UNDIRECTED && i >= od )
+            return m_inNodes[m_inOffsets[node]+i-od];
+        return m_outNodes[m_outOffsets[node]+i];
+    }
+
+    /**
+     * Get an iterator over the incident edges of a node.
+     * @param node a node id (node table row number)
+     * @param direction one of {@link prefuse.data.Graph#INEDGES},
+     * {@link prefuse.data.Graph#OUTEDGES}, or
+     * {@link prefuse.data.Graph#UNDIRECTED}
+     * @return an iterator over edge ids (edge table row numbers)
+     */
+    public IntIterator edgeRows(int node, int direction) {
+        return rows(node, direction, true);
+    }
+
+    /**
+     * Get an iterator over the adjacent nodes of a node.
+     * @param node a node id (node table row number)
+     * @param direction one of {@link prefuse.data.Graph#INEDGES},
+     * {@link prefuse.data.Graph#OUTEDGES}, or
+     * {@link prefuse.data.Graph#UNDIRECTED}
+     * @return an iterator over node ids (node table row numbers)
+     */
+    public IntIterator neighborRows(int node, int direction) {
+        return rows(node, direction, false);
+    }
+
+    private IntIterator rows(int node, int direction, boolean edges) {
+        check();
+        int[] out = ( edges ? m_outEdges : m_outNodes );
+        int[] in  = ( edges ? m_inEdges  : m_inNodes  );
+        if ( node < 0 || node >= m_outOffsets.length-1 )
+            return new IntArrayIterator(EMPTY, 0, 0);
+        int os = m_outOffsets[node], od = m_outOffsets[node+1] - os;
+        int is = m_inOffsets[node],  id = m_inOffsets[node+1] - is;
+        switch ( direction ) {
+        case Graph.OUTEDGES:
+            return new IntArrayIterator(out, os, od);
+        case Graph.INEDGES:
+            return new IntArrayIterator(in, is, id);
+        case Graph.UNDIRECTED:
+            return new CompositeIntIterator(
+                new IntArrayIterator(out, os, od),
+                new IntArrayIterator(in, is, id));
+        default:
+            throw new IllegalArgumentException(
+                    "Unrecognized edge type: " + direction);
+        }
+    }
+
+} // end of class AdjacencySnapshot
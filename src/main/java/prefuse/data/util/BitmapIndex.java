@@ -0,0 +1,528 @@
+package prefuse.data.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.event.ColumnListener;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.TableListener;
+import prefuse.util.collections.DefaultLiteralComparator;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * Index instance that keeps a bitmap of table rows for each distinct value
+ * of a data column. Bitmap indices are intended for boolean and other
+ * low-cardinality columns, such as the visibility and validation flags of
+ * a {@link prefuse.visual.VisualTable}. Besides the standard index queries,
+ * the row bitmaps can be retrieved directly, allowing predicates over
+ * multiple indexed columns to be answered with bitset operations (see
+ * {@link FilterIteratorFactory}).
+ */
+public class BitmapIndex implements Index, ColumnListener, TableListener {
+
+    protected Table      m_table;
+    protected RowManager m_rows;
+    protected Column     m_col;
+    protected Comparator<Object> m_cmp;
+    protected HashMap<Object,BitSet> m_bitmaps = new HashMap<Object,BitSet>();
+    protected BitSet     m_all = new BitSet();
+    protected boolean    m_reindex;
+    protected int        m_colidx;
+
+    private Object[] m_keys; // distinct values in sorted order
+
+    /**
+     * Create a new BitmapIndex.
+     * @param t the Table containing the data column to index
+     * @param rows the RowManager of the Table
+     * @param col the Column instance to index
+     * @param cmp the Comparator to use to sort data values, or null to
+     * use the default comparator
+     */
+    @SuppressWarnings("unchecked")
+    public BitmapIndex(Table t, RowManager rows, Column col,
+                       Comparator<?> cmp)
+    {
+        m_table = t;
+        m_rows = rows;
+        m_col = col;
+        m_cmp = (Comparator<Object>)( cmp == null
+            ? DefaultLiteralComparator.getInstance() : cmp );
+        index();
+
+        m_col.addColumnListener(this);
+        m_table.addTableListener(this);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#dispose()
+     */
+    public void dispose() {
+        m_col.removeColumnListener(this);
+        m_table.removeTableListener(this);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#getComparator()
+     */
+    public Comparator<Object> getComparator() {
+        return m_cmp;
+    }
+
+    /**
+     * @see prefuse.data.util.Index#size()
+     */
+    public int size() {
+        validate();
+        return m_all.cardinality();
+    }
+
+    private int getColumnIndex() {
+        if ( !(m_table.getColumn(m_colidx) == m_col) ) {
+            m_colidx = m_table.getColumnNumber(m_col);
+        }
+        return m_colidx;
+    }
+
+    /**
+     * Map a data value to the key under which it is stored. Numbers are
+     * converted to the column's data type, so that queries with a literal
+     * of a different numeric type find the matching rows.
+     */
+    private Object key(Object val) {
+        if ( !(val instanceof Number) ) return val;
+
+        Number n = (Number)val;
+        Class<?> type = m_col.getColumnType();
+        if ( type == int.class && !(val instanceof Integer) )
+            return Integer.valueOf(n.intValue());
+        else if ( type == long.class && !(val instanceof Long) )
+            return Long.valueOf(n.longValue());
+        else if ( type == float.class && !(val instanceof Float) )
+            return Float.valueOf(n.floatValue());
+        else if ( type == double.class && !(val instanceof Double) )
+            return Double.valueOf(n.doubleValue());
+        else
+            return val;
+    }
+
+    private void validate() {
+        if ( m_reindex ) index();
+    }
+
+    // ------------------------------------------------------------------------
+    // Index Update Methods
+
+    /**
+     * @see prefuse.data.util.Index#index()
+     */
+    public void index() {
+        m_bitmaps.clear();
+        m_all.clear();
+        m_keys = null;
+
+        // iterate over all valid values, adding them to the index
+        int idx = getColumnIndex();
+        m_colidx = idx;
+        IntIterator rows = m_rows.rows();
+        while ( rows.hasNext() ) {
+            int r = rows.nextInt();
+            add(m_col.get(m_table.getColumnRow(r,idx)), r);
+        }
+        m_reindex = false;
+    }
+
+    private void add(Object val, int row) {
+        Object key = key(val);
+        BitSet b = m_bitmaps.get(key);
+        if ( b == null ) {
+            b = new BitSet();
+            m_bitmaps.put(key, b);
+            m_keys = null;
+        }
+        b.set(row);
+        m_all.set(row);
+    }
+
+    private void remove(Object prev, int row) {
+        if ( !m_all.get(row) ) return; // row not indexed
+        Object key = key(prev);
+        BitSet b = m_bitmaps.get(key);
+        if ( b == null || !b.get(row) ) {
+            // previous value unknown, search all the bitmaps
+            for ( Iterator<Object> iter = m_bitmaps.keySet().iterator(); ; ) {
+                if ( !iter.hasNext() ) return;
+                key = iter.next();
+                b = m_bitmaps.get(key);
+                if ( b.get(row) ) break;
+            }
+        }
+        b.clear(row);
+        m_all.clear(row);
+        if ( b.isEmpty() ) {
+            m_bitmaps.remove(key);
+            m_keys = null;
+        }
+    }
+
+    private void update(Column src, int idx, Object prev) {
+        if ( m_reindex ) return; // will be rebuilt on next access
+        int row = m_rows.getTableRow(idx, getColumnIndex());
+        if ( row < 0 ) return; // invalid row value
+        remove(prev, row);
+        add(src.get(idx), row);
+    }
+
+    // ------------------------------------------------------------------------
+    // Listener Methods
+
+    /**
+     * @see prefuse.data.event.TableListener#tableChanged(prefuse.data.Table, int, int, int, int)
+     */
+    public void tableChanged(Table t, int start, int end, int col, int type) {
+        if ( type == EventConstants.UPDATE || t != m_table
+              || col != EventConstants.ALL_COLUMNS || m_reindex )
+            return;
+
+        int idx = getColumnIndex();
+        for ( int r=start; r<=end; ++r ) {
+            // deleted rows still hold their values when the event fires
+            Object val = m_col.get(m_rows.getColumnRow(r, idx));
+            if ( type == EventConstants.INSERT )
+                add(val, r);
+            else
+                remove(val, r);
+        }
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, int, int)
+     */
+    public void columnChanged(Column src, int type, int start, int end) {
+        m_reindex = true;
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, boolean)
+     */
+    public void columnChanged(Column src, int idx, boolean prev) {
+        update(src, idx, prev ? Boolean.TRUE : Boolean.FALSE);
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, int)
+     */
+    public void columnChanged(Column src, int idx, int prev) {
+        update(src, idx, Integer.valueOf(prev));
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, long)
+     */
+    public void columnChanged(Column src, int idx, long prev) {
+        update(src, idx, Long.valueOf(prev));
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, float)
+     */
+    public void columnChanged(Column src, int idx, float prev) {
+        update(src, idx, Float.valueOf(prev));
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, double)
+     */
+    public void columnChanged(Column src, int idx, double prev) {
+        update(src, idx, Double.valueOf(prev));
+    }
+
+    /**
+     * @see prefuse.data.event.ColumnListener#columnChanged(prefuse.data.column.Column, int, java.lang.Object)
+     */
+    public void columnChanged(Column src, int idx, Object prev) {
+        update(src, idx, prev);
+    }
+
+    // ------------------------------------------------------------------------
+    // Bitmap Retrieval Methods
+
+    /**
+     * Get the distinct values of the column in sorted order.
+     */
+    private Object[] keys() {
+        validate();
+        if ( m_keys == null ) {
+            m_keys = m_bitmaps.keySet().toArray();
+            Arrays.sort(m_keys, m_cmp);
+        }
+        return m_keys;
+    }
+
+    /**
+     * Indicates if a value lies within the given range. A null bound
+     * leaves that side of the range open.
+     */
+    private boolean inRange(Object v, Object lo, Object hi, int type) {
+        if ( lo != null ) {
+            int c = m_cmp.compare(v, lo);
+            if ( c < 0 || (c == 0 && (type & TYPE_LEFT_INCLUSIVE) == 0) )
+                return false;
+        }
+        if ( hi != null ) {
+            int c = m_cmp.compare(v, hi);
+            if ( c > 0 || (c == 0 && (type & TYPE_RIGHT_INCLUSIVE) == 0) )
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get a bitmap of all rows currently in the index.
+     * @return a new BitSet with a bit set for each indexed table row
+     */
+    public BitSet getRows() {
+        validate();
+        return (BitSet)m_all.clone();
+    }
+
+    /**
+     * Get a bitmap of the rows whose value equals the given value,
+     * according to this index's comparator.
+     * @param val the value to look up
+     * @return a new BitSet with a bit set for each matching table row
+     */
+    public BitSet getRows(Object val) {
+        validate();
+        val = key(val);
+        BitSet b = m_bitmaps.get(val);
+        if ( m_cmp == DefaultLiteralComparator.getInstance() ) {
+            return ( b == null ? new BitSet() : (BitSet)b.clone() );
+        }
+        BitSet rows = new BitSet();
+        Object[] keys = keys();
+        for ( int i=0; i<keys.length; ++i ) {
+            if ( m_cmp.compare(keys[i], val) == 0 )
+                rows.or(m_bitmaps.get(keys[i]));
+        }
+        return rows;
+    }
+
+    /**
+     * Get a bitmap of the rows whose value falls within the given range.
+     * @param lo the minimum range value, or null for no lower bound
+     * @param hi the maximum range value, or null for no upper bound
+     * @param type the index query type, indicating if the bounds are
+     * inclusive or exclusive (the sort order is ignored)
+     * @return a new BitSet with a bit set for each matching table row
+     */
+    public BitSet getRows(Object lo, Object hi, int type) {
+        lo = key(lo); hi = key(hi);
+        BitSet rows = new BitSet();
+        Object[] keys = keys();
+        for ( int i=0; i<keys.length; ++i ) {
+            if ( inRange(keys[i], lo, hi, type) )
+                rows.or(m_bitmaps.get(keys[i]));
+        }
+        return rows;
+    }
+
+    /**
+     * Return an iterator over the rows with values in the given range,
+     * ordered by value.
+     */
+    private IntIterator iterator(Object lo, Object hi, int type) {
+        lo = key(lo); hi = key(hi);
+        Object[] keys = keys();
+        BitSet[] bitmaps = new BitSet[keys.length];
+        int n = 0;
+
+        boolean reverse = (type & Index.TYPE_DESCENDING) > 0;
+        for ( int i=0; i<keys.length; ++i ) {
+            Object k = keys[reverse ? keys.length-1-i : i];
+            if ( inRange(k, lo, hi, type) )
+                bitmaps[n++] = m_bitmaps.get(k);
+        }
+        return new BitmapIterator(bitmaps, n);
+    }
+
+    private int first(Object key) {
+        BitSet b = m_bitmaps.get(key);
+        return ( b == null ? Integer.MIN_VALUE : b.nextSetBit(0) );
+    }
+
+    // ------------------------------------------------------------------------
+    // Retrieval Methods
+
+    /**
+     * @see prefuse.data.util.Index#minimum()
+     */
+    public int minimum() {
+        Object[] keys = keys();
+        return ( keys.length == 0 ? Integer.MIN_VALUE : first(keys[0]) );
+    }
+
+    /**
+     * @see prefuse.data.util.Index#maximum()
+     */
+    public int maximum() {
+        Object[] keys = keys();
+        return ( keys.length == 0 ? Integer.MIN_VALUE
+                                  : first(keys[keys.length-1]) );
+    }
+
+    /**
+     * @see prefuse.data.util.Index#median()
+     */
+    public int median() {
+        Object[] keys = keys();
+        int mid = m_all.cardinality() / 2;
+        for ( int i=0; i<keys.length; ++i ) {
+            BitSet b = m_bitmaps.get(keys[i]);
+            int r = b.nextSetBit(0);
+            for ( ; r>=0 && mid>0; r=b.nextSetBit(r+1), --mid );
+            if ( r >= 0 ) return r;
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * @see prefuse.data.util.Index#uniqueCount()
+     */
+    public int uniqueCount() {
+        validate();
+        return m_bitmaps.size();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * @see prefuse.data.util.Index#allRows(int)
+     */
+    public IntIterator allRows(int type) {
+        return iterator(null, null, type);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(java.lang.Object, java.lang.Object, int)
+     */
+    public IntIterator rows(Object lo, Object hi, int type) {
+        return iterator(lo, hi, type);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(int, int, int)
+     */
+    public IntIterator rows(int lo, int hi, int type) {
+        return iterator(Integer.valueOf(lo), Integer.valueOf(hi), type);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(long, long, int)
+     */
+    public IntIterator rows(long lo, long hi, int type) {
+        return iterator(Long.valueOf(lo), Long.valueOf(hi), type);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(float, float, int)
+     */
+    public IntIterator rows(float lo, float hi, int type) {
+        return iterator(Float.valueOf(lo), Float.valueOf(hi), type);
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(double, double, int)
+     */
+    public IntIterator rows(double lo, double hi, int type) {
+        return iterator(Double.valueOf(lo), Double.valueOf(hi), type);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * @see prefuse.data.util.Index#rows(java.lang.Object)
+     */
+    public IntIterator rows(Object val) {
+        return new BitmapIterator(getRows(val));
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(int)
+     */
+    public IntIterator rows(int val) {
+        return rows(Integer.valueOf(val));
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(long)
+     */
+    public IntIterator rows(long val) {
+        return rows(Long.valueOf(val));
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(float)
+     */
+    public IntIterator rows(float val) {
+        return rows(Float.valueOf(val));
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(double)
+     */
+    public IntIterator rows(double val) {
+        return rows(Double.valueOf(val));
+    }
+
+    /**
+     * @see prefuse.data.util.Index#rows(boolean)
+     */
+    public IntIterator rows(boolean val) {
+        return rows(val ? Boolean.TRUE : Boolean.FALSE);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * @see prefuse.data.util.Index#get(java.lang.Object)
+     */
+    public int get(Object x) {
+        BitSet b = getRows(x);
+        return ( b.isEmpty() ? Integer.MIN_VALUE : b.nextSetBit(0) );
+    }
+
+    /**
+     * @see prefuse.data.util.Index#get(int)
+     */
+    public int get(int x) {
+        return get(Integer.valueOf(x));
+    }
+
+    /**
+     * @see prefuse.data.util.Index#get(long)
+     */
+    public int get(long x) {
+        return get(Long.valueOf(x));
+    }
+
+    /**
+     * @see prefuse.data.util.Index#get(float)
+     */
+    public int get(float x) {
+        return get(Float.valueOf(x));
+    }
+
+    /**
+     * @see prefuse.data.util.Index#get(double)
+     */
+    public int get(double x) {
+        return get(Double.valueOf(x));
+    }
+
+} // end of class BitmapIndex
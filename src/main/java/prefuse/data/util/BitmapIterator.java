@@ -0,0 +1,76 @@
+package prefuse.data.util;
+
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+
+import prefuse.util.collections.IntIterator;
+
+/**
+ * IntIterator over the set bits of a sequence of bitmaps, visiting the
+ * bits of each bitmap in increasing order before moving on to the next
+ * bitmap. The bitmaps are read as the iteration proceeds, not copied.
+ */
+class BitmapIterator extends IntIterator {
+
+    private BitSet[] m_bitmaps;
+    private int m_len;  // number of bitmaps to iterate over
+    private int m_cur;  // index of the current bitmap
+    private int m_next; // next set bit of the current bitmap, or -1
+
+    /**
+     * Create a new BitmapIterator over a single bitmap.
+     * @param bits the bitmap to iterate over
+     */
+    BitmapIterator(BitSet bits) {
+        this(new BitSet[] { bits }, 1);
+    }
+
+    /**
+     * Create a new BitmapIterator over a sequence of bitmaps.
+     * @param bitmaps the bitmaps to iterate over, in iteration order
+     * @param len the number of bitmaps in the array to iterate over
+     */
+    BitmapIterator(BitSet[] bitmaps, int len) {
+        m_bitmaps = bitmaps;
+        m_len = len;
+        m_cur = -1;
+        m_next = -1;
+        advance();
+    }
+
+    private void advance() {
+        while ( m_next < 0 && ++m_cur < m_len )
+            m_next = m_bitmaps[m_cur].nextSetBit(0);
+        if ( m_next < 0 )
+            m_bitmaps = null;
+    }
+
+    /**
+     * @see prefuse.util.collections.IntIterator#nextInt()
+     */
+    public int nextInt() {
+        if ( m_bitmaps == null )
+            throw new NoSuchElementException();
+        int r = m_next;
+        m_next = m_bitmaps[m_cur].nextSetBit(r+1);
+        if ( m_next < 0 )
+            advance();
+        return r;
+    }
+
+    /**
+     * @see java.util.Iterator#hasNext()
+     */
+    public boolean hasNext() {
+        return ( m_bitmaps != null );
+    }
+
+    /**
+     * Not supported.
+     * @see java.util.Iterator#remove()
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+} // end of class BitmapIterator
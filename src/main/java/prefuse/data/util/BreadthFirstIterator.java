@@ -1,16 +1,21 @@
 package prefuse.data.util;
 
+import java.util.BitSet;
 import java.util.Iterator;
 
 import prefuse.Constants;
 import prefuse.data.Edge;
+import prefuse.data.Graph;
 import prefuse.data.Node;
 import prefuse.data.Tuple;
 import prefuse.util.collections.Queue;
 
 /**
  * Provides a distance-limited breadth first traversal over nodes, edges,
- * or both, using any number of traversal "roots".
+ * or both, using any number of traversal "roots". Incident edges are read
+ * from the graph's {@link AdjacencySnapshot} if the graph has it enabled
+ * (see {@link Graph#setAdjacencyEnabled(boolean)}), in which case node and
+ * edge tuples are only looked up for the rows the traversal has not seen.
  *  
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
@@ -22,6 +27,18 @@ public class BreadthFirstIterator implements Iterator {
     protected boolean m_includeNodes;
     protected boolean m_includeEdges;
     
+    // incident edges and adjacent nodes of the node being expanded,
+    // read from the snapshot if there is one, else from the buffers
+    private AdjacencySnapshot m_adj;
+    private int    m_row;
+    private Edge[] m_edges = new Edge[16];
+    private Node[] m_nodes = new Node[16];
+    
+    // rows of the snapshot graph known to be in the queue
+    private Graph  m_graph;
+    private BitSet m_nodeRows = new BitSet();
+    private BitSet m_edgeRows = new BitSet();
+    
     /**
      * Create an uninitialized BreadthFirstIterator. Use the
      * {@link #init(Object, int, int)} method to initialize the iterator.
@@ -40,7 +57,7 @@ public class BreadthFirstIterator implements Iterator {
      * {@link prefuse.Constants#NODE_AND_EDGE_TRAVERSAL}
      */
     public BreadthFirstIterator(Node n, int depth, int traversal) {
-        init(new Node[] {n}, depth, traversal);
+        init(n, depth, traversal);
     }
     
     /**
@@ -69,6 +86,8 @@ public class BreadthFirstIterator implements Iterator {
     public void init(Object o, int depth, int traversal) {
         // initialize the member variables
         m_queue.clear();
+        m_nodeRows.clear();
+        m_edgeRows.clear();
         m_depth = depth;
         if ( traversal < 0 || traversal >= Constants.TRAVERSAL_COUNT )
             throw new IllegalArgumentException(
@@ -93,10 +112,9 @@ public class BreadthFirstIterator implements Iterator {
             if ( o instanceof Node ) {
                 Node n = (Node)o;
                 m_queue.visit(n, 0);
-                Iterator edges = getEdges(n);
-                while ( edges.hasNext() ) {
-                    Edge e = (Edge)edges.next();
-                    Node nn = e.getAdjacentNode(n);
+                for ( int i=0, k=expand(n); i<k; ++i ) {
+                    Edge e = edge(i);
+                    Node nn = node(i);
                     m_queue.visit(nn, 1);
                     if ( m_queue.getDepth(e) < 0 )
                         m_queue.add(e, 1);
@@ -107,10 +125,9 @@ public class BreadthFirstIterator implements Iterator {
                     // TODO: graceful error handling when non-node in set?
                     Node n = (Node)tuples.next();
                     m_queue.visit(n, 0);
-                    Iterator edges = getEdges(n);
-                    while ( edges.hasNext() ) {
-                        Edge e = (Edge)edges.next();
-                        Node nn = e.getAdjacentNode(n);
+                    for ( int i=0, k=expand(n); i<k; ++i ) {
+                        Edge e = edge(i);
+                        Node nn = node(i);
                         m_queue.visit(nn, 1);
                         if ( m_queue.getDepth(e) < 0 )
                             m_queue.add(e, 1);
@@ -137,14 +154,114 @@ public class BreadthFirstIterator implements Iterator {
     }
 
     /**
-     * Determines which edges are traversed for a given node.
+     * Determines which edges are traversed for a given node, when no
+     * adjacency snapshot is used.
      * @param n a node
      * @return an iterator over edges incident on the node
+     * @see #getAdjacency(Node)
      */
     protected Iterator getEdges(Node n) {
         return n.edges(); // TODO: add support for all edges, in links only, out links only
     }
     
+    /**
+     * Get the adjacency snapshot from which to read the edges incident on a
+     * given node. By default this is the snapshot of the node's graph if
+     * the graph has it enabled, traversing all incident edges. Subclasses
+     * that override {@link #getEdges(Node)} to traverse a different set of
+     * edges should override this method to return null.
+     * @param n a node
+     * @return the adjacency snapshot to use, or null to use
+     * {@link #getEdges(Node)}
+     * @see Graph#setAdjacencyEnabled(boolean)
+     */
+    protected AdjacencySnapshot getAdjacency(Node n) {
+        Graph g = n.getGraph();
+        return ( g != null && g.isAdjacencyEnabled() ? g.getAdjacency() : null );
+    }
+    
+    /**
+     * Prepare the incident edges and adjacent nodes of a node for lookup
+     * using {@link #edge(int)} and {@link #node(int)}.
+     * @return the number of incident edges
+     */
+    private int expand(Node n) {
+        AdjacencySnapshot adj = getAdjacency(n);
+        if ( adj != null ) {
+            if ( adj.getGraph() != m_graph ) {
+                m_graph = adj.getGraph();
+                m_nodeRows.clear();
+                m_edgeRows.clear();
+            }
+            m_adj = adj;
+            m_row = n.getRow();
+            return adj.getDegree(m_row, Graph.UNDIRECTED);
+        }
+        m_adj = null;
+        int k = 0;
+        for ( Iterator<?> edges = getEdges(n); edges.hasNext(); ++k ) {
+            ensureCapacity(k+1);
+            Edge e = (Edge)edges.next();
+            m_edges[k] = e;
+            m_nodes[k] = e.getAdjacentNode(n);
+        }
+        return k;
+    }
+    
+    private Edge edge(int i) {
+        if ( m_adj == null ) return m_edges[i];
+        return m_graph.getEdge(m_adj.getEdge(m_row, Graph.UNDIRECTED, i));
+    }
+    
+    private Node node(int i) {
+        if ( m_adj == null ) return m_nodes[i];
+        return m_graph.getNode(m_adj.getNeighbor(m_row, Graph.UNDIRECTED, i));
+    }
+    
+    /**
+     * Indicates if the i-th incident edge is known to be in the queue.
+     */
+    private boolean hasEdge(int i) {
+        return m_adj != null &&
+            m_edgeRows.get(m_adj.getEdge(m_row, Graph.UNDIRECTED, i));
+    }
+    
+    /**
+     * Indicates if the i-th adjacent node is known to be in the queue.
+     */
+    private boolean hasNode(int i) {
+        return m_adj != null &&
+            m_nodeRows.get(m_adj.getNeighbor(m_row, Graph.UNDIRECTED, i));
+    }
+    
+    /**
+     * Record that the i-th incident edge is in the queue.
+     */
+    private void markEdge(int i) {
+        if ( m_adj != null )
+            m_edgeRows.set(m_adj.getEdge(m_row, Graph.UNDIRECTED, i));
+    }
+    
+    /**
+     * Record that the i-th adjacent node is in the queue.
+     */
+    private void markNode(int i) {
+        if ( m_adj != null )
+            m_nodeRows.set(m_adj.getNeighbor(m_row, Graph.UNDIRECTED, i));
+    }
+    
+    private void ensureCapacity(int k) {
+        if ( k > m_edges.length ) {
+            int len = Math.max(k, 2*m_edges.length);
+            Edge[] edges = new Edge[len];
+            Node[] nodes = new Node[len];
+            System.arraycopy(m_edges, 0, edges, 0, m_edges.length);
+            System.arraycopy(m_nodes, 0, nodes, 0, m_nodes.length);
+            m_edges = edges;
+            m_nodes = nodes;
+        }
+    }
+    
     /**
      * Get the traversal depth at which a particular tuple was encountered.
      * @param t the tuple to lookup
@@ -174,26 +291,30 @@ public class BreadthFirstIterator implements Iterator {
                     
                     if ( d < m_depth ) {
                         int dd = d+1;
-                        Iterator edges = getEdges(n);
-                        while ( edges.hasNext() ) {
-                            Edge e = (Edge)edges.next();
-                            Node v = e.getAdjacentNode(n);
-                        
-                            if ( m_includeEdges && m_queue.getDepth(e) < 0 )
-                                m_queue.add(e, dd);
-                            if ( m_queue.getDepth(v) < 0 )
-                                m_queue.add(v, dd);
+                        for ( int i=0, k=expand(n); i<k; ++i ) {
+                            if ( m_includeEdges && !hasEdge(i) ) {
+                                Edge e = edge(i);
+                                if ( m_queue.getDepth(e) < 0 )
+                                    m_queue.add(e, dd);
+                                markEdge(i);
+                            }
+                            if ( !hasNode(i) ) {
+                                Node v = node(i);
+                                if ( m_queue.getDepth(v) < 0 )
+                                    m_queue.add(v, dd);
+                                markNode(i);
+                            }
                         }
                     }
                     else if ( m_includeEdges && d == m_depth )
                     {
-                        Iterator edges = getEdges(n);
-                        while ( edges.hasNext() ) {
-                            Edge e = (Edge)edges.next();
-                            Node v = e.getAdjacentNode(n);
-                            int dv = m_queue.getDepth(v);
+                        for ( int i=0, k=expand(n); i<k; ++i ) {
+                            if ( hasEdge(i) ) continue;
+                            Edge e = edge(i);
+                            int dv = m_queue.getDepth(node(i));
                             if ( dv > 0 && m_queue.getDepth(e) < 0 ) {
                                 m_queue.add(e, Math.min(d,dv));
+                                markEdge(i);
                             }
                         }
                     }
@@ -214,13 +335,15 @@ public class BreadthFirstIterator implements Iterator {
             
                 if ( d < m_depth ) {
                     int dd = d+1;
-                    Iterator edges = getEdges(n);
-                    while ( edges.hasNext() ) {
-                        Edge ee = (Edge)edges.next();
+                    for ( int i=0, k=expand(n); i<k; ++i ) {
+                        if ( hasEdge(i) )
+                            continue; // already visited
+                        Edge ee = edge(i);
+                        markEdge(i);
                         if ( m_queue.getDepth(ee) >= 0 )
                             continue; // already visited
             
-                        Node nn = ee.getAdjacentNode(n);
+                        Node nn = node(i);
                         m_queue.visit(nn, dd);
                         m_queue.add(ee, dd);
                     }
@@ -1,19 +1,30 @@
 package prefuse.data.util;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.column.ExpressionColumn;
+import prefuse.data.expression.AbstractExpression;
 import prefuse.data.expression.AndPredicate;
 import prefuse.data.expression.ColumnExpression;
 import prefuse.data.expression.ComparisonPredicate;
 import prefuse.data.expression.Expression;
 import prefuse.data.expression.ExpressionAnalyzer;
+import prefuse.data.expression.Literal;
 import prefuse.data.expression.NotPredicate;
 import prefuse.data.expression.OrPredicate;
 import prefuse.data.expression.Predicate;
 import prefuse.data.expression.RangePredicate;
+import prefuse.data.expression.compiler.ExpressionCompiler;
 import prefuse.data.tuple.TupleSet;
+import prefuse.util.TypeLib;
 import prefuse.util.PrefuseConfig;
 import prefuse.util.collections.CompositeIntIterator;
 import prefuse.util.collections.IntIterator;
@@ -22,7 +33,12 @@ import prefuse.util.collections.IntIterator;
  * Factory class that creates optimized filter iterators. When possible,
  * this factory will attempt to create an optimized query plan by using
  * available indexes, in many increasing performance by only visiting
- * the tuples which will pass the filter condition.
+ * the tuples which will pass the filter condition. Predicates over columns
+ * with a {@link BitmapIndex}, including And, Or, and Not combinations of
+ * them, are answered directly with bitset operations. When no index can be
+ * used and a table is large enough, the table rows are instead scanned
+ * in parallel, partitioning the row range across a fork/join pool, if the
+ * filter predicate is safe to evaluate concurrently.
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
@@ -31,6 +47,12 @@ public class FilterIteratorFactory {
     private static final int OPTIMIZATION_THRESHOLD
         = PrefuseConfig.getInt("data.filter.optimizeThreshold");
     
+    /** Number of rows evaluated at once by batch evaluation. */
+    private static final int BATCH = 256;
+    
+    /** Minimum number of rows scanned by a single parallel task. */
+    private static final int PARALLEL_GRAIN = 8192;
+    
     // we can stash our query plan generation and optimization here to deal 
     // with it all in one spot, and keep the rest of the classes clean
     
@@ -51,13 +73,21 @@ public class FilterIteratorFactory {
         if ( ts instanceof Table ) {
             Table t = (Table)ts;
             IntIterator ii = getOptimizedIterator(t,p);
+            if ( ii == null )
+                ii = getParallelIterator(t,p);
             if ( ii != null )
                 iter = t.tuples(ii);
         }
         
         // optimization fails, scan the entire table
         if ( iter == null ) {
-            iter = new FilterIterator(ts.tuples(), p);
+            if ( ts instanceof Table && ExpressionAnalyzer.isColumnOnly(p) ) {
+                // evaluate the predicate on the table rows in batches
+                Table t = (Table)ts;
+                iter = t.tuples(new FilterRowIterator(t.rows(), t, p));
+            } else {
+                iter = new FilterIterator(ts.tuples(), p);
+            }
         }
         
         return iter;
@@ -75,6 +105,11 @@ public class FilterIteratorFactory {
         IntIterator iter;
         iter = getOptimizedIterator(t, p);
         
+        // no index available, try a parallel scan of a large table
+        if ( iter == null ) {
+            iter = getParallelIterator(t, p);
+        }
+        
         // optimization fails, scan the entire table
         if ( iter == null ) {
             iter = new FilterRowIterator(t.rows(), t, p);
@@ -92,6 +127,11 @@ public class FilterIteratorFactory {
         if ( t.getRowCount() < OPTIMIZATION_THRESHOLD ) 
             return null; // avoid overhead for small tables
         
+        // answer predicates over bitmap indexed columns with set operations
+        BitSet bits = getBitmap(t, p);
+        if ( bits != null )
+            return getBitmapIterator(bits);
+        
         if ( p instanceof ColumnExpression ) {
             // try to optimize a boolean column
             return getColumnIterator(t,
@@ -130,6 +170,232 @@ public class FilterIteratorFactory {
         return null;
     }
     
+    /**
+     * Get an iterator over the rows of a table that pass the filter
+     * predicate, computed by a parallel scan, if possible. Parallel scans
+     * are used for tables with at least as many rows as the
+     * <code>data.filter.parallelThreshold</code> configuration setting,
+     * when the predicate only reads stored data fields and literals (see
+     * {@link ExpressionAnalyzer#isColumnOnly(Expression)}). Other
+     * predicates may create tuples or compute derived values on demand,
+     * and so are not safe to evaluate concurrently. The rows are scanned
+     * lazily, one round of parallel tasks at a time, as the iteration
+     * proceeds.
+     * @param t the Table to iterator over
+     * @param p the filter predicate
+     * @return an iterator over the filtered rows, or null if a parallel
+     * scan should not be used
+     */
+    protected static IntIterator getParallelIterator(Table t, Predicate p) {
+        // read on each call, so the threshold can be tuned at runtime
+        int threshold = PrefuseConfig.getInt("data.filter.parallelThreshold");
+        if ( threshold <= 0 || t.getRowCount() < threshold
+                || !isConcurrent(t, p) )
+            return null;
+        
+        int min = t.getMinimumRow(), max = t.getMaximumRow();
+        p = ExpressionCompiler.compile(p, t.getSchema());
+        return new ParallelRowIterator(t, p, min, max+1);
+    }
+    
+    /**
+     * Indicates if a predicate can be evaluated on the rows of a table
+     * from multiple threads: it must only read data fields and literals,
+     * and all of the fields must be stored (not derived) columns.
+     */
+    private static boolean isConcurrent(Table t, Predicate p) {
+        if ( !ExpressionAnalyzer.isColumnOnly(p) )
+            return false;
+        Iterator<?> cols =
+            ExpressionAnalyzer.getReferencedColumns(p).iterator();
+        while ( cols.hasNext() ) {
+            Column c = t.getColumn((String)cols.next());
+            if ( c == null || c instanceof ExpressionColumn )
+                return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Scan the rows of a table in parallel, returning the rows that pass
+     * the filter predicate. The range of table rows is partitioned across
+     * the common fork/join pool, and the predicate is evaluated on each
+     * partition in batches. Predicates that are not safe to evaluate
+     * concurrently, as they read more than stored data fields and
+     * literals, are evaluated by a serial scan instead. The table must not
+     * be modified while the scan is in progress.
+     * @param t the Table to scan
+     * @param p the filter predicate
+     * @return a sorted array of the table rows that pass the filter
+     */
+    public static int[] filterRows(Table t, Predicate p) {
+        int min = t.getMinimumRow(), max = t.getMaximumRow();
+        if ( max < min )
+            return new int[0];
+        
+        if ( !isConcurrent(t, p) ) {
+            IntIterator iter = new FilterRowIterator(t.rows(), t, p);
+            int[] rows = new int[16];
+            int n = 0;
+            while ( iter.hasNext() ) {
+                if ( n == rows.length ) {
+                    int[] a = new int[2*n];
+                    System.arraycopy(rows, 0, a, 0, n);
+                    rows = a;
+                }
+                rows[n++] = iter.nextInt();
+            }
+            int[] a = new int[n];
+            System.arraycopy(rows, 0, a, 0, n);
+            return a;
+        }
+        
+        p = ExpressionCompiler.compile(p, t.getSchema());
+        return scan(t, p, min, max+1);
+    }
+    
+    /**
+     * Scan a range of table rows in parallel.
+     * @param t the Table to scan
+     * @param p the filter predicate, which must be safe to evaluate
+     * concurrently
+     * @param lo the first row to scan
+     * @param hi one past the last row to scan
+     * @return a sorted array of the table rows that pass the filter
+     */
+    private static int[] scan(Table t, Predicate p, int lo, int hi) {
+        // partition the rows
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int grain = Math.max(PARALLEL_GRAIN,
+                             (hi-lo) / (4*pool.getParallelism()) + 1);
+        ArrayList<FilterTask> tasks = new ArrayList<FilterTask>();
+        for ( int r=lo; r<hi; r+=grain ) {
+            tasks.add(new FilterTask(t, p, r, Math.min(r+grain, hi)));
+        }
+        pool.invoke(new FilterBatch(tasks));
+        
+        // merge the results of the tasks, already in row order
+        int n = 0;
+        for ( int i=0; i<tasks.size(); ++i )
+            n += tasks.get(i).count;
+        int[] rows = new int[n];
+        n = 0;
+        for ( int i=0; i<tasks.size(); ++i ) {
+            FilterTask task = tasks.get(i);
+            System.arraycopy(task.rows, 0, rows, n, task.count);
+            n += task.count;
+        }
+        return rows;
+    }
+    
+    /**
+     * Iterator over the rows of a table that pass a filter predicate,
+     * scanning the table in rounds of parallel tasks as the iteration
+     * proceeds, so that rows beyond the current round are not evaluated
+     * until needed.
+     */
+    private static class ParallelRowIterator extends IntIterator {
+        private final Table m_table;
+        private final Predicate m_predicate;
+        private final int m_end, m_round;
+        private int m_next;
+        private int[] m_rows = new int[0];
+        private int m_pos = 0;
+        
+        ParallelRowIterator(Table t, Predicate p, int start, int end) {
+            m_table = t;
+            m_predicate = p;
+            m_next = start;
+            m_end = end;
+            m_round = PARALLEL_GRAIN *
+                ForkJoinPool.commonPool().getParallelism();
+        }
+        
+        public boolean hasNext() {
+            while ( m_pos == m_rows.length && m_next < m_end ) {
+                int hi = m_next + Math.min(m_round, m_end-m_next);
+                m_rows = scan(m_table, m_predicate, m_next, hi);
+                m_pos = 0;
+                m_next = hi;
+            }
+            return ( m_pos < m_rows.length );
+        }
+        
+        public int nextInt() {
+            if ( !hasNext() )
+                throw new NoSuchElementException("No more elements");
+            return m_rows[m_pos++];
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /**
+     * Fork/join task that runs a collection of filter tasks in parallel.
+     */
+    private static class FilterBatch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ArrayList<FilterTask> m_tasks;
+        FilterBatch(ArrayList<FilterTask> tasks) {
+            m_tasks = tasks;
+        }
+        protected void compute() {
+            invokeAll(m_tasks);
+        }
+    }
+    
+    /**
+     * Fork/join task that collects the rows of a partition of a table's
+     * row range that pass a filter predicate, evaluating the predicate on
+     * blocks of valid rows in batches.
+     */
+    private static class FilterTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final Table table;
+        final Predicate predicate;
+        final int lo, hi;
+        int[] rows;
+        int count;
+        
+        FilterTask(Table table, Predicate predicate, int lo, int hi) {
+            this.table = table;
+            this.predicate = predicate;
+            this.lo = lo;
+            this.hi = hi;
+        }
+        
+        protected void compute() {
+            AbstractExpression p = (AbstractExpression)predicate;
+            int[] r = new int[64];
+            int n = 0;
+            int[] block = new int[BATCH];
+            BitSet pass = new BitSet(BATCH);
+            for ( int row=lo; row<hi; ) {
+                int len = 0;
+                for ( ; row<hi && len<BATCH; ++row ) {
+                    if ( table.isValidRow(row) )
+                        block[len++] = row;
+                }
+                pass.clear();
+                p.getBooleans(table, block, len, pass);
+                for ( int i=pass.nextSetBit(0); i>=0 && i<len;
+                      i=pass.nextSetBit(i+1) )
+                {
+                    if ( n == r.length ) {
+                        int[] a = new int[Math.min(2*n, hi-lo)];
+                        System.arraycopy(r, 0, a, 0, n);
+                        r = a;
+                    }
+                    r[n++] = block[i];
+                }
+            }
+            rows = r;
+            count = n;
+        }
+    }
+    
     protected static IntIterator getColumnIterator(
             Table t, String field, boolean val)
     {
@@ -167,6 +433,27 @@ public class FilterIteratorFactory {
     }
     
     protected static IntIterator getAndIterator(Table t, AndPredicate ap) {
+        // intersect the clauses that can be answered by bitmap indexes,
+        // then run the result through the other clauses
+        BitSet bits = null;
+        AndPredicate rest = null;
+        for ( int i=0; i<ap.size(); ++i ) {
+            Predicate clause = ap.get(i);
+            BitSet b = getBitmap(t, clause);
+            if ( b == null ) {
+                if ( rest == null ) rest = new AndPredicate();
+                rest.add(clause);
+            } else if ( bits == null )
+                bits = b;
+            else
+                bits.and(b);
+        }
+        if ( bits != null ) {
+            IntIterator rows = getBitmapIterator(bits);
+            return ( rest == null ? rows
+                                  : new FilterRowIterator(rows, t, rest) );
+        }
+        
         // possible TODO: add scoring to select best optimized iterator
         // for now just work from the end backwards and take the first
         // optimized iterator we find
@@ -188,6 +475,224 @@ public class FilterIteratorFactory {
         return new FilterRowIterator(rows, t, ap.getSubPredicate(clause));
     }
     
+    // ------------------------------------------------------------------------
+    // Bitmap Evaluation
+    
+    /**
+     * Compute the rows of a table that pass the filter predicate using
+     * bitmap indexes, if possible. This succeeds for boolean columns,
+     * comparisons and ranges over columns with a {@link BitmapIndex}, and
+     * for any And, Or, or Not combination of such predicates.
+     * @param t the Table to filter
+     * @param p the filter predicate
+     * @return a new BitSet of the table rows that pass the filter, or null
+     * if the predicate can not be answered using bitmap indexes
+     */
+    protected static BitSet getBitmap(Table t, Predicate p) {
+        if ( p instanceof ColumnExpression ) {
+            String field = ((ColumnExpression)p).getColumnName();
+            BitmapIndex index = getBitmapIndex(t, field);
+            if ( index == null || t.getColumnType(field) != boolean.class )
+                return null;
+            return index.getRows(Boolean.TRUE);
+        }
+        else if ( p instanceof NotPredicate )
+        {
+            Predicate pp = ((NotPredicate)p).getPredicate();
+            BitSet b = getBitmap(t, pp);
+            if ( b == null ) return null;
+            
+            // all referenced columns are bitmap indexed, so any one of
+            // them provides the set of valid rows to negate against
+            String field = (String)ExpressionAnalyzer
+                .getReferencedColumns(pp).iterator().next();
+            BitSet rows = getBitmapIndex(t, field).getRows();
+            rows.andNot(b);
+            return rows;
+        }
+        else if ( p instanceof AndPredicate || p instanceof OrPredicate )
+        {
+            boolean and = ( p instanceof AndPredicate );
+            AndPredicate ap = null;
+            OrPredicate op = null;
+            int size;
+            if ( and ) {
+                ap = (AndPredicate)p;
+                size = ap.size();
+            } else {
+                op = (OrPredicate)p;
+                size = op.size();
+            }
+            if ( size == 0 ) return null;
+            
+            // all clauses must be answered by bitmaps
+            BitSet bits = null;
+            for ( int i=0; i<size; ++i ) {
+                BitSet b = getBitmap(t, and ? ap.get(i) : op.get(i));
+                if ( b == null ) {
+                    return null;
+                } else if ( bits == null ) {
+                    bits = b;
+                } else if ( and ) {
+                    bits.and(b);
+                } else {
+                    bits.or(b);
+                }
+            }
+            return bits;
+        }
+        else if ( p instanceof ComparisonPredicate )
+        {
+            return getComparisonBitmap(t, (ComparisonPredicate)p);
+        }
+        else if ( p instanceof RangePredicate )
+        {
+            return getRangeBitmap(t, (RangePredicate)p);
+        }
+        return null;
+    }
+    
+    private static BitmapIndex getBitmapIndex(Table t, String field) {
+        if ( t.getColumnNumber(field) < 0 )
+            return null;
+        Index index = t.getIndex(field);
+        return ( index instanceof BitmapIndex ? (BitmapIndex)index : null );
+    }
+    
+    /**
+     * Indicates if a literal value can be looked up in a bitmap index over
+     * a column of the given type. Numeric literals must match the column
+     * type exactly, as comparisons of mixed numeric types are performed on
+     * the widened values.
+     */
+    private static boolean isCompatible(Class<?> colType, Expression lit) {
+        if ( !(lit instanceof Literal) ) return false;
+        Class<?> litType = lit.getType(null);
+        if ( TypeLib.isNumericType(colType) )
+            return ( litType == colType );
+        else
+            return !TypeLib.isNumericType(litType);
+    }
+    
+    protected static BitSet getComparisonBitmap(Table t,
+                                                ComparisonPredicate cp)
+    {
+        Expression l = cp.getLeftExpression();
+        Expression r = cp.getRightExpression();
+        int operation = cp.getOperation();
+        
+        ColumnExpression col;
+        Expression lit;
+        if (l instanceof ColumnExpression && 
+                !ExpressionAnalyzer.hasDependency(r))
+        {
+            col = (ColumnExpression)l;
+            lit = r;
+        } else if (r instanceof ColumnExpression &&
+                !ExpressionAnalyzer.hasDependency(l))
+        {
+            // column on the right hand side, so flip the comparison
+            col = (ColumnExpression)r;
+            lit = l;
+            switch ( operation ) {
+            case ComparisonPredicate.LT:
+                operation = ComparisonPredicate.GT; break;
+            case ComparisonPredicate.GT:
+                operation = ComparisonPredicate.LT; break;
+            case ComparisonPredicate.LTEQ:
+                operation = ComparisonPredicate.GTEQ; break;
+            case ComparisonPredicate.GTEQ:
+                operation = ComparisonPredicate.LTEQ; break;
+            }
+        } else {
+            return null;
+        }
+        
+        String field = col.getColumnName();
+        BitmapIndex index = getBitmapIndex(t, field);
+        if ( index == null || !cp.getComparator().equals(index.getComparator())
+                || !isCompatible(t.getColumnType(field), lit) )
+            return null;
+        
+        Object val = lit.get(null); // literal value, so null is safe
+        BitSet rows;
+        switch ( operation ) {
+        case ComparisonPredicate.EQ:
+            return index.getRows(val);
+        case ComparisonPredicate.NEQ:
+            rows = index.getRows();
+            rows.andNot(index.getRows(val));
+            return rows;
+        }
+        
+        // a null bound would be read as an open range
+        if ( val == null ) return null;
+        
+        switch ( operation ) {
+        case ComparisonPredicate.LT:
+            return index.getRows(null, val, Index.TYPE_AIE);
+        case ComparisonPredicate.GT:
+            return index.getRows(val, null, Index.TYPE_AEI);
+        case ComparisonPredicate.LTEQ:
+            return index.getRows(null, val, Index.TYPE_AII);
+        case ComparisonPredicate.GTEQ:
+            return index.getRows(val, null, Index.TYPE_AII);
+        default:
+            throw new IllegalStateException(); // should never occur
+        }
+    }
+    
+    protected static BitSet getRangeBitmap(Table t, RangePredicate rp) {
+        Expression l = rp.getLeftExpression();
+        Expression r = rp.getRightExpression();
+        if ( !(rp.getMiddleExpression() instanceof ColumnExpression) ||
+                ExpressionAnalyzer.hasDependency(l) ||
+                ExpressionAnalyzer.hasDependency(r) )
+        {
+            return null;
+        }
+        
+        String field = ((ColumnExpression)rp.getMiddleExpression())
+                            .getColumnName();
+        BitmapIndex index = getBitmapIndex(t, field);
+        Class<?> type = t.getColumnType(field);
+        if ( index == null || !rp.getComparator().equals(index.getComparator())
+                || !isCompatible(type, l) || !isCompatible(type, r) )
+            return null;
+        
+        Object lo = l.get(null), hi = r.get(null);
+        if ( lo == null || hi == null )
+            return null; // a null bound would be read as an open range
+        
+        int indexType;
+        switch ( rp.getOperation() ) {
+        case RangePredicate.IN_IN:
+            indexType = Index.TYPE_AII;
+            break;
+        case RangePredicate.IN_EX:
+            indexType = Index.TYPE_AIE;
+            break;
+        case RangePredicate.EX_IN:
+            indexType = Index.TYPE_AEI;
+            break;
+        case RangePredicate.EX_EX:
+            indexType = Index.TYPE_AEE;
+            break;
+        default:
+            throw new IllegalStateException(); // should never occur
+        }
+        return index.getRows(lo, hi, indexType);
+    }
+    
+    /**
+     * Get an iterator over the rows set in a bitmap, in row order.
+     */
+    private static IntIterator getBitmapIterator(BitSet bits) {
+        return new BitmapIterator(bits);
+    }
+    
+    // ------------------------------------------------------------------------
+    
     protected static IntIterator getComparisonIterator(Table t, 
                                            ComparisonPredicate cp)
     {
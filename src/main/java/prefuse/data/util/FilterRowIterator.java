@@ -1,8 +1,11 @@
 package prefuse.data.util;
 
+import java.util.BitSet;
 import java.util.NoSuchElementException;
 
 import prefuse.data.Table;
+import prefuse.data.expression.AbstractExpression;
+import prefuse.data.expression.ExpressionAnalyzer;
 import prefuse.data.expression.Predicate;
 import prefuse.util.collections.IntIterator;
 
@@ -11,15 +14,30 @@ import prefuse.util.collections.IntIterator;
  * each table row, the corresponding tuple is checked against the predicate.
  * Only rows whose tuples pass the filter are included in this iteration.
  * 
+ * <p>If the predicate only reads data fields and literals (see
+ * {@link ExpressionAnalyzer#isColumnOnly(prefuse.data.expression.Expression)}),
+ * it is evaluated on blocks of rows using batch evaluation, reading column
+ * values directly rather than through tuples. The predicate is then
+ * evaluated up to a block of rows ahead of the iteration.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class FilterRowIterator extends IntIterator {
     
+    /** The number of rows evaluated at once by batch evaluation. */
+    private static final int BATCH = 256;
+    
     private Predicate predicate;
     private IntIterator rows;
     private Table t;
     private int next;
     
+    // batch evaluation state
+    private AbstractExpression batch;
+    private int[] block;
+    private BitSet pass;
+    private int blockLen, blockPos;
+    
     /**
      * Create a new FilterRowIterator.
      * @param rows an iterator over table rows
@@ -30,10 +48,19 @@ public class FilterRowIterator extends IntIterator {
         this.predicate = p;
         this.rows = rows;
         this.t = t;
+        if ( p instanceof AbstractExpression
+                && ExpressionAnalyzer.isColumnOnly(p) )
+        {
+            batch = (AbstractExpression)p;
+            block = new int[BATCH];
+            pass = new BitSet(BATCH);
+        }
         next = advance();
     }
     
     private int advance() {
+        if ( batch != null )
+            return advanceBlock();
         while ( rows.hasNext() ) {
             int r = rows.nextInt();
             if ( predicate.getBoolean(t.getTuple(r)) ) {
@@ -44,6 +71,30 @@ public class FilterRowIterator extends IntIterator {
         next = -1;
         return -1;
     }
+    
+    private int advanceBlock() {
+        while ( true ) {
+            // return the next passing row of the current block
+            int i = ( blockPos < blockLen ? pass.nextSetBit(blockPos) : -1 );
+            if ( i >= 0 && i < blockLen ) {
+                blockPos = i+1;
+                return block[i];
+            }
+            
+            // evaluate the next block of rows
+            blockLen = 0;
+            while ( blockLen < BATCH && rows.hasNext() )
+                block[blockLen++] = rows.nextInt();
+            if ( blockLen == 0 ) {
+                rows = null;
+                next = -1;
+                return -1;
+            }
+            pass.clear();
+            batch.getBooleans(t, block, blockLen, pass);
+            blockPos = 0;
+        }
+    }
 
     /**
      * @see prefuse.util.collections.LiteralIterator#nextInt()
@@ -0,0 +1,371 @@
+package prefuse.data.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import prefuse.data.Graph;
+
+/**
+ * <p>Breadth-first and depth-first traversals over the node and edge ids
+ * (table row numbers) of a {@link prefuse.data.Graph}. Traversals read the
+ * graph's {@link AdjacencySnapshot}, and record their results in int
+ * arrays that are reused from one traversal to the next: visited nodes and
+ * edges are marked with a generation stamp, so starting a new traversal
+ * does not require clearing any state. No objects are created per node or
+ * edge visited.</p>
+ *
+ * <p>The results of the most recent traversal can be queried by node or
+ * edge id, read back in visiting order, copied into a bitset, or passed
+ * to a {@link Visitor}.</p>
+ */
+public class GraphTraversal {
+
+    /**
+     * Callback interface for receiving the results of a traversal.
+     */
+    public interface Visitor {
+        /**
+         * Called for each node reached by a traversal, in visiting order.
+         * @param node the node id (node table row number)
+         * @param depth the traversal depth of the node
+         */
+        public void visitNode(int node, int depth);
+
+        /**
+         * Called for each edge reached by a traversal, after all nodes.
+         * @param edge the edge id (edge table row number)
+         * @param depth the traversal depth of the edge
+         */
+        public void visitEdge(int edge, int depth);
+    }
+
+    private Graph m_graph;
+    private int   m_gen = 0;
+
+    // per node and per edge state, valid only when stamped
+    private int[] m_nstamp = new int[0];
+    private int[] m_ndepth = new int[0];
+    private int[] m_estamp = new int[0];
+    private int[] m_edepth = new int[0];
+
+    // visited nodes and edges, in visiting order
+    private int[] m_nodes = new int[16];
+    private int   m_ncount;
+    private int[] m_edges = new int[16];
+    private int   m_ecount;
+
+    // depth-first traversal stack of adjacency cursors
+    private int[] m_stack = new int[16];
+    private int[] m_next = new int[16];
+
+    /**
+     * Create a new GraphTraversal over the given graph.
+     * @param g the Graph to traverse
+     */
+    public GraphTraversal(Graph g) {
+        m_graph = g;
+    }
+
+    /**
+     * Get the Graph traversed.
+     * @return the traversed Graph
+     */
+    public Graph getGraph() {
+        return m_graph;
+    }
+
+    // ------------------------------------------------------------------------
+    // Traversals
+
+    /**
+     * Perform a breadth-first traversal from a set of source nodes. Nodes
+     * are visited up to the given depth. If edges are included, each edge
+     * incident on a node of depth less than the maximum depth is visited
+     * at one more than that node's depth, and each edge connecting two
+     * nodes at the maximum depth is visited at the maximum depth, matching
+     * the edge depths reported by {@link BreadthFirstIterator}.
+     * @param sources the source node ids (node table row numbers)
+     * @param count the number of source nodes in the array
+     * @param maxDepth the maximum traversal depth
+     * @param direction the edges to follow from each node. One of
+     * {@link prefuse.data.Graph#INEDGES},
+     * {@link prefuse.data.Graph#OUTEDGES}, or
+     * {@link prefuse.data.Graph#UNDIRECTED}.
+     * @param edges true to include edges in the traversal
+     * @param v an optional Visitor to receive the results, or null
+     * @return the number of nodes visited
+     */
+    public int breadthFirst(int[] sources, int count, int maxDepth,
+                            int direction, boolean edges, Visitor v)
+    {
+        AdjacencySnapshot adj = m_graph.getAdjacency();
+        int cap = begin(adj);
+        boolean out = ( direction != Graph.INEDGES );
+        boolean in  = ( direction != Graph.OUTEDGES );
+        int[] oo = adj.getOffsets(Graph.OUTEDGES);
+        int[] on = adj.getNodes(Graph.OUTEDGES);
+        int[] io = adj.getOffsets(Graph.INEDGES);
+        int[] in_ = adj.getNodes(Graph.INEDGES);
+
+        for ( int i=0; i<count; ++i ) {
+            int s = sources[i];
+            if ( s >= 0 && s < cap && m_nstamp[s] != m_gen )
+                visitNode(s, 0);
+        }
+
+        // nodes are queued in order of increasing depth
+        for ( int head=0; head<m_ncount; ++head ) {
+            int u = m_nodes[head];
+            int d = m_ndepth[u];
+            if ( d >= maxDepth ) break;
+            if ( out ) {
+                for ( int k=oo[u], end=oo[u+1]; k<end; ++k ) {
+                    int w = on[k];
+                    if ( m_nstamp[w] != m_gen ) visitNode(w, d+1);
+                }
+            }
+            if ( in ) {
+                for ( int k=io[u], end=io[u+1]; k<end; ++k ) {
+                    int w = in_[k];
+                    if ( m_nstamp[w] != m_gen ) visitNode(w, d+1);
+                }
+            }
+        }
+
+        if ( edges ) {
+            for ( int head=0; head<m_ncount; ++head ) {
+                int u = m_nodes[head];
+                if ( out ) visitEdges(adj, Graph.OUTEDGES, u, maxDepth);
+                if ( in  ) visitEdges(adj, Graph.INEDGES, u, maxDepth);
+            }
+        }
+
+        notify(v);
+        return m_ncount;
+    }
+
+    /**
+     * Visit the unvisited edges incident on a node.
+     */
+    private void visitEdges(AdjacencySnapshot adj, int dir, int u, int max) {
+        int[] off = adj.getOffsets(dir);
+        int[] edges = adj.getEdges(dir);
+        int[] nodes = adj.getNodes(dir);
+        int du = m_ndepth[u];
+        for ( int k=off[u], end=off[u+1]; k<end; ++k ) {
+            int e = edges[k];
+            if ( m_estamp[e] == m_gen ) continue;
+            if ( du < max ) {
+                visitEdge(e, du+1);
+            } else if ( du == max ) {
+                int w = nodes[k];
+                int dw = ( m_nstamp[w] == m_gen ? m_ndepth[w] : -1 );
+                if ( dw > 0 ) visitEdge(e, Math.min(du, dw));
+            }
+        }
+    }
+
+    /**
+     * Perform a depth-first traversal from a source node. Nodes are
+     * visited in pre-order, up to the given depth, where the depth of a
+     * node is its distance from the source along the traversal tree.
+     * @param source the source node id (node table row number)
+     * @param maxDepth the maximum traversal depth
+     * @param direction the edges to follow from each node. One of
+     * {@link prefuse.data.Graph#INEDGES},
+     * {@link prefuse.data.Graph#OUTEDGES}, or
+     * {@link prefuse.data.Graph#UNDIRECTED}.
+     * @param v an optional Visitor to receive the results, or null
+     * @return the number of nodes visited
+     */
+    public int depthFirst(int source, int maxDepth, int direction, Visitor v)
+    {
+        AdjacencySnapshot adj = m_graph.getAdjacency();
+        int cap = begin(adj);
+        if ( source < 0 || source >= cap ) {
+            notify(v);
+            return 0;
+        }
+        int[] oo = adj.getOffsets(Graph.OUTEDGES);
+        int[] on = adj.getNodes(Graph.OUTEDGES);
+        int[] io = adj.getOffsets(Graph.INEDGES);
+        int[] in = adj.getNodes(Graph.INEDGES);
+
+        // each stack entry holds a cursor over the node's out-links
+        // followed by its in-links
+        visitNode(source, 0);
+        int sp = 0;
+        m_stack[sp] = source; m_next[sp] = 0; ++sp;
+        while ( sp > 0 ) {
+            int u = m_stack[sp-1];
+            int od = ( direction == Graph.INEDGES ? 0 : oo[u+1]-oo[u] );
+            int id = ( direction == Graph.OUTEDGES ? 0 : io[u+1]-io[u] );
+            int i = m_next[sp-1]++;
+            if ( sp > maxDepth || i >= od+id ) {
+                --sp;
+                continue;
+            }
+            int w = ( i < od ? on[oo[u]+i] : in[io[u]+i-od] );
+            if ( m_nstamp[w] == m_gen )
+                continue;
+            visitNode(w, sp);
+            if ( sp == m_stack.length ) {
+                m_stack = grow(m_stack, sp);
+                m_next = grow(m_next, sp);
+            }
+            m_stack[sp] = w; m_next[sp] = 0; ++sp;
+        }
+
+        notify(v);
+        return m_ncount;
+    }
+
+    // ------------------------------------------------------------------------
+    // Internal State
+
+    /**
+     * Prepare the state arrays for a new traversal.
+     * @return the node capacity of the adjacency snapshot
+     */
+    private int begin(AdjacencySnapshot adj) {
+        int ncap = adj.getNodeCapacity();
+        int ecap = m_graph.getEdgeTable().getMaximumRow() + 1;
+        if ( m_nstamp.length < ncap ) {
+            m_nstamp = new int[ncap];
+            m_ndepth = new int[ncap];
+        }
+        if ( m_estamp.length < ecap ) {
+            m_estamp = new int[ecap];
+            m_edepth = new int[ecap];
+        }
+        if ( m_gen == Integer.MAX_VALUE ) {
+            // stamps are about to wrap around, clear them
+            Arrays.fill(m_nstamp, 0);
+            Arrays.fill(m_estamp, 0);
+            m_gen = 0;
+        }
+        ++m_gen;
+        m_ncount = m_ecount = 0;
+        return ncap;
+    }
+
+    private void visitNode(int node, int depth) {
+        m_nstamp[node] = m_gen;
+        m_ndepth[node] = depth;
+        if ( m_ncount == m_nodes.length )
+            m_nodes = grow(m_nodes, m_ncount);
+        m_nodes[m_ncount++] = node;
+    }
+
+    private void visitEdge(int edge, int depth) {
+        m_estamp[edge] = m_gen;
+        m_edepth[edge] = depth;
+        if ( m_ecount == m_edges.length )
+            m_edges = grow(m_edges, m_ecount);
+        m_edges[m_ecount++] = edge;
+    }
+
+    private static int[] grow(int[] a, int len) {
+        int[] b = new int[2*a.length];
+        System.arraycopy(a, 0, b, 0, len);
+        return b;
+    }
+
+    private void notify(Visitor v) {
+        if ( v == null ) return;
+        for ( int i=0; i<m_ncount; ++i ) {
+            int n = m_nodes[i];
+            v.visitNode(n, m_ndepth[n]);
+        }
+        for ( int i=0; i<m_ecount; ++i ) {
+            int e = m_edges[i];
+            v.visitEdge(e, m_edepth[e]);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Results
+
+    /**
+     * Get the depth at which a node was visited by the last traversal.
+     * @param node a node id (node table row number)
+     * @return the traversal depth, or -1 if the node was not visited
+     */
+    public int getDepth(int node) {
+        return ( node >= 0 && node < m_nstamp.length
+                 && m_nstamp[node] == m_gen ? m_ndepth[node] : -1 );
+    }
+
+    /**
+     * Get the depth at which an edge was visited by the last traversal.
+     * @param edge an edge id (edge table row number)
+     * @return the traversal depth, or -1 if the edge was not visited
+     */
+    public int getEdgeDepth(int edge) {
+        return ( edge >= 0 && edge < m_estamp.length
+                 && m_estamp[edge] == m_gen ? m_edepth[edge] : -1 );
+    }
+
+    /**
+     * Get the number of nodes visited by the last traversal.
+     * @return the number of visited nodes
+     */
+    public int getNodeCount() {
+        return m_ncount;
+    }
+
+    /**
+     * Get a node visited by the last traversal.
+     * @param i the position of the node in visiting order
+     * @return the node id (node table row number)
+     */
+    public int getNode(int i) {
+        if ( i < 0 || i >= m_ncount )
+            throw new IndexOutOfBoundsException();
+        return m_nodes[i];
+    }
+
+    /**
+     * Get the number of edges visited by the last traversal.
+     * @return the number of visited edges
+     */
+    public int getEdgeCount() {
+        return m_ecount;
+    }
+
+    /**
+     * Get an edge visited by the last traversal.
+     * @param i the position of the edge in visiting order
+     * @return the edge id (edge table row number)
+     */
+    public int getEdge(int i) {
+        if ( i < 0 || i >= m_ecount )
+            throw new IndexOutOfBoundsException();
+        return m_edges[i];
+    }
+
+    /**
+     * Set the bits of the nodes visited by the last traversal.
+     * @param bits the BitSet to update, or null to create a new one
+     * @return the BitSet with a bit set for each visited node id
+     */
+    public BitSet getVisitedNodes(BitSet bits) {
+        if ( bits == null ) bits = new BitSet();
+        for ( int i=0; i<m_ncount; ++i )
+            bits.set(m_nodes[i]);
+        return bits;
+    }
+
+    /**
+     * Set the bits of the edges visited by the last traversal.
+     * @param bits the BitSet to update, or null to create a new one
+     * @return the BitSet with a bit set for each visited edge id
+     */
+    public BitSet getVisitedEdges(BitSet bits) {
+        if ( bits == null ) bits = new BitSet();
+        for ( int i=0; i<m_ecount; ++i )
+            bits.set(m_edges[i]);
+        return bits;
+    }
+
+} // end of class GraphTraversal
@@ -3,18 +3,23 @@ package prefuse.data.util;
 import java.util.Iterator;
 
 import prefuse.data.Edge;
+import prefuse.data.Graph;
 import prefuse.data.Node;
+import prefuse.util.collections.IntIterator;
 
 /**
  * Iterator over neighbors of a given Node. Resolves Edge instances to
- * provide direct iteration over the Node instances.
+ * provide direct iteration over the Node instances, or reads the neighboring
+ * node ids directly from an {@link AdjacencySnapshot} of the graph.
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class NeighborIterator implements Iterator {
 
-    private Iterator m_edges;
-    private Node     m_node;
+    private Iterator<?> m_edges;
+    private Node        m_node;
+    private Graph       m_graph;
+    private IntIterator m_nodes;
     
     /**
      * Create a new NeighborIterator.
@@ -26,6 +31,22 @@ public class NeighborIterator implements Iterator {
         m_edges = edges;
     }
     
+    /**
+     * Create a new NeighborIterator over the neighbors recorded in an
+     * adjacency snapshot.
+     * @param n the source node
+     * @param adj the adjacency snapshot of the node's graph
+     * @param direction the directionality of the edges to follow. One of
+     * {@link prefuse.data.Graph#INEDGES},
+     * {@link prefuse.data.Graph#OUTEDGES}, or
+     * {@link prefuse.data.Graph#UNDIRECTED}.
+     */
+    public NeighborIterator(Node n, AdjacencySnapshot adj, int direction) {
+        m_node = n;
+        m_graph = adj.getGraph();
+        m_nodes = adj.neighborRows(n.getRow(), direction);
+    }
+    
     /**
      * @see java.util.Iterator#remove()
      */
@@ -37,13 +58,15 @@ public class NeighborIterator implements Iterator {
      * @see java.util.Iterator#hasNext()
      */
     public boolean hasNext() {
-        return m_edges.hasNext();
+        return ( m_nodes != null ? m_nodes.hasNext() : m_edges.hasNext() );
     }
 
     /**
      * @see java.util.Iterator#next()
      */
     public Object next() {
+        if ( m_nodes != null )
+            return m_graph.getNode(m_nodes.nextInt());
         Edge e = (Edge)m_edges.next();
         return e.getAdjacentNode(m_node);
     }
@@ -105,7 +105,20 @@ public class RowManager {
         }
         return r;
     }
-    
+
+    /**
+     * Add a contiguous block of new rows to management. The rows are
+     * appended after the current maximum row, and any free rows below
+     * the maximum are left available.
+     * @param nrows the number of rows to add
+     * @return the row index of the first added row
+     */
+    public int addRows(int nrows) {
+        int r = m_curId + 1;
+        m_curId += nrows;
+        return r;
+    }
+
     /**
      * Release a row and mark it as free.
      * @param row the row index of the released row
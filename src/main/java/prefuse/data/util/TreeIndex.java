@@ -4,6 +4,7 @@ import java.util.Comparator;
 
 import prefuse.data.Table;
 import prefuse.data.column.Column;
+import prefuse.data.column.DictionaryColumn;
 import prefuse.data.event.ColumnListener;
 import prefuse.data.event.EventConstants;
 import prefuse.data.event.TableListener;
@@ -11,7 +12,9 @@ import prefuse.util.collections.BooleanIntSortedMap;
 import prefuse.util.collections.DoubleIntSortedMap;
 import prefuse.util.collections.FloatIntSortedMap;
 import prefuse.util.collections.IncompatibleComparatorException;
+import prefuse.util.collections.IntArrayIterator;
 import prefuse.util.collections.IntIntSortedMap;
+import prefuse.util.collections.IntIntTreeMap;
 import prefuse.util.collections.IntIterator;
 import prefuse.util.collections.IntSortedMap;
 import prefuse.util.collections.LongIntSortedMap;
@@ -20,7 +23,10 @@ import prefuse.util.collections.SortedMapFactory;
 
 /**
  * Index instance that uses red-black trees to provide an index
- * over a column of data.
+ * over a column of data. Dictionary-encoded columns are indexed by
+ * their integer value codes, ordered by the values the codes represent.
+ * Queries on such an index take column values, which are translated
+ * through the dictionary, and never codes.
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
@@ -32,6 +38,7 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
     protected IntSortedMap    m_index;
     protected boolean         m_reindex;
     protected int             m_colidx;
+    protected DictionaryColumn m_dict;
     
     /**
      * Create a new TreeIndex.
@@ -49,7 +56,12 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
         m_rows = rows;
         m_col = col;
         
-        m_index = SortedMapFactory.getMap(col.getColumnType(), cmp, false);
+        if ( col instanceof DictionaryColumn ) {
+            m_dict = (DictionaryColumn)col;
+            m_index = new IntIntTreeMap(m_dict.getCodeComparator(cmp), true);
+        } else {
+            m_index = SortedMapFactory.getMap(col.getColumnType(), cmp, false);
+        }
         index();
         
         m_col.addColumnListener(this);
@@ -68,6 +80,10 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#getComparator()
      */
     public Comparator getComparator() {
+        if ( m_dict != null ) {
+            return ((DictionaryColumn.CodeComparator)m_index.comparator())
+                        .getValueComparator();
+        }
         return m_index.comparator();
     }
     
@@ -99,7 +115,15 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
         m_colidx = idx;
         IntIterator rows = m_rows.rows();
         
-        if ( m_index instanceof IntIntSortedMap )
+        if ( m_dict != null )
+        {
+            IntIntSortedMap map = (IntIntSortedMap)m_index;
+            while ( rows.hasNext() ) {
+                int r = rows.nextInt();
+                map.put(m_dict.getCode(m_table.getColumnRow(r,idx)), r);
+            }
+        }
+        else if ( m_index instanceof IntIntSortedMap )
         {
             IntIntSortedMap map = (IntIntSortedMap)m_index;
             while ( rows.hasNext() ) {
@@ -174,7 +198,16 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
         // make sure we access the right column value
         int crow = m_rows.getColumnRow(row, getColumnIndex());
         
-        if ( m_index instanceof IntIntSortedMap )
+        if ( m_dict != null )
+        {
+            IntIntSortedMap map = (IntIntSortedMap)m_index;
+            int key = m_dict.getCode(crow);
+            if ( insert )
+                map.put(key, row);
+            else
+                map.remove(key, row);
+        }
+        else if ( m_index instanceof IntIntSortedMap )
         {
             IntIntSortedMap map = (IntIntSortedMap)m_index;
             int key = m_col.getInt(row);
@@ -296,6 +329,11 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
     public void columnChanged(Column src, int idx, Object prev) {
         int row = m_rows.getTableRow(idx, getColumnIndex());
         if ( row < 0 ) return; // invalid row value
+        if ( m_dict != null ) {
+            ((IntIntSortedMap)m_index).remove(m_dict.getCode(prev), row);
+            ((IntIntSortedMap)m_index).put(m_dict.getCode(idx), row);
+            return;
+        }
         ((ObjectIntSortedMap)m_index).remove(prev, row);
         ((ObjectIntSortedMap)m_index).put(src.get(idx), row);
     }
@@ -345,6 +383,8 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#rows(java.lang.Object, java.lang.Object, int)
      */
     public IntIterator rows(Object lo, Object hi, int type) {
+        if ( m_dict != null )
+            return dictionaryRows(lo, hi, type);
         if ( !(m_index instanceof ObjectIntSortedMap) )
             throw new IllegalStateException();
 
@@ -363,10 +403,63 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
         }
     }
     
+    /**
+     * Range query over a dictionary-encoded column. The value bounds are
+     * resolved to the codes of the nearest dictionary values within the
+     * range, after which the query only compares codes.
+     */
+    private IntIterator dictionaryRows(Object lo, Object hi, int type) {
+        boolean reverse = (type & Index.TYPE_DESCENDING) > 0;
+        boolean linc = (type & Index.TYPE_LEFT_INCLUSIVE) > 0;
+        boolean hinc = (type & Index.TYPE_RIGHT_INCLUSIVE) > 0;
+        
+        @SuppressWarnings("unchecked")
+        Comparator<Object> cmp = getComparator();
+        int locode = -1, hicode = -1;
+        Object loval = null, hival = null;
+        boolean scan = true;
+        if ( linc && hinc && lo != null && hi != null
+             && cmp.compare(lo, hi) == 0 )
+        {
+            // equality query, look up the code directly
+            locode = hicode = m_dict.getCode(lo);
+            scan = ( locode < 0 );
+        }
+        for ( int c=0; scan && c<m_dict.getDictionarySize(); ++c ) {
+            Object v = m_dict.getValue(c);
+            if ( lo != null ) {
+                int x = cmp.compare(v, lo);
+                if ( x < 0 || (x == 0 && !linc) ) continue;
+            }
+            if ( hi != null ) {
+                int x = cmp.compare(v, hi);
+                if ( x > 0 || (x == 0 && !hinc) ) continue;
+            }
+            if ( locode < 0 || cmp.compare(v, loval) < 0 ) {
+                locode = c; loval = v;
+            }
+            if ( hicode < 0 || cmp.compare(v, hival) > 0 ) {
+                hicode = c; hival = v;
+            }
+        }
+        if ( locode < 0 )
+            return new IntArrayIterator(new int[0], 0, 0);
+        
+        IntIntSortedMap index = (IntIntSortedMap)m_index;
+        if ( reverse ) {
+            return index.valueRangeIterator(hicode, true, locode, true);
+        } else {
+            return index.valueRangeIterator(locode, true, hicode, true);
+        }
+    }
+    
     /**
      * @see prefuse.data.util.Index#rows(int, int, int)
      */
     public IntIterator rows(int lo, int hi, int type) {
+        if ( m_dict != null )
+            return dictionaryRows(Integer.valueOf(lo), Integer.valueOf(hi),
+                                  type);
         if ( !(m_index instanceof IntIntSortedMap) )
             throw new IllegalStateException();
 
@@ -386,6 +479,8 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#rows(long, long, int)
      */
     public IntIterator rows(long lo, long hi, int type) {
+        if ( m_dict != null )
+            return dictionaryRows(Long.valueOf(lo), Long.valueOf(hi), type);
         if ( !(m_index instanceof LongIntSortedMap) )
             throw new IllegalStateException();
         
@@ -405,6 +500,8 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#rows(float, float, int)
      */
     public IntIterator rows(float lo, float hi, int type) {
+        if ( m_dict != null )
+            return dictionaryRows(Float.valueOf(lo), Float.valueOf(hi), type);
         if ( !(m_index instanceof FloatIntSortedMap) )
             throw new IllegalStateException();
         
@@ -424,6 +521,8 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#rows(double, double, int)
      */
     public IntIterator rows(double lo, double hi, int type) {
+        if ( m_dict != null )
+            return dictionaryRows(Double.valueOf(lo), Double.valueOf(hi), type);
         if ( !(m_index instanceof DoubleIntSortedMap) )
             throw new IllegalStateException();
         
@@ -493,6 +592,8 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#get(double)
      */
     public int get(double x) {
+        if ( m_dict != null )
+            return get(Double.valueOf(x));
         DoubleIntSortedMap index = (DoubleIntSortedMap)m_index;
         return index.get(x);
     }
@@ -501,6 +602,8 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#get(float)
      */
     public int get(float x) {
+        if ( m_dict != null )
+            return get(Float.valueOf(x));
         FloatIntSortedMap index = (FloatIntSortedMap)m_index;
         return index.get(x);
     }
@@ -509,6 +612,8 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#get(int)
      */
     public int get(int x) {
+        if ( m_dict != null )
+            return get(Integer.valueOf(x));
         IntIntSortedMap index = (IntIntSortedMap)m_index;
         return index.get(x);
     }
@@ -517,6 +622,8 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#get(long)
      */
     public int get(long x) {
+        if ( m_dict != null )
+            return get(Long.valueOf(x));
         LongIntSortedMap index = (LongIntSortedMap)m_index;
         return index.get(x);
     }
@@ -525,6 +632,11 @@ public class TreeIndex implements Index, ColumnListener, TableListener {
      * @see prefuse.data.util.Index#get(java.lang.Object)
      */
     public int get(Object x) {
+        if ( m_dict != null ) {
+            int code = m_dict.getCode(x);
+            return ( code < 0 ? Integer.MIN_VALUE
+                              : ((IntIntSortedMap)m_index).get(code) );
+        }
         ObjectIntSortedMap index = (ObjectIntSortedMap)m_index;
         return index.get(x);
     }
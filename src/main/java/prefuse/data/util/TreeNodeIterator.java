@@ -7,10 +7,15 @@ package prefuse.data.util;
 import java.util.ArrayList;
 import java.util.Iterator;
 
+import prefuse.data.Graph;
 import prefuse.data.Node;
+import prefuse.data.Tree;
+import prefuse.util.collections.IntIterator;
 
 /**
- * A depth-first iterator over the subtree rooted at given node.
+ * A depth-first iterator over the subtree rooted at given node. If the
+ * node's spanning tree has a {@link TreeOrderIndex}, the subtree is read
+ * directly from the traversal orders stored in the index.
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
@@ -19,6 +24,8 @@ public class TreeNodeIterator implements Iterator {
     private ArrayList m_stack;
     private Node m_root;
     private boolean m_preOrder = true;
+    private Tree m_tree;
+    private IntIterator m_rows;
     
     /**
      * Create a new TreeNodeIterator over the given subtree.
@@ -37,6 +44,18 @@ public class TreeNodeIterator implements Iterator {
     public TreeNodeIterator(Node root, boolean preOrder) {
     	m_preOrder = preOrder;
     	m_root = root;
+    	
+    	Graph g = root.getGraph();
+    	Tree tree = ( g == null ? null : g.getSpanningTree() );
+    	if ( tree != null && tree.hasOrderIndex() ) {
+    		TreeOrderIndex index = tree.getOrderIndex();
+    		if ( index.getPreOrder(root.getRow()) >= 0 ) {
+    			m_tree = tree;
+    			m_rows = index.subtreeRows(root.getRow(), preOrder);
+    			return;
+    		}
+    	}
+    	
     	m_stack = new ArrayList();
     	m_stack.add(root);
     	
@@ -51,6 +70,8 @@ public class TreeNodeIterator implements Iterator {
      * @see java.util.Iterator#hasNext()
      */
     public boolean hasNext() {
+        if ( m_rows != null )
+            return m_rows.hasNext();
         return !m_stack.isEmpty();
     }
 
@@ -58,12 +79,15 @@ public class TreeNodeIterator implements Iterator {
      * @see java.util.Iterator#next()
      */
     public Object next() {
+    	if ( m_rows != null )
+    		return m_tree.getNode(m_rows.nextInt());
+    	
     	Node c, x;
     	if (m_preOrder) {
     		x = (Node)m_stack.get(m_stack.size()-1);
 	    	if ( (c=x.getChild(0)) != null ) {
 	    		m_stack.add(c);
-	    	} else if ( (c=x.getNextSibling()) != null ) {
+	    	} else if ( x != m_root && (c=x.getNextSibling()) != null ) {
 	    		m_stack.set(m_stack.size()-1, c);
 	    	} else {
 	    		m_stack.remove(m_stack.size()-1);
@@ -0,0 +1,273 @@
+package prefuse.data.util;
+
+import prefuse.data.Graph;
+import prefuse.data.Table;
+import prefuse.data.Tree;
+import prefuse.data.event.GraphListener;
+import prefuse.util.collections.IntArrayIterator;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * Index over the structure of a {@link prefuse.data.Tree}, storing the
+ * pre-order and post-order traversal numbers, depth, and subtree size of
+ * each node. With these in place, depth, ancestry and subtree queries
+ * are answered in constant time, and the nodes of a subtree form a
+ * contiguous range of the traversal orders. The index listens for changes
+ * to the tree structure and is rebuilt lazily upon the next query after a
+ * change, so it is best suited to trees that are queried much more often
+ * than they are edited, such as trees being laid out or rendered.
+ */
+public class TreeOrderIndex implements GraphListener {
+
+    private Tree    m_tree;
+    private int     m_root = -1;
+    private boolean m_valid = false;
+    private int     m_count;
+
+    // per node values, indexed by node table row
+    private int[] m_pre   = new int[0];
+    private int[] m_post  = new int[0];
+    private int[] m_depth = new int[0];
+    private int[] m_size  = new int[0];
+
+    // node table rows, indexed by traversal order
+    private int[] m_preorder  = new int[0];
+    private int[] m_postorder = new int[0];
+
+    /**
+     * Create a new TreeOrderIndex over the given tree.
+     * @param tree the Tree to index
+     */
+    public TreeOrderIndex(Tree tree) {
+        m_tree = tree;
+        m_tree.addGraphModelListener(this);
+    }
+
+    /**
+     * Stop listening to the tree. Once disposed, the index no longer
+     * tracks changes to the tree and should not be used.
+     */
+    public void dispose() {
+        m_tree.removeGraphModelListener(this);
+        m_valid = false;
+    }
+
+    /**
+     * Get the Tree indexed by this index.
+     * @return the indexed Tree
+     */
+    public Tree getTree() {
+        return m_tree;
+    }
+
+    /**
+     * Indicates if the index is currently up to date with the tree
+     * structure. Queries on an invalid index will first rebuild it.
+     * @return true if the index is valid, false if it needs rebuilding
+     */
+    public boolean isValid() {
+        return m_valid && m_root == m_tree.getRootRow();
+    }
+
+    /**
+     * Mark the index as invalid, causing it to be rebuilt upon the next
+     * query.
+     */
+    public void invalidate() {
+        m_valid = false;
+    }
+
+    // ------------------------------------------------------------------------
+    // Index Construction
+
+    /**
+     * Rebuild the index by performing a depth-first traversal of the
+     * tree from its root.
+     */
+    public void index() {
+        Table nodes = m_tree.getNodeTable();
+        int n = nodes.getMaximumRow() + 1;
+        if ( m_pre.length < n ) {
+            m_pre   = new int[n];
+            m_post  = new int[n];
+            m_depth = new int[n];
+            m_size  = new int[n];
+            m_preorder  = new int[n];
+            m_postorder = new int[n];
+        }
+        for ( int i=0; i<m_pre.length; ++i ) {
+            m_pre[i] = m_post[i] = m_depth[i] = -1;
+            m_size[i] = 0;
+        }
+        m_count = 0;
+        m_root = m_tree.getRootRow();
+
+        if ( m_root >= 0 && nodes.isValidRow(m_root) ) {
+            // iterative traversal, keeping the next child index of
+            // each node on the stack
+            int[] stack = new int[16];
+            int[] next  = new int[16];
+            int sp = 0, post = 0;
+
+            visit(m_root, 0);
+            stack[sp] = m_root; next[sp] = 0; ++sp;
+            while ( sp > 0 ) {
+                int u = stack[sp-1];
+                int i = next[sp-1]++;
+                if ( i < m_tree.getChildCount(u) ) {
+                    int c = m_tree.getChildRow(u, i);
+                    if ( c < 0 || m_pre[c] >= 0 )
+                        continue; // not a valid tree edge
+                    visit(c, sp);
+                    if ( sp == stack.length ) {
+                        int[] s = new int[2*sp], x = new int[2*sp];
+                        System.arraycopy(stack, 0, s, 0, sp);
+                        System.arraycopy(next, 0, x, 0, sp);
+                        stack = s; next = x;
+                    }
+                    stack[sp] = c; next[sp] = 0; ++sp;
+                } else {
+                    --sp;
+                    m_post[u] = post;
+                    m_postorder[post++] = u;
+                    m_size[u] = m_count - m_pre[u];
+                }
+            }
+        }
+        m_valid = true;
+    }
+
+    private void visit(int node, int depth) {
+        m_pre[node] = m_count;
+        m_depth[node] = depth;
+        m_preorder[m_count++] = node;
+    }
+
+    private void check() {
+        if ( !isValid() ) index();
+    }
+
+    private boolean contains(int node) {
+        return node >= 0 && node < m_pre.length && m_pre[node] >= 0;
+    }
+
+    // ------------------------------------------------------------------------
+    // Graph Listener
+
+    /**
+     * Invalidates the index when nodes or edges are added or removed, or
+     * when an edge's source or target key, or a node's key, is updated.
+     * @see prefuse.data.event.GraphListener#graphChanged(prefuse.data.Graph, java.lang.String, int, int, int, int)
+     */
+    public void graphChanged(Graph g, String table,
+            int start, int end, int col, int type)
+    {
+        if ( m_valid && AdjacencySnapshot.isStructureChange(g,table,col,type) )
+            m_valid = false;
+    }
+
+    // ------------------------------------------------------------------------
+    // Queries
+
+    /**
+     * Get the number of nodes reachable from the root of the tree.
+     * @return the number of indexed nodes
+     */
+    public int getNodeCount() {
+        check();
+        return m_count;
+    }
+
+    /**
+     * Get the depth of a node in the tree.
+     * @param node a node id (node table row number)
+     * @return the depth of the node, with the root at depth 0, or -1 if
+     * the node is not reachable from the root of the tree
+     */
+    public int getDepth(int node) {
+        check();
+        return ( contains(node) ? m_depth[node] : -1 );
+    }
+
+    /**
+     * Get the position of a node in a pre-order traversal of the tree.
+     * @param node a node id (node table row number)
+     * @return the pre-order number of the node, or -1 if the node is not
+     * reachable from the root of the tree
+     */
+    public int getPreOrder(int node) {
+        check();
+        return ( contains(node) ? m_pre[node] : -1 );
+    }
+
+    /**
+     * Get the position of a node in a post-order traversal of the tree.
+     * @param node a node id (node table row number)
+     * @return the post-order number of the node, or -1 if the node is not
+     * reachable from the root of the tree
+     */
+    public int getPostOrder(int node) {
+        check();
+        return ( contains(node) ? m_post[node] : -1 );
+    }
+
+    /**
+     * Get the number of nodes in the subtree rooted at a node, including
+     * the node itself.
+     * @param node a node id (node table row number)
+     * @return the subtree size, or 0 if the node is not reachable from the
+     * root of the tree
+     */
+    public int getSubtreeSize(int node) {
+        check();
+        return ( contains(node) ? m_size[node] : 0 );
+    }
+
+    /**
+     * Indicates if one node is a proper ancestor of another.
+     * @param ancestor the candidate ancestor node id (node table row number)
+     * @param node the candidate descendant node id (node table row number)
+     * @return true if ancestor lies on the path from the root to node, and
+     * the two nodes are not the same, false otherwise
+     */
+    public boolean isAncestor(int ancestor, int node) {
+        check();
+        if ( !contains(ancestor) || !contains(node) )
+            return false;
+        int a = m_pre[ancestor], n = m_pre[node];
+        return a < n && n < a + m_size[ancestor];
+    }
+
+    /**
+     * Get the node at a given position in a pre-order traversal.
+     * @param order the pre-order number
+     * @return the node id (node table row number), or -1 if the order
+     * number is out of range
+     */
+    public int getPreOrderRow(int order) {
+        check();
+        return ( order < 0 || order >= m_count ? -1 : m_preorder[order] );
+    }
+
+    /**
+     * Get an iterator over the nodes of the subtree rooted at a node.
+     * @param node the subtree root node id (node table row number)
+     * @param preOrder true to iterate in pre-order, false for post-order
+     * @return an iterator over the node ids (node table row numbers) of
+     * the subtree, including the root node. The iterator should not be
+     * used after the tree has been changed.
+     */
+    public IntIterator subtreeRows(int node, boolean preOrder) {
+        check();
+        if ( !contains(node) )
+            return new IntArrayIterator(m_preorder, 0, 0);
+        int size = m_size[node];
+        if ( preOrder ) {
+            return new IntArrayIterator(m_preorder, m_pre[node], size);
+        } else {
+            return new IntArrayIterator(m_postorder,
+                                        m_post[node]-size+1, size);
+        }
+    }
+
+} // end of class TreeOrderIndex
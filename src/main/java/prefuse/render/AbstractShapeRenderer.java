@@ -2,11 +2,20 @@ package prefuse.render;
 
 import java.awt.BasicStroke;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import prefuse.util.GraphicsLib;
+import prefuse.util.display.FrameMetrics;
 import prefuse.visual.VisualItem;
 
 
@@ -30,30 +39,250 @@ import prefuse.visual.VisualItem;
  * @author alan newberger
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
-public abstract class AbstractShapeRenderer implements Renderer {
+public abstract class AbstractShapeRenderer implements Renderer, Cloneable {
     
     public static final int RENDER_TYPE_NONE = 0;
     public static final int RENDER_TYPE_DRAW = 1;
     public static final int RENDER_TYPE_FILL = 2;
     public static final int RENDER_TYPE_DRAW_AND_FILL = 3;
 
+    /** The largest sprite width or height, in pixels, that will be cached. */
+    public static final int MAX_SPRITE_SIZE = 256;
+    /** Number of sub-pixel offsets per pixel distinguished by sprites. */
+    private static final int SPRITE_SUBPIXELS = 4;
+    /** Number of sprite scale levels per doubling of the scale. */
+    private static final int SPRITE_SCALE_STEPS = 256;
+
     private int m_renderType = RENDER_TYPE_DRAW_AND_FILL;
     protected AffineTransform m_transform = new AffineTransform();
     protected boolean m_manageBounds = true;
     
+    // retained raster cache
+    private int m_spriteCacheSize = 0;
+    private LinkedHashMap<List<Object>,BufferedImage> m_sprites = null;
+    private boolean m_drawingSprite = false;
+
+    
     public void setManageBounds(boolean b) {
         m_manageBounds = b;
     }
     
+    /**
+     * Creates a copy of this renderer for use by another rendering thread,
+     * as done by a {@link prefuse.Display} rendering in parallel tiles.
+     * The copy shares this renderer's settings and sprite cache, but has
+     * its own temporary transform. Subclasses that update other member
+     * variables while rendering must override this method to give the
+     * copy its own instances of them.
+     * @see java.lang.Object#clone()
+     */
+    public Object clone() {
+        try {
+            AbstractShapeRenderer r = (AbstractShapeRenderer)super.clone();
+            r.m_transform = new AffineTransform();
+            r.m_drawingSprite = false;
+            return r;
+        } catch ( CloneNotSupportedException e ) {
+            throw new InternalError(e.toString());
+        }
+    }
+    
     /**
      * @see prefuse.render.Renderer#render(java.awt.Graphics2D, prefuse.visual.VisualItem)
      */
     public void render(Graphics2D g, VisualItem item) {
+        if ( renderSprite(g, item) )
+            return;
         Shape shape = getShape(item);
         if (shape != null)
             drawShape(g, item, shape);
     }
     
+    // ------------------------------------------------------------------------
+    // Sprite Cache
+    
+    /**
+     * Sets the number of rendered item images ("sprites") this renderer
+     * retains. When enabled, items with the same visual state (as
+     * determined by {@link #getSpriteKey(VisualItem)}) drawn at the same
+     * scale are rendered once into an image, which is then copied to the
+     * screen for each matching item. This can greatly speed up panning
+     * of large, static views. Sprites are only used for scaling and
+     * translating transforms and for items smaller than
+     * {@link #MAX_SPRITE_SIZE} pixels on screen. As sprites are positioned
+     * to a quarter pixel and drawn at the nearest of 256 scale levels per
+     * doubling of the scale, output may differ from direct rendering by up
+     * to one pixel. The cache may be used from multiple threads. Caching
+     * is disabled by default.
+     * @param size the maximum number of cached sprites, or zero to disable
+     * the cache
+     */
+    public void setSpriteCacheSize(int size) {
+        m_spriteCacheSize = Math.max(0, size);
+        if ( m_spriteCacheSize == 0 ) {
+            m_sprites = null;
+        } else if ( m_sprites == null ) {
+            m_sprites = new LinkedHashMap<List<Object>,BufferedImage>(
+                    64, 0.75f, true)
+            {
+                private static final long serialVersionUID = 1L;
+                protected boolean removeEldestEntry(
+                    Map.Entry<List<Object>,BufferedImage> eldest)
+                {
+                    return size() > m_spriteCacheSize;
+                }
+            };
+        }
+    }
+    
+    /**
+     * Returns the number of rendered item images this renderer retains.
+     * @return the maximum number of cached sprites, zero if disabled
+     */
+    public int getSpriteCacheSize() {
+        return m_spriteCacheSize;
+    }
+    
+    /**
+     * Clears all cached sprites.
+     */
+    public void clearSpriteCache() {
+        LinkedHashMap<List<Object>,BufferedImage> sprites = m_sprites;
+        if ( sprites != null ) {
+            synchronized ( sprites ) {
+                sprites.clear();
+            }
+        }
+    }
+    
+    /**
+     * Indicates if this renderer is drawing an item into a new sprite, in
+     * which case the item is drawn in full detail.
+     * @return true while a sprite is being drawn
+     */
+    protected boolean isDrawingSprite() {
+        return m_drawingSprite;
+    }
+    
+    /**
+     * Returns a key describing every aspect of an item's visual state that
+     * affects how this renderer draws it, relative to the item's bounds.
+     * Two items with equal keys must render identically once translated to
+     * the same position. By default this method returns null, disabling
+     * sprite caching; subclasses whose output is fully determined by a
+     * known set of attributes should override it.
+     * @param item the VisualItem
+     * @return a key object with value-based equals and hashCode, or null
+     * if the item should not be drawn from a cached sprite
+     */
+    protected Object getSpriteKey(VisualItem item) {
+        return null;
+    }
+    
+    /**
+     * Attempts to draw the given item by copying a cached sprite, creating
+     * the sprite if needed. Subclasses that override
+     * {@link #render(Graphics2D, VisualItem)} can call this method first
+     * and return immediately if it succeeds.
+     * @param g the Graphics2D context
+     * @param item the VisualItem to draw
+     * @return true if the item was drawn from a sprite, false if it must
+     * be rendered normally
+     */
+    protected boolean renderSprite(Graphics2D g, VisualItem item) {
+        LinkedHashMap<List<Object>,BufferedImage> sprites = m_sprites;
+        if ( sprites == null || m_drawingSprite )
+            return false;
+        
+        // vector and print output is drawn directly
+        GraphicsConfiguration gc = g.getDeviceConfiguration();
+        if ( gc != null && gc.getDevice().getType()
+                == GraphicsDevice.TYPE_PRINTER )
+            return false;
+        
+        // only plain scale and translate transforms are supported
+        AffineTransform at = g.getTransform();
+        if ( at.getShearX() != 0 || at.getShearY() != 0 )
+            return false;
+        double sx = at.getScaleX(), sy = at.getScaleY();
+        if ( sx <= 0 || sy <= 0 )
+            return false;
+        
+        // sprites are drawn at a quantized scale, so that scales differing
+        // only by rounding error share sprites
+        int lx = scaleLevel(sx), ly = scaleLevel(sy);
+        double qsx = scaleOf(lx), qsy = scaleOf(ly);
+        
+        Rectangle2D b = item.getBounds();
+        double w = qsx*b.getWidth(), h = qsy*b.getHeight();
+        if ( !(w < MAX_SPRITE_SIZE && h < MAX_SPRITE_SIZE) )
+            return false;
+        
+        Object key = getSpriteKey(item);
+        if ( key == null )
+            return false;
+        
+        // device position of the bounds, split into pixel and sub-pixel
+        double dx = sx*b.getX() + at.getTranslateX();
+        double dy = sy*b.getY() + at.getTranslateY();
+        double px = Math.floor(dx), py = Math.floor(dy);
+        int qx = (int)((dx-px)*SPRITE_SUBPIXELS);
+        int qy = (int)((dy-py)*SPRITE_SUBPIXELS);
+        
+        List<Object> skey = Arrays.asList(new Object[] { key,
+            Integer.valueOf(lx), Integer.valueOf(ly),
+            Integer.valueOf(qx), Integer.valueOf(qy) });
+        BufferedImage img;
+        synchronized ( sprites ) {
+            img = sprites.get(skey);
+        }
+        FrameMetrics metrics = FrameMetrics.getCurrent();
+        if ( metrics != null )
+            metrics.countSprite(img == null);
+        if ( img == null ) {
+            // render the item into a new sprite, with a one pixel margin
+            int iw = (int)Math.ceil(w) + 3, ih = (int)Math.ceil(h) + 3;
+            img = new BufferedImage(iw, ih, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D ig = img.createGraphics();
+            ig.setRenderingHints(g.getRenderingHints());
+            ig.translate(1 + (double)qx/SPRITE_SUBPIXELS,
+                         1 + (double)qy/SPRITE_SUBPIXELS);
+            ig.scale(qsx, qsy);
+            ig.translate(-b.getX(), -b.getY());
+            m_drawingSprite = true;
+            try {
+                render(ig, item);
+            } finally {
+                m_drawingSprite = false;
+                ig.dispose();
+            }
+            synchronized ( sprites ) {
+                sprites.put(skey, img);
+            }
+        }
+        
+        // copy the sprite in device space
+        g.setTransform(new AffineTransform());
+        g.drawImage(img, (int)px-1, (int)py-1, null);
+        g.setTransform(at);
+        return true;
+    }
+    
+    /**
+     * Get the index of the sprite scale level nearest to a scale factor.
+     */
+    private static int scaleLevel(double scale) {
+        double log2 = Math.log(scale) / Math.log(2);
+        return (int)Math.rint(SPRITE_SCALE_STEPS * log2);
+    }
+    
+    /**
+     * Get the scale factor of a sprite scale level.
+     */
+    private static double scaleOf(int level) {
+        return Math.pow(2, (double)level/SPRITE_SCALE_STEPS);
+    }
+    
     /**
      * Draws the specified shape into the provided Graphics context, using
      * stroke and fill color values from the specified VisualItem. This method
@@ -50,6 +50,16 @@ public class AxisRenderer extends AbstractShapeRenderer {
         m_yAlign = yAlign;
     }
     
+    /**
+     * @see prefuse.render.AbstractShapeRenderer#clone()
+     */
+    public Object clone() {
+        AxisRenderer r = (AxisRenderer)super.clone();
+        r.m_line = new Line2D.Double();
+        r.m_box  = new Rectangle2D.Double();
+        return r;
+    }
+    
     /**
      * Set the horizontal alignment of axis labels.
      * @param xAlign the horizontal alignment for the axis label. One of
@@ -99,6 +99,28 @@ public class EdgeRenderer extends AbstractShapeRenderer {
         setArrowType(arrowType);
     }
     
+    /**
+     * @see prefuse.render.AbstractShapeRenderer#clone()
+     */
+    public Object clone() {
+        EdgeRenderer r = (EdgeRenderer)super.clone();
+        r.m_line  = new Line2D.Float();
+        r.m_cubic = new CubicCurve2D.Float();
+        r.m_tmpPoints  = new Point2D[2];
+        r.m_ctrlPoints = new Point2D[2];
+        r.m_isctPoints = new Point2D[2];
+        for ( int i=0; i<2; ++i ) {
+            r.m_tmpPoints[i]  = new Point2D.Float();
+            r.m_ctrlPoints[i] = new Point2D.Float();
+            r.m_isctPoints[i] = new Point2D.Float();
+        }
+        Polygon p = m_arrowHead;
+        r.m_arrowHead  = new Polygon(p.xpoints, p.ypoints, p.npoints);
+        r.m_arrowTrans = new AffineTransform();
+        r.m_curArrow   = null;
+        return r;
+    }
+    
     /**
      * @see prefuse.render.AbstractShapeRenderer#getRenderType(prefuse.visual.VisualItem)
      */
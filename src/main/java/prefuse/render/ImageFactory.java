@@ -128,7 +128,7 @@ public class ImageFactory {
      * @param imageLocation the image location as a resource string.
      * @return the corresponding image, if available
      */
-    public Image getImage(String imageLocation) {
+    public synchronized Image getImage(String imageLocation) {
         Image image = (Image) imageCache.get(imageLocation);
         if (image == null && !loadMap.containsKey(imageLocation)) {
             URL imageURL = IOLib.urlFromString(imageLocation); 
@@ -169,7 +169,7 @@ public class ImageFactory {
      * @return the final image added to the cache. This may be a scaled version
      *         of the original input image.
      */
-    public Image addImage(String location, Image image) {
+    public synchronized Image addImage(String location, Image image) {
         if ( m_maxImageWidth > -1 || m_maxImageHeight > -1 ) {
             image = getScaledImage(image);
             image.getWidth(null); // trigger image load
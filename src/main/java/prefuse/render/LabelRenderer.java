@@ -5,12 +5,14 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.RectangularShape;
 import java.awt.geom.RoundRectangle2D;
+import java.util.Arrays;
 
 import prefuse.Constants;
 import prefuse.util.ColorLib;
@@ -51,6 +53,13 @@ import prefuse.visual.VisualItem;
  * text and images are centered along both the horizontal and
  * vertical directions.</p>
  * 
+ * <p>Label text that would be drawn smaller than a minimum on-screen
+ * height can be skipped, drawing only the label's bounding box. This is
+ * off by default, and can be enabled for this renderer using
+ * {@link #setMinimumTextHeight(double)}, or for all labels drawn by a
+ * Display using
+ * {@link prefuse.Display#setLevelOfDetailTextHeight(double)}.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class LabelRenderer extends AbstractShapeRenderer {
@@ -75,7 +84,20 @@ public class LabelRenderer extends AbstractShapeRenderer {
     protected int m_arcWidth    = 0;
     protected int m_arcHeight   = 0;
 
+    /**
+     * Rendering hint key for the minimum on-screen text height, in pixels,
+     * at which label text is laid out and drawn. The value must be a
+     * {@link java.lang.Number}. Set by a {@link prefuse.Display} on the
+     * graphics contexts it draws with when a level-of-detail text height
+     * is set, and honored in addition to the renderer's own minimum.
+     * @see prefuse.Display#setLevelOfDetailTextHeight(double)
+     */
+    public static final RenderingHints.Key KEY_MIN_TEXT_HEIGHT =
+        new MinTextHeightKey();
+    
     protected int m_maxTextWidth = -1;
+    // zero (off) by default, so labels are drawn as in earlier releases
+    protected double m_minTextHeight = 0;
     
     /** Transform used to scale and position images */
     AffineTransform m_transform = new AffineTransform();
@@ -119,6 +141,18 @@ public class LabelRenderer extends AbstractShapeRenderer {
         setImageField(imageField);
     }
     
+    /**
+     * @see prefuse.render.AbstractShapeRenderer#clone()
+     */
+    public Object clone() {
+        LabelRenderer r = (LabelRenderer)super.clone();
+        r.m_bbox = (RectangularShape)m_bbox.clone();
+        r.m_pt = new Point2D.Double();
+        r.m_textDim = new Dimension();
+        r.m_transform = new AffineTransform();
+        return r;
+    }
+    
     // ------------------------------------------------------------------------
     
     /**
@@ -140,6 +174,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
             m_arcWidth = arcWidth;
             m_arcHeight = arcHeight;
         }
+        clearSpriteCache();
     }
 
     /**
@@ -156,6 +191,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
      */
     public void setTextField(String textField) {
         m_labelName = textField;
+        clearSpriteCache();
     }
     
     /**
@@ -165,6 +201,33 @@ public class LabelRenderer extends AbstractShapeRenderer {
      */
     public void setMaxTextWidth(int maxWidth) {
         m_maxTextWidth = maxWidth;
+        clearSpriteCache();
+    }
+    
+    /**
+     * Sets the minimum on-screen font height, in pixels, at which label text
+     * is laid out and drawn. Labels whose text would be drawn smaller than
+     * this are rendered as their bounding box only, skipping text layout.
+     * The default is zero, which disables this behavior and draws labels
+     * as in earlier releases. A Display can also set a minimum for all of
+     * its labels, see
+     * {@link prefuse.Display#setLevelOfDetailTextHeight(double)}; the
+     * larger of the two minimums applies.
+     * @param pixels the minimum text height in pixels, or zero to always
+     * draw text
+     */
+    public void setMinimumTextHeight(double pixels) {
+        m_minTextHeight = pixels;
+        clearSpriteCache();
+    }
+    
+    /**
+     * Returns the minimum on-screen font height, in pixels, at which label
+     * text is laid out and drawn.
+     * @return the minimum text height in pixels
+     */
+    public double getMinimumTextHeight() {
+        return m_minTextHeight;
     }
     
     /**
@@ -206,6 +269,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
     public void setImageField(String imageField) {
         if ( imageField != null ) m_images = new ImageFactory();
         m_imageName = imageField;
+        clearSpriteCache();
     }
     
     /**
@@ -217,6 +281,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
     public void setMaxImageDimensions(int width, int height) {
         if ( m_images == null ) m_images = new ImageFactory();
         m_images.setMaxImageDimensions(width, height);
+        clearSpriteCache();
     }
     
     /**
@@ -386,6 +451,18 @@ public class LabelRenderer extends AbstractShapeRenderer {
      * @see prefuse.render.Renderer#render(java.awt.Graphics2D, prefuse.visual.VisualItem)
      */
     public void render(Graphics2D g, VisualItem item) {
+        if ( m_imageName == null && isTextTooSmall(g, item) ) {
+            // text would be illegible, so skip text layout entirely
+            // and draw the previously computed bounding box instead.
+            // this is checked first, so sprites always hold full labels
+            int type = getRenderType(item);
+            m_bbox.setFrame(item.getBounds());
+            GraphicsLib.paint(g, item, m_bbox, getStroke(item), type);
+            return;
+        }
+        if ( renderSprite(g, item) )
+            return;
+        
         RectangularShape shape = (RectangularShape)getShape(item);
         if ( shape == null ) return;
         
@@ -532,6 +609,55 @@ public class LabelRenderer extends AbstractShapeRenderer {
         }
     }
     
+    /**
+     * Returns a sprite cache key made up of the item's label text, image
+     * location and currently loaded image, font, size, colors, stroke,
+     * render type and bounds dimensions, which together determine the
+     * output of this renderer relative to the item's position. Including
+     * the image ensures that sprites drawn before an asynchronously loaded
+     * image became available are not reused once it has. Layout settings
+     * such as alignment, padding and rounded corners are not part of the
+     * key; changing them clears the sprite cache instead.
+     * @see prefuse.render.AbstractShapeRenderer#getSpriteKey(prefuse.visual.VisualItem)
+     */
+    protected Object getSpriteKey(VisualItem item) {
+        Rectangle2D b = item.getBounds();
+        return Arrays.asList(new Object[] {
+            getText(item),
+            getImageLocation(item),
+            getImage(item),
+            item.getFont(),
+            Double.valueOf(item.getSize()),
+            Integer.valueOf(item.getTextColor()),
+            Integer.valueOf(item.getFillColor()),
+            Integer.valueOf(item.getStrokeColor()),
+            getStroke(item),
+            Integer.valueOf(getRenderType(item)),
+            Double.valueOf(b.getWidth()),
+            Double.valueOf(b.getHeight())
+        });
+    }
+    
+    /**
+     * Indicates if an item's label text would be drawn smaller than the
+     * minimum text height in the given graphics context.
+     */
+    private boolean isTextTooSmall(Graphics2D g, VisualItem item) {
+        double min = m_minTextHeight;
+        Object hint = g.getRenderingHint(KEY_MIN_TEXT_HEIGHT);
+        if ( hint != null )
+            min = Math.max(min, ((Number)hint).doubleValue());
+        if ( min <= 0 || isDrawingSprite() )
+            return false;
+        // the on-screen length of a vertical unit vector, which accounts
+        // for rotation and shearing as well as scaling
+        AffineTransform at = g.getTransform();
+        double scale = Math.sqrt(at.getShearX()*at.getShearX() +
+                                 at.getScaleY()*at.getScaleY());
+        double h = scale * item.getSize() * item.getFont().getSize2D();
+        return h < min;
+    }
+    
     private final void drawString(Graphics2D g, FontMetrics fm, String text,
             boolean useInt, double x, double y, double w)
     {
@@ -575,6 +701,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
      */
     public void setImageFactory(ImageFactory ifact) {
         m_images = ifact;
+        clearSpriteCache();
     }
     
     // ------------------------------------------------------------------------
@@ -602,6 +729,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
            throw new IllegalArgumentException(
                    "Illegal horizontal text alignment value.");
         m_hTextAlign = halign;
+        clearSpriteCache();
     }
     
     /**
@@ -627,6 +755,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
             throw new IllegalArgumentException(
                     "Illegal vertical text alignment value.");
         m_vTextAlign = valign;
+        clearSpriteCache();
     }
     
     /**
@@ -652,6 +781,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
            throw new IllegalArgumentException(
                    "Illegal horizontal text alignment value.");
         m_hImageAlign = halign;
+        clearSpriteCache();
     }
     
     /**
@@ -677,6 +807,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
             throw new IllegalArgumentException(
                     "Illegal vertical text alignment value.");
         m_vImageAlign = valign;
+        clearSpriteCache();
     }
     
     /**
@@ -706,6 +837,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
            throw new IllegalArgumentException(
                    "Illegal image position value.");
         m_imagePos = pos;
+        clearSpriteCache();
     }
     
     // ------------------------------------------------------------------------
@@ -741,6 +873,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
      */ 
     public void setHorizontalAlignment(int align) {
         m_xAlign = align;
+        clearSpriteCache();
     }
     
     /**
@@ -752,6 +885,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
      */ 
     public void setVerticalAlignment(int align) {
         m_yAlign = align;
+        clearSpriteCache();
     }
     
     /**
@@ -770,6 +904,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
      */
     public void setHorizontalPadding(int xpad) {
         m_horizBorder = xpad;
+        clearSpriteCache();
     }
     
     /**
@@ -788,6 +923,7 @@ public class LabelRenderer extends AbstractShapeRenderer {
      */
     public void setVerticalPadding(int ypad) {
         m_vertBorder = ypad;
+        clearSpriteCache();
     }
     
     /**
@@ -804,6 +940,22 @@ public class LabelRenderer extends AbstractShapeRenderer {
      */
     public void setImageTextPadding(int pad) {
         m_imageMargin = pad;
+        clearSpriteCache();
+    }
+    
+    /**
+     * Rendering hint key for the minimum text height.
+     */
+    private static class MinTextHeightKey extends RenderingHints.Key {
+        MinTextHeightKey() {
+            super(0);
+        }
+        public boolean isCompatibleValue(Object val) {
+            return val instanceof Number;
+        }
+        public String toString() {
+            return "Minimum text height";
+        }
     }
     
 } // end of class LabelRenderer
@@ -0,0 +1,107 @@
+package prefuse.render;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+import prefuse.util.ColorLib;
+import prefuse.visual.VisualItem;
+
+
+/**
+ * Renderer that draws an item as a single point primitive, a filled square
+ * of a fixed on-screen size centered on the item's bounds. The point uses the
+ * item's fill color, or the stroke color if the fill is fully transparent.
+ * Overlapping semi-transparent points accumulate, giving a density-style
+ * rendering of dense regions. This renderer is used by
+ * {@link prefuse.Display} to draw items that are too small on screen to
+ * warrant their full renderer (see
+ * {@link prefuse.Display#setLevelOfDetailThreshold(double)}), but can also
+ * be used directly.
+ */
+public class PointRenderer implements Renderer, Cloneable {
+
+    private double m_pointSize = 1.0;
+    private Rectangle2D m_rect = new Rectangle2D.Double();
+
+    /**
+     * Create a new PointRenderer that draws one pixel points.
+     */
+    public PointRenderer() {
+    }
+
+    /**
+     * Create a new PointRenderer.
+     * @param pointSize the width and height of a drawn point, in pixels
+     */
+    public PointRenderer(double pointSize) {
+        setPointSize(pointSize);
+    }
+
+    /**
+     * Creates a copy of this renderer for use by another rendering thread.
+     * @see java.lang.Object#clone()
+     */
+    public Object clone() {
+        try {
+            PointRenderer r = (PointRenderer)super.clone();
+            r.m_rect = new Rectangle2D.Double();
+            return r;
+        } catch ( CloneNotSupportedException e ) {
+            throw new InternalError(e.toString());
+        }
+    }
+
+    /**
+     * Get the on-screen width and height of a drawn point.
+     * @return the point size, in pixels
+     */
+    public double getPointSize() {
+        return m_pointSize;
+    }
+
+    /**
+     * Set the on-screen width and height of a drawn point.
+     * @param size the point size, in pixels
+     */
+    public void setPointSize(double size) {
+        m_pointSize = size;
+    }
+
+    /**
+     * @see prefuse.render.Renderer#render(java.awt.Graphics2D, prefuse.visual.VisualItem)
+     */
+    public void render(Graphics2D g, VisualItem item) {
+        int color = item.getFillColor();
+        if ( ColorLib.alpha(color) == 0 )
+            color = item.getStrokeColor();
+        if ( ColorLib.alpha(color) == 0 )
+            return;
+
+        // the mean on-screen scale, which accounts for rotation
+        AffineTransform at = g.getTransform();
+        double scale = Math.sqrt(Math.abs(at.getDeterminant()));
+        double s = m_pointSize / (scale > 0 ? scale : 1.0);
+
+        Rectangle2D b = item.getBounds();
+        m_rect.setFrame(b.getCenterX()-s/2, b.getCenterY()-s/2, s, s);
+        g.setPaint(ColorLib.getColor(color));
+        g.fill(m_rect);
+    }
+
+    /**
+     * @see prefuse.render.Renderer#locatePoint(java.awt.geom.Point2D, prefuse.visual.VisualItem)
+     */
+    public boolean locatePoint(Point2D p, VisualItem item) {
+        return item.getBounds().contains(p);
+    }
+
+    /**
+     * @see prefuse.render.Renderer#setBounds(prefuse.visual.VisualItem)
+     */
+    public void setBounds(VisualItem item) {
+        item.setBounds(item.getX(), item.getY(), 0, 0);
+    }
+
+} // end of class PointRenderer
@@ -72,6 +72,15 @@ public class PolygonRenderer extends AbstractShapeRenderer {
     public PolygonRenderer(int polyType) {
         m_polyType = polyType;
     }
+    
+    /**
+     * @see prefuse.render.AbstractShapeRenderer#clone()
+     */
+    public Object clone() {
+        PolygonRenderer r = (PolygonRenderer)super.clone();
+        r.m_path = new GeneralPath();
+        return r;
+    }
 
     /**
      * Get the polygon line type.
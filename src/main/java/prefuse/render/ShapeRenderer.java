@@ -4,6 +4,7 @@ import java.awt.Shape;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
 
 import prefuse.Constants;
 import prefuse.visual.VisualItem;
@@ -36,6 +37,17 @@ public class ShapeRenderer extends AbstractShapeRenderer {
        setBaseSize(size);
     }
     
+    /**
+     * @see prefuse.render.AbstractShapeRenderer#clone()
+     */
+    public Object clone() {
+        ShapeRenderer r = (ShapeRenderer)super.clone();
+        r.m_ellipse = new Ellipse2D.Double();
+        r.m_rect = new Rectangle2D.Double();
+        r.m_path = new GeneralPath();
+        return r;
+    }
+    
     /**
      * Sets the base size, in pixels, for shapes drawn by this renderer. The
      * base size is the width and height value used when a VisualItem's size
@@ -102,6 +114,29 @@ public class ShapeRenderer extends AbstractShapeRenderer {
         }
     }
 
+    /**
+     * Returns a sprite cache key made up of the item's shape type, size,
+     * colors, stroke, and render type, which fully determine the output of
+     * this renderer relative to the item's position. Subclasses may draw
+     * shapes based on other state, so they return null unless they
+     * override this method to provide a key of their own.
+     * @see prefuse.render.AbstractShapeRenderer#getSpriteKey(prefuse.visual.VisualItem)
+     */
+    protected Object getSpriteKey(VisualItem item) {
+        if ( getClass() != ShapeRenderer.class )
+            return null; // subclasses must opt in
+        if ( getTransform(item) != null )
+            return null; // transform may depend on other item state
+        return Arrays.asList(new Object[] {
+            Integer.valueOf(item.getShape()),
+            Double.valueOf(m_baseSize*item.getSize()),
+            Integer.valueOf(item.getFillColor()),
+            Integer.valueOf(item.getStrokeColor()),
+            getStroke(item),
+            Integer.valueOf(getRenderType(item))
+        });
+    }
+
     /**
      * Returns a rectangle of the given dimensions.
      */
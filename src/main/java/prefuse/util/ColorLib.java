@@ -1,8 +1,8 @@
 package prefuse.util;
 
 import java.awt.Color;
+import java.util.concurrent.ConcurrentHashMap;
 
-import prefuse.util.collections.IntObjectHashMap;
 
 /**
  * <p>Library routines for processing color values. The standard color
@@ -32,7 +32,8 @@ public class ColorLib {
 
     public static final char HEX_PREFIX = '#';
     
-    private static final IntObjectHashMap colorMap = new IntObjectHashMap();
+    private static final ConcurrentHashMap<Integer,Color> colorMap =
+        new ConcurrentHashMap<Integer,Color>();
     private static int misses = 0;
     private static int lookups = 0;
     
@@ -284,10 +285,13 @@ public class ColorLib {
      * @return a Java Color object
      */
     public static Color getColor(int rgba) {
+        Integer key = Integer.valueOf(rgba);
         Color c = null;
-        if ( (c=(Color)colorMap.get(rgba)) == null ) {
+        if ( (c=colorMap.get(key)) == null ) {
             c = new Color(rgba,true);
-            colorMap.put(rgba,c);
+            Color prev = colorMap.putIfAbsent(key, c);
+            if ( prev != null )
+                c = prev;
             misses++;
         }
         lookups++;
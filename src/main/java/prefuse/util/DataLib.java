@@ -14,8 +14,10 @@ import java.util.Map;
 import prefuse.data.Table;
 import prefuse.data.Tuple;
 import prefuse.data.column.ColumnMetadata;
+import prefuse.data.column.DictionaryColumn;
 import prefuse.data.tuple.TupleSet;
 import prefuse.util.collections.DefaultLiteralComparator;
+import prefuse.util.collections.IntIterator;
 
 /**
  * Functions for processing an iterator of tuples, including the creation
@@ -99,6 +101,41 @@ public class DataLib {
         return o;
     }
     
+    /**
+     * Get a sorted array containing all values of a dictionary-encoded
+     * column over the valid rows of a table. The distinct values are found
+     * by marking the value codes present in the table, rather than by
+     * hashing the value of every row.
+     * @param table the table containing the column
+     * @param col the dictionary-encoded column
+     * @param cmp a comparator for sorting the column contents
+     * @return an array containing the column values sorted
+     */
+    public static Object[] ordinalArray(Table table, DictionaryColumn col,
+                                        Comparator<?> cmp)
+    {
+        int idx = table.getColumnNumber(col);
+        boolean[] seen = new boolean[col.getDictionarySize()];
+        int count = 0;
+        for ( IntIterator rows = table.rows(); rows.hasNext(); ) {
+            int code = col.getCode(table.getColumnRow(rows.nextInt(), idx));
+            if ( !seen[code] ) {
+                seen[code] = true;
+                ++count;
+            }
+        }
+        
+        // sort the unique values
+        Object[] o = new Object[count];
+        for ( int c=0, i=0; i<count; ++c ) {
+            if ( seen[c] ) o[i++] = col.getValue(c);
+        }
+        @SuppressWarnings("unchecked")
+        Comparator<Object> c = (Comparator<Object>)cmp;
+        Arrays.sort(o, c);
+        return o;
+    }
+    
     /**
      * Get a sorted array containing all column values for a given tuple
      * iterator and field.
@@ -1,8 +1,7 @@
 package prefuse.util;
 
 import java.awt.Font;
-
-import prefuse.util.collections.IntObjectHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Library maintaining a cache of fonts and other useful font computation
@@ -12,7 +11,8 @@ import prefuse.util.collections.IntObjectHashMap;
  */
 public class FontLib {
 
-    private static final IntObjectHashMap fontMap = new IntObjectHashMap();
+    private static final ConcurrentHashMap<Integer,Font> fontMap =
+        new ConcurrentHashMap<Integer,Font>();
     private static int misses = 0;
     private static int lookups = 0;
     
@@ -56,11 +56,13 @@ public class FontLib {
      * @return the requested Font instance
      */
     public static Font getFont(String name, int style, int size) {
-        int key = (name.hashCode()<<8)+(size<<2)+style;
+        Integer key = Integer.valueOf((name.hashCode()<<8)+(size<<2)+style);
         Font f;
-        if ( (f=(Font)fontMap.get(key)) == null ) {
+        if ( (f=fontMap.get(key)) == null ) {
             f = new Font(name, style, size);
-            fontMap.put(key, f);
+            Font prev = fontMap.putIfAbsent(key, f);
+            if ( prev != null )
+                f = prev;
             misses++;
         }
         lookups++;
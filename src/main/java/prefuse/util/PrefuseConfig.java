@@ -32,6 +32,21 @@ import prefuse.util.io.IOLib;
  * <li><code>data.filter.optimizeThreshold</code> - the minimum number of items
  * that must be contained in a table for optimized query plans to be
  * considered. The default value is 300.</li>
+ * <li><code>data.filter.parallelThreshold</code> - the minimum number of
+ * items that must be contained in a table for filtering operations that
+ * can not use an index to scan the table in parallel. A value of zero
+ * disables parallel scans. The default value is 100000.</li>
+ * <li><code>data.expression.compile</code> - indicates if expressions used
+ * for filtering and derived columns should be compiled to Java bytecode.
+ * The default value is false.</li>
+ * <li><code>util.force.arrayMode</code> - indicates if force simulations
+ * should compute forces on a structure of arrays rather than on individual
+ * force items, when all force functions support it. The default value is
+ * false.</li>
+ * <li><code>util.force.parallelThreshold</code> - the minimum number of
+ * items that must be contained in a force simulation for n-body forces
+ * to be computed in parallel. A value of zero disables parallel
+ * computation. The default value is 10000.</li>
  * <li><code>util.logdir</code> - the directory in which to write prefuse log
  * files. The default is "null" which defaults logging output to standard
  * output.</li> 
@@ -202,6 +217,20 @@ public class PrefuseConfig extends Properties {
         // on tables with more rows than this threshold value
         setProperty("data.filter.optimizeThreshold", "300");
         
+        // filtering operations that can't use an index will scan tables
+        // with more rows than this threshold value in parallel
+        setProperty("data.filter.parallelThreshold", "100000");
+        
+        // compile expressions to bytecode, falling back to the interpreter
+        setProperty("data.expression.compile", "false");
+        
+        // run force simulations on arrays when all forces support it
+        setProperty("util.force.arrayMode", "false");
+        
+        // n-body forces on simulations with at least this many items are
+        // computed in parallel
+        setProperty("util.force.parallelThreshold", "10000");
+        
         // setProperty("data.graph.nodeKey", null); // intentionally null
         setProperty("data.graph.sourceKey", "source");
         setProperty("data.graph.targetKey", "target");
@@ -8,6 +8,8 @@ import java.awt.geom.Rectangle2D;
 import prefuse.Constants;
 import prefuse.Display;
 import prefuse.data.Schema;
+import prefuse.data.column.ColumnFactory;
+import prefuse.util.display.FrameMetrics;
 import prefuse.visual.VisualItem;
 
 /**
@@ -83,6 +85,14 @@ public class PrefuseLib {
         StringBuffer sb = new StringBuffer();
         sb.append("frame rate: ").append(fr).append("fps - ");
         sb.append(d.getVisibleItemCount()).append(" items - ");
+        FrameMetrics metrics = d.getFrameMetrics();
+        if ( metrics != null ) {
+            sb.append("frame: ");
+            sb.append(StringLib.formatNumber(metrics.getFrameTime(),2));
+            sb.append("ms (render ");
+            sb.append(StringLib.formatNumber(metrics.getRenderTime(),2));
+            sb.append("ms) - ");
+        }
         sb.append("fonts(").append(FontLib.getCacheMissCount());
         sb.append(") colors(");
         sb.append(ColorLib.getCacheMissCount()).append(')');
@@ -396,6 +406,7 @@ public class PrefuseLib {
         // font
         Font defFont = FontLib.getFont("SansSerif",Font.PLAIN,10);
         s.addInterpolatedColumn(VisualItem.FONT, Font.class, defFont);
+        s.setInterpolatedStorage(VisualItem.FONT, ColumnFactory.SPARSE);
         
         // degree-of-interest
         s.addColumn(VisualItem.DOI, double.class, new Double(Double.MIN_VALUE));
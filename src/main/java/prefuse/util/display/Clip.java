@@ -7,6 +7,16 @@ import java.util.logging.Logger;
 /**
  * Represents a clipping rectangle in a prefuse <code>Display</code>.
  *
+ * <p>A clip can optionally be made up of several separate rectangular
+ * regions, so that small damaged areas far apart from each other need not
+ * be covered by a single large bounding box. Up to
+ * {@link #setMaxRegions(int) a maximum number} of regions are kept. When a
+ * region is added that overlaps existing regions, they are merged into
+ * their bounding box, and when the maximum count is exceeded the two
+ * regions whose merge adds the least area are combined. The minimum and
+ * maximum coordinates of the clip always describe the bounding box of all
+ * regions. By default only a single region is kept.</p>
+ *
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class Clip {
@@ -18,11 +28,18 @@ public class Clip {
     private double[] clip = new double[8];
     private byte status = INVALID;
     
+    // separate regions as (minX, minY, maxX, maxY) quadruples. a count
+    // of zero indicates the bounding box is the only region.
+    private int      maxRegions = 1;
+    private double[] regions = null;
+    private int      count = 0;
+    
     /**
      * Reset the clip to an empty status.
      */
     public void reset() {
         status = EMPTY;
+        count = 0;
     }
     
     /**
@@ -30,6 +47,66 @@ public class Clip {
      */
     public void invalidate() {
         status = INVALID;
+        count = 0;
+    }
+    
+    /**
+     * Set the maximum number of separate regions this clip keeps. Unions
+     * with additional regions cause regions to be merged.
+     * @param n the maximum number of regions, one or more. A value of one
+     * makes this clip a single bounding rectangle.
+     */
+    public void setMaxRegions(int n) {
+        if ( n < 1 )
+            throw new IllegalArgumentException(
+                "Clip must allow at least one region");
+        maxRegions = n;
+        if ( count > 0 && (n == 1 || count > n) )
+            mergeRegions();
+    }
+    
+    /**
+     * Get the maximum number of separate regions this clip keeps.
+     * @return the maximum number of regions
+     */
+    public int getMaxRegions() {
+        return maxRegions;
+    }
+    
+    /**
+     * Get the number of separate regions making up this clip.
+     * @return the number of regions, zero if the clip is empty or invalid
+     */
+    public int getRegionCount() {
+        if ( status != INUSE )
+            return 0;
+        return count > 0 ? count : 1;
+    }
+    
+    /**
+     * Get the bounds of one of the regions making up this clip.
+     * @param i the index of the region, less than
+     * {@link #getRegionCount()}
+     * @param r the rectangle in which to store the region bounds
+     * @return the rectangle passed as an argument
+     */
+    public Rectangle2D getRegion(int i, Rectangle2D r) {
+        if ( count == 0 ) {
+            r.setFrameFromDiagonal(clip[0], clip[1], clip[6], clip[7]);
+        } else {
+            int j = 4*i;
+            r.setFrameFromDiagonal(regions[j], regions[j+1],
+                                   regions[j+2], regions[j+3]);
+        }
+        return r;
+    }
+    
+    /**
+     * Merge all regions of this clip into a single region covering their
+     * bounding box.
+     */
+    public void mergeRegions() {
+        count = 0;
     }
        
     /**
@@ -39,6 +116,14 @@ public class Clip {
     public void setClip(Clip c) {
         status = INUSE;
         System.arraycopy(c.clip, 0, clip, 0, clip.length);
+        count = 0;
+        if ( c.count > 0 && maxRegions > 1 ) {
+            for ( int i=0; i<c.count; ++i ) {
+                int j = 4*i;
+                addRegion(c.regions[j], c.regions[j+1],
+                          c.regions[j+2], c.regions[j+3]);
+            }
+        }
     }
     
     /**
@@ -58,6 +143,7 @@ public class Clip {
      */
     public void setClip(double x, double y, double w, double h) {
         status = INUSE;
+        count = 0;
         clip[0] = x;
         clip[1] = y;
         clip[6] = x+w;
@@ -65,11 +151,29 @@ public class Clip {
     }
     
     /**
-     * Transform the clip contents. A new clip region will be created
-     * which is the bounding box of the transformed region.
+     * Transform the clip contents. Each region of the clip is replaced by
+     * the bounding box of its transformed region.
      * @param at the affine transform
      */
     public void transform(AffineTransform at) {
+        if ( count > 0 ) {
+            double[] c = new double[8];
+            for ( int i=0; i<count; ++i ) {
+                int j = 4*i;
+                c[0] = regions[j];   c[1] = regions[j+1];
+                c[2] = regions[j];   c[3] = regions[j+3];
+                c[4] = regions[j+2]; c[5] = regions[j+1];
+                c[6] = regions[j+2]; c[7] = regions[j+3];
+                at.transform(c,0,c,0,4);
+                regions[j]   = Math.min(Math.min(c[0],c[2]),Math.min(c[4],c[6]));
+                regions[j+1] = Math.min(Math.min(c[1],c[3]),Math.min(c[5],c[7]));
+                regions[j+2] = Math.max(Math.max(c[0],c[2]),Math.max(c[4],c[6]));
+                regions[j+3] = Math.max(Math.max(c[1],c[3]),Math.max(c[5],c[7]));
+            }
+            bounds();
+            return;
+        }
+        
         // make the extra corner points valid
         clip[2] = clip[0]; clip[3] = clip[7];
         clip[4] = clip[6]; clip[5] = clip[1];
@@ -94,6 +198,35 @@ public class Clip {
         clip[6] = xMax; clip[7] = yMax;
     }
     
+    /**
+     * Limit each region of the clip to the specified area, dropping any
+     * regions that fall outside of it, and update the bounding box.
+     */
+    private void limitRegions(double x1, double y1, double x2, double y2) {
+        int n = 0;
+        for ( int i=0; i<count; ++i ) {
+            int j = 4*i;
+            double rx1 = Math.max(regions[j],   x1);
+            double ry1 = Math.max(regions[j+1], y1);
+            double rx2 = Math.min(regions[j+2], x2);
+            double ry2 = Math.min(regions[j+3], y2);
+            if ( rx2 < rx1 || ry2 < ry1 )
+                continue;
+            int k = 4*n++;
+            regions[k] = rx1;   regions[k+1] = ry1;
+            regions[k+2] = rx2; regions[k+3] = ry2;
+        }
+        count = n;
+        if ( n > 0 ) {
+            bounds();
+        } else {
+            clip[0] = Math.max(clip[0],x1);
+            clip[1] = Math.max(clip[1],y1);
+            clip[6] = Math.min(clip[6],x2);
+            clip[7] = Math.min(clip[7],y2);
+        }
+    }
+    
     /**
      * Limit the clip such that it fits within the specified region.
      * @param x1 the minimum x-coordinate
@@ -102,6 +235,10 @@ public class Clip {
      * @param y2 the maximum y-coordinate
      */
     public void limit(double x1, double y1, double x2, double y2) {
+        if ( count > 0 ) {
+            limitRegions(x1, y1, x2, y2);
+            return;
+        }
         clip[0] = Math.max(clip[0],x1);
         clip[1] = Math.max(clip[1],y1);
         clip[6] = Math.min(clip[6],x2);
@@ -116,15 +253,31 @@ public class Clip {
      * @return true if the clip intersects the expanded region, false otherwise
      */
     public boolean intersects(Rectangle2D r, double margin) {
-        double tw = clip[6]-clip[0];
-        double th = clip[7]-clip[1];
+        if ( !intersects(clip[0], clip[1], clip[6], clip[7], r, margin) )
+            return false;
+        if ( count == 0 )
+            return true;
+        for ( int i=0; i<count; ++i ) {
+            int j = 4*i;
+            if ( intersects(regions[j], regions[j+1],
+                            regions[j+2], regions[j+3], r, margin) )
+                return true;
+        }
+        return false;
+    }
+    
+    private static boolean intersects(double x1, double y1,
+            double x2, double y2, Rectangle2D r, double margin)
+    {
+        double tw = x2-x1;
+        double th = y2-y1;
         double rw = r.getWidth();
         double rh = r.getHeight();
         if (rw < 0 || rh < 0 || tw < 0 || th < 0) {
             return false;
         }
-        double tx = clip[0];
-        double ty = clip[1];
+        double tx = x1;
+        double ty = y1;
         double rx = r.getX()-margin;
         double ry = r.getY()-margin;
         rw += rx+2*margin;
@@ -151,10 +304,15 @@ public class Clip {
             status = INUSE;
             return;
         }
-        clip[0] = Math.min(clip[0], c.clip[0]);
-        clip[1] = Math.min(clip[1], c.clip[1]);
-        clip[6] = Math.max(clip[6], c.clip[6]);
-        clip[7] = Math.max(clip[7], c.clip[7]);
+        if ( c.count > 0 ) {
+            for ( int i=0; i<c.count; ++i ) {
+                int j = 4*i;
+                unionBounds(c.regions[j], c.regions[j+1],
+                            c.regions[j+2], c.regions[j+3]);
+            }
+        } else {
+            unionBounds(c.clip[0], c.clip[1], c.clip[6], c.clip[7]);
+        }
     }
     
     /**
@@ -183,10 +341,7 @@ public class Clip {
             status = INUSE;
             return;
         }
-        clip[0] = Math.min(clip[0], minX);
-        clip[1] = Math.min(clip[1], minY);
-        clip[6] = Math.max(clip[6], maxX);
-        clip[7] = Math.max(clip[7], maxY);
+        unionBounds(minX, minY, maxX, maxY);
     }
     
     /**
@@ -205,10 +360,120 @@ public class Clip {
             status = INUSE;
             return;
         }
-        clip[0] = Math.min(clip[0], x);
-        clip[1] = Math.min(clip[1], y);
-        clip[6] = Math.max(clip[6], x+w);
-        clip[7] = Math.max(clip[7], y+h);
+        unionBounds(x, y, x+w, y+h);
+    }
+    
+    /**
+     * Union an in-use clip with the region given by its minimum and
+     * maximum coordinates.
+     */
+    private void unionBounds(double x1, double y1, double x2, double y2) {
+        if ( maxRegions > 1 ) {
+            if ( count == 0 ) {
+                // start tracking the current bounds as the first region
+                addRegion(clip[0], clip[1], clip[6], clip[7]);
+            }
+            addRegion(x1, y1, x2, y2);
+        }
+        clip[0] = Math.min(clip[0], x1);
+        clip[1] = Math.min(clip[1], y1);
+        clip[6] = Math.max(clip[6], x2);
+        clip[7] = Math.max(clip[7], y2);
+    }
+    
+    // ------------------------------------------------------------------------
+    // Region Management
+    
+    /**
+     * Add a region, merging it with any regions it overlaps and merging
+     * the cheapest pair of regions if the maximum count is exceeded.
+     * Does not update the bounding box.
+     */
+    private void addRegion(double x1, double y1, double x2, double y2) {
+        // absorb all overlapping regions, repeating as the region grows
+        boolean merged = true;
+        while ( merged ) {
+            merged = false;
+            for ( int i=0; i<count; ++i ) {
+                int j = 4*i;
+                if ( regions[j] <= x2 && x1 <= regions[j+2] &&
+                     regions[j+1] <= y2 && y1 <= regions[j+3] )
+                {
+                    x1 = Math.min(x1, regions[j]);
+                    y1 = Math.min(y1, regions[j+1]);
+                    x2 = Math.max(x2, regions[j+2]);
+                    y2 = Math.max(y2, regions[j+3]);
+                    removeRegion(i--);
+                    merged = true;
+                }
+            }
+        }
+        
+        if ( regions == null || regions.length < 4*(count+1) ) {
+            double[] r = new double[4*Math.max(count+1, maxRegions+1)];
+            if ( regions != null )
+                System.arraycopy(regions, 0, r, 0, 4*count);
+            regions = r;
+        }
+        int j = 4*count++;
+        regions[j] = x1;   regions[j+1] = y1;
+        regions[j+2] = x2; regions[j+3] = y2;
+        
+        if ( count > maxRegions ) {
+            // merge the pair of regions that adds the least area
+            int bi = 0, bj = 1;
+            double best = Double.POSITIVE_INFINITY;
+            for ( int a=0; a<count; ++a ) {
+                for ( int b=a+1; b<count; ++b ) {
+                    double cost = mergeCost(a, b);
+                    if ( cost < best ) {
+                        best = cost; bi = a; bj = b;
+                    }
+                }
+            }
+            int ka = 4*bi, kb = 4*bj;
+            x1 = Math.min(regions[ka],   regions[kb]);
+            y1 = Math.min(regions[ka+1], regions[kb+1]);
+            x2 = Math.max(regions[ka+2], regions[kb+2]);
+            y2 = Math.max(regions[ka+3], regions[kb+3]);
+            removeRegion(bj);
+            removeRegion(bi);
+            addRegion(x1, y1, x2, y2);
+        }
+    }
+    
+    private double mergeCost(int a, int b) {
+        int ka = 4*a, kb = 4*b;
+        double w = Math.max(regions[ka+2], regions[kb+2])
+                 - Math.min(regions[ka],   regions[kb]);
+        double h = Math.max(regions[ka+3], regions[kb+3])
+                 - Math.min(regions[ka+1], regions[kb+1]);
+        return w*h - area(ka) - area(kb);
+    }
+    
+    private double area(int k) {
+        return (regions[k+2]-regions[k])*(regions[k+3]-regions[k+1]);
+    }
+    
+    private void removeRegion(int i) {
+        int j = 4*i, n = 4*count;
+        System.arraycopy(regions, j+4, regions, j, n-j-4);
+        --count;
+    }
+    
+    /**
+     * Set the bounding box to cover all regions.
+     */
+    private void bounds() {
+        clip[0] = regions[0]; clip[1] = regions[1];
+        clip[6] = regions[2]; clip[7] = regions[3];
+        for ( int i=1; i<count; ++i ) {
+            int j = 4*i;
+            clip[0] = Math.min(clip[0], regions[j]);
+            clip[1] = Math.min(clip[1], regions[j+1]);
+            clip[6] = Math.max(clip[6], regions[j+2]);
+            clip[7] = Math.max(clip[7], regions[j+3]);
+        }
     }
     
     /**
@@ -224,10 +489,7 @@ public class Clip {
             status = INUSE;
             return;
         }
-        clip[0] = Math.max(clip[0], c.clip[0]);
-        clip[1] = Math.max(clip[1], c.clip[1]);
-        clip[6] = Math.min(clip[6], c.clip[6]);
-        clip[7] = Math.min(clip[7], c.clip[7]);
+        limit(c.clip[0], c.clip[1], c.clip[6], c.clip[7]);
     }
     
     /**
@@ -243,10 +505,7 @@ public class Clip {
             status = INUSE;
             return;
         }
-        clip[0] = Math.max(clip[0], r.getMinX());
-        clip[1] = Math.max(clip[1], r.getMinY());
-        clip[6] = Math.min(clip[6], r.getMaxX());
-        clip[7] = Math.min(clip[7], r.getMaxY());
+        limit(r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY());
     }
     
     /**
@@ -265,16 +524,20 @@ public class Clip {
             status = INUSE;
             return;
         }
-        clip[0] = Math.max(clip[0], x);
-        clip[1] = Math.max(clip[1], y);
-        clip[6] = Math.min(clip[6], x+w);
-        clip[7] = Math.min(clip[7], y+h);
+        limit(x, y, x+w, y+h);
     }
     
     /**
      * Minimally expand the clip such that each coordinate is an integer.
      */
     public void expandToIntegerLimits() {
+        for ( int i=0; i<count; ++i ) {
+            int j = 4*i;
+            regions[j]   = Math.floor(regions[j]);
+            regions[j+1] = Math.floor(regions[j+1]);
+            regions[j+2] = Math.ceil(regions[j+2]);
+            regions[j+3] = Math.ceil(regions[j+3]);
+        }
         clip[0] = Math.floor(clip[0]);
         clip[1] = Math.floor(clip[1]);
         clip[6] = Math.ceil(clip[6]);
@@ -286,6 +549,11 @@ public class Clip {
      * @param b the value to expand by
      */
     public void expand(double b) {
+        for ( int i=0; i<count; ++i ) {
+            int j = 4*i;
+            regions[j]   -= b; regions[j+1] -= b;
+            regions[j+2] += b; regions[j+3] += b;
+        }
         clip[0] -= b; clip[1] -= b;
         clip[6] += b; clip[7] += b;
     }
@@ -296,6 +564,10 @@ public class Clip {
      * @param b the value to grow the width and height by
      */
     public void grow(double b) {
+        for ( int i=0; i<count; ++i ) {
+            int j = 4*i;
+            regions[j+2] += b; regions[j+3] += b;
+        }
         clip[6] += b; clip[7] += b;
     }
     
@@ -0,0 +1,24 @@
+package prefuse.util.display;
+
+import java.util.EventListener;
+
+import prefuse.Display;
+
+/**
+ * Listener interface for monitoring rendering performance of a Display.
+ * Listeners are notified each time a frame has been completely rendered,
+ * and can inspect the Display's {@link FrameMetrics}.
+ *
+ * @see prefuse.Display#addFrameListener(FrameListener)
+ */
+public interface FrameListener extends EventListener {
+
+    /**
+     * Notification that a frame has been rendered.
+     * @param d the Display that rendered the frame
+     * @param metrics the Display's frame metrics, including the values
+     * recorded for the frame
+     */
+    public void frameRendered(Display d, FrameMetrics metrics);
+
+} // end of interface FrameListener
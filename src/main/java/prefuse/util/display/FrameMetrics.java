@@ -0,0 +1,511 @@
+package prefuse.util.display;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import prefuse.util.ColorLib;
+import prefuse.util.FontLib;
+
+/**
+ * Rendering statistics collected by a {@link prefuse.Display}. For each
+ * rendered frame the time spent filling the rendering queue, sorting it,
+ * rendering items, and notifying paint and item bounds listeners is
+ * recorded, along with the number of items rendered and culled (visible
+ * items skipped because they lie outside the damaged region) and the hit
+ * rates of the sprite, color and font caches during the frame.
+ *
+ * <p>Timings are accumulated in {@link Histogram} instances, so that
+ * percentiles can be inspected as well as averages. Values describing only
+ * the most recent frame are available through the <code>getLast</code>
+ * methods. Metrics can be read by registering a {@link FrameListener}
+ * with the Display, or remotely by registering this object as a JMX
+ * MBean using {@link #register(String)}.</p>
+ *
+ * <p>A frame is opened when a Display begins painting and closed when
+ * painting, including post-paint notifications, has completed. Listener
+ * time reported while no frame is open is ignored. While a Display renders
+ * items, its metrics are made available to renderers on each rendering
+ * thread through {@link #getCurrent()}, so that cache statistics are only
+ * counted for Displays collecting metrics.</p>
+ *
+ * @see prefuse.Display#setFrameMetricsEnabled(boolean)
+ */
+public class FrameMetrics implements FrameMetricsMBean {
+
+    /** Time spent filling the rendering and picking queues. */
+    public static final int QUEUE    = 0;
+    /** Time spent sorting the rendering queue. */
+    public static final int SORT     = 1;
+    /** Time spent rendering items. */
+    public static final int RENDER   = 2;
+    /** Time spent notifying paint and item bounds listeners. */
+    public static final int LISTENER = 3;
+    /** Total time taken by a frame. */
+    public static final int FRAME    = 4;
+
+    private static final String[] PHASES =
+        { "queue", "sort", "render", "listener", "frame" };
+
+    private static final ThreadLocal<FrameMetrics> s_current =
+        new ThreadLocal<FrameMetrics>();
+
+    private Histogram[] m_hist = new Histogram[PHASES.length];
+    private long[]      m_last = new long[PHASES.length];
+    private long[]      m_cur  = new long[PHASES.length];
+
+    private boolean m_open  = false;
+    private long    m_start = 0;
+    private long    m_frames = 0;
+
+    // item counts, for the last frame and over all frames
+    private int  m_rendered, m_culled;
+    private long m_renderedTotal, m_culledTotal;
+
+    // sprite cache counters of the open frame, updated by rendering threads
+    private final LongAdder m_spriteLookups = new LongAdder();
+    private final LongAdder m_spriteMisses  = new LongAdder();
+
+    // cache counters at the start of the open frame, and per-frame rates
+    private int    m_color0, m_colorMiss0;
+    private int    m_font0, m_fontMiss0;
+    private double m_spriteRate = Double.NaN;
+    private double m_colorRate  = Double.NaN;
+    private double m_fontRate   = Double.NaN;
+
+    /**
+     * Create a new, empty FrameMetrics instance.
+     */
+    public FrameMetrics() {
+        for ( int i=0; i<m_hist.length; ++i )
+            m_hist[i] = new Histogram();
+    }
+
+    // ------------------------------------------------------------------------
+    // Recording
+
+    /**
+     * Start recording a new frame. Any frame still open is closed first.
+     */
+    public synchronized void beginFrame() {
+        if ( m_open )
+            endFrame();
+        m_open = true;
+        m_start = System.nanoTime();
+        for ( int i=0; i<m_cur.length; ++i )
+            m_cur[i] = 0;
+        m_rendered = 0;
+        m_culled = 0;
+        m_spriteLookups.reset();
+        m_spriteMisses.reset();
+        m_color0 = ColorLib.getCacheLookupCount();
+        m_colorMiss0 = ColorLib.getCacheMissCount();
+        m_font0 = FontLib.getCacheLookupCount();
+        m_fontMiss0 = FontLib.getCacheMissCount();
+    }
+
+    /**
+     * Add the time taken by a phase of the open frame.
+     * @param phase the phase, one of {@link #QUEUE}, {@link #SORT},
+     * {@link #RENDER}, or {@link #LISTENER}
+     * @param nanos the elapsed time, in nanoseconds
+     */
+    public synchronized void addTime(int phase, long nanos) {
+        if ( m_open )
+            m_cur[phase] += nanos;
+    }
+
+    /**
+     * Set the item counts of the open frame.
+     * @param rendered the number of items rendered
+     * @param culled the number of visible items not rendered
+     */
+    public synchronized void setItemCounts(int rendered, int culled) {
+        if ( !m_open ) return;
+        m_rendered = rendered;
+        m_culled = culled;
+    }
+
+    /**
+     * Close the open frame, adding its values to the histograms.
+     * @return true if a frame was open, false otherwise
+     */
+    public synchronized boolean endFrame() {
+        if ( !m_open ) return false;
+        m_open = false;
+        m_cur[FRAME] = System.nanoTime() - m_start;
+        for ( int i=0; i<m_cur.length; ++i ) {
+            m_last[i] = m_cur[i];
+            m_hist[i].add(m_cur[i]);
+        }
+        ++m_frames;
+        m_renderedTotal += m_rendered;
+        m_culledTotal += m_culled;
+
+        m_spriteRate = rate(m_spriteLookups.sumThenReset(),
+                            m_spriteMisses.sumThenReset());
+        m_colorRate = rate(ColorLib.getCacheLookupCount() - m_color0,
+                           ColorLib.getCacheMissCount() - m_colorMiss0);
+        m_fontRate = rate(FontLib.getCacheLookupCount() - m_font0,
+                          FontLib.getCacheMissCount() - m_fontMiss0);
+        return true;
+    }
+
+    private static double rate(long lookups, long misses) {
+        return lookups > 0 ? 1.0 - ((double)misses)/lookups : Double.NaN;
+    }
+
+    /**
+     * Count a sprite cache lookup of the open frame. Called by renderers,
+     * possibly from multiple rendering threads at once.
+     * @param miss true if the lookup missed the cache
+     * @see prefuse.render.AbstractShapeRenderer#setSpriteCacheSize(int)
+     */
+    public void countSprite(boolean miss) {
+        m_spriteLookups.increment();
+        if ( miss ) m_spriteMisses.increment();
+    }
+
+    /**
+     * Get the metrics of the frame being rendered by the current thread.
+     * @return the frame metrics, or null if the current thread is not
+     * rendering for a Display collecting metrics
+     */
+    public static FrameMetrics getCurrent() {
+        return s_current.get();
+    }
+
+    /**
+     * Set the metrics of the frame being rendered by the current thread.
+     * @param metrics the frame metrics, or null once rendering is done
+     */
+    public static void setCurrent(FrameMetrics metrics) {
+        if ( metrics == null )
+            s_current.remove();
+        else
+            s_current.set(metrics);
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#reset()
+     */
+    public synchronized void reset() {
+        for ( int i=0; i<m_hist.length; ++i ) {
+            m_hist[i].reset();
+            m_last[i] = 0;
+        }
+        m_frames = 0;
+        m_rendered = m_culled = 0;
+        m_renderedTotal = m_culledTotal = 0;
+        m_spriteRate = m_colorRate = m_fontRate = Double.NaN;
+    }
+
+    // ------------------------------------------------------------------------
+    // Access
+
+    /**
+     * Get a copy of the histogram of times recorded for a phase.
+     * @param phase the phase, one of {@link #QUEUE}, {@link #SORT},
+     * {@link #RENDER}, {@link #LISTENER}, or {@link #FRAME}
+     * @return a copy of the histogram of phase times
+     */
+    public synchronized Histogram getHistogram(int phase) {
+        return new Histogram(m_hist[phase]);
+    }
+
+    /**
+     * Get the time taken by a phase of the most recent frame.
+     * @param phase the phase, one of {@link #QUEUE}, {@link #SORT},
+     * {@link #RENDER}, {@link #LISTENER}, or {@link #FRAME}
+     * @return the phase time, in milliseconds
+     */
+    public synchronized double getLastTime(int phase) {
+        return m_last[phase] / 1e6;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getPercentile(java.lang.String, double)
+     */
+    public synchronized double getPercentile(String phase, double p) {
+        return m_hist[phase(phase)].getPercentile(p) / 1e6;
+    }
+
+    private static int phase(String name) {
+        for ( int i=0; i<PHASES.length; ++i ) {
+            if ( PHASES[i].equalsIgnoreCase(name) )
+                return i;
+        }
+        throw new IllegalArgumentException("Unknown phase: " + name);
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getFrameCount()
+     */
+    public synchronized long getFrameCount() {
+        return m_frames;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getQueueTime()
+     */
+    public synchronized double getQueueTime() {
+        return m_hist[QUEUE].getMean() / 1e6;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getSortTime()
+     */
+    public synchronized double getSortTime() {
+        return m_hist[SORT].getMean() / 1e6;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getRenderTime()
+     */
+    public synchronized double getRenderTime() {
+        return m_hist[RENDER].getMean() / 1e6;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getListenerTime()
+     */
+    public synchronized double getListenerTime() {
+        return m_hist[LISTENER].getMean() / 1e6;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getFrameTime()
+     */
+    public synchronized double getFrameTime() {
+        return m_hist[FRAME].getMean() / 1e6;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getMaxFrameTime()
+     */
+    public synchronized double getMaxFrameTime() {
+        return m_hist[FRAME].getMax() / 1e6;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getLastRenderedCount()
+     */
+    public synchronized int getLastRenderedCount() {
+        return m_rendered;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getLastCulledCount()
+     */
+    public synchronized int getLastCulledCount() {
+        return m_culled;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getRenderedCount()
+     */
+    public synchronized long getRenderedCount() {
+        return m_renderedTotal;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getCulledCount()
+     */
+    public synchronized long getCulledCount() {
+        return m_culledTotal;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getSpriteCacheHitRate()
+     */
+    public synchronized double getSpriteCacheHitRate() {
+        return m_spriteRate;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getColorCacheHitRate()
+     */
+    public synchronized double getColorCacheHitRate() {
+        return m_colorRate;
+    }
+
+    /**
+     * @see prefuse.util.display.FrameMetricsMBean#getFontCacheHitRate()
+     */
+    public synchronized double getFontCacheHitRate() {
+        return m_fontRate;
+    }
+
+    /**
+     * Register this instance with the platform MBean server.
+     * @param name the JMX object name to register under, for example
+     * "prefuse:type=Display,name=main"
+     * @return the registered object name
+     * @throws JMException if the name is invalid or already registered
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName on = new ObjectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+        return on;
+    }
+
+    /**
+     * Unregister an instance from the platform MBean server.
+     * @param name the object name the instance was registered under
+     * @throws JMException if the name is not registered
+     */
+    public static void unregister(ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    public synchronized String toString() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("frames: ").append(m_frames);
+        for ( int i=0; i<PHASES.length; ++i ) {
+            sb.append(", ").append(PHASES[i]).append(": ");
+            append(sb, m_hist[i].getMean()/1e6);
+            sb.append("ms (p95 ");
+            append(sb, m_hist[i].getPercentile(0.95)/1e6);
+            sb.append(")");
+        }
+        sb.append(", rendered: ").append(m_rendered);
+        sb.append(", culled: ").append(m_culled);
+        return sb.toString();
+    }
+
+    private static void append(StringBuffer sb, double v) {
+        sb.append(Math.round(v*1000)/1000.0);
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Histogram of non-negative durations, using logarithmically sized
+     * buckets. Bucket <i>i</i> &gt; 0 holds values in the range
+     * [2<sup>i-1</sup>, 2<sup>i</sup>) microseconds, and bucket 0 holds
+     * values under one microsecond. This keeps the histogram small and
+     * fixed in size while bounding the relative error of percentile
+     * estimates to a factor of two.
+     */
+    public static class Histogram {
+
+        /** The number of buckets. */
+        public static final int BUCKETS = 32;
+
+        private long[] m_counts = new long[BUCKETS];
+        private long   m_count = 0;
+        private long   m_sum = 0;
+        private long   m_max = 0;
+
+        /**
+         * Create a new, empty histogram.
+         */
+        public Histogram() {
+        }
+
+        /**
+         * Create a copy of the given histogram.
+         * @param h the histogram to copy
+         */
+        public Histogram(Histogram h) {
+            System.arraycopy(h.m_counts, 0, m_counts, 0, BUCKETS);
+            m_count = h.m_count;
+            m_sum = h.m_sum;
+            m_max = h.m_max;
+        }
+
+        /**
+         * Add a value to the histogram.
+         * @param nanos the value, in nanoseconds
+         */
+        public void add(long nanos) {
+            if ( nanos < 0 ) nanos = 0;
+            m_counts[bucket(nanos)]++;
+            m_count++;
+            m_sum += nanos;
+            if ( nanos > m_max ) m_max = nanos;
+        }
+
+        private static int bucket(long nanos) {
+            long us = nanos / 1000;
+            int b = 64 - Long.numberOfLeadingZeros(us);
+            return Math.min(b, BUCKETS-1);
+        }
+
+        /**
+         * Get the lower bound of a bucket.
+         * @param bucket the bucket index
+         * @return the smallest value held by the bucket, in nanoseconds
+         */
+        public static long getBucketMinimum(int bucket) {
+            return bucket == 0 ? 0 : 1000L << (bucket-1);
+        }
+
+        /**
+         * Get the number of values held by a bucket.
+         * @param bucket the bucket index
+         * @return the bucket count
+         */
+        public long getBucketCount(int bucket) {
+            return m_counts[bucket];
+        }
+
+        /**
+         * Get the number of values added to the histogram.
+         * @return the value count
+         */
+        public long getCount() {
+            return m_count;
+        }
+
+        /**
+         * Get the mean value.
+         * @return the mean, in nanoseconds, or zero if empty
+         */
+        public double getMean() {
+            return m_count == 0 ? 0 : ((double)m_sum)/m_count;
+        }
+
+        /**
+         * Get the maximum value.
+         * @return the maximum, in nanoseconds
+         */
+        public long getMax() {
+            return m_max;
+        }
+
+        /**
+         * Estimate a percentile of the values, as the upper bound of the
+         * bucket containing it (capped at the maximum value).
+         * @param p the percentile, in the range [0,1]
+         * @return the estimated percentile, in nanoseconds
+         */
+        public long getPercentile(double p) {
+            if ( m_count == 0 ) return 0;
+            long rank = (long)Math.ceil(p*m_count);
+            long seen = 0;
+            for ( int i=0; i<BUCKETS-1; ++i ) {
+                seen += m_counts[i];
+                if ( seen >= rank && seen > 0 )
+                    return Math.min(getBucketMinimum(i+1), m_max);
+            }
+            return m_max;
+        }
+
+        /**
+         * Remove all values from the histogram.
+         */
+        public void reset() {
+            for ( int i=0; i<BUCKETS; ++i )
+                m_counts[i] = 0;
+            m_count = m_sum = m_max = 0;
+        }
+
+    } // end of inner class Histogram
+
+} // end of class FrameMetrics
@@ -0,0 +1,111 @@
+package prefuse.util.display;
+
+/**
+ * JMX management interface for {@link FrameMetrics}. Times are reported
+ * in milliseconds, and averages are taken over all frames recorded since
+ * the metrics were created or last reset.
+ */
+public interface FrameMetricsMBean {
+
+    /**
+     * Get the number of frames recorded.
+     * @return the frame count
+     */
+    public long getFrameCount();
+
+    /**
+     * Get the mean time spent filling the rendering queue.
+     * @return the mean queue fill time, in milliseconds
+     */
+    public double getQueueTime();
+
+    /**
+     * Get the mean time spent sorting the rendering queue.
+     * @return the mean sort time, in milliseconds
+     */
+    public double getSortTime();
+
+    /**
+     * Get the mean time spent rendering items.
+     * @return the mean render time, in milliseconds
+     */
+    public double getRenderTime();
+
+    /**
+     * Get the mean time spent notifying paint and item bounds listeners.
+     * @return the mean listener time, in milliseconds
+     */
+    public double getListenerTime();
+
+    /**
+     * Get the mean total frame time.
+     * @return the mean frame time, in milliseconds
+     */
+    public double getFrameTime();
+
+    /**
+     * Get the longest frame time.
+     * @return the maximum frame time, in milliseconds
+     */
+    public double getMaxFrameTime();
+
+    /**
+     * Estimate a percentile of the time taken by a frame phase.
+     * @param phase the phase name, one of "queue", "sort", "render",
+     * "listener", or "frame"
+     * @param p the percentile, in the range [0,1]
+     * @return the estimated percentile, in milliseconds
+     */
+    public double getPercentile(String phase, double p);
+
+    /**
+     * Get the number of items rendered in the most recent frame.
+     * @return the rendered item count
+     */
+    public int getLastRenderedCount();
+
+    /**
+     * Get the number of visible items culled in the most recent frame.
+     * @return the culled item count
+     */
+    public int getLastCulledCount();
+
+    /**
+     * Get the number of items rendered over all frames.
+     * @return the total rendered item count
+     */
+    public long getRenderedCount();
+
+    /**
+     * Get the number of visible items culled over all frames.
+     * @return the total culled item count
+     */
+    public long getCulledCount();
+
+    /**
+     * Get the sprite cache hit rate of the most recent frame.
+     * @return the hit rate in the range [0,1], or NaN if no sprites
+     * were requested
+     */
+    public double getSpriteCacheHitRate();
+
+    /**
+     * Get the color cache hit rate of the most recent frame.
+     * @return the hit rate in the range [0,1], or NaN if no colors
+     * were requested
+     */
+    public double getColorCacheHitRate();
+
+    /**
+     * Get the font cache hit rate of the most recent frame.
+     * @return the hit rate in the range [0,1], or NaN if no fonts
+     * were requested
+     */
+    public double getFontCacheHitRate();
+
+    /**
+     * Discard all recorded values.
+     */
+    public void reset();
+
+} // end of interface FrameMetricsMBean
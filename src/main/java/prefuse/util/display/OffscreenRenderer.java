@@ -0,0 +1,583 @@
+package prefuse.util.display;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.imageio.ImageIO;
+
+import prefuse.Visualization;
+import prefuse.data.expression.AndPredicate;
+import prefuse.data.expression.Predicate;
+import prefuse.util.io.PDFGraphics2D;
+import prefuse.util.io.SVGGraphics2D;
+import prefuse.util.io.VectorGraphics2D;
+import prefuse.visual.VisualItem;
+import prefuse.visual.expression.ValidatedPredicate;
+import prefuse.visual.expression.VisiblePredicate;
+import prefuse.visual.sort.ItemSorter;
+
+/**
+ * Renders the contents of a {@link prefuse.Visualization} directly into
+ * images, without the use of a {@link prefuse.Display} or any other Swing
+ * component. Rendering can be performed on any thread and does not require
+ * an AWT event thread, making this class suitable for batch image
+ * generation in headless server environments.
+ *
+ * <p>Each image is rendered at a fixed pixel size, showing a given viewport
+ * of the visualization in absolute (item-space) coordinates. The viewport
+ * is scaled uniformly to fit the image and centered. Rendered images are
+ * drawn from a pool of reusable buffers; images returned by
+ * {@link #render(Visualization, Rectangle2D)} should be handed back using
+ * {@link #releaseImage(BufferedImage)} once no longer needed. The
+ * <code>export</code> methods render, encode, and release images in one
+ * step, and {@link #exportImages(Visualization[], Rectangle2D[], String,
+ * OutputStream[])} exports many views in parallel.</p>
+ *
+ * <p>Rendering locks the Visualization being rendered, just as a Display
+ * does, so concurrent renders of a single Visualization are serialized
+ * while renders of different Visualizations, as well as the encoding of
+ * rendered images, proceed in parallel. Renderers are not thread-safe:
+ * only the lock of the Visualization being rendered is held while items
+ * are validated and drawn, so a {@link prefuse.render.Renderer} instance
+ * must not be shared between Visualizations that may be rendered
+ * concurrently, whether by an OffscreenRenderer or a Display. The shared
+ * caches of {@link prefuse.util.ColorLib} and {@link prefuse.util.FontLib}
+ * are safe to use from concurrent renders.</p>
+ */
+public class OffscreenRenderer {
+
+    /** The default maximum number of pooled image buffers. */
+    public static final int DEFAULT_POOL_SIZE = 8;
+
+    private int       m_width;
+    private int       m_height;
+    private int       m_imageType = BufferedImage.TYPE_INT_RGB;
+    private int       m_margin = 0;
+    private Color     m_background = Color.WHITE;
+    private boolean   m_highQuality = true;
+    private Predicate m_predicate = VisiblePredicate.TRUE;
+    private ItemSorter m_sort = new ItemSorter();
+
+    private ArrayList<BufferedImage> m_pool = new ArrayList<BufferedImage>();
+    private int          m_poolSize = DEFAULT_POOL_SIZE;
+    private int          m_threads = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool m_exportPool;
+
+    /**
+     * Create a new OffscreenRenderer.
+     * @param width the width of rendered images, in pixels
+     * @param height the height of rendered images, in pixels
+     */
+    public OffscreenRenderer(int width, int height) {
+        setImageSize(width, height);
+    }
+
+    // ------------------------------------------------------------------------
+    // Settings
+
+    /**
+     * Set the size of rendered images. Pooled buffers of a different size
+     * are discarded.
+     * @param width the width of rendered images, in pixels
+     * @param height the height of rendered images, in pixels
+     */
+    public synchronized void setImageSize(int width, int height) {
+        if ( width < 1 || height < 1 )
+            throw new IllegalArgumentException(
+                    "Image dimensions must be at least one pixel.");
+        m_width = width;
+        m_height = height;
+        m_pool.clear();
+    }
+
+    /**
+     * Get the width of rendered images.
+     * @return the image width, in pixels
+     */
+    public int getImageWidth() {
+        return m_width;
+    }
+
+    /**
+     * Get the height of rendered images.
+     * @return the image height, in pixels
+     */
+    public int getImageHeight() {
+        return m_height;
+    }
+
+    /**
+     * Set the type of rendered images. Pooled buffers of a different type
+     * are discarded.
+     * @param type the image type, one of the type constants of
+     * {@link java.awt.image.BufferedImage} (for example,
+     * <code>BufferedImage.TYPE_INT_ARGB</code> to support transparent
+     * backgrounds). The default is <code>BufferedImage.TYPE_INT_RGB</code>.
+     */
+    public synchronized void setImageType(int type) {
+        m_imageType = type;
+        m_pool.clear();
+    }
+
+    /**
+     * Get the type of rendered images.
+     * @return the image type
+     * @see java.awt.image.BufferedImage#getType()
+     */
+    public int getImageType() {
+        return m_imageType;
+    }
+
+    /**
+     * Set the margin left empty around the viewport in rendered images.
+     * @param margin the margin, in pixels
+     */
+    public void setMargin(int margin) {
+        m_margin = Math.max(0, margin);
+    }
+
+    /**
+     * Get the margin left empty around the viewport in rendered images.
+     * @return the margin, in pixels
+     */
+    public int getMargin() {
+        return m_margin;
+    }
+
+    /**
+     * Set the background color of rendered images.
+     * @param c the background color, or null to leave the background
+     * transparent
+     */
+    public void setBackground(Color c) {
+        m_background = c;
+    }
+
+    /**
+     * Get the background color of rendered images.
+     * @return the background color, or null for a transparent background
+     */
+    public Color getBackground() {
+        return m_background;
+    }
+
+    /**
+     * Set whether or not images are rendered with anti-aliasing and other
+     * quality settings. High quality rendering is enabled by default.
+     * @param b true to enable high quality rendering, false to disable it
+     */
+    public void setHighQuality(boolean b) {
+        m_highQuality = b;
+    }
+
+    /**
+     * Indicates if images are rendered at high quality.
+     * @return true if high quality rendering is enabled, false otherwise
+     */
+    public boolean isHighQuality() {
+        return m_highQuality;
+    }
+
+    /**
+     * Set the predicate determining which items are drawn. Only visible
+     * items that also satisfy the predicate are drawn.
+     * @param p the filtering predicate, or null to draw all visible items
+     */
+    public void setPredicate(Predicate p) {
+        if ( p == null ) {
+            m_predicate = VisiblePredicate.TRUE;
+        } else {
+            m_predicate = new AndPredicate(p, VisiblePredicate.TRUE);
+        }
+    }
+
+    /**
+     * Get the predicate determining which items are drawn.
+     * @return the filtering predicate
+     */
+    public Predicate getPredicate() {
+        return m_predicate;
+    }
+
+    /**
+     * Set the ItemSorter determining the rendering order of items.
+     * @param sort the ItemSorter, or null to draw items in iteration order
+     */
+    public void setItemSorter(ItemSorter sort) {
+        m_sort = sort;
+    }
+
+    /**
+     * Get the ItemSorter determining the rendering order of items.
+     * @return the ItemSorter
+     */
+    public ItemSorter getItemSorter() {
+        return m_sort;
+    }
+
+    /**
+     * Set the maximum number of image buffers kept for reuse.
+     * @param size the maximum pool size
+     */
+    public synchronized void setPoolSize(int size) {
+        m_poolSize = Math.max(0, size);
+        while ( m_pool.size() > m_poolSize )
+            m_pool.remove(m_pool.size()-1);
+    }
+
+    /**
+     * Get the maximum number of image buffers kept for reuse.
+     * @return the maximum pool size
+     */
+    public int getPoolSize() {
+        return m_poolSize;
+    }
+
+    /**
+     * Set the number of threads used by
+     * {@link #exportImages(Visualization[], Rectangle2D[], String,
+     * OutputStream[])}. Defaults to the number of available processors.
+     * @param n the number of export threads
+     */
+    public synchronized void setThreadCount(int n) {
+        n = Math.max(1, n);
+        if ( n == m_threads )
+            return;
+        if ( m_exportPool != null ) {
+            m_exportPool.shutdown();
+            m_exportPool = null;
+        }
+        m_threads = n;
+    }
+
+    /**
+     * Get the number of threads used for parallel export.
+     * @return the number of export threads
+     */
+    public int getThreadCount() {
+        return m_threads;
+    }
+
+    // ------------------------------------------------------------------------
+    // Buffer Pool
+
+    /**
+     * Get an image buffer of the current size and type, reusing a pooled
+     * buffer if one is available. The contents of the buffer are undefined.
+     * @return an image buffer
+     */
+    public synchronized BufferedImage getImage() {
+        int n = m_pool.size();
+        if ( n > 0 )
+            return m_pool.remove(n-1);
+        return new BufferedImage(m_width, m_height, m_imageType);
+    }
+
+    /**
+     * Return an image buffer to the pool for later reuse. Buffers of the
+     * wrong size or type, and buffers beyond the maximum pool size, are
+     * discarded. The caller must not use the image after releasing it.
+     * @param img the image to release
+     */
+    public synchronized void releaseImage(BufferedImage img) {
+        if ( img == null || m_pool.size() >= m_poolSize ||
+             img.getWidth() != m_width || img.getHeight() != m_height ||
+             img.getType() != m_imageType )
+        {
+            return;
+        }
+        m_pool.add(img);
+    }
+
+    // ------------------------------------------------------------------------
+    // Rendering
+
+    /**
+     * Render a view of a visualization into an image drawn from the buffer
+     * pool. The image should be released using
+     * {@link #releaseImage(BufferedImage)} when no longer needed.
+     * @param vis the Visualization to render
+     * @param view the viewport to render, in absolute coordinates, or null
+     * to fit the bounds of all visible items
+     * @return the rendered image
+     */
+    public BufferedImage render(Visualization vis, Rectangle2D view) {
+        BufferedImage img = getImage();
+        Graphics2D g = img.createGraphics();
+        try {
+            render(g, vis, view, img.getWidth(), img.getHeight());
+        } finally {
+            g.dispose();
+        }
+        return img;
+    }
+
+    /**
+     * Render a view of a visualization into a graphics context.
+     * @param g the graphics context to draw into
+     * @param vis the Visualization to render
+     * @param view the viewport to render, in absolute coordinates, or null
+     * to fit the bounds of all visible items
+     * @param width the width of the target area, in pixels
+     * @param height the height of the target area, in pixels
+     */
+    public void render(Graphics2D g, Visualization vis, Rectangle2D view,
+                       int width, int height)
+    {
+        // clear the background
+        if ( m_background == null ) {
+            Composite c = g.getComposite();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, width, height);
+            g.setComposite(c);
+        } else {
+            g.setColor(m_background);
+            g.fillRect(0, 0, width, height);
+        }
+        setRenderingHints(g);
+
+        RenderingQueue queue = new RenderingQueue();
+        queue.sort = m_sort;
+
+        // if double-locking *ALWAYS* lock on the visualization first
+        synchronized ( vis ) {
+            // bring item bounds up to date
+            Iterator<?> items = vis.items(ValidatedPredicate.FALSE);
+            while ( items.hasNext() ) {
+                ((VisualItem)items.next()).validateBounds();
+            }
+            if ( view == null )
+                view = vis.getBounds(Visualization.ALL_ITEMS);
+
+            AffineTransform at = getTransform(view, width, height);
+            if ( at == null ) return;
+            AffineTransform orig = g.getTransform();
+            g.transform(at);
+
+            // collect the items within the viewport
+            Clip clip = new Clip();
+            clip.setClip(view);
+            double pixel = 1.0 + 1.0/at.getScaleX();
+            items = vis.items(m_predicate);
+            while ( items.hasNext() ) {
+                VisualItem item = (VisualItem)items.next();
+                if ( clip.intersects(item.getBounds(), pixel) )
+                    queue.addToRenderQueue(item);
+            }
+            queue.sortRenderQueue();
+
+            // render
+            for ( int i=0; i<queue.rsize; ++i ) {
+                VisualItem item = queue.ritems[i];
+                item.getRenderer().render(g, item);
+            }
+            g.setTransform(orig);
+        }
+    }
+
+    /**
+     * Compute the transform mapping the given viewport into the image,
+     * accounting for the margin.
+     * @return the transform, or null if the viewport is empty or invalid
+     */
+    private AffineTransform getTransform(Rectangle2D view, int w, int h) {
+        double vw = view.getWidth(), vh = view.getHeight();
+        double iw = w - 2*m_margin, ih = h - 2*m_margin;
+        if ( iw <= 0 || ih <= 0 || Double.isNaN(vw) || Double.isNaN(vh) )
+            return null;
+        // a degenerate viewport is shown at unit scale
+        double sx = vw > 0 ? iw / vw : 1.0;
+        double sy = vh > 0 ? ih / vh : 1.0;
+        double s = Math.min(sx, sy);
+        double tx = (w - s*vw)/2 - s*view.getMinX();
+        double ty = (h - s*vh)/2 - s*view.getMinY();
+        return new AffineTransform(s, 0, 0, s, tx, ty);
+    }
+
+    /**
+     * Sets the rendering hints used to draw images.
+     * @param g the Graphics context on which to set the rendering hints
+     */
+    protected void setRenderingHints(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, m_highQuality
+                ? RenderingHints.VALUE_ANTIALIAS_ON
+                : RenderingHints.VALUE_ANTIALIAS_OFF);
+        g.setRenderingHint(
+            RenderingHints.KEY_RENDERING,
+            RenderingHints.VALUE_RENDER_QUALITY);
+        g.setRenderingHint(
+            RenderingHints.KEY_INTERPOLATION,
+            RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+    }
+
+    // ------------------------------------------------------------------------
+    // Export
+
+    /**
+     * Render a view of a visualization and write it to an output stream.
+     * The stream is not closed.
+     * @param vis the Visualization to render
+     * @param view the viewport to render, in absolute coordinates, or null
+     * to fit the bounds of all visible items
+     * @param format the image format (e.g., "PNG", "JPG"). See
+     * {@link javax.imageio.ImageIO} for the formats supported.
+     * @param out the output stream to write to
+     * @throws IOException if an error occurs writing the image, or if no
+     * writer is available for the requested format
+     */
+    public void export(Visualization vis, Rectangle2D view,
+                       String format, OutputStream out) throws IOException
+    {
+        BufferedImage img = render(vis, view);
+        try {
+            if ( !ImageIO.write(img, format, out) )
+                throw new IOException(
+                        "No image writer found for format: " + format);
+        } finally {
+            releaseImage(img);
+        }
+    }
+
+    /**
+     * Render a view of a visualization as a Scalable Vector Graphics (SVG)
+     * document. Output is streamed as items are drawn, so memory use does
+     * not grow with the number of items. The writer is flushed but not
+     * closed. The current image size determines the document size.
+     * @param vis the Visualization to render
+     * @param view the viewport to render, in absolute coordinates, or null
+     * to fit the bounds of all visible items
+     * @param out the writer to write to
+     * @throws IOException if an error occurs writing the document
+     */
+    public void exportSVG(Visualization vis, Rectangle2D view, Writer out)
+        throws IOException
+    {
+        exportVector(new SVGGraphics2D(out, m_width, m_height), vis, view);
+    }
+
+    /**
+     * Render a view of a visualization as a single page PDF document.
+     * Page content is streamed as items are drawn, so memory use does not
+     * grow with the number of items. The stream is flushed but not closed.
+     * The current image size determines the page size, in points.
+     * @param vis the Visualization to render
+     * @param view the viewport to render, in absolute coordinates, or null
+     * to fit the bounds of all visible items
+     * @param out the output stream to write to
+     * @throws IOException if an error occurs writing the document
+     */
+    public void exportPDF(Visualization vis, Rectangle2D view,
+                          OutputStream out) throws IOException
+    {
+        exportVector(new PDFGraphics2D(out, m_width, m_height), vis, view);
+    }
+
+    private void exportVector(VectorGraphics2D g, Visualization vis,
+                              Rectangle2D view) throws IOException
+    {
+        try {
+            render(g, vis, view, m_width, m_height);
+        } finally {
+            g.finish();
+            g.dispose();
+        }
+        if ( g.checkError() )
+            throw new IOException("Error writing vector output");
+    }
+
+    /**
+     * Render and write many views in parallel. Entry <i>i</i> of each array
+     * describes a single image. Streams are not closed.
+     * @param vis the Visualizations to render
+     * @param views the viewports to render, in absolute coordinates. The
+     * array itself or any of its entries can be null to fit the bounds of
+     * all visible items.
+     * @param format the image format (e.g., "PNG", "JPG")
+     * @param out the output streams to write to
+     * @throws IOException if an error occurs writing any of the images. All
+     * images are attempted; the first error encountered is thrown.
+     */
+    public void exportImages(Visualization[] vis, Rectangle2D[] views,
+                             String format, OutputStream[] out)
+        throws IOException
+    {
+        if ( vis.length != out.length ||
+             (views != null && views.length != vis.length) )
+        {
+            throw new IllegalArgumentException(
+                    "Input arrays must be of equal length.");
+        }
+        ExportTask[] tasks = new ExportTask[vis.length];
+        for ( int i=0; i<tasks.length; ++i ) {
+            tasks[i] = new ExportTask(vis[i],
+                    views==null ? null : views[i], format, out[i]);
+        }
+        getExportPool().invoke(new ExportBatch(tasks));
+        for ( int i=0; i<tasks.length; ++i ) {
+            if ( tasks[i].error != null )
+                throw tasks[i].error;
+        }
+    }
+
+    private synchronized ForkJoinPool getExportPool() {
+        if ( m_exportPool == null )
+            m_exportPool = new ForkJoinPool(m_threads);
+        return m_exportPool;
+    }
+
+    /**
+     * Fork/join task that runs a collection of exports in parallel.
+     */
+    private static class ExportBatch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private ExportTask[] tasks;
+        ExportBatch(ExportTask[] tasks) {
+            this.tasks = tasks;
+        }
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Fork/join task that exports a single image.
+     */
+    private class ExportTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        Visualization vis;
+        Rectangle2D view;
+        String format;
+        OutputStream out;
+        IOException error;
+
+        ExportTask(Visualization vis, Rectangle2D view,
+                   String format, OutputStream out)
+        {
+            this.vis = vis;
+            this.view = view;
+            this.format = format;
+            this.out = out;
+        }
+        protected void compute() {
+            try {
+                export(vis, view, format, out);
+            } catch ( IOException e ) {
+                error = e;
+            }
+        }
+    }
+
+} // end of class OffscreenRenderer
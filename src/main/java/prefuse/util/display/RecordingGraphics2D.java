@@ -0,0 +1,341 @@
+package prefuse.util.display;
+
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.QuadCurve2D;
+import java.awt.geom.RectangularShape;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.util.ArrayList;
+
+import prefuse.util.io.VectorGraphics2D;
+
+/**
+ * Graphics2D implementation that records drawing operations into a display
+ * list, which can later be replayed into another graphics context using
+ * {@link #replay(Graphics2D)}. The recording holds its own copies of all
+ * shapes and transforms passed to it, along with the graphics state of
+ * each operation, so it remains valid after the objects that were drawn
+ * have changed. A {@link prefuse.Display} using snapshot rendering records
+ * each frame while it holds the lock of its Visualization, and rasterizes
+ * the recording afterwards without holding the lock.
+ *
+ * <p>Images are recorded by reference, and must not be modified before
+ * the recording has been replayed. Replaying reproduces the original
+ * drawing calls, so the output is identical to drawing directly into the
+ * target context, except that text drawn using attributed strings or
+ * glyph vectors is replayed as filled outlines.</p>
+ *
+ * @see prefuse.Display#setSnapshotRendering(boolean)
+ */
+public class RecordingGraphics2D extends VectorGraphics2D {
+
+    private static final GraphicsConfiguration s_config =
+        new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB)
+            .createGraphics().getDeviceConfiguration();
+
+    private static final int SHAPE = 0;
+    private static final int TEXT  = 1;
+    private static final int IMAGE = 2;
+    private static final int CLEAR = 3;
+
+    private final ArrayList<Op> m_ops;
+    private State m_state;
+
+    /**
+     * Create a new, empty RecordingGraphics2D.
+     * @param width the width of the drawing area
+     * @param height the height of the drawing area
+     */
+    public RecordingGraphics2D(int width, int height) {
+        super(width, height);
+        m_ops = new ArrayList<Op>();
+    }
+
+    /**
+     * Create a new RecordingGraphics2D with the same state as the given
+     * one, recording into the same display list.
+     */
+    private RecordingGraphics2D(RecordingGraphics2D g) {
+        super(g);
+        m_ops = g.m_ops;
+    }
+
+    /**
+     * Get the number of recorded drawing operations.
+     * @return the number of recorded operations
+     */
+    public int getOperationCount() {
+        return m_ops.size();
+    }
+
+    /**
+     * Draw the recorded operations into the given graphics context. The
+     * graphics state of the context is changed as needed to match that of
+     * each recorded operation.
+     * @param g the graphics context to draw into
+     */
+    public void replay(Graphics2D g) {
+        State cur = null;
+        AffineTransform identity = new AffineTransform();
+        for ( int i=0; i<m_ops.size(); ++i ) {
+            Op op = m_ops.get(i);
+            State s = op.state;
+            if ( s != cur ) {
+                g.setRenderingHints(s.hints);
+                g.setTransform(identity);
+                g.setClip(s.clip);
+                g.setTransform(s.transform);
+                g.setPaint(s.paint);
+                g.setStroke(s.stroke);
+                g.setFont(s.font);
+                g.setComposite(s.composite);
+                g.setBackground(s.background);
+                cur = s;
+            }
+            switch ( op.type ) {
+            case SHAPE:
+                if ( op.fill )
+                    g.fill(op.shape);
+                else
+                    g.draw(op.shape);
+                break;
+            case TEXT:
+                g.drawString(op.text, op.x, op.y);
+                break;
+            case IMAGE:
+                if ( op.xform != null )
+                    g.drawImage(op.image, op.xform, null);
+                else
+                    g.drawImage(op.image, (int)op.x, (int)op.y, null);
+                break;
+            case CLEAR:
+                Shape r = op.shape;
+                java.awt.Rectangle b = r.getBounds();
+                g.clearRect(b.x, b.y, b.width, b.height);
+                break;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Recording
+
+    /**
+     * Get the recorded state matching the current graphics state, reusing
+     * the state of the previous operation if it has not changed.
+     */
+    private State state() {
+        State s = m_state;
+        if ( s == null || s.clip != m_clip || s.paint != m_paint ||
+             s.stroke != m_stroke || s.font != m_font ||
+             s.composite != m_composite || s.background != m_background ||
+             !s.transform.equals(m_transform) || !s.hints.equals(m_hints) )
+        {
+            s = new State();
+            s.transform  = new AffineTransform(m_transform);
+            s.clip       = m_clip; // never modified in place
+            s.paint      = m_paint;
+            s.stroke     = m_stroke;
+            s.font       = m_font;
+            s.composite  = m_composite;
+            s.background = m_background;
+            s.hints      = (RenderingHints)m_hints.clone();
+            m_state = s;
+        }
+        return s;
+    }
+
+    private Op record(int type) {
+        Op op = new Op();
+        op.type = type;
+        op.state = state();
+        m_ops.add(op);
+        return op;
+    }
+
+    /**
+     * Get a copy of a shape, preserving the shape type where possible.
+     */
+    private static Shape copy(Shape s) {
+        if ( s instanceof RectangularShape )
+            return (Shape)((RectangularShape)s).clone();
+        if ( s instanceof Line2D )
+            return (Shape)((Line2D)s).clone();
+        if ( s instanceof Path2D )
+            return (Shape)((Path2D)s).clone();
+        if ( s instanceof CubicCurve2D )
+            return (Shape)((CubicCurve2D)s).clone();
+        if ( s instanceof QuadCurve2D )
+            return (Shape)((QuadCurve2D)s).clone();
+        if ( s instanceof Area )
+            return (Shape)((Area)s).clone();
+        if ( s instanceof Polygon ) {
+            Polygon p = (Polygon)s;
+            return new Polygon(p.xpoints, p.ypoints, p.npoints);
+        }
+        return new Path2D.Double(s);
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#writeShape(java.awt.Shape, boolean)
+     */
+    protected void writeShape(Shape s, boolean fill) {
+        Op op = record(SHAPE);
+        op.shape = copy(s);
+        op.fill = fill;
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#writeImage(java.awt.image.BufferedImage, java.awt.geom.AffineTransform)
+     */
+    protected void writeImage(BufferedImage img, AffineTransform xform) {
+        Op op = record(IMAGE);
+        op.image = img;
+        op.xform = new AffineTransform(xform);
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#writeText(java.lang.String, float, float)
+     */
+    protected void writeText(String s, float x, float y) {
+        Op op = record(TEXT);
+        op.text = s;
+        op.x = x;
+        op.y = y;
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#finish()
+     */
+    public void finish() {
+        // nothing to complete
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#checkError()
+     */
+    public boolean checkError() {
+        return false;
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#createCopy()
+     */
+    protected VectorGraphics2D createCopy() {
+        return new RecordingGraphics2D(this);
+    }
+
+    // ------------------------------------------------------------------------
+    // Graphics2D Methods
+
+    /**
+     * Returns the configuration of an image buffer, as recordings are
+     * replayed into raster targets.
+     * @see java.awt.Graphics2D#getDeviceConfiguration()
+     */
+    public GraphicsConfiguration getDeviceConfiguration() {
+        return s_config;
+    }
+
+    /**
+     * @see java.awt.Graphics2D#draw(java.awt.Shape)
+     */
+    public void draw(Shape s) {
+        writeShape(s, false);
+    }
+
+    /**
+     * @see java.awt.Graphics2D#fill(java.awt.Shape)
+     */
+    public void fill(Shape s) {
+        writeShape(s, true);
+    }
+
+    /**
+     * @see java.awt.Graphics2D#drawString(java.lang.String, float, float)
+     */
+    public void drawString(String str, float x, float y) {
+        if ( str == null || str.length() == 0 ) return;
+        writeText(str, x, y);
+    }
+
+    /**
+     * @see java.awt.Graphics#clearRect(int, int, int, int)
+     */
+    public void clearRect(int x, int y, int width, int height) {
+        Op op = record(CLEAR);
+        op.shape = new java.awt.Rectangle(x, y, width, height);
+    }
+
+    /**
+     * @see java.awt.Graphics#drawImage(java.awt.Image, int, int, java.awt.image.ImageObserver)
+     */
+    public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+        if ( img == null || img.getWidth(null) < 0 ) return false;
+        Op op = record(IMAGE);
+        op.image = img;
+        op.x = x;
+        op.y = y;
+        return true;
+    }
+
+    /**
+     * @see java.awt.Graphics2D#drawImage(java.awt.Image, java.awt.geom.AffineTransform, java.awt.image.ImageObserver)
+     */
+    public boolean drawImage(Image img, AffineTransform xform,
+                             ImageObserver obs)
+    {
+        if ( img == null || img.getWidth(null) < 0 ) return false;
+        Op op = record(IMAGE);
+        op.image = img;
+        op.xform = (xform == null ? new AffineTransform()
+                                  : new AffineTransform(xform));
+        return true;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Graphics state shared by consecutive recorded operations.
+     */
+    private static class State {
+        AffineTransform transform;
+        Shape clip; // in device space
+        Paint paint;
+        Stroke stroke;
+        Font font;
+        Composite composite;
+        Color background;
+        RenderingHints hints;
+    }
+
+    /**
+     * A single recorded drawing operation.
+     */
+    private static class Op {
+        int type;
+        State state;
+        Shape shape;
+        boolean fill;
+        String text;
+        float x, y;
+        Image image;
+        AffineTransform xform;
+    }
+
+} // end of class RecordingGraphics2D
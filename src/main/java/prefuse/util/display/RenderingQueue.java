@@ -1,8 +1,8 @@
 package prefuse.util.display;
 
 import java.util.Arrays;
+import java.util.HashSet;
 
-import prefuse.util.ArrayLib;
 import prefuse.visual.VisualItem;
 import prefuse.visual.sort.ItemSorter;
 
@@ -10,6 +10,22 @@ import prefuse.visual.sort.ItemSorter;
  * A helper class representing rendering and picking queues. This functionality
  * is listed separately to keep the Display implementation a bit cleaner.
  * Fields are public and used directly by a single Display instance.
+ *
+ * <p>The queues persist their ordering state across frames. When the queues
+ * are re-filled, an item found at the same queue position as in the previous
+ * pass keeps its previous score unless it has been reported as changed using
+ * {@link #markDirty(VisualItem)}. Sorting then only re-positions the items
+ * whose score or position changed, merging them into the previous order, so
+ * that the sorting cost follows the number of changed items rather than the
+ * number of queued items. The resulting order is identical to that of a full
+ * stable sort of the queue.</p>
+ *
+ * <p>Changes in item state that affect ordering scores must be reported to
+ * the queue. A {@link prefuse.Display} does this automatically for all
+ * items for which it receives a damage report, which covers any change to
+ * an item's data fields (hover, highlight, fixed, etc) as well as changes in
+ * focus group membership. Sorters that depend on other state should be
+ * accompanied by calls to {@link #invalidateScores()}.</p>
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
@@ -30,9 +46,9 @@ public class RenderingQueue {
     public int          psize   = 0;
     public boolean      psorted = false;
     
-    // buffer queues for use in sorting, these prevent continual re-allocation
-    transient static VisualItem[] items_buf;
-    transient static int[]        scores_buf;
+    // persistent ordering state for the rendering and picking queues
+    private Order m_rorder = new Order();
+    private Order m_porder = new Order();
     
     /**
      * Clear both rendering and picking queues.
@@ -42,6 +58,18 @@ public class RenderingQueue {
         Arrays.fill(pitems, 0, psize, null);
         rsize = 0;
         psize = 0;
+        m_rorder.begin();
+        m_porder.begin();
+    }
+
+    /**
+     * Clear the picking queue only.
+     */
+    public void clearPickingQueue() {
+        Arrays.fill(pitems, 0, psize, null);
+        psize = 0;
+        psorted = false;
+        m_porder.begin();
     }
     
     /**
@@ -54,8 +82,30 @@ public class RenderingQueue {
     	rscores = new int[DEFAULT_SIZE];
     	pitems = new VisualItem[DEFAULT_SIZE];
     	pscores = new int[DEFAULT_SIZE];
-    	items_buf = null;
-    	scores_buf = null;
+    	m_rorder = new Order();
+    	m_porder = new Order();
+    }
+
+    /**
+     * Report that the ordering score of an item may have changed. The item
+     * will be re-scored the next time it is added to a queue.
+     * @param item the changed item
+     */
+    public void markDirty(VisualItem item) {
+        m_rorder.markDirty(item);
+        m_porder.markDirty(item);
+    }
+
+    /**
+     * Discard all retained ordering scores, causing every item to be
+     * re-scored and both queues to be fully sorted the next time they are
+     * filled. This should be called whenever the ordering scores may have
+     * changed in ways not reported through {@link #markDirty(VisualItem)},
+     * for example when the ItemSorter depends upon external state.
+     */
+    public void invalidateScores() {
+        m_rorder.invalidate();
+        m_porder.invalidate();
     }
     
     /**
@@ -73,7 +123,8 @@ public class RenderingQueue {
             rscores = s;
         }
         ritems[rsize] = item;
-        rscores[rsize++] = (sort != null ? sort.score(item) : 0);
+        rscores[rsize] = m_rorder.add(sort, item, rsize);
+        ++rsize;
     }
     
     /**
@@ -91,7 +142,8 @@ public class RenderingQueue {
             pscores = s;
         }
         pitems[psize] = item;
-        pscores[psize++] = (sort != null ? sort.score(item) : 0);
+        pscores[psize] = m_porder.add(sort, item, psize);
+        ++psize;
         psorted = false;
     }
     
@@ -99,29 +151,204 @@ public class RenderingQueue {
      * Sort the rendering queue.
      */
     public void sortRenderQueue() {
-        sort(ritems, rscores, rsize);
+        m_rorder.sort(sort, ritems, rscores, rsize);
     }
     
     /**
      * Sort the picking queue. 
      */
     public void sortPickingQueue() {
-        sort(pitems, pscores, psize);
+        m_porder.sort(sort, pitems, pscores, psize);
         psorted = true;
     }
     
+    // ------------------------------------------------------------------------
+
     /**
-     * Sort a queue of items based upon an array of ordering scores. 
+     * Ordering state of a single queue, retained across passes. Holds the
+     * queue contents in insertion order along with their scores, and the
+     * sorted order of the last pass as a permutation of insertion indices.
+     * Items are ordered by score, with ties broken by insertion index.
      */
-    private void sort(VisualItem[] items, int[] scores, int size) {
-        if ( sort == null ) return;
-        // first check buffer queues
-        if ( items_buf == null || items_buf.length < size ) {
-            items_buf = new VisualItem[items.length];
-            scores_buf = new int[scores.length];
+    private static class Order {
+
+        // queue contents in insertion order
+        VisualItem[] items  = new VisualItem[DEFAULT_SIZE];
+        int[]        scores = new int[DEFAULT_SIZE];
+        int          size   = 0;  // entries added in the current pass
+        int          last   = 0;  // entries added in the previous pass
+
+        // sorted order of the previous pass, or -1 if no valid order
+        int[] perm    = new int[DEFAULT_SIZE];
+        int[] permBuf = new int[DEFAULT_SIZE];
+        int   psize   = -1;
+
+        // insertion indices whose entries changed in the current pass
+        boolean[] changed = new boolean[DEFAULT_SIZE];
+        int[]     clist   = new int[DEFAULT_SIZE];
+        int       csize   = 0;
+        long[]    keys    = new long[DEFAULT_SIZE];
+
+        // items reported as changed, and those being checked this pass
+        HashSet<VisualItem> dirty = new HashSet<VisualItem>();
+        HashSet<VisualItem> check = new HashSet<VisualItem>();
+        boolean all   = false; // re-score all items
+        boolean rescore = false;
+        boolean pending = false; // filled but not yet sorted
+
+        /**
+         * Start a new pass, taking ownership of the current dirty items.
+         */
+        void begin() {
+            HashSet<VisualItem> s = check;
+            s.clear();
+            check = dirty;
+            dirty = s;
+            rescore = all;
+            all = false;
+            if ( pending ) {
+                // the previous pass was never sorted, so its entries and
+                // scores are kept but the sorted order must be rebuilt
+                if ( last > size )
+                    Arrays.fill(items, size, last, null);
+                last = size;
+                psize = -1;
+                pending = false;
+            }
+            for ( int i=0; i<csize; ++i )
+                changed[clist[i]] = false;
+            csize = 0;
+            size = 0;
+        }
+
+        void markDirty(VisualItem item) {
+            if ( all ) return;
+            if ( dirty.size() >= Math.max(last, DEFAULT_SIZE) ) {
+                // too many changes to track individually
+                dirty.clear();
+                all = true;
+            } else {
+                dirty.add(item);
+            }
+        }
+
+        void invalidate() {
+            dirty.clear();
+            all = true;
+        }
+
+        int add(ItemSorter sort, VisualItem item, int i) {
+            if ( items.length == i ) {
+                int capacity = (3*items.length)/2 + 1;
+                VisualItem[] q = new VisualItem[capacity];
+                int[] s = new int[capacity];
+                boolean[] c = new boolean[capacity];
+                System.arraycopy(items, 0, q, 0, i);
+                System.arraycopy(scores, 0, s, 0, i);
+                System.arraycopy(changed, 0, c, 0, i);
+                items = q;
+                scores = s;
+                changed = c;
+            }
+            size = i+1;
+            pending = true;
+            if ( !rescore && i < last && items[i] == item &&
+                 (check.isEmpty() || !check.contains(item)) )
+            {
+                return scores[i];
+            }
+            int score = (sort != null ? sort.score(item) : 0);
+            if ( i < last && items[i] == item && scores[i] == score )
+                return score;
+            items[i] = item;
+            scores[i] = score;
+            if ( clist.length == csize ) {
+                int[] c = new int[(3*clist.length)/2 + 1];
+                System.arraycopy(clist, 0, c, 0, csize);
+                clist = c;
+            }
+            changed[i] = true;
+            clist[csize++] = i;
+            return score;
+        }
+
+        /**
+         * Write the sorted queue contents into the given arrays.
+         */
+        void sort(ItemSorter sort, VisualItem[] qitems, int[] qscores, int n) {
+            // release entries past the end of this pass
+            if ( last > n )
+                Arrays.fill(items, n, last, null);
+            last = n;
+            pending = false;
+
+            if ( sort == null ) {
+                psize = -1;
+                return;
+            }
+            if ( perm.length < n ) {
+                perm = new int[items.length];
+                permBuf = new int[items.length];
+                psize = -1;
+            }
+
+            if ( psize < 0 || csize > n/4 ) {
+                fullSort(n);
+            } else if ( csize > 0 || psize != n ) {
+                mergeSort(n);
+            }
+            psize = n;
+
+            for ( int i=0; i<n; ++i ) {
+                int j = perm[i];
+                qitems[i] = items[j];
+                qscores[i] = scores[j];
+            }
+        }
+
+        private void fullSort(int n) {
+            long[] k = keys(n);
+            for ( int i=0; i<n; ++i )
+                k[i] = key(i);
+            Arrays.sort(k, 0, n);
+            for ( int i=0; i<n; ++i )
+                perm[i] = (int)k[i];
+        }
+
+        private void mergeSort(int n) {
+            // sort the changed entries
+            long[] k = keys(csize);
+            for ( int i=0; i<csize; ++i )
+                k[i] = key(clist[i]);
+            Arrays.sort(k, 0, csize);
+
+            // merge them with the unchanged entries of the previous order
+            int[] out = permBuf;
+            int o = 0, c = 0;
+            for ( int p=0; p<psize; ++p ) {
+                int j = perm[p];
+                if ( j >= n || changed[j] ) continue;
+                long kj = key(j);
+                while ( c < csize && k[c] < kj )
+                    out[o++] = (int)k[c++];
+                out[o++] = j;
+            }
+            while ( c < csize )
+                out[o++] = (int)k[c++];
+
+            permBuf = perm;
+            perm = out;
+        }
+
+        private long[] keys(int n) {
+            if ( keys.length < n )
+                keys = new long[items.length];
+            return keys;
+        }
+
+        private long key(int i) {
+            return (((long)scores[i]) << 32) | i;
         }
-        // now sort
-        ArrayLib.sort(scores, items, scores_buf, items_buf, 0, size);
     }
     
 } // end of class RenderingQueue
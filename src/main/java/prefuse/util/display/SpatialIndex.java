@@ -0,0 +1,312 @@
+package prefuse.util.display;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+
+import prefuse.visual.VisualItem;
+
+/**
+ * A uniform grid index over the bounding boxes of VisualItems. The index
+ * is maintained incrementally: items are added when their bounds are
+ * validated and removed when their bounds are invalidated or the item is
+ * deleted. A {@link prefuse.Display} uses the index, when one has been
+ * registered with its {@link prefuse.Visualization}, to fill its rendering
+ * queue for partially damaged regions and to perform hit testing, visiting
+ * only those items that fall within the region of interest.
+ *
+ * <p>Items whose bounds span a large number of grid cells (for example,
+ * long edges) are kept in a separate list that is included in the results
+ * of every query. Query results may contain items that do not exactly
+ * intersect the queried region; callers are expected to perform their own
+ * exact intersection tests.</p>
+ *
+ * <p>Items whose bounds have been invalidated are also recorded as
+ * <em>pending</em>, so that a Display can validate them before rendering
+ * without scanning every item in the Visualization.</p>
+ *
+ * @see prefuse.Visualization#setSpatialIndex(SpatialIndex)
+ */
+public class SpatialIndex {
+
+    /** The default width and height of a grid cell, in absolute units. */
+    public static final double DEFAULT_CELL_SIZE = 100;
+    /** Items spanning more cells than this are stored in the large list. */
+    private static final int MAX_CELLS = 64;
+    /** Largest magnitude of a grid cell coordinate. */
+    private static final int MAX_COORD = 1 << 30;
+
+    private double m_cellSize;
+    private HashMap<Long,ArrayList<Entry>> m_cells =
+        new HashMap<Long,ArrayList<Entry>>();
+    private HashMap<VisualItem,Entry> m_entries =
+        new HashMap<VisualItem,Entry>();
+    private ArrayList<Entry> m_large = new ArrayList<Entry>();
+    // invalidated items
+    private HashSet<VisualItem> m_pending = new HashSet<VisualItem>();
+    private int m_stamp = 0;
+    private int m_visibility = 0;
+
+    /**
+     * Create a new SpatialIndex using the default cell size.
+     */
+    public SpatialIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Create a new SpatialIndex.
+     * @param cellSize the width and height of a grid cell, in absolute
+     * (item-space) coordinates
+     */
+    public SpatialIndex(double cellSize) {
+        if ( cellSize <= 0 || Double.isNaN(cellSize) )
+            throw new IllegalArgumentException(
+                    "Cell size must be greater than zero.");
+        m_cellSize = cellSize;
+    }
+
+    /**
+     * Get the width and height of a grid cell.
+     * @return the cell size, in absolute (item-space) coordinates
+     */
+    public double getCellSize() {
+        return m_cellSize;
+    }
+
+    /**
+     * Get the number of items currently in the index.
+     * @return the number of indexed items
+     */
+    public synchronized int size() {
+        return m_entries.size();
+    }
+
+    /**
+     * Remove all items from the index.
+     */
+    public synchronized void clear() {
+        m_cells.clear();
+        m_entries.clear();
+        m_large.clear();
+        m_pending.clear();
+    }
+
+    /**
+     * Add an item to the index, or move it if already present.
+     * @param item the VisualItem to index
+     * @param b the item's bounding box, in absolute coordinates
+     */
+    public synchronized void update(VisualItem item, Rectangle2D b) {
+        remove(item);
+        m_pending.remove(item);
+
+        double x1 = b.getMinX(), y1 = b.getMinY();
+        double x2 = b.getMaxX(), y2 = b.getMaxY();
+        if ( Double.isNaN(x1) || Double.isNaN(y1) ||
+             Double.isNaN(x2) || Double.isNaN(y2) ||
+             Double.isInfinite(x1) || Double.isInfinite(y1) ||
+             Double.isInfinite(x2) || Double.isInfinite(y2) )
+        {
+            return; // nothing sensible to index
+        }
+
+        Entry e = new Entry(item);
+        e.x1 = cell(x1); e.y1 = cell(y1);
+        e.x2 = cell(x2); e.y2 = cell(y2);
+        m_entries.put(item, e);
+
+        long ncells = ((long)e.x2-e.x1+1) * ((long)e.y2-e.y1+1);
+        if ( ncells > MAX_CELLS ) {
+            e.large = true;
+            m_large.add(e);
+            return;
+        }
+        for ( int x=e.x1; x<=e.x2; ++x ) {
+            for ( int y=e.y1; y<=e.y2; ++y ) {
+                Long key = key(x, y);
+                ArrayList<Entry> list = m_cells.get(key);
+                if ( list == null ) {
+                    list = new ArrayList<Entry>(4);
+                    m_cells.put(key, list);
+                }
+                list.add(e);
+            }
+        }
+    }
+
+    /**
+     * Remove an item from the index and record it as pending, indicating
+     * that its bounds need to be validated before it is indexed again.
+     * @param item the VisualItem whose bounds were invalidated
+     */
+    public synchronized void invalidate(VisualItem item) {
+        remove(item);
+        m_pending.add(item);
+    }
+    
+    /**
+     * Get all pending items, those whose bounds have been invalidated but
+     * not yet validated, and clear the pending set.
+     * @return an array of the pending VisualItems
+     */
+    public synchronized VisualItem[] takePending() {
+        VisualItem[] items = new VisualItem[m_pending.size()];
+        m_pending.toArray(items);
+        m_pending.clear();
+        return items;
+    }
+    
+    /**
+     * Record that the visibility of one or more items has changed, or that
+     * items were added or removed. Displays use this to know when the
+     * visible item counts retained from their last full pass are stale.
+     */
+    public synchronized void visibilityChanged() {
+        ++m_visibility;
+    }
+    
+    /**
+     * Get a stamp that changes whenever {@link #visibilityChanged()} is
+     * called.
+     * @return the current visibility stamp
+     */
+    public synchronized int getVisibilityStamp() {
+        return m_visibility;
+    }
+
+    /**
+     * Remove an item from the index. The item is also removed from the
+     * pending set.
+     * @param item the VisualItem to remove
+     * @return true if the item was found and removed, false otherwise
+     */
+    public synchronized boolean remove(VisualItem item) {
+        m_pending.remove(item);
+        Entry e = m_entries.remove(item);
+        if ( e == null ) return false;
+
+        if ( e.large ) {
+            m_large.remove(e);
+            return true;
+        }
+        for ( int x=e.x1; x<=e.x2; ++x ) {
+            for ( int y=e.y1; y<=e.y2; ++y ) {
+                Long key = key(x, y);
+                ArrayList<Entry> list = m_cells.get(key);
+                if ( list == null ) continue;
+                list.remove(e);
+                if ( list.isEmpty() )
+                    m_cells.remove(key);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get an iterator over all indexed items whose grid cells overlap the
+     * given region. Each item is returned at most once. The results may
+     * include items that do not intersect the region itself.
+     * @param r the query region, in absolute coordinates
+     * @return an iterator over candidate VisualItems
+     */
+    public Iterator<VisualItem> items(Rectangle2D r) {
+        return items(r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY());
+    }
+
+    /**
+     * Get an iterator over all indexed items whose grid cells overlap the
+     * given region. Each item is returned at most once. The results may
+     * include items that do not intersect the region itself.
+     * @param x1 the minimum x-coordinate of the query region
+     * @param y1 the minimum y-coordinate of the query region
+     * @param x2 the maximum x-coordinate of the query region
+     * @param y2 the maximum y-coordinate of the query region
+     * @return an iterator over candidate VisualItems
+     */
+    public synchronized Iterator<VisualItem> items(double x1, double y1,
+                                                double x2, double y2)
+    {
+        if ( m_entries.isEmpty() )
+            return Collections.<VisualItem>emptyList().iterator();
+
+        int stamp = ++m_stamp;
+        ArrayList<VisualItem> result = new ArrayList<VisualItem>();
+        for ( int i=0; i<m_large.size(); ++i ) {
+            Entry e = m_large.get(i);
+            e.stamp = stamp;
+            result.add(e.item);
+        }
+
+        int cx1 = cell(x1), cy1 = cell(y1);
+        int cx2 = cell(x2), cy2 = cell(y2);
+        long ncells = ((long)cx2-cx1+1) * ((long)cy2-cy1+1);
+
+        if ( ncells > m_cells.size() ) {
+            // the query covers more cells than are occupied,
+            // so walk the occupied cells instead
+            Iterator<Map.Entry<Long,ArrayList<Entry>>> iter =
+                m_cells.entrySet().iterator();
+            while ( iter.hasNext() ) {
+                Map.Entry<Long,ArrayList<Entry>> me = iter.next();
+                long k = me.getKey().longValue();
+                int x = (int)(k >> 32), y = (int)k;
+                if ( x>=cx1 && x<=cx2 && y>=cy1 && y<=cy2 )
+                    collect(me.getValue(), stamp, result);
+            }
+        } else {
+            for ( int x=cx1; x<=cx2; ++x ) {
+                for ( int y=cy1; y<=cy2; ++y ) {
+                    ArrayList<Entry> list = m_cells.get(key(x, y));
+                    if ( list != null )
+                        collect(list, stamp, result);
+                }
+            }
+        }
+        return result.iterator();
+    }
+
+    private static void collect(ArrayList<Entry> list, int stamp,
+                                ArrayList<VisualItem> result)
+    {
+        for ( int i=0; i<list.size(); ++i ) {
+            Entry e = list.get(i);
+            if ( e.stamp != stamp ) {
+                e.stamp = stamp;
+                result.add(e.item);
+            }
+        }
+    }
+
+    private int cell(double v) {
+        double c = Math.floor(v / m_cellSize);
+        // clamp well inside the int range so cell loops cannot overflow
+        if ( c < -MAX_COORD ) return -MAX_COORD;
+        if ( c >  MAX_COORD ) return  MAX_COORD;
+        return (int)c;
+    }
+
+    private static Long key(int x, int y) {
+        return Long.valueOf(((long)x << 32) | (y & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Index record for a single item, holding the range of grid cells
+     * the item currently occupies.
+     */
+    private static class Entry {
+        VisualItem item;
+        int x1, y1, x2, y2;
+        int stamp;
+        boolean large;
+
+        Entry(VisualItem item) {
+            this.item = item;
+        }
+    }
+
+} // end of class SpatialIndex
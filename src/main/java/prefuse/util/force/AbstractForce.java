@@ -144,4 +144,16 @@ public abstract class AbstractForce implements Force {
             "This class does not support this operation");
     }
     
+    /**
+     * Initialize this force function for computation on force arrays.
+     * This default implementation does nothing. Subclasses implementing
+     * {@link ArrayForce} should override this method with any needed
+     * initialization.
+     * @param state the simulation state
+     * @see prefuse.util.force.ArrayForce#init(prefuse.util.force.ForceArrays)
+     */
+    public void init(ForceArrays state) {
+        // do nothing.
+    }
+    
 } // end of abstract class AbstractForce
@@ -0,0 +1,33 @@
+package prefuse.util.force;
+
+/**
+ * Interface for force functions that can compute their forces directly on
+ * the {@link ForceArrays} state of a simulation. A {@link ForceSimulator}
+ * uses these methods in place of the per-item and per-spring
+ * {@link Force#getForce(ForceItem)} and {@link Force#getForce(Spring)}
+ * methods when all of its force functions and its integrator support
+ * array computation.
+ */
+public interface ArrayForce extends Force {
+
+    /**
+     * Initialize this force function for computation on the given arrays.
+     * @param state the simulation state
+     */
+    public void init(ForceArrays state);
+
+    /**
+     * Add the forces acting on each registered item to the item force
+     * arrays. Only called if this is an item force.
+     * @param state the simulation state
+     */
+    public void getItemForces(ForceArrays state);
+
+    /**
+     * Add the forces due to each spring to the force arrays of the
+     * spring endpoints. Only called if this is a spring force.
+     * @param state the simulation state
+     */
+    public void getSpringForces(ForceArrays state);
+
+} // end of interface ArrayForce
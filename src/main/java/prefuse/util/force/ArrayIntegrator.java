@@ -0,0 +1,21 @@
+package prefuse.util.force;
+
+/**
+ * Interface for integrators that can update the {@link ForceArrays} state
+ * of a simulation directly.
+ *
+ * @see ArrayForce
+ */
+public interface ArrayIntegrator extends Integrator {
+
+    /**
+     * Update the velocities and locations of the registered items in the
+     * given arrays over a time step. Integrators that re-evaluate forces
+     * should do so using {@link ForceSimulator#accumulate(ForceArrays)}.
+     * @param sim the simulator
+     * @param state the simulation state
+     * @param timeStep the span of the time step
+     */
+    public void integrate(ForceSimulator sim, ForceArrays state, long timeStep);
+
+} // end of interface ArrayIntegrator
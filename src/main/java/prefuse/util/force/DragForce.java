@@ -5,7 +5,7 @@ package prefuse.util.force;
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
-public class DragForce extends AbstractForce {
+public class DragForce extends AbstractForce implements ArrayForce {
 
     private static String[] pNames = new String[] { "DragCoefficient" };
     
@@ -53,5 +53,25 @@ public class DragForce extends AbstractForce {
         item.force[0] -= params[DRAG_COEFF]*item.velocity[0];
         item.force[1] -= params[DRAG_COEFF]*item.velocity[1];
     }
+    
+    /**
+     * @see prefuse.util.force.ArrayForce#getItemForces(prefuse.util.force.ForceArrays)
+     */
+    public void getItemForces(ForceArrays state) {
+        float c = params[DRAG_COEFF];
+        float[] fx = state.fx, fy = state.fy, vx = state.vx, vy = state.vy;
+        for ( int i=0; i<state.itemCount; ++i ) {
+            fx[i] -= c*vx[i];
+            fy[i] -= c*vy[i];
+        }
+    }
+
+    /**
+     * Does nothing, as this is not a spring force.
+     * @see prefuse.util.force.ArrayForce#getSpringForces(prefuse.util.force.ForceArrays)
+     */
+    public void getSpringForces(ForceArrays state) {
+        // not a spring force
+    }
 
 } // end of class DragForce
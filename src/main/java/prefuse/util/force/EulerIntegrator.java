@@ -10,7 +10,7 @@ import java.util.Iterator;
  * @author <a href="http://jheer.org">jeffrey heer</a>
  * @see RungeKuttaIntegrator
  */
-public class EulerIntegrator implements Integrator {
+public class EulerIntegrator implements ArrayIntegrator {
     
     /**
      * @see prefuse.util.force.Integrator#integrate(prefuse.util.force.ForceSimulator, long)
@@ -35,4 +35,24 @@ public class EulerIntegrator implements Integrator {
         }
     }
 
+    /**
+     * @see prefuse.util.force.ArrayIntegrator#integrate(prefuse.util.force.ForceSimulator, prefuse.util.force.ForceArrays, long)
+     */
+    public void integrate(ForceSimulator sim, ForceArrays a, long timeStep) {
+        float speedLimit = sim.getSpeedLimit();
+        float[] x = a.x, y = a.y, vx = a.vx, vy = a.vy;
+        for ( int i=0; i<a.itemCount; ++i ) {
+            x[i] += timeStep * vx[i];
+            y[i] += timeStep * vy[i];
+            float coeff = timeStep / a.mass[i];
+            vx[i] += coeff * a.fx[i];
+            vy[i] += coeff * a.fy[i];
+            float v = (float)Math.sqrt(vx[i]*vx[i]+vy[i]*vy[i]);
+            if ( v > speedLimit ) {
+                vx[i] = speedLimit * vx[i] / v;
+                vy[i] = speedLimit * vy[i] / v;
+            }
+        }
+    }
+
 } // end of class EulerIntegrator
@@ -0,0 +1,217 @@
+package prefuse.util.force;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Simulation state of a {@link ForceSimulator} stored as a structure of
+ * arrays. Each array holds one value for every item in the simulation,
+ * indexed in the simulator's item order, so that force functions and
+ * integrators implementing {@link ArrayForce} and {@link ArrayIntegrator}
+ * run as simple loops over contiguous memory. Springs are stored as the
+ * indices of their two endpoints.
+ *
+ * <p>Items with indices from 0 to {@link #itemCount} - 1 are the items
+ * registered with the simulator. Spring endpoints that are not registered
+ * with the simulator follow, up to {@link #size} - 1: they take part in
+ * spring force computations, but are not moved by the integrator, and
+ * the forces computed for them are not written back to their items.</p>
+ *
+ * <p>The simulator loads these arrays from its {@link ForceItem} and
+ * {@link Spring} instances at the start of each time step, and writes the
+ * resulting locations, velocities and forces back at the end. The items
+ * remain the primary store of the simulation state: the arrays are held in
+ * addition to them, taking 25 floats per item and 2 ints and 2 floats per
+ * spring, and each time step copies the state in and out once. The item
+ * and spring indices are recomputed when items or springs are added to or
+ * removed from the simulator, so spring endpoints should not be changed
+ * directly while a spring is registered.</p>
+ */
+public class ForceArrays {
+
+    /** The number of items registered with the simulator. */
+    public int itemCount;
+    /** The number of items, including unregistered spring endpoints. */
+    public int size;
+
+    /** The mass values of the items. */
+    public float[] mass = new float[0];
+    /** The x-coordinates of the item locations. */
+    public float[] x = new float[0];
+    /** The y-coordinates of the item locations. */
+    public float[] y = new float[0];
+    /** The x-components of the item velocities. */
+    public float[] vx = new float[0];
+    /** The y-components of the item velocities. */
+    public float[] vy = new float[0];
+    /** The x-components of the forces acting on the items. */
+    public float[] fx = new float[0];
+    /** The y-components of the forces acting on the items. */
+    public float[] fy = new float[0];
+    /** The previous x-coordinates of the item locations. */
+    public float[] px = new float[0];
+    /** The previous y-coordinates of the item locations. */
+    public float[] py = new float[0];
+    /** Temporary variables for Runge-Kutta integration, by stage */
+    public float[][] kx = new float[4][0];
+    /** Temporary variables for Runge-Kutta integration, by stage */
+    public float[][] ky = new float[4][0];
+    /** Temporary variables for Runge-Kutta integration, by stage */
+    public float[][] lx = new float[4][0];
+    /** Temporary variables for Runge-Kutta integration, by stage */
+    public float[][] ly = new float[4][0];
+
+    /** The number of springs. */
+    public int springCount;
+    /** The item indices of the first spring endpoints. */
+    public int[] spring1 = new int[0];
+    /** The item indices of the second spring endpoints. */
+    public int[] spring2 = new int[0];
+    /** The spring tension co-efficients. */
+    public float[] springCoeff = new float[0];
+    /** The spring resting lengths. */
+    public float[] springLength = new float[0];
+
+    private ForceItem[] m_items = new ForceItem[0];
+    private Spring[] m_springs = new Spring[0];
+
+    /**
+     * Get the ForceItem stored at the given index.
+     * @param i the item index
+     * @return the ForceItem
+     */
+    public ForceItem getItem(int i) {
+        if ( i < 0 || i >= size )
+            throw new IndexOutOfBoundsException();
+        return m_items[i];
+    }
+
+    /**
+     * Set the forces of all items to zero.
+     */
+    public void clearForces() {
+        for ( int i=0; i<size; ++i ) {
+            fx[i] = 0.0f;
+            fy[i] = 0.0f;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Load the arrays from the indexed items and springs.
+     */
+    void load() {
+        for ( int i=0; i<size; ++i ) {
+            ForceItem item = m_items[i];
+            mass[i] = item.mass;
+            x[i]  = item.location[0];
+            y[i]  = item.location[1];
+            vx[i] = item.velocity[0];
+            vy[i] = item.velocity[1];
+            px[i] = item.plocation[0];
+            py[i] = item.plocation[1];
+        }
+        for ( int j=0; j<springCount; ++j ) {
+            Spring s = m_springs[j];
+            springCoeff[j]  = s.coeff;
+            springLength[j] = s.length;
+        }
+    }
+
+    /**
+     * Write the locations, velocities and forces of the registered items
+     * back to their ForceItems.
+     */
+    void store() {
+        for ( int i=0; i<itemCount; ++i ) {
+            ForceItem item = m_items[i];
+            item.location[0]  = x[i];
+            item.location[1]  = y[i];
+            item.plocation[0] = px[i];
+            item.plocation[1] = py[i];
+            item.velocity[0]  = vx[i];
+            item.velocity[1]  = vy[i];
+            item.force[0]     = fx[i];
+            item.force[1]     = fy[i];
+        }
+    }
+
+    /**
+     * Release references to items and springs.
+     */
+    void clear() {
+        Arrays.fill(m_items, null);
+        Arrays.fill(m_springs, null);
+        itemCount = size = springCount = 0;
+    }
+
+    /**
+     * Compute the item and spring indices for the given items and springs.
+     */
+    void index(ArrayList<ForceItem> items, ArrayList<Spring> springs) {
+        clear();
+        IdentityHashMap<ForceItem,Integer> map =
+            new IdentityHashMap<ForceItem,Integer>();
+        itemCount = items.size();
+        springCount = springs.size();
+        ensureItemCapacity(itemCount);
+        for ( int i=0; i<itemCount; ++i ) {
+            ForceItem item = items.get(i);
+            m_items[i] = item;
+            map.put(item, Integer.valueOf(i));
+        }
+        size = itemCount;
+
+        ensureSpringCapacity(springCount);
+        for ( int j=0; j<springCount; ++j ) {
+            Spring s = springs.get(j);
+            m_springs[j] = s;
+            spring1[j] = indexOf(map, s.item1);
+            spring2[j] = indexOf(map, s.item2);
+        }
+    }
+
+    private int indexOf(IdentityHashMap<ForceItem,Integer> map,
+                        ForceItem item)
+    {
+        Integer idx = map.get(item);
+        if ( idx != null )
+            return idx.intValue();
+        // unregistered spring endpoint
+        ensureItemCapacity(size+1);
+        m_items[size] = item;
+        map.put(item, Integer.valueOf(size));
+        return size++;
+    }
+
+    private void ensureItemCapacity(int n) {
+        if ( n <= x.length ) return;
+        int cap = Math.max(n, 3*x.length/2+1);
+        m_items = (ForceItem[])grow(m_items, new ForceItem[cap]);
+        mass = new float[cap];
+        x  = new float[cap]; y  = new float[cap];
+        vx = new float[cap]; vy = new float[cap];
+        fx = new float[cap]; fy = new float[cap];
+        px = new float[cap]; py = new float[cap];
+        kx = new float[4][cap]; ky = new float[4][cap];
+        lx = new float[4][cap]; ly = new float[4][cap];
+    }
+
+    private void ensureSpringCapacity(int n) {
+        if ( n <= spring1.length ) return;
+        int cap = Math.max(n, 3*spring1.length/2+1);
+        m_springs = (Spring[])grow(m_springs, new Spring[cap]);
+        spring1 = new int[cap];
+        spring2 = new int[cap];
+        springCoeff  = new float[cap];
+        springLength = new float[cap];
+    }
+
+    private static Object[] grow(Object[] a, Object[] b) {
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+} // end of class ForceArrays
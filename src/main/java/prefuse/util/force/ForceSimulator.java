@@ -1,24 +1,40 @@
 package prefuse.util.force;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
 
+import prefuse.util.PrefuseConfig;
+
 /**
  * Manages a simulation of physical forces acting on bodies. To create a
  * custom ForceSimulator, add the desired {@link Force} functions and choose an
  * appropriate {@link Integrator}.
  *
+ * <p>When array mode is enabled and all force functions and the integrator
+ * support it (see {@link ArrayForce} and {@link ArrayIntegrator}), each
+ * time step copies the state of the registered items and springs into a
+ * {@link ForceArrays} structure of arrays, computes forces and integrates
+ * directly on those arrays, and writes the results back to the items.
+ * Otherwise, forces are computed on the ForceItem and Spring instances.
+ * Array mode is disabled by default, see the
+ * <code>util.force.arrayMode</code> configuration setting.</p>
+ *
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
 public class ForceSimulator {
 
-    private ArrayList items;
-    private ArrayList springs;
+    private ArrayList<ForceItem> items;
+    private ArrayList<Spring> springs;
     private Force[] iForces;
     private Force[] sForces;
     private int ifLen, sfLen;
     private Integrator integrator;
     private float speedLimit = 1.0f;
+    private boolean arrayMode =
+        PrefuseConfig.getBoolean("util.force.arrayMode");
+    private ForceArrays state = new ForceArrays();
+    private boolean indexed;
     
     /**
      * Create a new, empty ForceSimulator. A RungeKuttaIntegrator is used
@@ -38,8 +54,8 @@ public class ForceSimulator {
         sForces = new Force[5];
         ifLen = 0;
         sfLen = 0;
-        items = new ArrayList();
-        springs = new ArrayList();
+        items = new ArrayList<ForceItem>();
+        springs = new ArrayList<Spring>();
     }
 
     /**
@@ -60,6 +76,28 @@ public class ForceSimulator {
         speedLimit = limit;
     }
     
+    /**
+     * Indicates if array mode is enabled. When enabled, time steps are
+     * computed on a structure of arrays whenever all the force functions
+     * and the integrator support it. The default value is taken from the
+     * <code>util.force.arrayMode</code> configuration setting.
+     * @return true if array mode is enabled
+     */
+    public boolean isArrayMode() {
+        return arrayMode;
+    }
+    
+    /**
+     * Set if array mode is enabled.
+     * @param enabled true to enable array mode, false to always compute
+     * forces on the ForceItem and Spring instances
+     * @see #isArrayMode()
+     */
+    public void setArrayMode(boolean enabled) {
+        arrayMode = enabled;
+        if ( !enabled ) clearState();
+    }
+    
     /**
      * Get the Integrator used by this simulator.
      * @return the Integrator
@@ -87,6 +125,7 @@ public class ForceSimulator {
         while ( sIter.hasNext() )
             f.reclaim((Spring)sIter.next());
         springs.clear();
+        clearState();
     }
     
     /**
@@ -131,6 +170,7 @@ public class ForceSimulator {
      */
     public void addItem(ForceItem item) {
         items.add(item);
+        indexed = false;
     }
     
     /**
@@ -138,8 +178,21 @@ public class ForceSimulator {
      * @param item the ForceItem to remove
      */
     public boolean removeItem(ForceItem item) {
+        indexed = false;
         return items.remove(item);
     }
+    
+    /**
+     * Remove a collection of ForceItems from the simulation. This is
+     * faster than removing the items one at a time when removing many
+     * items, particularly if the collection is a hashed set.
+     * @param c the ForceItems to remove
+     * @return true if any items were removed
+     */
+    public boolean removeItems(Collection<?> c) {
+        indexed = false;
+        return items.removeAll(c);
+    }
 
     /**
      * Get an iterator over all registered ForceItems.
@@ -183,9 +236,43 @@ public class ForceSimulator {
             throw new IllegalArgumentException("ForceItems must be non-null");
         Spring s = Spring.getFactory().getSpring(item1, item2, coeff, length);
         springs.add(s);
+        indexed = false;
         return s;
     }
     
+    /**
+     * Remove a Spring from the simulation. The Spring is returned to the
+     * Spring object pool, and should not be used after removal.
+     * @param s the Spring to remove
+     * @return true if the Spring was removed
+     */
+    public boolean removeSpring(Spring s) {
+        if ( springs.remove(s) ) {
+            indexed = false;
+            Spring.getFactory().reclaim(s);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Remove a collection of Springs from the simulation. The Springs are
+     * returned to the Spring object pool, and so must all be registered
+     * with this simulator and should not be used after removal.
+     * @param c the Springs to remove
+     * @return true if any springs were removed
+     */
+    public boolean removeSprings(Collection<?> c) {
+        if ( !springs.removeAll(c) )
+            return false;
+        indexed = false;
+        Iterator<?> sIter = c.iterator();
+        Spring.SpringFactory f = Spring.getFactory();
+        while ( sIter.hasNext() )
+            f.reclaim((Spring)sIter.next());
+        return true;
+    }
+    
     /**
      * Get an iterator over all registered Springs.
      * @return an iterator over the Springs.
@@ -199,8 +286,40 @@ public class ForceSimulator {
      * @param timeStep the span of the time step for which to run the simulator
      */
     public void runSimulator(long timeStep) {
-        accumulate();
-        integrator.integrate(this, timeStep);
+        if ( useArrays() ) {
+            if ( !indexed ) {
+                state.index(items, springs);
+                indexed = true;
+            }
+            state.load();
+            accumulate(state);
+            ((ArrayIntegrator)integrator).integrate(this, state, timeStep);
+            state.store();
+        } else {
+            accumulate();
+            integrator.integrate(this, timeStep);
+        }
+    }
+    
+    /**
+     * Release the array state, which is re-indexed on the next time step.
+     */
+    private void clearState() {
+        state.clear();
+        indexed = false;
+    }
+    
+    /**
+     * Indicates if the next time step can be computed in array mode.
+     */
+    private boolean useArrays() {
+        if ( !arrayMode || !(integrator instanceof ArrayIntegrator) )
+            return false;
+        for ( int i = 0; i < ifLen; i++ )
+            if ( !(iForces[i] instanceof ArrayForce) ) return false;
+        for ( int i = 0; i < sfLen; i++ )
+            if ( !(sForces[i] instanceof ArrayForce) ) return false;
+        return true;
     }
     
     /**
@@ -227,4 +346,22 @@ public class ForceSimulator {
         }
     }
     
+    /**
+     * Accumulate all forces acting on the items in the given simulation
+     * state. Only valid in array mode, for integrators that need to
+     * re-evaluate forces during a time step.
+     * @param a the simulation state
+     */
+    public void accumulate(ForceArrays a) {
+        for (int i = 0; i < ifLen; i++ )
+            ((ArrayForce)iForces[i]).init(a);
+        for (int i = 0; i < sfLen; i++ )
+            ((ArrayForce)sForces[i]).init(a);
+        a.clearForces();
+        for (int i = 0; i < ifLen; i++ )
+            ((ArrayForce)iForces[i]).getItemForces(a);
+        for (int i = 0; i < sfLen; i++ )
+            ((ArrayForce)sForces[i]).getSpringForces(a);
+    }
+    
 } // end of class ForceSimulator
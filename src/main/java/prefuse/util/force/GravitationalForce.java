@@ -8,7 +8,7 @@ package prefuse.util.force;
  *
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
-public class GravitationalForce extends AbstractForce {
+public class GravitationalForce extends AbstractForce implements ArrayForce {
 
     private static final String[] pNames
         = { "GravitationalConstant", "Direction" };
@@ -71,5 +71,27 @@ public class GravitationalForce extends AbstractForce {
         item.force[0] += Math.cos(theta)*coeff;
         item.force[1] += Math.sin(theta)*coeff;
     }
+    
+    /**
+     * @see prefuse.util.force.ArrayForce#getItemForces(prefuse.util.force.ForceArrays)
+     */
+    public void getItemForces(ForceArrays state) {
+        float theta = params[DIRECTION];
+        double cos = Math.cos(theta), sin = Math.sin(theta);
+        float[] fx = state.fx, fy = state.fy, mass = state.mass;
+        for ( int i=0; i<state.itemCount; ++i ) {
+            float coeff = params[GRAVITATIONAL_CONST]*mass[i];
+            fx[i] += cos*coeff;
+            fy[i] += sin*coeff;
+        }
+    }
+
+    /**
+     * Does nothing, as this is not a spring force.
+     * @see prefuse.util.force.ArrayForce#getSpringForces(prefuse.util.force.ForceArrays)
+     */
+    public void getSpringForces(ForceArrays state) {
+        // not a spring force
+    }
 
 } // end of class GravitationalForce
@@ -4,6 +4,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import prefuse.util.PrefuseConfig;
 
 /**
  * <p>Force function which computes an n-body force such as gravity,
@@ -23,9 +27,18 @@ import java.util.Random;
  *   <li><a href="http://www.ifa.hawaii.edu/~barnes/treecode/treeguide.html">Joshua Barnes' recent implementation</a>
  * </ul>
  * 
+ * <p>When used on {@link ForceArrays}, the quadtree is built in bulk from
+ * the items sorted by their Morton (Z-order) codes, and stored in flat
+ * arrays. The forces acting on the items are then computed independently
+ * of each other, across the common fork/join pool for simulations with at
+ * least as many items as the parallel threshold, see
+ * {@link #setParallelThreshold(int)}. Noise added to separate items in the same location is derived
+ * from the random seed, the item and the tree node, so that the results
+ * are the same regardless of how the work is scheduled.</p>
+ * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
-public class NBodyForce extends AbstractForce {
+public class NBodyForce extends AbstractForce implements ArrayForce {
 
     /* 
      * The indexing scheme for quadtree child nodes goes row by row.
@@ -58,6 +71,39 @@ public class NBodyForce extends AbstractForce {
     private QuadTreeNode root;
     
     private Random rand = new Random(12345678L); // deterministic randomness
+    
+    /** Minimum number of items handled by a single parallel task. */
+    private static final int PARALLEL_GRAIN = 1024;
+    
+    /** Quadtree depth limit, the number of Morton code bits per axis. */
+    private static final int MAX_DEPTH = 15;
+    
+    /**
+     * Depth limit of the quadtree used for computation on force items.
+     * Items reaching a leaf at this depth share it, rather than being
+     * pushed further down the tree.
+     */
+    private static final int MAX_TREE_DEPTH = 32;
+    
+    private int m_parallelThreshold
+        = PrefuseConfig.getInt("util.force.parallelThreshold");
+    
+    // morton ordered quadtree used for computation on force arrays. nodes
+    // are numbered breadth-first, so children follow their parents.
+    private long[]    m_keys  = new long[0]; // morton code << 32 | item
+    private int[]     m_order = new int[0];  // items in morton order
+    private int       m_nodeCount;
+    private int[]     m_child = new int[64]; // 4 per node, -1 if none
+    private int[]     m_lo    = new int[16]; // range of m_order in node
+    private int[]     m_hi    = new int[16];
+    private int[]     m_depth = new int[16];
+    private boolean[] m_split = new boolean[16];
+    private float[]   m_size  = new float[16];
+    private float[]   m_mass  = new float[16];
+    private float[]   m_comX  = new float[16];
+    private float[]   m_comY  = new float[16];
+    private long      m_seed;                // noise seed for this tree
+    private ForceTask m_task  = new ForceTask(null, 0, 0);
 
     /**
      * Create a new NBodyForce with default parameters.
@@ -101,6 +147,28 @@ public class NBodyForce extends AbstractForce {
         return pNames;
     } 
     
+    /**
+     * Get the minimum number of items for which forces computed on
+     * {@link ForceArrays} are split across the common fork/join pool.
+     * @return the parallel threshold, zero if parallel computation is
+     * disabled
+     */
+    public int getParallelThreshold() {
+        return m_parallelThreshold;
+    }
+    
+    /**
+     * Set the minimum number of items for which forces computed on
+     * {@link ForceArrays} are split across the common fork/join pool. The
+     * default value is taken from the <code>util.force.parallelThreshold</code>
+     * configuration setting.
+     * @param threshold the parallel threshold, or zero to disable parallel
+     * computation
+     */
+    public void setParallelThreshold(int threshold) {
+        m_parallelThreshold = threshold;
+    }
+    
     /**
      * Set the bounds of the region for which to compute the n-body simulation
      * @param xMin the minimum x-coordinate
@@ -142,7 +210,7 @@ public class NBodyForce extends AbstractForce {
         
         // compute and squarify bounds of quadtree
         float x1 = Float.MAX_VALUE, y1 = Float.MAX_VALUE;
-        float x2 = Float.MIN_VALUE, y2 = Float.MIN_VALUE;
+        float x2 = -Float.MAX_VALUE, y2 = -Float.MAX_VALUE;
         Iterator itemIter = fSim.getItems();
         while ( itemIter.hasNext() ) {
             ForceItem item = (ForceItem)itemIter.next();
@@ -176,30 +244,30 @@ public class NBodyForce extends AbstractForce {
      */
     public void insert(ForceItem item) {
         // insert item into the quadtrees
-        try {
-            insert(item, root, xMin, yMin, xMax, yMax);
-        } catch ( StackOverflowError e ) {
-            // TODO: safe to remove?
-            e.printStackTrace();
-        }
+        insert(item, root, xMin, yMin, xMax, yMax, 0);
     }
 
     private void insert(ForceItem p, QuadTreeNode n, 
-                        float x1, float y1, float x2, float y2)
+                        float x1, float y1, float x2, float y2, int depth)
     {
         // try to insert particle p at node n in the quadtree
-        // by construction, each leaf will contain either 1 or 0 particles
+        // by construction, each leaf will contain either 1 or 0 particles,
+        // except for leaves at the depth limit
         if ( n.hasChildren ) {
             // n contains more than 1 particle
-            insertHelper(p,n,x1,y1,x2,y2);
+            insertHelper(p,n,x1,y1,x2,y2,depth);
         } else if ( n.value != null ) {
             // n contains 1 particle
-            if ( isSameLocation(n.value, p) ) {
-                insertHelper(p,n,x1,y1,x2,y2);
+            if ( depth == MAX_TREE_DEPTH ) {
+                if ( n.others == null )
+                    n.others = new ArrayList<ForceItem>();
+                n.others.add(p);
+            } else if ( isSameLocation(n.value, p) ) {
+                insertHelper(p,n,x1,y1,x2,y2,depth);
             } else {
                 ForceItem v = n.value; n.value = null;
-                insertHelper(v,n,x1,y1,x2,y2);
-                insertHelper(p,n,x1,y1,x2,y2);
+                insertHelper(v,n,x1,y1,x2,y2,depth);
+                insertHelper(p,n,x1,y1,x2,y2,depth);
             }
         } else { 
             // n is empty, so is a leaf
@@ -214,7 +282,8 @@ public class NBodyForce extends AbstractForce {
     }
     
     private void insertHelper(ForceItem p, QuadTreeNode n, 
-                              float x1, float y1, float x2, float y2)
+                              float x1, float y1, float x2, float y2,
+                              int depth)
     {   
         float x = p.location[0], y = p.location[1];
         float splitX = (x1+x2)/2;
@@ -229,7 +298,7 @@ public class NBodyForce extends AbstractForce {
         if ( i==1 || i==3 ) x1 = splitX; else x2 = splitX;
         if ( i > 1 )        y1 = splitY; else y2 = splitY;
         // recurse 
-        insert(p,n.children[i],x1,y1,x2,y2);        
+        insert(p,n.children[i],x1,y1,x2,y2,depth+1);
     }
 
     private void calcMass(QuadTreeNode n) {
@@ -250,6 +319,14 @@ public class NBodyForce extends AbstractForce {
             xCom += n.value.mass * n.value.location[0];
             yCom += n.value.mass * n.value.location[1];
         }
+        if ( n.others != null ) {
+            for ( int i=0; i < n.others.size(); i++ ) {
+                ForceItem v = n.others.get(i);
+                n.mass += v.mass;
+                xCom += v.mass * v.location[0];
+                yCom += v.mass * v.location[1];
+            }
+        }
         n.com[0] = xCom / n.mass;
         n.com[1] = yCom / n.mass;
     }
@@ -259,17 +336,19 @@ public class NBodyForce extends AbstractForce {
      * @param item the ForceItem for which to compute the force
      */
     public void getForce(ForceItem item) {
-        try {
-            forceHelper(item,root,xMin,yMin,xMax,yMax);
-        } catch ( StackOverflowError e ) {
-            // TODO: safe to remove?
-            e.printStackTrace();
-        }
+        forceHelper(item,root,xMin,yMin,xMax,yMax);
     }
     
     private void forceHelper(ForceItem item, QuadTreeNode n, 
                              float x1, float y1, float x2, float y2)
     {
+        if ( n.others != null ) {
+            // leaf at the depth limit holding several items
+            leafForce(item, n.value);
+            for ( int i=0; i < n.others.size(); i++ )
+                leafForce(item, n.others.get(i));
+            return;
+        }
         float dx = n.com[0] - item.location[0];
         float dy = n.com[1] - item.location[1];
         float r  = (float)Math.sqrt(dx*dx+dy*dy);
@@ -317,6 +396,346 @@ public class NBodyForce extends AbstractForce {
         }
     }
 
+    /**
+     * Adds the force exerted by another item sharing a leaf of the quadtree.
+     */
+    private void leafForce(ForceItem item, ForceItem other) {
+        if ( other == item ) return;
+        float dx = other.location[0] - item.location[0];
+        float dy = other.location[1] - item.location[1];
+        float r  = (float)Math.sqrt(dx*dx+dy*dy);
+        if ( r == 0.0f ) {
+            // if items are in the exact same place, add some noise
+            dx = (rand.nextFloat()-0.5f) / 50.0f;
+            dy = (rand.nextFloat()-0.5f) / 50.0f;
+            r  = (float)Math.sqrt(dx*dx+dy*dy);
+        }
+        if ( params[MIN_DISTANCE]>0f && r>params[MIN_DISTANCE] ) return;
+        float v = params[GRAVITATIONAL_CONST]*item.mass*other.mass / (r*r*r);
+        item.force[0] += v*dx;
+        item.force[1] += v*dy;
+    }
+
+    // ------------------------------------------------------------------------
+    // Array Computation
+    
+    /**
+     * Initialize the simulation with the provided simulation state, building
+     * a quadtree over the registered items from their Morton order.
+     * @param a the simulation state
+     * @see prefuse.util.force.ArrayForce#init(prefuse.util.force.ForceArrays)
+     */
+    public void init(ForceArrays a) {
+        int n = a.itemCount;
+        float[] x = a.x, y = a.y;
+        m_seed = rand.nextLong();
+        m_nodeCount = 0;
+        if ( n == 0 ) return;
+        
+        // compute and squarify bounds of quadtree
+        float x1 = Float.MAX_VALUE, y1 = Float.MAX_VALUE;
+        float x2 = -Float.MAX_VALUE, y2 = -Float.MAX_VALUE;
+        for ( int i=0; i<n; ++i ) {
+            if ( x[i] < x1 ) x1 = x[i];
+            if ( y[i] < y1 ) y1 = y[i];
+            if ( x[i] > x2 ) x2 = x[i];
+            if ( y[i] > y2 ) y2 = y[i];
+        }
+        float dx = x2-x1, dy = y2-y1;
+        if ( dx > dy ) { y2 = y1 + dx; } else { x2 = x1 + dy; }
+        setBounds(x1,y1,x2,y2);
+        
+        // sort the items by morton code, breaking ties by item index
+        if ( m_keys.length < n ) {
+            m_keys  = new long[n];
+            m_order = new int[n];
+        }
+        float w = xMax - xMin;
+        float scale = ( w > 0 ? (1<<MAX_DEPTH) / w : 0 );
+        for ( int i=0; i<n; ++i ) {
+            int qx = cell((x[i]-xMin)*scale);
+            int qy = cell((y[i]-yMin)*scale);
+            m_keys[i] = ((long)interleave(qx, qy) << 32) | i;
+        }
+        if ( n >= m_parallelThreshold && m_parallelThreshold > 0 )
+            Arrays.parallelSort(m_keys, 0, n);
+        else
+            Arrays.sort(m_keys, 0, n);
+        for ( int k=0; k<n; ++k )
+            m_order[k] = (int)m_keys[k];
+        
+        // split each node's range of codes into its four quadrants,
+        // which are contiguous in morton order
+        newNode(0, n, 0, w);
+        for ( int node=0; node<m_nodeCount; ++node ) {
+            int lo = m_lo[node], hi = m_hi[node], d = m_depth[node];
+            if ( hi-lo < 2 || d == MAX_DEPTH ) continue;
+            int shift = 32 + 2*(MAX_DEPTH-1-d);
+            float size = m_size[node] / 2;
+            for ( int q=0; q<4; ++q ) {
+                int end = quadrantEnd(lo, hi, shift, q);
+                if ( end > lo ) {
+                    int c = newNode(lo, end, d+1, size);
+                    m_child[4*node+q] = c;
+                    m_split[node] = true;
+                    lo = end;
+                }
+            }
+        }
+        
+        // calculate magnitudes and centers of mass, children first
+        for ( int node=m_nodeCount-1; node>=0; --node ) {
+            float mass = 0, xCom = 0, yCom = 0;
+            if ( m_split[node] ) {
+                for ( int q=0; q<4; ++q ) {
+                    int c = m_child[4*node+q];
+                    if ( c >= 0 ) {
+                        mass += m_mass[c];
+                        xCom += m_mass[c] * m_comX[c];
+                        yCom += m_mass[c] * m_comY[c];
+                    }
+                }
+            } else {
+                for ( int k=m_lo[node]; k<m_hi[node]; ++k ) {
+                    int i = m_order[k];
+                    mass += a.mass[i];
+                    xCom += a.mass[i] * x[i];
+                    yCom += a.mass[i] * y[i];
+                }
+            }
+            m_mass[node] = mass;
+            m_comX[node] = xCom / mass;
+            m_comY[node] = yCom / mass;
+        }
+    }
+    
+    private static int cell(float v) {
+        int c = (int)v;
+        return ( c < 0 ? 0 : c >= (1<<MAX_DEPTH) ? (1<<MAX_DEPTH)-1 : c );
+    }
+    
+    /**
+     * Interleave the bits of the cell coordinates, x bits first, so that
+     * each pair of bits numbers a quadrant the same way as the child nodes.
+     */
+    private static int interleave(int qx, int qy) {
+        int code = 0;
+        for ( int b=MAX_DEPTH-1; b>=0; --b ) {
+            code = (code << 2) | (((qy >> b) & 1) << 1) | ((qx >> b) & 1);
+        }
+        return code;
+    }
+    
+    /**
+     * Binary search for the end of a quadrant within a sorted key range.
+     */
+    private int quadrantEnd(int lo, int hi, int shift, int q) {
+        while ( lo < hi ) {
+            int mid = (lo + hi) >>> 1;
+            if ( (int)((m_keys[mid] >>> shift) & 3) <= q )
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+    
+    private int newNode(int lo, int hi, int depth, float size) {
+        int n = m_nodeCount++;
+        if ( n == m_lo.length ) {
+            int cap = 2*n;
+            m_child = grow(m_child, 4*cap);
+            m_lo    = grow(m_lo, cap);
+            m_hi    = grow(m_hi, cap);
+            m_depth = grow(m_depth, cap);
+            boolean[] split = new boolean[cap];
+            System.arraycopy(m_split, 0, split, 0, n);
+            m_split = split;
+            m_size  = grow(m_size, cap);
+            m_mass  = grow(m_mass, cap);
+            m_comX  = grow(m_comX, cap);
+            m_comY  = grow(m_comY, cap);
+        }
+        m_child[4*n] = m_child[4*n+1] = m_child[4*n+2] = m_child[4*n+3] = -1;
+        m_lo[n] = lo;
+        m_hi[n] = hi;
+        m_depth[n] = depth;
+        m_split[n] = false;
+        m_size[n] = size;
+        return n;
+    }
+    
+    /**
+     * Calculates the force vectors acting on all registered items. Items
+     * are processed in Morton order, split across a fork/join pool for
+     * large simulations.
+     * @param a the simulation state
+     * @see prefuse.util.force.ArrayForce#getItemForces(prefuse.util.force.ForceArrays)
+     */
+    public void getItemForces(ForceArrays a) {
+        int n = a.itemCount;
+        if ( n == 0 ) return;
+        if ( m_parallelThreshold <= 0 || n < m_parallelThreshold ) {
+            m_task.state = a;
+            m_task.lo = 0;
+            m_task.hi = n;
+            m_task.compute();
+            m_task.state = null;
+            return;
+        }
+        
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int grain = Math.max(PARALLEL_GRAIN,
+                             n / (4*pool.getParallelism()) + 1);
+        ArrayList<ForceTask> tasks = new ArrayList<ForceTask>();
+        for ( int lo=0; lo<n; lo+=grain ) {
+            tasks.add(new ForceTask(a, lo, Math.min(lo+grain, n)));
+        }
+        pool.invoke(new ForceBatch(tasks));
+    }
+
+    /**
+     * Does nothing, as this is not a spring force.
+     * @see prefuse.util.force.ArrayForce#getSpringForces(prefuse.util.force.ForceArrays)
+     */
+    public void getSpringForces(ForceArrays a) {
+        // not a spring force
+    }
+
+    /**
+     * Computes the force on a single item, traversing the quadtree using
+     * the given stack. Every node pushes at most four children, so a stack
+     * of 4*(MAX_DEPTH+1) entries is always sufficient.
+     */
+    private void getForce(ForceArrays a, int item, int[] stack) {
+        float gc = params[GRAVITATIONAL_CONST];
+        float minD = params[MIN_DISTANCE];
+        float theta = params[BARNES_HUT_THETA];
+        float[] x = a.x, y = a.y, m = a.mass;
+        float ix = x[item], iy = y[item], im = m[item];
+        float fx = 0, fy = 0;
+        
+        int sp = 0;
+        stack[sp++] = 0;
+        while ( sp > 0 ) {
+            int n = stack[--sp];
+            if ( !m_split[n] ) {
+                // leaf holding one or more items in the same cell
+                for ( int k=m_lo[n]; k<m_hi[n]; ++k ) {
+                    int j = m_order[k];
+                    if ( j == item ) continue;
+                    float dx = x[j] - ix;
+                    float dy = y[j] - iy;
+                    float r  = (float)Math.sqrt(dx*dx+dy*dy);
+                    if ( r == 0.0f ) {
+                        // if items are in the exact same place, add some noise
+                        dx = noise(item, j, 0);
+                        dy = noise(item, j, 1);
+                        r  = (float)Math.sqrt(dx*dx+dy*dy);
+                    }
+                    if ( minD>0f && r>minD ) continue;
+                    float v = gc*im*m[j] / (r*r*r);
+                    fx += v*dx;
+                    fy += v*dy;
+                }
+                continue;
+            }
+            
+            float dx = m_comX[n] - ix;
+            float dy = m_comY[n] - iy;
+            float r  = (float)Math.sqrt(dx*dx+dy*dy);
+            boolean same = false;
+            if ( r == 0.0f ) {
+                dx = noise(item, ~n, 0);
+                dy = noise(item, ~n, 1);
+                r  = (float)Math.sqrt(dx*dx+dy*dy);
+                same = true;
+            }
+            
+            // the Barnes-Hut approximation criteria is if the ratio of the
+            // size of the quadtree box to the distance between the point and
+            // the box's center of mass is beneath some threshold theta.
+            if ( !same && m_size[n]/r < theta ) {
+                if ( minD>0f && r>minD ) continue;
+                float v = gc*im*m_mass[n] / (r*r*r);
+                fx += v*dx;
+                fy += v*dy;
+            } else {
+                for ( int q=3; q>=0; --q ) {
+                    int c = m_child[4*n+q];
+                    if ( c >= 0 ) stack[sp++] = c;
+                }
+            }
+        }
+        a.fx[item] += fx;
+        a.fy[item] += fy;
+    }
+    
+    /**
+     * Deterministic noise in the range used to separate items in the
+     * same location, derived from the tree's seed and the given keys.
+     */
+    private float noise(int item, int other, int axis) {
+        long h = m_seed ^ (item * 0x9E3779B97F4A7C15L)
+                        ^ (other * 0xC2B2AE3D27D4EB4FL) ^ axis;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        float f = (h >>> 40) / (float)(1<<24);
+        return (f-0.5f) / 50.0f;
+    }
+    
+    private static int[] grow(int[] a, int len) {
+        int[] b = new int[len];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+    
+    private static float[] grow(float[] a, int len) {
+        float[] b = new float[len];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+    
+    /**
+     * Fork/join task that runs a collection of force tasks in parallel.
+     */
+    private static class ForceBatch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final ArrayList<ForceTask> m_tasks;
+        ForceBatch(ArrayList<ForceTask> tasks) {
+            m_tasks = tasks;
+        }
+        protected void compute() {
+            invokeAll(m_tasks);
+        }
+    }
+    
+    /**
+     * Fork/join task that computes the forces acting on a range of items
+     * in Morton order. Each item's force is written only by the task
+     * holding it, so tasks do not interfere with each other.
+     */
+    private class ForceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        ForceArrays state;
+        int lo, hi;
+        private final int[] stack = new int[4*(MAX_DEPTH+1)];
+        
+        ForceTask(ForceArrays state, int lo, int hi) {
+            this.state = state;
+            this.lo = lo;
+            this.hi = hi;
+        }
+        
+        protected void compute() {
+            for ( int k=lo; k<hi; ++k )
+                getForce(state, m_order[k], stack);
+        }
+    }
+    
     /**
      * Represents a node in the quadtree.
      */
@@ -329,6 +748,8 @@ public class NBodyForce extends AbstractForce {
         float mass; // total mass held by this node
         float[] com; // center of mass of this node 
         ForceItem value; // ForceItem in this node, null if node has children
+        // further ForceItems in a leaf at the depth limit
+        ArrayList<ForceItem> others;
         QuadTreeNode[] children; // children nodes
     } // end of inner class QuadTreeNode
 
@@ -351,6 +772,7 @@ public class NBodyForce extends AbstractForce {
             n.mass = 0;
             n.com[0] = 0.0f; n.com[1] = 0.0f;
             n.value = null;
+            n.others = null;
             n.hasChildren = false;
             Arrays.fill(n.children, null);          
             if ( nodes.size() < maxNodes )
@@ -9,7 +9,7 @@ import java.util.Iterator;
  *
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
-public class RungeKuttaIntegrator implements Integrator {
+public class RungeKuttaIntegrator implements ArrayIntegrator {
     
     /**
      * @see prefuse.util.force.Integrator#integrate(prefuse.util.force.ForceSimulator, long)
@@ -125,4 +125,98 @@ public class RungeKuttaIntegrator implements Integrator {
         }
     }
 
+    /**
+     * @see prefuse.util.force.ArrayIntegrator#integrate(prefuse.util.force.ForceSimulator, prefuse.util.force.ForceArrays, long)
+     */
+    public void integrate(ForceSimulator sim, ForceArrays a, long timeStep) {
+        float speedLimit = sim.getSpeedLimit();
+        int n = a.itemCount;
+        float[] x = a.x, y = a.y, px = a.px, py = a.py;
+        float[] vx = a.vx, vy = a.vy, m = a.mass;
+        float[][] kx = a.kx, ky = a.ky, lx = a.lx, ly = a.ly;
+        
+        for ( int i=0; i<n; ++i ) {
+            float coeff = timeStep / m[i];
+            px[i] = x[i];
+            py[i] = y[i];
+            kx[0][i] = timeStep *vx[i];
+            ky[0][i] = timeStep *vy[i];
+            lx[0][i] = coeff*a.fx[i];
+            ly[0][i] = coeff*a.fy[i];
+            
+            // Set the position to the new predicted position
+            x[i] += 0.5f*kx[0][i];
+            y[i] += 0.5f*ky[0][i];
+        }
+        
+        // recalculate forces
+        sim.accumulate(a);
+        stage(a, 1, 0.5f, speedLimit, timeStep);
+        sim.accumulate(a);
+        stage(a, 2, 0.5f, speedLimit, timeStep);
+        sim.accumulate(a);
+        
+        float[] fx = a.fx, fy = a.fy;
+        float[] k0x = kx[0], k0y = ky[0], k1x = kx[1], k1y = ky[1];
+        float[] k2x = kx[2], k2y = ky[2], k3x = kx[3], k3y = ky[3];
+        float[] l0x = lx[0], l0y = ly[0], l1x = lx[1], l1y = ly[1];
+        float[] l2x = lx[2], l2y = ly[2], l3x = lx[3], l3y = ly[3];
+        for ( int i=0; i<n; ++i ) {
+            float coeff = timeStep / m[i];
+            float ux = vx[i] + l2x[i];
+            float uy = vy[i] + l2y[i];
+            float v = (float)Math.sqrt(ux*ux+uy*uy);
+            if ( v > speedLimit ) {
+                ux = speedLimit * ux / v;
+                uy = speedLimit * uy / v;
+            }
+            k3x[i] = timeStep *ux;
+            k3y[i] = timeStep *uy;
+            l3x[i] = coeff*fx[i];
+            l3y[i] = coeff*fy[i];
+            x[i] = px[i] + (k0x[i]+k3x[i])/6.0f + (k1x[i]+k2x[i])/3.0f;
+            y[i] = py[i] + (k0y[i]+k3y[i])/6.0f + (k1y[i]+k2y[i])/3.0f;
+            
+            ux = (l0x[i]+l3x[i])/6.0f + (l1x[i]+l2x[i])/3.0f;
+            uy = (l0y[i]+l3y[i])/6.0f + (l1y[i]+l2y[i])/3.0f;
+            v = (float)Math.sqrt(ux*ux+uy*uy);
+            if ( v > speedLimit ) {
+                ux = speedLimit * ux / v;
+                uy = speedLimit * uy / v;
+            }
+            vx[i] += ux;
+            vy[i] += uy;
+        }
+    }
+    
+    /**
+     * Compute an intermediate Runge-Kutta stage from the previous stage.
+     */
+    private static void stage(ForceArrays a, int s, float h,
+                              float speedLimit, long timeStep)
+    {
+        float[] x = a.x, y = a.y, px = a.px, py = a.py;
+        float[] vx = a.vx, vy = a.vy, m = a.mass, fx = a.fx, fy = a.fy;
+        float[] kx = a.kx[s], ky = a.ky[s], lx = a.lx[s], ly = a.ly[s];
+        float[] plx = a.lx[s-1], ply = a.ly[s-1];
+        for ( int i=0; i<a.itemCount; ++i ) {
+            float coeff = timeStep / m[i];
+            float ux = vx[i] + h*plx[i];
+            float uy = vy[i] + h*ply[i];
+            float v = (float)Math.sqrt(ux*ux+uy*uy);
+            if ( v > speedLimit ) {
+                ux = speedLimit * ux / v;
+                uy = speedLimit * uy / v;
+            }
+            kx[i] = timeStep *ux;
+            ky[i] = timeStep *uy;
+            lx[i] = coeff*fx[i];
+            ly[i] = coeff*fy[i];
+            
+            // Set the position to the new predicted position
+            x[i] = px[i] + 0.5f*kx[i];
+            y[i] = py[i] + 0.5f*ky[i];
+        }
+    }
+
 } // end of class RungeKuttaIntegrator
@@ -6,7 +6,7 @@ package prefuse.util.force;
  * 
  * @author <a href="http://jheer.org">jeffrey heer</a>
  */
-public class SpringForce extends AbstractForce {
+public class SpringForce extends AbstractForce implements ArrayForce {
 
     private static String[] pNames
         = new String[] { "SpringCoefficient", "DefaultSpringLength" };
@@ -83,4 +83,39 @@ public class SpringForce extends AbstractForce {
         item2.force[1] += -coeff*dy;
     }
     
+    /**
+     * Does nothing, as this is not an item force.
+     * @see prefuse.util.force.ArrayForce#getItemForces(prefuse.util.force.ForceArrays)
+     */
+    public void getItemForces(ForceArrays state) {
+        // not an item force
+    }
+    
+    /**
+     * Calculates the force vectors acting on the endpoints of all springs.
+     * @see prefuse.util.force.ArrayForce#getSpringForces(prefuse.util.force.ForceArrays)
+     */
+    public void getSpringForces(ForceArrays state) {
+        float[] x = state.x, y = state.y, fx = state.fx, fy = state.fy;
+        int[] s1 = state.spring1, s2 = state.spring2;
+        float[] slen = state.springLength, scoeff = state.springCoeff;
+        for ( int j=0; j<state.springCount; ++j ) {
+            int i1 = s1[j], i2 = s2[j];
+            float length = (slen[j] < 0 ? params[SPRING_LENGTH] : slen[j]);
+            float dx = x[i2]-x[i1], dy = y[i2]-y[i1];
+            float r  = (float)Math.sqrt(dx*dx+dy*dy);
+            if ( r == 0.0 ) {
+                dx = ((float)Math.random()-0.5f) / 50.0f;
+                dy = ((float)Math.random()-0.5f) / 50.0f;
+                r  = (float)Math.sqrt(dx*dx+dy*dy);
+            }
+            float d  = r-length;
+            float coeff = (scoeff[j] < 0 ? params[SPRING_COEFF] : scoeff[j])*d/r;
+            fx[i1] += coeff*dx;
+            fy[i1] += coeff*dy;
+            fx[i2] += -coeff*dx;
+            fy[i2] += -coeff*dy;
+        }
+    }
+    
 } // end of class SpringForce
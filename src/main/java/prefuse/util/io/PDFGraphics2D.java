@@ -0,0 +1,503 @@
+package prefuse.util.io;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Graphics2D implementation that streams a single page Portable Document
+ * Format (PDF) file as drawing operations are issued. Shapes are written as
+ * compressed PDF path operators, text is written as filled glyph outlines
+ * (so no fonts need to be embedded), and images are written as image
+ * objects as soon as they are drawn. An image object drawn more than once
+ * is written only the first time, and later drawings refer back to it, so
+ * images should not be modified between drawings. Apart from the images
+ * already written, only a small, fixed amount of state is kept per page,
+ * so documents with very many drawing operations can be written in
+ * constant memory. Call {@link #finish()} once drawing is
+ * complete to write the document trailer.
+ *
+ * <p>The page size, in PDF points, equals the pixel dimensions of the
+ * drawing area. Drawing operations do not throw exceptions; use
+ * {@link #checkError()} to check for output errors.</p>
+ */
+public class PDFGraphics2D extends VectorGraphics2D {
+
+    private Document m_doc;
+    private StringBuffer m_sb = new StringBuffer();
+
+    /**
+     * Create a new PDFGraphics2D and write the document header.
+     * @param out the output stream to write the PDF document to
+     * @param width the width of the drawing area
+     * @param height the height of the drawing area
+     */
+    public PDFGraphics2D(OutputStream out, int width, int height) {
+        super(width, height);
+        m_doc = new Document(out, width, height);
+    }
+
+    /**
+     * Create a new PDFGraphics2D with the same state and output as the
+     * given one.
+     */
+    private PDFGraphics2D(PDFGraphics2D g) {
+        super(g);
+        m_doc = g.m_doc;
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#createCopy()
+     */
+    protected VectorGraphics2D createCopy() {
+        return new PDFGraphics2D(this);
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#finish()
+     */
+    public void finish() {
+        m_doc.finish();
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#checkError()
+     */
+    public boolean checkError() {
+        return m_doc.error != null;
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#writeShape(java.awt.Shape, boolean)
+     */
+    protected void writeShape(Shape s, boolean fill) {
+        if ( !fill && !(m_stroke instanceof BasicStroke) ) {
+            s = m_stroke.createStrokedShape(s);
+            fill = true;
+        }
+        StringBuffer sb = m_sb;
+        sb.setLength(0);
+        begin(sb);
+        transform(sb, m_transform);
+        color(sb, fill);
+        if ( !fill )
+            stroke(sb, (BasicStroke)m_stroke);
+        int rule = appendPath(sb, s);
+        if ( fill ) {
+            sb.append(rule == PathIterator.WIND_EVEN_ODD ? "f*\n" : "f\n");
+        } else {
+            sb.append("S\n");
+        }
+        sb.append("Q\n");
+        m_doc.content(sb);
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#writeImage(java.awt.image.BufferedImage, java.awt.geom.AffineTransform)
+     */
+    protected void writeImage(BufferedImage img, AffineTransform xform) {
+        String name = m_doc.image(img);
+        if ( name == null ) return;
+
+        StringBuffer sb = m_sb;
+        sb.setLength(0);
+        begin(sb);
+        transform(sb, m_transform);
+        transform(sb, xform);
+        // map the image unit square, flipping to top-down row order
+        transform(sb, new AffineTransform(
+                img.getWidth(), 0, 0, -img.getHeight(), 0, img.getHeight()));
+        if ( m_composite instanceof AlphaComposite ) {
+            int alpha = Math.round(255*((AlphaComposite)m_composite).getAlpha());
+            if ( alpha < 255 )
+                sb.append(m_doc.alpha(alpha)).append(" gs\n");
+        }
+        sb.append(name).append(" Do\nQ\n");
+        m_doc.content(sb);
+    }
+
+    // ------------------------------------------------------------------------
+    // Operator Helpers
+
+    /**
+     * Save the graphics state and apply the current clip.
+     */
+    private void begin(StringBuffer sb) {
+        sb.append("q\n");
+        if ( m_clip != null ) {
+            int rule = appendPath(sb, m_clip);
+            sb.append(rule == PathIterator.WIND_EVEN_ODD ? "W* n\n" : "W n\n");
+        }
+    }
+
+    private static void transform(StringBuffer sb, AffineTransform at) {
+        if ( at.isIdentity() ) return;
+        double[] m = new double[6];
+        at.getMatrix(m);
+        for ( int i=0; i<6; ++i ) {
+            appendNumber(sb, m[i]);
+            sb.append(' ');
+        }
+        sb.append("cm\n");
+    }
+
+    private void color(StringBuffer sb, boolean fill) {
+        int alpha = getAlpha();
+        if ( alpha < 255 )
+            sb.append(m_doc.alpha(alpha)).append(" gs\n");
+        appendNumber(sb, m_color.getRed()/255.0);   sb.append(' ');
+        appendNumber(sb, m_color.getGreen()/255.0); sb.append(' ');
+        appendNumber(sb, m_color.getBlue()/255.0);
+        sb.append(fill ? " rg\n" : " RG\n");
+    }
+
+    private static void stroke(StringBuffer sb, BasicStroke s) {
+        // java cap and join constants match the PDF operand values
+        appendNumber(sb, s.getLineWidth());
+        sb.append(" w ").append(s.getEndCap()).append(" J ")
+          .append(s.getLineJoin()).append(" j ");
+        appendNumber(sb, Math.max(1, s.getMiterLimit()));
+        sb.append(" M\n");
+        float[] dash = s.getDashArray();
+        if ( dash != null && dash.length > 0 ) {
+            sb.append('[');
+            for ( int i=0; i<dash.length; ++i ) {
+                if ( i > 0 ) sb.append(' ');
+                appendNumber(sb, dash[i]);
+            }
+            sb.append("] ");
+            appendNumber(sb, s.getDashPhase());
+            sb.append(" d\n");
+        }
+    }
+
+    /**
+     * Append the PDF path operators for a shape to the string buffer.
+     * Quadratic segments are converted to cubic segments.
+     * @return the winding rule of the shape
+     */
+    private static int appendPath(StringBuffer sb, Shape s) {
+        double[] c = new double[6];
+        double x = 0, y = 0, mx = 0, my = 0;
+        PathIterator pi = s.getPathIterator(null);
+        for ( ; !pi.isDone(); pi.next() ) {
+            switch ( pi.currentSegment(c) ) {
+            case PathIterator.SEG_MOVETO:
+                point(sb, c[0], c[1]);
+                sb.append("m\n");
+                x = mx = c[0]; y = my = c[1];
+                break;
+            case PathIterator.SEG_LINETO:
+                point(sb, c[0], c[1]);
+                sb.append("l\n");
+                x = c[0]; y = c[1];
+                break;
+            case PathIterator.SEG_QUADTO:
+                point(sb, x+2*(c[0]-x)/3, y+2*(c[1]-y)/3);
+                point(sb, c[2]+2*(c[0]-c[2])/3, c[3]+2*(c[1]-c[3])/3);
+                point(sb, c[2], c[3]);
+                sb.append("c\n");
+                x = c[2]; y = c[3];
+                break;
+            case PathIterator.SEG_CUBICTO:
+                point(sb, c[0], c[1]);
+                point(sb, c[2], c[3]);
+                point(sb, c[4], c[5]);
+                sb.append("c\n");
+                x = c[4]; y = c[5];
+                break;
+            case PathIterator.SEG_CLOSE:
+                sb.append("h\n");
+                x = mx; y = my;
+                break;
+            }
+        }
+        return pi.getWindingRule();
+    }
+
+    private static void point(StringBuffer sb, double x, double y) {
+        appendNumber(sb, x);
+        sb.append(' ');
+        appendNumber(sb, y);
+        sb.append(' ');
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Output state shared by all graphics contexts writing to a document.
+     * Page content is written as a sequence of compressed content streams;
+     * a new stream is started after each image object. The catalog, page
+     * tree, page and resource objects are reserved up front and written
+     * when the document is finished.
+     */
+    private static class Document {
+        private static final int CATALOG = 1, PAGES = 2, PAGE = 3,
+                                 RESOURCES = 4;
+
+        Counter      out;
+        IOException  error;
+        int          width, height;
+        long[]       offsets = new long[64];
+        int          nobj = RESOURCES;
+        // content stream ids, image object ids and alpha values in use
+        ArrayList<Integer> contents = new ArrayList<Integer>();
+        ArrayList<Integer> images   = new ArrayList<Integer>();
+        TreeSet<Integer>   alphas   = new TreeSet<Integer>();
+        // resource names of the images already written
+        IdentityHashMap<BufferedImage,String> names =
+            new IdentityHashMap<BufferedImage,String>();
+
+        // the open content stream
+        DeflaterOutputStream stream;
+        Deflater     deflater;
+        int          streamLength;
+        long         streamStart;
+        boolean      finished = false;
+
+        Document(OutputStream os, int width, int height) {
+            this.out = new Counter(os);
+            this.width = width;
+            this.height = height;
+            try {
+                write("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n");
+                startContent();
+                // flip the page to java2d's top-down coordinate system
+                stream.write(bytes("1 0 0 -1 0 "+height+" cm\n"));
+            } catch ( IOException e ) {
+                error = e;
+            }
+        }
+
+        void content(StringBuffer sb) {
+            if ( error != null || finished ) return;
+            try {
+                stream.write(bytes(sb));
+            } catch ( IOException e ) {
+                error = e;
+            }
+        }
+
+        String alpha(int alpha) {
+            alphas.add(Integer.valueOf(alpha));
+            return "/GS"+alpha;
+        }
+
+        /**
+         * Write an image object, interrupting the current content stream,
+         * unless the image has already been written.
+         * @return the resource name of the image
+         */
+        String image(BufferedImage img) {
+            if ( error != null || finished ) return null;
+            String name = names.get(img);
+            if ( name != null ) return name;
+            try {
+                endContent();
+                int w = img.getWidth(), h = img.getHeight();
+                int id = newObject();
+                int smask = 0;
+                if ( img.getColorModel().hasAlpha() ) {
+                    smask = newObject();
+                }
+                startObject(id);
+                write("<< /Type /XObject /Subtype /Image /Width "+w+
+                      " /Height "+h+" /ColorSpace /DeviceRGB"+
+                      " /BitsPerComponent 8 /Filter /FlateDecode");
+                if ( smask > 0 )
+                    write(" /SMask "+smask+" 0 R");
+                writeImageStream(img, false);
+                if ( smask > 0 ) {
+                    startObject(smask);
+                    write("<< /Type /XObject /Subtype /Image /Width "+w+
+                          " /Height "+h+" /ColorSpace /DeviceGray"+
+                          " /BitsPerComponent 8 /Filter /FlateDecode");
+                    writeImageStream(img, true);
+                }
+                images.add(Integer.valueOf(id));
+                startContent();
+                name = "/Im"+id;
+                names.put(img, name);
+                return name;
+            } catch ( IOException e ) {
+                error = e;
+                return null;
+            }
+        }
+
+        private void writeImageStream(BufferedImage img, boolean alpha)
+            throws IOException
+        {
+            int w = img.getWidth(), h = img.getHeight();
+            int lenId = newObject();
+            write(" /Length "+lenId+" 0 R >>\nstream\n");
+            long start = out.pos;
+            Deflater deflater = new Deflater();
+            DeflaterOutputStream z = new DeflaterOutputStream(out, deflater);
+            int[] row = new int[w];
+            byte[] b = new byte[alpha ? w : 3*w];
+            for ( int y=0; y<h; ++y ) {
+                img.getRGB(0, y, w, 1, row, 0, w);
+                for ( int x=0, i=0; x<w; ++x ) {
+                    int c = row[x];
+                    if ( alpha ) {
+                        b[i++] = (byte)(c >>> 24);
+                    } else {
+                        b[i++] = (byte)(c >> 16);
+                        b[i++] = (byte)(c >> 8);
+                        b[i++] = (byte)c;
+                    }
+                }
+                z.write(b);
+            }
+            z.finish();
+            deflater.end();
+            long len = out.pos - start;
+            write("\nendstream\nendobj\n");
+            startObject(lenId);
+            write(len+"\nendobj\n");
+        }
+
+        private void startContent() throws IOException {
+            int id = newObject();
+            streamLength = newObject();
+            contents.add(Integer.valueOf(id));
+            startObject(id);
+            write("<< /Length "+streamLength+" 0 R /Filter /FlateDecode >>\n"+
+                  "stream\n");
+            streamStart = out.pos;
+            deflater = new Deflater();
+            stream = new DeflaterOutputStream(out, deflater, 8192);
+        }
+
+        private void endContent() throws IOException {
+            stream.finish();
+            deflater.end();
+            long len = out.pos - streamStart;
+            write("\nendstream\nendobj\n");
+            startObject(streamLength);
+            write(len+"\nendobj\n");
+        }
+
+        void finish() {
+            if ( finished ) return;
+            finished = true;
+            if ( error != null ) return;
+            try {
+                endContent();
+
+                // resources
+                startObject(RESOURCES);
+                write("<< /ProcSet [/PDF /ImageC /ImageB]");
+                if ( !alphas.isEmpty() ) {
+                    write(" /ExtGState <<");
+                    Iterator<Integer> it = alphas.iterator();
+                    while ( it.hasNext() ) {
+                        int a = it.next().intValue();
+                        StringBuffer sb = new StringBuffer();
+                        appendNumber(sb, a/255.0);
+                        write(" /GS"+a+" << /ca "+sb+" /CA "+sb+" >>");
+                    }
+                    write(" >>");
+                }
+                if ( !images.isEmpty() ) {
+                    write(" /XObject <<");
+                    for ( int i=0; i<images.size(); ++i ) {
+                        int id = images.get(i).intValue();
+                        write(" /Im"+id+" "+id+" 0 R");
+                    }
+                    write(" >>");
+                }
+                write(" >>\nendobj\n");
+
+                // page, page tree and catalog
+                startObject(PAGE);
+                write("<< /Type /Page /Parent "+PAGES+" 0 R /MediaBox [0 0 "+
+                      width+" "+height+"] /Resources "+RESOURCES+
+                      " 0 R /Contents [");
+                for ( int i=0; i<contents.size(); ++i ) {
+                    write(" "+contents.get(i)+" 0 R");
+                }
+                write(" ] >>\nendobj\n");
+                startObject(PAGES);
+                write("<< /Type /Pages /Kids ["+PAGE+" 0 R] /Count 1 >>\n"+
+                      "endobj\n");
+                startObject(CATALOG);
+                write("<< /Type /Catalog /Pages "+PAGES+" 0 R >>\nendobj\n");
+
+                // cross-reference table and trailer
+                long xref = out.pos;
+                write("xref\n0 "+(nobj+1)+"\n0000000000 65535 f \n");
+                for ( int i=1; i<=nobj; ++i ) {
+                    String off = String.valueOf(offsets[i]);
+                    write("0000000000".substring(off.length())+off+
+                          " 00000 n \n");
+                }
+                write("trailer\n<< /Size "+(nobj+1)+" /Root "+CATALOG+
+                      " 0 R >>\nstartxref\n"+xref+"\n%%EOF\n");
+                out.flush();
+            } catch ( IOException e ) {
+                error = e;
+            }
+        }
+
+        private int newObject() {
+            ++nobj;
+            if ( nobj >= offsets.length ) {
+                long[] o = new long[2*offsets.length];
+                System.arraycopy(offsets, 0, o, 0, offsets.length);
+                offsets = o;
+            }
+            return nobj;
+        }
+
+        private void startObject(int id) throws IOException {
+            offsets[id] = out.pos;
+            write(id+" 0 obj\n");
+        }
+
+        private void write(String s) throws IOException {
+            out.write(bytes(s));
+        }
+
+        private static byte[] bytes(CharSequence s) {
+            byte[] b = new byte[s.length()];
+            for ( int i=0; i<b.length; ++i )
+                b[i] = (byte)s.charAt(i);
+            return b;
+        }
+    }
+
+    /**
+     * Output stream that counts the bytes written through it.
+     */
+    private static class Counter extends FilterOutputStream {
+        long pos = 0;
+        Counter(OutputStream out) {
+            super(out);
+        }
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++pos;
+        }
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            pos += len;
+        }
+    }
+
+} // end of class PDFGraphics2D
@@ -0,0 +1,351 @@
+package prefuse.util.io;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Graphics2D implementation that streams Scalable Vector Graphics (SVG)
+ * markup as drawing operations are issued, using an {@link XMLWriter}.
+ * Each drawn shape becomes a single <code>path</code> element, text is
+ * written as <code>text</code> elements, and images are embedded as PNG
+ * data. Call {@link #finish()} once drawing is complete to close the
+ * document.
+ */
+public class SVGGraphics2D extends VectorGraphics2D {
+
+    private Document m_doc;
+
+    // attribute buffers, reused between elements
+    private String[] m_names  = new String[14];
+    private String[] m_values = new String[14];
+    private int      m_nattr  = 0;
+    private StringBuffer m_sb = new StringBuffer();
+
+    /**
+     * Create a new SVGGraphics2D and write the document header.
+     * @param out the writer to write the SVG document to
+     * @param width the width of the drawing area
+     * @param height the height of the drawing area
+     */
+    public SVGGraphics2D(Writer out, int width, int height) {
+        super(width, height);
+        PrintWriter pw = (out instanceof PrintWriter ? (PrintWriter)out
+                                                     : new PrintWriter(out));
+        m_doc = new Document(pw);
+
+        XMLWriter xml = m_doc.xml;
+        xml.begin();
+        attr("xmlns", "http://www.w3.org/2000/svg");
+        attr("xmlns:xlink", "http://www.w3.org/1999/xlink");
+        attr("version", "1.1");
+        attr("width", String.valueOf(width));
+        attr("height", String.valueOf(height));
+        attr("viewBox", "0 0 "+width+" "+height);
+        xml.start("svg", m_names, m_values, m_nattr);
+        m_nattr = 0;
+    }
+
+    /**
+     * Create a new SVGGraphics2D with the same state and output as the
+     * given one.
+     */
+    private SVGGraphics2D(SVGGraphics2D g) {
+        super(g);
+        m_doc = g.m_doc;
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#createCopy()
+     */
+    protected VectorGraphics2D createCopy() {
+        return new SVGGraphics2D(this);
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#finish()
+     */
+    public void finish() {
+        m_doc.setClip(null);
+        m_doc.xml.end();
+        m_doc.xml.finish();
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#checkError()
+     */
+    public boolean checkError() {
+        return m_doc.out.checkError();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#writeShape(java.awt.Shape, boolean)
+     */
+    protected void writeShape(Shape s, boolean fill) {
+        if ( !fill && !(m_stroke instanceof BasicStroke) ) {
+            s = m_stroke.createStrokedShape(s);
+            fill = true;
+        }
+        m_doc.setClip(m_clip);
+
+        m_sb.setLength(0);
+        int rule = appendPath(m_sb, s);
+        attr("d", m_sb.toString());
+        matrix(m_transform);
+        if ( fill ) {
+            paint("fill");
+            if ( rule == PathIterator.WIND_EVEN_ODD )
+                attr("fill-rule", "evenodd");
+        } else {
+            attr("fill", "none");
+            paint("stroke");
+            stroke((BasicStroke)m_stroke);
+        }
+        m_doc.xml.tag("path", m_names, m_values, m_nattr);
+        m_nattr = 0;
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#writeText(java.lang.String, float, float)
+     */
+    protected void writeText(String s, float x, float y) {
+        m_doc.setClip(m_clip);
+
+        number("x", x);
+        number("y", y);
+        matrix(m_transform);
+        attr("font-family", family(m_font));
+        number("font-size", m_font.getSize2D());
+        if ( m_font.isItalic() )
+            attr("font-style", "italic");
+        if ( m_font.isBold() )
+            attr("font-weight", "bold");
+        paint("fill");
+
+        XMLWriter xml = m_doc.xml;
+        xml.start("text", m_names, m_values, m_nattr);
+        m_nattr = 0;
+        xml.spacing();
+        xml.content(s);
+        xml.println();
+        xml.end();
+    }
+
+    /**
+     * @see prefuse.util.io.VectorGraphics2D#writeImage(java.awt.image.BufferedImage, java.awt.geom.AffineTransform)
+     */
+    protected void writeImage(BufferedImage img, AffineTransform xform) {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(img, "png", png);
+        } catch ( IOException e ) {
+            return; // not expected when writing to memory
+        }
+        m_doc.setClip(m_clip);
+
+        AffineTransform at = new AffineTransform(m_transform);
+        at.concatenate(xform);
+        attr("width", String.valueOf(img.getWidth()));
+        attr("height", String.valueOf(img.getHeight()));
+        attr("preserveAspectRatio", "none");
+        matrix(at);
+        if ( m_composite instanceof AlphaComposite ) {
+            float alpha = ((AlphaComposite)m_composite).getAlpha();
+            if ( alpha < 1 )
+                number("opacity", alpha);
+        }
+        attr("xlink:href", "data:image/png;base64,"+base64(png.toByteArray()));
+        m_doc.xml.tag("image", m_names, m_values, m_nattr);
+        m_nattr = 0;
+    }
+
+    // ------------------------------------------------------------------------
+    // Attribute Helpers
+
+    private void attr(String name, String value) {
+        m_names[m_nattr] = name;
+        m_values[m_nattr] = value;
+        ++m_nattr;
+    }
+
+    private void number(String name, double v) {
+        StringBuffer sb = new StringBuffer(12);
+        appendNumber(sb, v);
+        attr(name, sb.toString());
+    }
+
+    private void matrix(AffineTransform at) {
+        if ( at.isIdentity() ) return;
+        StringBuffer sb = new StringBuffer(64);
+        double[] m = new double[6];
+        at.getMatrix(m);
+        sb.append("matrix(");
+        for ( int i=0; i<6; ++i ) {
+            if ( i > 0 ) sb.append(' ');
+            appendNumber(sb, m[i]);
+        }
+        sb.append(')');
+        attr("transform", sb.toString());
+    }
+
+    private void paint(String name) {
+        attr(name, hex(m_color));
+        int alpha = getAlpha();
+        if ( alpha < 255 )
+            number(name+"-opacity", alpha/255.0);
+    }
+
+    private void stroke(BasicStroke s) {
+        if ( s.getLineWidth() > 0 ) {
+            number("stroke-width", s.getLineWidth());
+        } else {
+            // zero width strokes are drawn as thin device lines
+            attr("stroke-width", "1");
+            attr("vector-effect", "non-scaling-stroke");
+        }
+        switch ( s.getEndCap() ) {
+        case BasicStroke.CAP_BUTT:
+            attr("stroke-linecap", "butt"); break;
+        case BasicStroke.CAP_ROUND:
+            attr("stroke-linecap", "round"); break;
+        default:
+            attr("stroke-linecap", "square"); break;
+        }
+        switch ( s.getLineJoin() ) {
+        case BasicStroke.JOIN_ROUND:
+            attr("stroke-linejoin", "round"); break;
+        case BasicStroke.JOIN_BEVEL:
+            attr("stroke-linejoin", "bevel"); break;
+        default:
+            attr("stroke-linejoin", "miter");
+            number("stroke-miterlimit", Math.max(1, s.getMiterLimit()));
+        }
+        float[] dash = s.getDashArray();
+        if ( dash != null && dash.length > 0 ) {
+            StringBuffer sb = new StringBuffer();
+            for ( int i=0; i<dash.length; ++i ) {
+                if ( i > 0 ) sb.append(',');
+                appendNumber(sb, dash[i]);
+            }
+            attr("stroke-dasharray", sb.toString());
+            if ( s.getDashPhase() != 0 )
+                number("stroke-dashoffset", s.getDashPhase());
+        }
+    }
+
+    /**
+     * Append the SVG path data for a shape to the string buffer.
+     * @return the winding rule of the shape
+     */
+    private static int appendPath(StringBuffer sb, Shape s) {
+        double[] c = new double[6];
+        PathIterator pi = s.getPathIterator(null);
+        for ( ; !pi.isDone(); pi.next() ) {
+            int type = pi.currentSegment(c);
+            switch ( type ) {
+            case PathIterator.SEG_MOVETO:
+                sb.append('M'); points(sb, c, 1); break;
+            case PathIterator.SEG_LINETO:
+                sb.append('L'); points(sb, c, 1); break;
+            case PathIterator.SEG_QUADTO:
+                sb.append('Q'); points(sb, c, 2); break;
+            case PathIterator.SEG_CUBICTO:
+                sb.append('C'); points(sb, c, 3); break;
+            case PathIterator.SEG_CLOSE:
+                sb.append('Z'); break;
+            }
+        }
+        return pi.getWindingRule();
+    }
+
+    private static void points(StringBuffer sb, double[] c, int n) {
+        for ( int i=0; i<2*n; ++i ) {
+            if ( i > 0 ) sb.append(' ');
+            appendNumber(sb, c[i]);
+        }
+    }
+
+    private static String hex(Color c) {
+        String s = Integer.toHexString(c.getRGB() & 0xffffff);
+        return "#000000".substring(0, 7-s.length()) + s;
+    }
+
+    private static String family(Font f) {
+        String name = f.getFamily();
+        if ( "SansSerif".equals(name) || "Dialog".equals(name) ||
+             "DialogInput".equals(name) )
+            return "sans-serif";
+        if ( "Serif".equals(name) )
+            return "serif";
+        if ( "Monospaced".equals(name) )
+            return "monospace";
+        return name;
+    }
+
+    private static final char[] BASE64 =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+        .toCharArray();
+
+    private static String base64(byte[] b) {
+        StringBuffer sb = new StringBuffer(4*(b.length+2)/3);
+        for ( int i=0; i<b.length; i+=3 ) {
+            int n = (b[i] & 0xff) << 16;
+            if ( i+1 < b.length ) n |= (b[i+1] & 0xff) << 8;
+            if ( i+2 < b.length ) n |= (b[i+2] & 0xff);
+            sb.append(BASE64[(n >> 18) & 63]);
+            sb.append(BASE64[(n >> 12) & 63]);
+            sb.append(i+1 < b.length ? BASE64[(n >> 6) & 63] : '=');
+            sb.append(i+2 < b.length ? BASE64[n & 63] : '=');
+        }
+        return sb.toString();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Output state shared by all graphics contexts writing to a document.
+     * Clipped elements are grouped into <code>g</code> elements referencing
+     * a clip path, with a new group started whenever the clip changes.
+     */
+    private static class Document {
+        PrintWriter out;
+        XMLWriter   xml;
+        Shape       clip = null;
+        int         clipCount = 0;
+
+        Document(PrintWriter out) {
+            this.out = out;
+            this.xml = new XMLWriter(out);
+        }
+
+        void setClip(Shape c) {
+            if ( c == clip ) return;
+            if ( clip != null )
+                xml.end();
+            clip = c;
+            if ( c == null ) return;
+
+            String id = "clip"+(++clipCount);
+            StringBuffer sb = new StringBuffer();
+            appendPath(sb, c);
+            xml.start("clipPath", "id", id);
+            xml.tag("path", "d", sb.toString());
+            xml.end();
+            xml.start("g", "clip-path", "url(#"+id+")");
+        }
+    }
+
+} // end of class SVGGraphics2D
@@ -0,0 +1,712 @@
+package prefuse.util.io;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ColorModel;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.util.Map;
+
+/**
+ * Abstract base class for Graphics2D implementations that translate drawing
+ * operations into a vector graphics format as they are issued. This class
+ * maintains the graphics state (transform, clip, paint, stroke, font and
+ * composite) and reduces all drawing operations to three primitives:
+ * {@link #writeShape(Shape, boolean)}, {@link #writeText(String, float,
+ * float)} and {@link #writeImage(BufferedImage, AffineTransform)}, which
+ * subclasses implement to stream output for a specific format. Nothing is
+ * retained between calls, so output of arbitrary size can be generated in
+ * constant memory.
+ *
+ * <p>Paints other than solid colors are approximated by the current color.
+ * Composites other than {@link java.awt.AlphaComposite} source-over are
+ * approximated by plain source-over drawing, except that drawing with the
+ * <code>CLEAR</code> rule is ignored. XOR mode is not supported.</p>
+ *
+ * <p>Graphics contexts obtained through {@link #create()} share the output
+ * of their parent. Call {@link #finish()} on the original context to
+ * complete the document.</p>
+ *
+ * @see SVGGraphics2D
+ * @see PDFGraphics2D
+ */
+public abstract class VectorGraphics2D extends Graphics2D {
+
+    private static final Graphics2D s_metrics =
+        new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+
+    protected int             m_width;
+    protected int             m_height;
+    protected AffineTransform m_transform;
+    protected Shape           m_clip; // in device space, null if unclipped
+    protected Paint           m_paint;
+    protected Color           m_color;
+    protected Color           m_background;
+    protected Stroke          m_stroke;
+    protected Font            m_font;
+    protected Composite       m_composite;
+    protected RenderingHints  m_hints;
+
+    /**
+     * Create a new VectorGraphics2D.
+     * @param width the width of the drawing area
+     * @param height the height of the drawing area
+     */
+    protected VectorGraphics2D(int width, int height) {
+        m_width = width;
+        m_height = height;
+        m_transform = new AffineTransform();
+        m_clip = null;
+        m_color = Color.BLACK;
+        m_paint = m_color;
+        m_background = Color.WHITE;
+        m_stroke = new BasicStroke();
+        m_font = new Font("SansSerif", Font.PLAIN, 12);
+        m_composite = AlphaComposite.SrcOver;
+        m_hints = new RenderingHints(null);
+    }
+
+    /**
+     * Create a new VectorGraphics2D with the same state as the given one.
+     * @param g the graphics context to copy
+     */
+    protected VectorGraphics2D(VectorGraphics2D g) {
+        m_width = g.m_width;
+        m_height = g.m_height;
+        m_transform = new AffineTransform(g.m_transform);
+        m_clip = g.m_clip;
+        m_paint = g.m_paint;
+        m_color = g.m_color;
+        m_background = g.m_background;
+        m_stroke = g.m_stroke;
+        m_font = g.m_font;
+        m_composite = g.m_composite;
+        m_hints = (RenderingHints)g.m_hints.clone();
+    }
+
+    // ------------------------------------------------------------------------
+    // Output Primitives
+
+    /**
+     * Write a shape using the current graphics state.
+     * @param s the shape, in user space
+     * @param fill true to fill the shape with the current color, false to
+     * stroke it with the current stroke and color
+     */
+    protected abstract void writeShape(Shape s, boolean fill);
+
+    /**
+     * Write an image using the current graphics state.
+     * @param img the image
+     * @param xform the transform from image space to user space
+     */
+    protected abstract void writeImage(BufferedImage img, AffineTransform xform);
+
+    /**
+     * Write a text string using the current graphics state. By default the
+     * outline of the text is filled, subclasses can override this method to
+     * write text natively.
+     * @param s the text
+     * @param x the x-coordinate of the baseline origin, in user space
+     * @param y the y-coordinate of the baseline origin, in user space
+     */
+    protected void writeText(String s, float x, float y) {
+        GlyphVector gv = m_font.createGlyphVector(getFontRenderContext(), s);
+        writeShape(gv.getOutline(x, y), true);
+    }
+
+    /**
+     * Complete the output document. The graphics context, and all contexts
+     * created from it, must not be used after this method is called.
+     */
+    public abstract void finish();
+
+    /**
+     * Indicates if an error has occurred while writing output.
+     * @return true if writing has failed, false otherwise
+     */
+    public abstract boolean checkError();
+
+    /**
+     * Indicates if drawing should be skipped given the current composite.
+     * @return true if drawing operations currently have no effect
+     */
+    protected boolean isClearing() {
+        return m_composite instanceof AlphaComposite &&
+            ((AlphaComposite)m_composite).getRule() == AlphaComposite.CLEAR;
+    }
+
+    /**
+     * Get the effective alpha value of the current color, including the
+     * extra alpha of the current composite.
+     * @return the alpha value, between 0 and 255
+     */
+    protected int getAlpha() {
+        int alpha = m_color.getAlpha();
+        if ( m_composite instanceof AlphaComposite ) {
+            alpha = Math.round(alpha*((AlphaComposite)m_composite).getAlpha());
+        }
+        return alpha;
+    }
+
+    /**
+     * Append a number to a string buffer, rounded to three decimal places
+     * and without exponent notation.
+     * @param sb the buffer to append to
+     * @param v the number to append
+     */
+    protected static void appendNumber(StringBuffer sb, double v) {
+        if ( Double.isNaN(v) || Double.isInfinite(v) ) v = 0;
+        long r = Math.round(v*1000);
+        if ( r < 0 ) {
+            sb.append('-');
+            r = -r;
+        }
+        sb.append(r / 1000);
+        int frac = (int)(r % 1000);
+        if ( frac != 0 ) {
+            sb.append('.');
+            if ( frac < 100 ) sb.append('0');
+            if ( frac < 10  ) sb.append('0');
+            while ( frac % 10 == 0 ) frac /= 10;
+            sb.append(frac);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Drawing
+
+    public void draw(Shape s) {
+        if ( isClearing() ) return;
+        writeShape(s, false);
+    }
+
+    public void fill(Shape s) {
+        if ( isClearing() ) return;
+        writeShape(s, true);
+    }
+
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        draw(new Line2D.Float(x1, y1, x2, y2));
+    }
+
+    public void fillRect(int x, int y, int width, int height) {
+        fill(new Rectangle(x, y, width, height));
+    }
+
+    public void clearRect(int x, int y, int width, int height) {
+        Paint p = m_paint;
+        Color c = m_color;
+        Composite cp = m_composite;
+        setComposite(AlphaComposite.SrcOver);
+        setColor(m_background);
+        fillRect(x, y, width, height);
+        m_paint = p;
+        m_color = c;
+        m_composite = cp;
+    }
+
+    public void drawRoundRect(int x, int y, int width, int height,
+                              int arcWidth, int arcHeight)
+    {
+        draw(new RoundRectangle2D.Float(x, y, width, height,
+                                        arcWidth, arcHeight));
+    }
+
+    public void fillRoundRect(int x, int y, int width, int height,
+                              int arcWidth, int arcHeight)
+    {
+        fill(new RoundRectangle2D.Float(x, y, width, height,
+                                        arcWidth, arcHeight));
+    }
+
+    public void drawOval(int x, int y, int width, int height) {
+        draw(new Ellipse2D.Float(x, y, width, height));
+    }
+
+    public void fillOval(int x, int y, int width, int height) {
+        fill(new Ellipse2D.Float(x, y, width, height));
+    }
+
+    public void drawArc(int x, int y, int width, int height,
+                        int startAngle, int arcAngle)
+    {
+        draw(new Arc2D.Float(x, y, width, height,
+                             startAngle, arcAngle, Arc2D.OPEN));
+    }
+
+    public void fillArc(int x, int y, int width, int height,
+                        int startAngle, int arcAngle)
+    {
+        fill(new Arc2D.Float(x, y, width, height,
+                             startAngle, arcAngle, Arc2D.PIE));
+    }
+
+    public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+        if ( nPoints < 2 ) return;
+        draw(polygon(xPoints, yPoints, nPoints, false));
+    }
+
+    public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        if ( nPoints < 2 ) return;
+        draw(polygon(xPoints, yPoints, nPoints, true));
+    }
+
+    public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        if ( nPoints < 3 ) return;
+        fill(polygon(xPoints, yPoints, nPoints, true));
+    }
+
+    private static Shape polygon(int[] x, int[] y, int n, boolean close) {
+        GeneralPath p = new GeneralPath(GeneralPath.WIND_EVEN_ODD, n);
+        p.moveTo(x[0], y[0]);
+        for ( int i=1; i<n; ++i )
+            p.lineTo(x[i], y[i]);
+        if ( close ) p.closePath();
+        return p;
+    }
+
+    public void drawString(String str, int x, int y) {
+        drawString(str, (float)x, (float)y);
+    }
+
+    public void drawString(String str, float x, float y) {
+        if ( isClearing() || str == null || str.length() == 0 ) return;
+        writeText(str, x, y);
+    }
+
+    public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+        drawString(iterator, (float)x, (float)y);
+    }
+
+    public void drawString(AttributedCharacterIterator iterator,
+                           float x, float y)
+    {
+        if ( isClearing() ) return;
+        TextLayout tl = new TextLayout(iterator, getFontRenderContext());
+        fill(tl.getOutline(AffineTransform.getTranslateInstance(x, y)));
+    }
+
+    public void drawGlyphVector(GlyphVector g, float x, float y) {
+        fill(g.getOutline(x, y));
+    }
+
+    // -- images --------------------------------------------------------------
+
+    /**
+     * Get a BufferedImage with the contents of the given image.
+     * @return the image, or null if it is not yet available
+     */
+    private static BufferedImage toBufferedImage(Image img) {
+        if ( img instanceof BufferedImage )
+            return (BufferedImage)img;
+        int w = img.getWidth(null), h = img.getHeight(null);
+        if ( w <= 0 || h <= 0 )
+            return null;
+        BufferedImage b = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = b.createGraphics();
+        boolean done = g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return done ? b : null;
+    }
+
+    private boolean drawBufferedImage(BufferedImage img,
+                                      AffineTransform xform, Color bgcolor)
+    {
+        if ( img == null ) return false;
+        if ( isClearing() ) return true;
+        if ( bgcolor != null ) {
+            Paint p = m_paint;
+            Color c = m_color;
+            setColor(bgcolor);
+            fill(xform.createTransformedShape(new Rectangle(
+                    0, 0, img.getWidth(), img.getHeight())));
+            m_paint = p;
+            m_color = c;
+        }
+        writeImage(img, xform);
+        return true;
+    }
+
+    public boolean drawImage(Image img, AffineTransform xform,
+                             ImageObserver obs)
+    {
+        return drawBufferedImage(toBufferedImage(img),
+            xform==null ? new AffineTransform() : xform, null);
+    }
+
+    public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+        BufferedImage b = (op == null ? img : op.filter(img, null));
+        drawBufferedImage(b, AffineTransform.getTranslateInstance(x, y), null);
+    }
+
+    public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+        BufferedImage b;
+        if ( img instanceof BufferedImage ) {
+            b = (BufferedImage)img;
+        } else {
+            ColorModel cm = img.getColorModel();
+            WritableRaster r = img.copyData(null).createWritableTranslatedChild(0, 0);
+            b = new BufferedImage(cm, r, cm.isAlphaPremultiplied(), null);
+        }
+        drawBufferedImage(b, xform, null);
+    }
+
+    public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
+        drawRenderedImage(img.createDefaultRendering(), xform);
+    }
+
+    public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+        return drawImage(img, x, y, null, observer);
+    }
+
+    public boolean drawImage(Image img, int x, int y, Color bgcolor,
+                             ImageObserver observer)
+    {
+        return drawBufferedImage(toBufferedImage(img),
+            AffineTransform.getTranslateInstance(x, y), bgcolor);
+    }
+
+    public boolean drawImage(Image img, int x, int y, int width, int height,
+                             ImageObserver observer)
+    {
+        return drawImage(img, x, y, width, height, null, observer);
+    }
+
+    public boolean drawImage(Image img, int x, int y, int width, int height,
+                             Color bgcolor, ImageObserver observer)
+    {
+        BufferedImage b = toBufferedImage(img);
+        if ( b == null ) return false;
+        AffineTransform at = AffineTransform.getTranslateInstance(x, y);
+        at.scale(width/(double)b.getWidth(), height/(double)b.getHeight());
+        return drawBufferedImage(b, at, bgcolor);
+    }
+
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+                             int sx1, int sy1, int sx2, int sy2,
+                             ImageObserver observer)
+    {
+        return drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2,
+                         null, observer);
+    }
+
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+                             int sx1, int sy1, int sx2, int sy2,
+                             Color bgcolor, ImageObserver observer)
+    {
+        BufferedImage b = toBufferedImage(img);
+        if ( b == null ) return false;
+        int x = Math.min(sx1, sx2), y = Math.min(sy1, sy2);
+        int w = Math.abs(sx2-sx1), h = Math.abs(sy2-sy1);
+        x = Math.max(0, x); y = Math.max(0, y);
+        w = Math.min(w, b.getWidth()-x); h = Math.min(h, b.getHeight()-y);
+        if ( w <= 0 || h <= 0 ) return true;
+        b = b.getSubimage(x, y, w, h);
+
+        AffineTransform at = AffineTransform.getTranslateInstance(dx1, dy1);
+        at.scale((dx2-dx1)/(double)(sx2-sx1), (dy2-dy1)/(double)(sy2-sy1));
+        if ( sx2 < sx1 ) at.translate(-w, 0);
+        if ( sy2 < sy1 ) at.translate(0, -h);
+        return drawBufferedImage(b, at, bgcolor);
+    }
+
+    // ------------------------------------------------------------------------
+    // Graphics State
+
+    public Graphics create() {
+        return createCopy();
+    }
+
+    /**
+     * Create a new graphics context with the same state as this one, writing
+     * to the same output.
+     * @return the new graphics context
+     */
+    protected abstract VectorGraphics2D createCopy();
+
+    public void dispose() {
+        // the output is completed by finish()
+    }
+
+    public void setColor(Color c) {
+        if ( c == null ) return;
+        m_color = c;
+        m_paint = c;
+    }
+
+    public Color getColor() {
+        return m_color;
+    }
+
+    public void setPaint(Paint paint) {
+        if ( paint == null ) return;
+        m_paint = paint;
+        if ( paint instanceof Color )
+            m_color = (Color)paint;
+    }
+
+    public Paint getPaint() {
+        return m_paint;
+    }
+
+    public void setPaintMode() {
+        m_composite = AlphaComposite.SrcOver;
+    }
+
+    public void setXORMode(Color c1) {
+        // not supported
+    }
+
+    public void setBackground(Color color) {
+        m_background = color;
+    }
+
+    public Color getBackground() {
+        return m_background;
+    }
+
+    public void setStroke(Stroke s) {
+        m_stroke = s;
+    }
+
+    public Stroke getStroke() {
+        return m_stroke;
+    }
+
+    public void setFont(Font font) {
+        if ( font != null )
+            m_font = font;
+    }
+
+    public Font getFont() {
+        return m_font;
+    }
+
+    public FontMetrics getFontMetrics(Font f) {
+        synchronized ( s_metrics ) {
+            return s_metrics.getFontMetrics(f);
+        }
+    }
+
+    public FontRenderContext getFontRenderContext() {
+        Object aa = m_hints.get(RenderingHints.KEY_TEXT_ANTIALIASING);
+        Object fm = m_hints.get(RenderingHints.KEY_FRACTIONALMETRICS);
+        return new FontRenderContext(null,
+                RenderingHints.VALUE_TEXT_ANTIALIAS_ON.equals(aa),
+                RenderingHints.VALUE_FRACTIONALMETRICS_ON.equals(fm));
+    }
+
+    public void setComposite(Composite comp) {
+        m_composite = comp;
+    }
+
+    public Composite getComposite() {
+        return m_composite;
+    }
+
+    public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
+        m_hints.put(hintKey, hintValue);
+    }
+
+    public Object getRenderingHint(RenderingHints.Key hintKey) {
+        return m_hints.get(hintKey);
+    }
+
+    public void setRenderingHints(Map<?,?> hints) {
+        m_hints.clear();
+        m_hints.putAll(hints);
+    }
+
+    public void addRenderingHints(Map<?,?> hints) {
+        m_hints.putAll(hints);
+    }
+
+    public RenderingHints getRenderingHints() {
+        return (RenderingHints)m_hints.clone();
+    }
+
+    public GraphicsConfiguration getDeviceConfiguration() {
+        return new VectorConfiguration(m_width, m_height);
+    }
+
+    public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+        // not supported by vector output
+    }
+
+    public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+        if ( onStroke )
+            s = m_stroke.createStrokedShape(s);
+        s = m_transform.createTransformedShape(s);
+        return s.intersects(rect);
+    }
+
+    // -- transform -----------------------------------------------------------
+
+    public void translate(int x, int y) {
+        m_transform.translate(x, y);
+    }
+
+    public void translate(double tx, double ty) {
+        m_transform.translate(tx, ty);
+    }
+
+    public void rotate(double theta) {
+        m_transform.rotate(theta);
+    }
+
+    public void rotate(double theta, double x, double y) {
+        m_transform.rotate(theta, x, y);
+    }
+
+    public void scale(double sx, double sy) {
+        m_transform.scale(sx, sy);
+    }
+
+    public void shear(double shx, double shy) {
+        m_transform.shear(shx, shy);
+    }
+
+    public void transform(AffineTransform tx) {
+        m_transform.concatenate(tx);
+    }
+
+    public void setTransform(AffineTransform tx) {
+        m_transform = new AffineTransform(tx);
+    }
+
+    public AffineTransform getTransform() {
+        return new AffineTransform(m_transform);
+    }
+
+    // -- clip ----------------------------------------------------------------
+
+    public Shape getClip() {
+        if ( m_clip == null ) return null;
+        try {
+            return m_transform.createInverse().createTransformedShape(m_clip);
+        } catch ( NoninvertibleTransformException e ) {
+            return null;
+        }
+    }
+
+    public Rectangle getClipBounds() {
+        Shape c = getClip();
+        return c == null ? null : c.getBounds();
+    }
+
+    public void clipRect(int x, int y, int width, int height) {
+        clip(new Rectangle(x, y, width, height));
+    }
+
+    public void setClip(int x, int y, int width, int height) {
+        setClip(new Rectangle(x, y, width, height));
+    }
+
+    public void setClip(Shape clip) {
+        m_clip = (clip == null ? null :
+                  m_transform.createTransformedShape(clip));
+    }
+
+    public void clip(Shape s) {
+        if ( s == null ) {
+            m_clip = null;
+            return;
+        }
+        Shape c = m_transform.createTransformedShape(s);
+        if ( m_clip == null ) {
+            m_clip = c;
+        } else if ( m_clip instanceof Rectangle2D && c instanceof Rectangle2D ) {
+            Rectangle2D r = new Rectangle2D.Double();
+            Rectangle2D.intersect((Rectangle2D)m_clip, (Rectangle2D)c, r);
+            m_clip = r;
+        } else {
+            Area a = new Area(m_clip);
+            a.intersect(new Area(c));
+            m_clip = a;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Device configuration reported by vector graphics contexts. Its device
+     * is of type {@link java.awt.GraphicsDevice#TYPE_PRINTER}, which lets
+     * rendering code detect that it is drawing to a non-raster target.
+     */
+    private static class VectorConfiguration extends GraphicsConfiguration {
+        private int m_w, m_h;
+        private GraphicsDevice m_device = new GraphicsDevice() {
+            public int getType() {
+                return TYPE_PRINTER;
+            }
+            public String getIDstring() {
+                return "prefuse vector output";
+            }
+            public GraphicsConfiguration[] getConfigurations() {
+                return new GraphicsConfiguration[] { VectorConfiguration.this };
+            }
+            public GraphicsConfiguration getDefaultConfiguration() {
+                return VectorConfiguration.this;
+            }
+        };
+
+        VectorConfiguration(int w, int h) {
+            m_w = w;
+            m_h = h;
+        }
+        public GraphicsDevice getDevice() {
+            return m_device;
+        }
+        public ColorModel getColorModel() {
+            return ColorModel.getRGBdefault();
+        }
+        public ColorModel getColorModel(int transparency) {
+            return ColorModel.getRGBdefault();
+        }
+        public AffineTransform getDefaultTransform() {
+            return new AffineTransform();
+        }
+        public AffineTransform getNormalizingTransform() {
+            return new AffineTransform();
+        }
+        public Rectangle getBounds() {
+            return new Rectangle(0, 0, m_w, m_h);
+        }
+        public BufferedImage createCompatibleImage(int width, int height) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+    }
+
+} // end of class VectorGraphics2D
@@ -10,6 +10,7 @@ import prefuse.data.Schema;
 import prefuse.data.Table;
 import prefuse.data.event.EventConstants;
 import prefuse.data.expression.Predicate;
+import prefuse.util.display.SpatialIndex;
 import prefuse.visual.tuple.TableVisualItem;
 
 /**
@@ -119,11 +120,11 @@ public class VisualTable extends CascadedTable implements VisualTupleSet {
         setGroup(group);
         addColumns(schema);
         if ( canGetBoolean(VisualItem.VISIBLE) )
-            index(VisualItem.VISIBLE);
+            bitmapIndex(VisualItem.VISIBLE);
         if ( canGetBoolean(VisualItem.STARTVISIBLE) )
-            index(VisualItem.STARTVISIBLE);
+            bitmapIndex(VisualItem.STARTVISIBLE);
         if ( canGetBoolean(VisualItem.VALIDATED) )
-            index(VisualItem.VALIDATED);
+            bitmapIndex(VisualItem.VALIDATED);
     }
     
     // ------------------------------------------------------------------------
@@ -134,9 +135,13 @@ public class VisualTable extends CascadedTable implements VisualTupleSet {
      */
     protected void fireTableEvent(int row0, int row1, int col, int type) {
         // table attributes changed, so we invalidate the bounds
+        SpatialIndex index = (m_vis==null ? null : m_vis.getSpatialIndex());
         if ( type==EventConstants.UPDATE )
         {
             if ( col != VisualItem.IDX_VALIDATED ) {
+                if ( index != null &&
+                     col == getColumnNumber(VisualItem.VISIBLE) )
+                    index.visibilityChanged();
                 for ( int r=row0; r<=row1; ++r )
                     setValidated(r,false);
             } else {
@@ -144,17 +149,35 @@ public class VisualTable extends CascadedTable implements VisualTupleSet {
                 for ( int r=row0; r<=row1; ++r ) {
                     if ( !isValidated(r) ) {
                         // retrieve the old bounds to report damage
-                        m_vis.damageReport(getItem(r), getBounds(r));
+                        VisualItem item = getItem(r);
+                        if ( index != null )
+                            index.invalidate(item);
+                        m_vis.damageReport(item, getBounds(r));
                     }
                 }
             }
         }
+        else if ( type==EventConstants.INSERT && index != null
+                  && col==EventConstants.ALL_COLUMNS )
+        {
+            // new items need their bounds validated before they are indexed
+            index.visibilityChanged();
+            for ( int r=row0; r<=row1; ++r ) {
+                if ( !isValidated(r) )
+                    index.invalidate(getItem(r));
+            }
+        }
         else if ( type==EventConstants.DELETE && col==EventConstants.ALL_COLUMNS)
         {
+            if ( index != null )
+                index.visibilityChanged();
             for ( int r=row0; r<=row1; ++r ) {
-                if ( isVisible(r) && isValidated(r) ) {
+                if ( isValidated(r) ) {
                     VisualItem item = (VisualItem)getTuple(r);
-                    m_vis.damageReport(item, getBounds(r));
+                    if ( index != null )
+                        index.remove(item);
+                    if ( isVisible(r) )
+                        m_vis.damageReport(item, getBounds(r));
                 }
             }
         }
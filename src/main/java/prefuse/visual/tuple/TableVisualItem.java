@@ -12,6 +12,7 @@ import prefuse.data.Tuple;
 import prefuse.data.tuple.TableTuple;
 import prefuse.data.tuple.TupleSet;
 import prefuse.render.Renderer;
+import prefuse.util.display.SpatialIndex;
 import prefuse.visual.VisualItem;
 import prefuse.visual.VisualTable;
 
@@ -127,8 +128,11 @@ public class TableVisualItem extends TableTuple implements VisualItem {
         getRenderer().setBounds(this);
         setValidated(true);
         
-        // report damage from the new bounds and return
+        // update the spatial index, report damage and return
         Rectangle2D bounds = getBounds();
+        SpatialIndex index = v.getSpatialIndex();
+        if ( index != null )
+            index.update(this, bounds);
         v.damageReport(this, bounds);
         return bounds;
     }
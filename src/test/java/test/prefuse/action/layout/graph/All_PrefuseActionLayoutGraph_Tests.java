@@ -0,0 +1,17 @@
+package test.prefuse.action.layout.graph;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class All_PrefuseActionLayoutGraph_Tests {
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite(
+            "Test for test.prefuse.action.layout.graph");
+        //$JUnit-BEGIN$
+        suite.addTestSuite(ForceDirectedLayoutTest.class);
+        //$JUnit-END$
+        return suite;
+    }
+
+}
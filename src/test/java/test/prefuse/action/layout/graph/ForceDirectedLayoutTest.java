@@ -0,0 +1,217 @@
+package test.prefuse.action.layout.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.Visualization;
+import prefuse.action.layout.graph.ForceDirectedLayout;
+import prefuse.data.Graph;
+import prefuse.data.Node;
+import prefuse.util.force.ForceItem;
+import prefuse.util.force.ForceSimulator;
+import prefuse.util.force.Spring;
+import prefuse.visual.EdgeItem;
+import prefuse.visual.VisualItem;
+
+/**
+ * Checks the incrementally updated simulator of an animated layout against
+ * a simulator reloaded from scratch.
+ */
+public class ForceDirectedLayoutTest extends TestCase {
+
+    static final String GRAPH = "graph";
+    static final String NODES = "graph.nodes";
+    static final String EDGES = "graph.edges";
+
+    private Graph m_graph;
+    private Visualization m_vis;
+    private TestLayout m_layout;
+    private Random m_rand;
+
+    protected void setUp() throws Exception {
+        m_rand = new Random(31);
+        m_graph = new Graph();
+        m_graph.addColumn("w", int.class);
+        for ( int i=0; i<60; ++i )
+            m_graph.addNode().setInt("w", 1+m_rand.nextInt(5));
+        m_graph.getEdgeTable().addColumn("len", int.class, Integer.valueOf(30));
+        for ( int i=0; i<120; ++i )
+            m_graph.addEdge(m_rand.nextInt(60), m_rand.nextInt(60));
+
+        m_vis = new Visualization();
+        m_vis.addGraph(GRAPH, m_graph);
+        m_layout = new TestLayout();
+        m_layout.setIncrementalUpdates(true);
+        m_layout.setVisualization(m_vis);
+    }
+
+    protected void tearDown() throws Exception {
+        m_layout = null;
+        m_vis = null;
+        m_graph = null;
+    }
+
+    public void testDefaults() {
+        assertTrue(new ForceDirectedLayout(GRAPH).isIncrementalUpdates());
+        assertFalse(new TestLayout().isIncrementalUpdates());
+    }
+
+    /**
+     * Nodes and edges added, removed, hidden and shown between steps.
+     */
+    public void testStructureChanges() {
+        step();
+        for ( int i=0; i<20; ++i ) {
+            switch ( i % 5 ) {
+            case 0:
+                Node n = m_graph.addNode();
+                n.setInt("w", 7);
+                m_graph.addEdge(n, m_graph.getNode(randomNode()));
+                break;
+            case 1:
+                m_graph.removeNode(randomNode());
+                break;
+            case 2:
+                m_graph.removeEdge(randomEdge());
+                m_graph.addEdge(randomNode(), randomNode());
+                break;
+            case 3:
+                setVisible(NODES, false);
+                setVisible(EDGES, false);
+                break;
+            default:
+                setVisible(NODES, true);
+                setVisible(EDGES, true);
+            }
+            step();
+        }
+    }
+
+    /**
+     * Updated rows reload their masses and spring parameters.
+     */
+    public void testValueChanges() {
+        step();
+        for ( int i=0; i<10; ++i ) {
+            m_graph.getNode(randomNode()).setInt("w", 10+i);
+            m_graph.getEdge(randomEdge()).setInt("len", 50+i);
+            m_graph.getEdge(randomEdge()).setInt(
+                Graph.DEFAULT_TARGET_KEY, randomNode());
+            step();
+        }
+    }
+
+    /**
+     * A new simulator, or turning incremental updates off and on again,
+     * triggers a full reload.
+     */
+    public void testReload() {
+        step();
+        m_layout.setForceSimulator(new ForceSimulator());
+        step();
+        m_layout.setIncrementalUpdates(false);
+        step();
+        m_layout.setIncrementalUpdates(true);
+        m_graph.removeNode(randomNode());
+        step();
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * Run an animation step and compare the simulator contents against
+     * those of a freshly loaded simulator.
+     */
+    private void step() {
+        m_layout.run(0.5);
+        ForceSimulator fsim = m_layout.getForceSimulator();
+        ForceSimulator ref = new ForceSimulator();
+        m_layout.reload(ref);
+
+        IdentityHashMap<Object,Object> items =
+            new IdentityHashMap<Object,Object>();
+        int count = 0;
+        for ( Iterator<?> iter = ref.getItems(); iter.hasNext(); ++count )
+            items.put(iter.next(), null);
+        for ( Iterator<?> iter = fsim.getItems(); iter.hasNext(); ) {
+            ForceItem fitem = (ForceItem)iter.next();
+            assertTrue(items.containsKey(fitem));
+            items.remove(fitem);
+            --count;
+        }
+        assertEquals(0, count);
+        assertEquals(springs(ref), springs(fsim));
+
+        // masses are those computed by the layout
+        Iterator<?> iter = m_vis.visibleItems(NODES);
+        while ( iter.hasNext() ) {
+            VisualItem item = (VisualItem)iter.next();
+            ForceItem fitem =
+                (ForceItem)item.get(ForceDirectedLayout.FORCEITEM);
+            assertEquals(item.getInt("w"), (int)fitem.mass);
+        }
+    }
+
+    private ArrayList<String> springs(ForceSimulator fsim) {
+        ArrayList<String> list = new ArrayList<String>();
+        for ( Iterator<?> iter = fsim.getSprings(); iter.hasNext(); ) {
+            Spring s = (Spring)iter.next();
+            list.add(System.identityHashCode(s.item1) + ","
+                     + System.identityHashCode(s.item2) + ","
+                     + s.coeff + "," + s.length);
+        }
+        Collections.sort(list);
+        return list;
+    }
+
+    private void setVisible(String group, boolean visible) {
+        for ( Iterator<?> iter = m_vis.items(group); iter.hasNext(); ) {
+            VisualItem item = (VisualItem)iter.next();
+            if ( m_rand.nextInt(4) == 0 )
+                item.setVisible(visible);
+        }
+    }
+
+    private int randomNode() {
+        int row;
+        do {
+            row = m_rand.nextInt(m_graph.getNodeTable().getMaximumRow()+1);
+        } while ( !m_graph.getNodeTable().isValidRow(row) );
+        return row;
+    }
+
+    private int randomEdge() {
+        int row;
+        do {
+            row = m_rand.nextInt(m_graph.getEdgeTable().getMaximumRow()+1);
+        } while ( !m_graph.getEdgeTable().isValidRow(row) );
+        return row;
+    }
+
+    /**
+     * Layout with data dependent masses and spring lengths, which exposes
+     * the full simulator reload.
+     */
+    static class TestLayout extends ForceDirectedLayout {
+        TestLayout() {
+            super(GRAPH);
+        }
+
+        void reload(ForceSimulator fsim) {
+            initSimulator(fsim);
+        }
+
+        protected float getMassValue(VisualItem n) {
+            return n.getInt("w");
+        }
+
+        protected float getSpringLength(EdgeItem e) {
+            return e.getInt("len");
+        }
+    }
+
+}
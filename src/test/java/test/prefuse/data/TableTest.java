@@ -5,9 +5,13 @@ import java.util.Comparator;
 import java.util.Iterator;
 
 import junit.framework.TestCase;
+import prefuse.data.DataTypeException;
 import prefuse.data.Table;
 import prefuse.data.Tuple;
 import prefuse.data.column.Column;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.TableListener;
+import prefuse.data.util.Index;
 import prefuse.data.util.Sort;
 import prefuse.util.collections.DefaultLiteralComparator;
 import test.prefuse.TestConfig;
@@ -98,6 +102,106 @@ public class TableTest extends TestCase implements TableTestData {
         assertEquals(NROWS+nrows, t.getRowCount());
     }
 
+    /*
+     * Test method for 'prefuse.data.Table.addRows(String[], Object[])'
+     */
+    public void testAddRowsBulk() {
+        final int[] events = new int[4];
+        t.addTableListener(new TableListener() {
+            public void tableChanged(Table tt, int start, int end,
+                                     int col, int type)
+            {
+                ++events[0];
+                events[1] = start;
+                events[2] = end;
+                events[3] = type;
+            }
+        });
+        // an index is updated once the rows become valid
+        Index index = t.index(HEADERS[0]);
+        
+        t.removeRow(1);
+        events[0] = 0;
+        
+        int r0 = t.addRows(
+            new String[] { HEADERS[0], HEADERS[4], HEADERS[5] },
+            new Object[] { new int[] { 10, 11, 12 },
+                           new double[] { 1.5, 2.5, 3.5 },
+                           new Object[] { "a", null, "c" } });
+        
+        // appended after the maximum row, not into the free row
+        assertEquals(NROWS, r0);
+        assertEquals(NROWS+2, t.getRowCount());
+        assertFalse(t.isValidRow(1));
+        
+        // a single coalesced insert event
+        assertEquals(1, events[0]);
+        assertEquals(r0, events[1]);
+        assertEquals(r0+2, events[2]);
+        assertEquals(EventConstants.INSERT, events[3]);
+        
+        for ( int i=0; i<3; ++i ) {
+            assertEquals(10+i, t.getInt(r0+i, HEADERS[0]));
+            assertEquals(1.5+i, t.getDouble(r0+i, HEADERS[4]), 0);
+            // fields not given take on their defaults
+            assertEquals(0f, t.getFloat(r0+i, HEADERS[3]), 0);
+            assertEquals(r0+i, index.get(10+i));
+        }
+        assertEquals("a", t.getString(r0, HEADERS[5]));
+        assertNull(t.getString(r0+1, HEADERS[5]));
+        
+        // empty value arrays add nothing
+        assertEquals(-1, t.addRows(new String[] { HEADERS[0] },
+                                   new Object[] { new int[0] }));
+        assertEquals(1, events[0]);
+    }
+    
+    public void testAddRowsBulkInvalid() {
+        final int[] events = new int[1];
+        t.addTableListener(new TableListener() {
+            public void tableChanged(Table tt, int start, int end,
+                                     int col, int type)
+            {
+                ++events[0];
+            }
+        });
+        
+        String[][] fields = {
+            { HEADERS[0] },
+            { "nonexistent" },
+            { HEADERS[0], HEADERS[3] },
+            { HEADERS[0] },
+            { HEADERS[0] },
+        };
+        Object[][] data = {
+            { },
+            { new int[] { 1 } },
+            { new int[] { 1, 2 }, new float[] { 1f } },
+            { new String[] { "x" } },
+            { "not an array" },
+        };
+        for ( int i=0; i<fields.length; ++i ) {
+            try {
+                t.addRows(fields[i], data[i]);
+                fail("Allowed invalid bulk insert "+i);
+            } catch ( RuntimeException success ) {
+            }
+            // rejected inserts leave the table unchanged
+            assertEquals(NROWS, t.getRowCount());
+            assertEquals(NROWS-1, t.getMaximumRow());
+        }
+        
+        // a value array of the wrong type for its column
+        try {
+            t.addRows(new String[] { HEADERS[5] },
+                      new Object[] { new int[] { 1 } });
+            fail("Allowed mismatched value array");
+        } catch ( DataTypeException success ) {
+        }
+        assertEquals(NROWS, t.getRowCount());
+        assertEquals(0, events[0]);
+    }
+
     /*
      * Test method for 'edu.berkeley.guir.prefuse.data.Table.removeRow(int)'
      */
@@ -76,4 +76,34 @@ public class ExpressionColumnTest extends TestCase implements TableTestData {
         }
     }
 
+    /**
+     * A failure evaluating one row must not surface when reading another.
+     */
+    public void testRowFailureIsolated() {
+        Table t = new Table();
+        t.addColumn("a", int.class);
+        t.addColumn("b", int.class);
+        t.addRows(10);
+        for ( int row=0; row<10; ++row ) {
+            t.setInt(row, "a", 10);
+            t.setInt(row, "b", row==3 ? 0 : 2);
+        }
+        t.addColumn("q", "a / b");
+        
+        assertEquals(5, t.getInt(0, "q"));
+        assertEquals(5, t.getInt(4, "q"));
+        try {
+            t.getInt(3, "q");
+            fail();
+        } catch ( ArithmeticException expected ) {
+        }
+        assertEquals(5, t.getInt(2, "q"));
+        
+        // boolean and object values are evaluated the same way
+        t.addColumn("p", "a / b > 1");
+        assertTrue(t.getBoolean(0, "p"));
+        t.addColumn("o", "IF a / b > 1 THEN 'x' ELSE 'y'");
+        assertEquals("x", t.get(0, "o"));
+    }
+
 }
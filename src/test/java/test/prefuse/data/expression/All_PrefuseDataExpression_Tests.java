@@ -9,7 +9,9 @@ public class All_PrefuseDataExpression_Tests {
         TestSuite suite = new TestSuite("Test for test.prefuse.data.expression");
         //$JUnit-BEGIN$
         suite.addTestSuite(ExpressionTest.class);
+        suite.addTestSuite(ExpressionCompilerTest.class);
         suite.addTestSuite(PredicateChainTest.class);
+        suite.addTestSuite(BatchEvaluationTest.class);
         //$JUnit-END$
         return suite;
     }
@@ -0,0 +1,187 @@
+package test.prefuse.data.expression;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.data.Table;
+import prefuse.data.Tuple;
+import prefuse.data.expression.AbstractExpression;
+import prefuse.data.expression.AndPredicate;
+import prefuse.data.expression.ColumnExpression;
+import prefuse.data.expression.Expression;
+import prefuse.data.expression.NumericLiteral;
+import prefuse.data.expression.OrPredicate;
+import prefuse.data.expression.Predicate;
+import prefuse.data.expression.RangePredicate;
+import prefuse.data.expression.parser.ExpressionParser;
+
+/**
+ * Checks the interpreted batch evaluation methods against evaluation of
+ * each tuple on its own.
+ */
+public class BatchEvaluationTest extends TestCase {
+
+    private static String[] comparisons = {
+        "i < 25", "i >= l", "l != 4", "l <= f", "f > 5.5", "d = d",
+        "d < i", "s = 'a3'", "s >= 'a5'", "b = TRUE", "i * 2 > l + 30",
+    };
+
+    private static String[] arithmetic = {
+        "i + l", "i - 7", "i * 3", "i / 3", "i ^ 2", "i % 7",
+        "l + l * 2", "l - i", "l / 3", "l % 3",
+        "f + 1.5", "f * f", "f / 2", "f % 1.5", "f - i",
+        "d + f", "d - 2.5", "d * l", "d / f", "d ^ 2", "d % 3",
+    };
+
+    private static String[] composites = {
+        "i > 10 AND d < 5",
+        "i > 40 OR l = 2",
+        "b AND i > 10 AND f < 8 AND s != 'a1'",
+        "NOT b OR l = 4 OR d > 9",
+        "i * 2 + 1 > 60 XOR b",
+        "(i < 10 OR i > 40) AND (b OR d < 2)",
+        "NOT (i < 25 AND l > 5)",
+    };
+
+    private Table m_table;
+    private int[] m_rows;
+    private int m_len;
+
+    protected void setUp() throws Exception {
+        m_table = new Table();
+        m_table.addColumn("i", int.class);
+        m_table.addColumn("l", long.class);
+        m_table.addColumn("f", float.class);
+        m_table.addColumn("d", double.class);
+        m_table.addColumn("s", String.class);
+        m_table.addColumn("b", boolean.class);
+
+        Random r = new Random(23);
+        m_table.addRows(300);
+        for ( int row=0; row<300; ++row ) {
+            m_table.setInt(row, "i", 1+r.nextInt(50));
+            m_table.setLong(row, "l", 1+r.nextInt(10));
+            m_table.setFloat(row, "f", 1+10*r.nextFloat());
+            m_table.setDouble(row, "d", 10*r.nextDouble());
+            m_table.setString(row, "s", "a"+r.nextInt(10));
+            m_table.setBoolean(row, "b", r.nextBoolean());
+        }
+        for ( int row=0; row<300; row+=7 )
+            m_table.removeRow(row);
+
+        // an unordered, sparse selection of valid rows
+        m_rows = new int[m_table.getRowCount()];
+        m_len = 0;
+        for ( int row=m_table.getMaximumRow(); row>=0; --row ) {
+            if ( m_table.isValidRow(row) && row % 3 != 0 )
+                m_rows[m_len++] = row;
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        m_table = null;
+        m_rows = null;
+    }
+
+    public void testComparisonPredicate() {
+        for ( int i=0; i<comparisons.length; ++i ) {
+            assertBatchEquivalent(comparisons[i], parse(comparisons[i]));
+        }
+    }
+
+    public void testRangePredicate() {
+        Expression[] mid = { new ColumnExpression("i"),
+                             new ColumnExpression("l"),
+                             new ColumnExpression("f"),
+                             new ColumnExpression("d") };
+        Expression[] lo = { new NumericLiteral(10), new NumericLiteral(2.5),
+                            new ColumnExpression("l") };
+        Expression[] hi = { new NumericLiteral(30), new NumericLiteral(7.5),
+                            parse("l * 3") };
+        int[] ops = { RangePredicate.IN_IN, RangePredicate.IN_EX,
+                      RangePredicate.EX_IN, RangePredicate.EX_EX };
+        for ( int k=0; k<ops.length; ++k ) {
+            for ( int j=0; j<lo.length; ++j ) {
+                for ( int m=0; m<mid.length; ++m ) {
+                    Predicate p = new RangePredicate(
+                            ops[k], mid[m], lo[j], hi[j]);
+                    assertBatchEquivalent(p.toString(), (Expression)p);
+                }
+            }
+        }
+    }
+
+    public void testArithmeticExpression() {
+        for ( int i=0; i<arithmetic.length; ++i ) {
+            assertBatchEquivalent(arithmetic[i], parse(arithmetic[i]));
+        }
+    }
+
+    public void testCompositePredicate() {
+        for ( int i=0; i<composites.length; ++i ) {
+            assertBatchEquivalent(composites[i], parse(composites[i]));
+        }
+        // empty conjunctions and disjunctions
+        assertBatchEquivalent("AND()", (Expression)new AndPredicate());
+        assertBatchEquivalent("OR()", (Expression)new OrPredicate());
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static Expression parse(String expr) {
+        Expression e = ExpressionParser.parse(expr, true);
+        assertNotNull(e);
+        return e;
+    }
+
+    private void assertBatchEquivalent(String msg, Expression e) {
+        AbstractExpression a = (AbstractExpression)e;
+        Class<?> type = e.getType(m_table.getSchema());
+
+        Object[] vals = new Object[m_len];
+        a.getValues(m_table, m_rows, m_len, vals);
+        for ( int i=0; i<m_len; ++i )
+            assertEquals(msg, e.get(tuple(i)), vals[i]);
+
+        if ( type == boolean.class ) {
+            BitSet bits = new BitSet();
+            // stale bits must be overwritten
+            bits.set(0, m_len);
+            a.getBooleans(m_table, m_rows, m_len, bits);
+            for ( int i=0; i<m_len; ++i )
+                assertEquals(msg, e.getBoolean(tuple(i)), bits.get(i));
+        } else if ( type == int.class ) {
+            int[] v = new int[m_len];
+            a.getInts(m_table, m_rows, m_len, v);
+            for ( int i=0; i<m_len; ++i )
+                assertEquals(msg, e.getInt(tuple(i)), v[i]);
+        } else if ( type == long.class ) {
+            long[] v = new long[m_len];
+            a.getLongs(m_table, m_rows, m_len, v);
+            for ( int i=0; i<m_len; ++i )
+                assertEquals(msg, e.getLong(tuple(i)), v[i]);
+        } else if ( type == float.class ) {
+            float[] v = new float[m_len];
+            a.getFloats(m_table, m_rows, m_len, v);
+            for ( int i=0; i<m_len; ++i ) {
+                assertEquals(msg, Float.floatToIntBits(e.getFloat(tuple(i))),
+                             Float.floatToIntBits(v[i]));
+            }
+        }
+        if ( type != boolean.class && type != String.class ) {
+            double[] v = new double[m_len];
+            a.getDoubles(m_table, m_rows, m_len, v);
+            for ( int i=0; i<m_len; ++i ) {
+                assertEquals(msg,
+                    Double.doubleToLongBits(e.getDouble(tuple(i))),
+                    Double.doubleToLongBits(v[i]));
+            }
+        }
+    }
+
+    private Tuple tuple(int i) {
+        return m_table.getTuple(m_rows[i]);
+    }
+
+}
@@ -0,0 +1,187 @@
+package test.prefuse.data.expression;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.data.Schema;
+import prefuse.data.Table;
+import prefuse.data.Tuple;
+import prefuse.data.expression.ColumnExpression;
+import prefuse.data.expression.ComparisonPredicate;
+import prefuse.data.expression.Expression;
+import prefuse.data.expression.NumericLiteral;
+import prefuse.data.expression.Predicate;
+import prefuse.data.expression.RangePredicate;
+import prefuse.data.expression.compiler.CompiledExpression;
+import prefuse.data.expression.compiler.ExpressionCompiler;
+import prefuse.data.expression.parser.ExpressionParser;
+import prefuse.util.PrefuseConfig;
+
+public class ExpressionCompilerTest extends TestCase {
+
+    private static final String COMPILE = "data.expression.compile";
+    
+    private static String[] expr = {
+        "i + l * 2",
+        "d / f - i",
+        "i / 3 + l / 7",
+        "i % 7",
+        "l % 3",
+        "f % 1.5",
+        "d ^ 2",
+        "i + 1.5",
+        "i < d",
+        "l >= f",
+        "s = 'a3'",
+        "s >= 'a5'",
+        "b AND i > 10",
+        "NOT b OR l = 4",
+        "i * 2 + 1 > 60 XOR b",
+        "IF i > 20 THEN d ELSE f",
+        "IF b THEN s ELSE 'none'",
+        "ABS(d - 5) > 2 AND i != 3",
+        "[s]",
+    };
+    
+    private String m_compile;
+    private Table m_table;
+    
+    protected void setUp() throws Exception {
+        m_compile = PrefuseConfig.get(COMPILE);
+        PrefuseConfig.getConfig().setProperty(COMPILE, "true");
+        
+        m_table = new Table();
+        m_table.addColumn("i", int.class);
+        m_table.addColumn("l", long.class);
+        m_table.addColumn("f", float.class);
+        m_table.addColumn("d", double.class);
+        m_table.addColumn("s", String.class);
+        m_table.addColumn("b", boolean.class);
+        
+        Random r = new Random(17);
+        m_table.addRows(500);
+        for ( int row=0; row<500; ++row ) {
+            m_table.setInt(row, "i", 1+r.nextInt(50));
+            m_table.setLong(row, "l", 1+r.nextInt(10));
+            m_table.setFloat(row, "f", 1+10*r.nextFloat());
+            m_table.setDouble(row, "d", 10*r.nextDouble());
+            m_table.setString(row, "s", "a"+r.nextInt(10));
+            m_table.setBoolean(row, "b", r.nextBoolean());
+        }
+        for ( int row=0; row<500; row+=9 )
+            m_table.removeRow(row);
+    }
+    
+    protected void tearDown() throws Exception {
+        PrefuseConfig.getConfig().setProperty(COMPILE, m_compile);
+        m_table = null;
+    }
+    
+    /**
+     * Compiled expressions evaluate the same values as the interpreter.
+     */
+    public void testCompiledEquivalence() {
+        Schema schema = m_table.getSchema();
+        for ( int i=0; i<expr.length; ++i ) {
+            Expression e = ExpressionParser.parse(expr[i], true);
+            Expression c = ExpressionCompiler.compile(e, schema);
+            assertTrue(expr[i], c instanceof CompiledExpression);
+            assertEquivalent(expr[i], e, c);
+        }
+    }
+    
+    public void testRangeEquivalence() {
+        Expression[] lo = { new NumericLiteral(10), new NumericLiteral(2.5),
+                            new ColumnExpression("l") };
+        Expression[] hi = { new NumericLiteral(30), new NumericLiteral(7.5),
+                            ExpressionParser.parse("l * 3", true) };
+        int[] ops = { RangePredicate.IN_IN, RangePredicate.IN_EX,
+                      RangePredicate.EX_IN, RangePredicate.EX_EX };
+        for ( int k=0; k<ops.length; ++k ) {
+            for ( int j=0; j<lo.length; ++j ) {
+                Predicate p = new RangePredicate(ops[k], new ColumnExpression(
+                        j==0 ? "i" : "f"), lo[j], hi[j]);
+                Expression c = ExpressionCompiler.compile(
+                        (Expression)p, m_table.getSchema());
+                assertTrue(p.toString(), c instanceof CompiledExpression);
+                assertEquivalent(p.toString(), p, c);
+            }
+        }
+    }
+    
+    /**
+     * Expressions that differ only in their constants share a generated
+     * class, while expressions evaluated on different types do not.
+     */
+    public void testClassSharing() {
+        Schema schema = m_table.getSchema();
+        Expression c1 = ExpressionCompiler.compile(
+                ExpressionParser.parse("i > 5 AND d < 2.5", true), schema);
+        Expression c2 = ExpressionCompiler.compile(
+                ExpressionParser.parse("i > 9 AND d < 7.0", true), schema);
+        assertSame(c1.getClass(), c2.getClass());
+        
+        Expression e3 = new ComparisonPredicate(ComparisonPredicate.GT,
+                new ColumnExpression("i"), new NumericLiteral(5));
+        Expression e4 = new ComparisonPredicate(ComparisonPredicate.GT,
+                new ColumnExpression("i"), new NumericLiteral(5.5));
+        Expression c3 = ExpressionCompiler.compile(e3, schema);
+        Expression c4 = ExpressionCompiler.compile(e4, schema);
+        assertTrue(c3.getClass() != c4.getClass());
+        assertEquivalent(e3.toString(), e3, c3);
+        assertEquivalent(e4.toString(), e4, c4);
+        assertEquivalent(c1.toString(), ((CompiledExpression)c1)
+                .getSourceExpression(), c1);
+        assertEquivalent(c2.toString(), ((CompiledExpression)c2)
+                .getSourceExpression(), c2);
+    }
+    
+    public void testCompileDisabled() {
+        PrefuseConfig.getConfig().setProperty(COMPILE, "false");
+        Expression e = ExpressionParser.parse("i + l * 2", true);
+        assertSame(e, ExpressionCompiler.compile(e, m_table.getSchema()));
+    }
+    
+    // ------------------------------------------------------------------------
+    
+    private void assertEquivalent(String msg, Expression e, Expression c) {
+        Class<?> type = e.getType(m_table.getSchema());
+        int[] rows = new int[m_table.getRowCount()];
+        int n = 0;
+        for ( int row=0; row<=m_table.getMaximumRow(); ++row ) {
+            if ( !m_table.isValidRow(row) ) continue;
+            rows[n++] = row;
+            Tuple t = m_table.getTuple(row);
+            assertEquals(msg, e.get(t), c.get(t));
+            if ( type == int.class ) {
+                assertEquals(msg, e.getInt(t), c.getInt(t));
+            } else if ( type == long.class ) {
+                assertEquals(msg, e.getLong(t), c.getLong(t));
+            } else if ( type == float.class ) {
+                assertEquals(msg, Float.floatToIntBits(e.getFloat(t)),
+                             Float.floatToIntBits(c.getFloat(t)));
+            } else if ( type == double.class ) {
+                assertEquals(msg, Double.doubleToLongBits(e.getDouble(t)),
+                             Double.doubleToLongBits(c.getDouble(t)));
+            } else if ( type == boolean.class ) {
+                assertEquals(msg, e.getBoolean(t), c.getBoolean(t));
+            }
+        }
+        
+        // batch evaluation
+        Object[] vals = new Object[n];
+        ((CompiledExpression)c).getValues(m_table, rows, n, vals);
+        for ( int i=0; i<n; ++i )
+            assertEquals(msg, e.get(m_table.getTuple(rows[i])), vals[i]);
+        if ( type == boolean.class ) {
+            BitSet bits = new BitSet();
+            ((CompiledExpression)c).getBooleans(m_table, rows, n, bits);
+            for ( int i=0; i<n; ++i ) {
+                assertEquals(msg, e.getBoolean(m_table.getTuple(rows[i])),
+                             bits.get(i));
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,148 @@
+package test.prefuse.data.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Date;
+
+import junit.framework.TestCase;
+import prefuse.data.DataReadOnlyException;
+import prefuse.data.Table;
+import prefuse.data.event.TableListener;
+import prefuse.data.io.BinaryTableReader;
+import prefuse.data.io.BinaryTableWriter;
+import prefuse.data.io.DataIOException;
+
+public class BinaryTableIOTest extends TestCase {
+
+    private static final int NROWS = 100;
+
+    private Table m_table;
+    private File m_file;
+
+    protected void setUp() throws Exception {
+        m_table = new Table();
+        m_table.addColumn("i", int.class, Integer.valueOf(-1));
+        m_table.addColumn("l", long.class);
+        m_table.addColumn("f", float.class);
+        m_table.addColumn("d", double.class);
+        m_table.addColumn("b", boolean.class);
+        m_table.addColumn("s", String.class);
+        m_table.addColumn("t", Date.class);
+        m_table.addColumn("o", Integer.class);
+
+        m_table.addRows(NROWS);
+        for ( int r=0; r<NROWS; ++r ) {
+            m_table.setInt(r, "i", r);
+            m_table.setLong(r, "l", (long)r << 33);
+            m_table.setFloat(r, "f", r / 3f);
+            m_table.setDouble(r, "d", r / 7.0);
+            m_table.setBoolean(r, "b", r % 2 == 0);
+            m_table.setString(r, "s", r % 5 == 0 ? null : "s"+r);
+            m_table.set(r, "t", new Date(1000000L * r));
+            m_table.set(r, "o", Integer.valueOf(r*r));
+        }
+        for ( int r=3; r<NROWS; r+=10 )
+            m_table.removeRow(r);
+
+        m_file = File.createTempFile("prefuse", ".pft");
+        m_file.deleteOnExit();
+        new BinaryTableWriter().writeTable(m_table, m_file);
+    }
+
+    protected void tearDown() throws Exception {
+        m_file.delete();
+        m_file = null;
+        m_table = null;
+    }
+
+    public void testStreamRoundTrip() throws DataIOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryTableWriter().writeTable(m_table, out);
+        Table t = new BinaryTableReader().readTable(
+                new ByteArrayInputStream(out.toByteArray()));
+        assertTablesEqual(m_table, t);
+
+        // columns copied from a stream can be modified and grown
+        t.setInt(0, "i", 42);
+        assertEquals(42, t.getInt(0, "i"));
+        int r = t.addRow();
+        assertEquals(-1, t.getInt(r, "i"));
+        assertTrue(t.removeRow(0));
+    }
+
+    public void testMappedRoundTrip() throws DataIOException {
+        Table t = new BinaryTableReader().readTable(m_file);
+        assertTablesEqual(m_table, t);
+
+        // private mappings can be modified without changing the file
+        t.setInt(0, "i", 42);
+        t.setDouble(1, "d", 42.0);
+        assertTrue(t.removeRow(2));
+        assertEquals(42, t.getInt(0, "i"));
+        assertTablesEqual(m_table, new BinaryTableReader().readTable(m_file));
+    }
+
+    public void testReadOnly() throws DataIOException {
+        Table t = new BinaryTableReader(true).readTable(m_file);
+        assertTablesEqual(m_table, t);
+
+        final int[] events = new int[1];
+        t.addTableListener(new TableListener() {
+            public void tableChanged(Table tt, int start, int end,
+                                     int col, int type)
+            {
+                ++events[0];
+            }
+        });
+
+        try {
+            t.setInt(0, "i", 42);
+            fail();
+        } catch ( DataReadOnlyException expected ) {
+        }
+        try {
+            t.removeRow(0);
+            fail();
+        } catch ( DataReadOnlyException expected ) {
+        }
+        try {
+            t.addRow();
+            fail();
+        } catch ( DataReadOnlyException expected ) {
+        }
+        try {
+            t.addRows(new String[] {"i"}, new Object[] {new int[] {1, 2}});
+            fail();
+        } catch ( DataReadOnlyException expected ) {
+        }
+        // removing an invalid row is not a change
+        assertFalse(t.removeRow(3));
+
+        // rejected changes leave the table intact and fire no events
+        assertEquals(0, events[0]);
+        assertTrue(t.isValidRow(0));
+        assertNotNull(t.getTuple(0));
+        assertTablesEqual(m_table, t);
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static void assertTablesEqual(Table a, Table b) {
+        assertEquals(a.getColumnCount(), b.getColumnCount());
+        assertEquals(a.getRowCount(), b.getRowCount());
+        assertEquals(a.getMaximumRow(), b.getMaximumRow());
+        for ( int c=0; c<a.getColumnCount(); ++c ) {
+            assertEquals(a.getColumnName(c), b.getColumnName(c));
+            assertEquals(a.getColumnType(c), b.getColumnType(c));
+        }
+        for ( int r=0; r<=a.getMaximumRow(); ++r ) {
+            assertEquals(a.isValidRow(r), b.isValidRow(r));
+            if ( !a.isValidRow(r) ) continue;
+            for ( int c=0; c<a.getColumnCount(); ++c ) {
+                assertEquals(a.get(r, c), b.get(r, c));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+package test.prefuse.data.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.Constants;
+import prefuse.data.Edge;
+import prefuse.data.Graph;
+import prefuse.data.Node;
+import prefuse.data.Tuple;
+import prefuse.data.util.AdjacencySnapshot;
+import prefuse.data.util.BreadthFirstIterator;
+import prefuse.util.collections.IntIterator;
+
+public class AdjacencySnapshotTest extends TestCase {
+
+    static final int NNODES = 200;
+    static final int NEDGES = 600;
+
+    static final int[] DIRECTIONS =
+        { Graph.OUTEDGES, Graph.INEDGES, Graph.UNDIRECTED };
+
+    Graph g;
+    Random rand;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        rand = new Random(11);
+        g = new Graph(true);
+        for ( int i=0; i<NNODES; ++i )
+            g.addNode();
+        for ( int i=0; i<NEDGES; ++i )
+            g.addEdge(rand.nextInt(NNODES), rand.nextInt(NNODES));
+    }
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        g = null;
+    }
+
+    private static ArrayList<Integer> rowList(IntIterator iter) {
+        ArrayList<Integer> list = new ArrayList<Integer>();
+        while ( iter.hasNext() )
+            list.add(Integer.valueOf(iter.nextInt()));
+        return list;
+    }
+
+    private static ArrayList<Object> list(Iterator<?> iter) {
+        ArrayList<Object> list = new ArrayList<Object>();
+        while ( iter.hasNext() )
+            list.add(iter.next());
+        return list;
+    }
+
+    /**
+     * Check that the snapshot lists the same edges and neighbors, in the
+     * same order, as the graph's link table.
+     */
+    private void assertSameAdjacency() {
+        AdjacencySnapshot adj = g.getAdjacency();
+        IntIterator nodes = g.nodeRows();
+        while ( nodes.hasNext() ) {
+            int u = nodes.nextInt();
+            for ( int d=0; d<DIRECTIONS.length; ++d ) {
+                int dir = DIRECTIONS[d];
+                ArrayList<Integer> edges = rowList(g.edgeRows(u, dir));
+                assertEquals(edges, rowList(adj.edgeRows(u, dir)));
+                assertEquals(edges.size(), adj.getDegree(u, dir));
+
+                ArrayList<Integer> nbrs = new ArrayList<Integer>();
+                for ( int i=0; i<edges.size(); ++i ) {
+                    int e = edges.get(i).intValue();
+                    int v = g.getAdjacentNode(e, u);
+                    nbrs.add(Integer.valueOf(v));
+                    assertEquals(e, adj.getEdge(u, dir, i));
+                    assertEquals(v, adj.getNeighbor(u, dir, i));
+                }
+                assertEquals(nbrs, rowList(adj.neighborRows(u, dir)));
+            }
+        }
+    }
+
+    /**
+     * Check that the neighbor iterators return the same sequences with
+     * and without the adjacency snapshot enabled.
+     */
+    private void assertSameNeighbors() {
+        ArrayList<?>[][] lists = new ArrayList<?>[2][];
+        for ( int k=0; k<2; ++k ) {
+            g.setAdjacencyEnabled(k == 1);
+            ArrayList<ArrayList<Object>> all =
+                new ArrayList<ArrayList<Object>>();
+            Iterator<?> nodes = g.nodes();
+            while ( nodes.hasNext() ) {
+                Node n = (Node)nodes.next();
+                all.add(list(g.neighbors(n)));
+                all.add(list(g.inNeighbors(n)));
+                all.add(list(g.outNeighbors(n)));
+            }
+            lists[k] = all.toArray(new ArrayList<?>[all.size()]);
+        }
+        g.setAdjacencyEnabled(false);
+        assertEquals(lists[0].length, lists[1].length);
+        for ( int i=0; i<lists[0].length; ++i )
+            assertEquals(lists[0][i], lists[1][i]);
+    }
+
+    private ArrayList<Object> traverse(Node root, int depth, int traversal) {
+        ArrayList<Object> list = new ArrayList<Object>();
+        BreadthFirstIterator bfs =
+            new BreadthFirstIterator(root, depth, traversal);
+        while ( bfs.hasNext() ) {
+            Tuple t = (Tuple)bfs.next();
+            list.add(t);
+            list.add(Integer.valueOf(bfs.getDepth(t)));
+        }
+        return list;
+    }
+
+    public void testNeighborOrder() {
+        assertFalse(g.isAdjacencyEnabled());
+        assertSameAdjacency();
+        assertSameNeighbors();
+    }
+
+    public void testUpdates() {
+        AdjacencySnapshot adj = g.getAdjacency();
+        adj.index();
+        assertTrue(adj.isValid());
+
+        for ( int i=0; i<50; ++i ) {
+            int e = rand.nextInt(NEDGES);
+            if ( g.getEdgeTable().isValidRow(e) )
+                g.removeEdge(e);
+        }
+        assertFalse(adj.isValid());
+        assertSameAdjacency();
+        assertSameNeighbors();
+
+        for ( int i=0; i<10; ++i ) {
+            int n = rand.nextInt(NNODES);
+            if ( g.getNodeTable().isValidRow(n) )
+                g.removeNode(n);
+        }
+        for ( int i=0; i<100; ++i ) {
+            Node s = g.addNode();
+            Node t = g.getNode(g.getNodeTable().getMaximumRow() / 2);
+            if ( t != null ) g.addEdge(s, t);
+        }
+        assertFalse(adj.isValid());
+        assertSameAdjacency();
+        assertSameNeighbors();
+    }
+
+    public void testTraversal() {
+        int[] traversals = { Constants.NODE_TRAVERSAL,
+            Constants.EDGE_TRAVERSAL, Constants.NODE_AND_EDGE_TRAVERSAL };
+        for ( int r=0; r<5; ++r ) {
+            Node root = g.getNode(rand.nextInt(NNODES));
+            for ( int t=0; t<traversals.length; ++t ) {
+                for ( int depth=1; depth<=4; ++depth ) {
+                    g.setAdjacencyEnabled(false);
+                    ArrayList<Object> a = traverse(root, depth, traversals[t]);
+                    g.setAdjacencyEnabled(true);
+                    ArrayList<Object> b = traverse(root, depth, traversals[t]);
+                    assertEquals(a, b);
+                }
+            }
+        }
+        g.setAdjacencyEnabled(false);
+    }
+
+    public void testEdgeBuffer() {
+        // a hub with more incident edges than the traversal buffers
+        Node hub = g.addNode();
+        for ( int i=0; i<100; ++i )
+            g.addEdge(hub, g.getNode(i));
+        Edge e = g.getEdge(g.getEdgeCount()-1);
+        assertEquals(hub, e.getSourceNode());
+        assertEquals(traverse(hub, 2, Constants.NODE_AND_EDGE_TRAVERSAL),
+            traverseEnabled(hub, 2, Constants.NODE_AND_EDGE_TRAVERSAL));
+    }
+
+    private ArrayList<Object> traverseEnabled(Node root, int depth,
+                                              int traversal)
+    {
+        g.setAdjacencyEnabled(true);
+        try {
+            return traverse(root, depth, traversal);
+        } finally {
+            g.setAdjacencyEnabled(false);
+        }
+    }
+
+}
@@ -13,6 +13,11 @@ public class All_PrefuseDataUtil_Tests {
         suite.addTestSuite(FloatIntTreeMapTest.class);
         suite.addTestSuite(DoubleIntTreeMapTest.class);
         suite.addTestSuite(ObjectIntTreeMapTest.class);
+        suite.addTestSuite(TreeIndexTest.class);
+        suite.addTestSuite(BitmapIndexTest.class);
+        suite.addTestSuite(AdjacencySnapshotTest.class);
+        suite.addTestSuite(FilterIteratorFactoryTest.class);
+        suite.addTestSuite(GraphTraversalTest.class);
         //$JUnit-END$
         return suite;
     }
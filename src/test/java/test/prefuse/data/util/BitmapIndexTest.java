@@ -0,0 +1,170 @@
+package test.prefuse.data.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.data.Table;
+import prefuse.data.expression.ColumnExpression;
+import prefuse.data.expression.NumericLiteral;
+import prefuse.data.expression.Predicate;
+import prefuse.data.expression.RangePredicate;
+import prefuse.data.expression.parser.ExpressionParser;
+import prefuse.data.util.BitmapIndex;
+import prefuse.data.util.FilterIteratorFactory;
+import prefuse.data.util.Index;
+import prefuse.util.collections.IntIterator;
+
+public class BitmapIndexTest extends TestCase {
+
+    static final int NROWS = 1000;
+    static final int NVALS = 5;
+
+    Table t;
+    BitmapIndex bidx, cidx;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        t = new Table();
+        t.addColumn("b", boolean.class);
+        t.addColumn("c", int.class);
+        t.addColumn("x", double.class);
+        t.addRows(NROWS);
+        Random rand = new Random(23);
+        for ( int r=0; r<NROWS; ++r ) {
+            t.setBoolean(r, "b", rand.nextBoolean());
+            t.setInt(r, "c", rand.nextInt(NVALS));
+            t.setDouble(r, "x", rand.nextDouble());
+        }
+        bidx = t.bitmapIndex("b");
+        cidx = t.bitmapIndex("c");
+    }
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        t = null;
+    }
+
+    private static int[] toArray(IntIterator iter) {
+        ArrayList<Integer> list = new ArrayList<Integer>();
+        while ( iter.hasNext() )
+            list.add(Integer.valueOf(iter.nextInt()));
+        int[] a = new int[list.size()];
+        for ( int i=0; i<a.length; ++i )
+            a[i] = list.get(i).intValue();
+        return a;
+    }
+
+    /**
+     * Rows with c in the given range, ordered by value, then by row.
+     */
+    private int[] bruteRange(int lo, int hi, boolean descending) {
+        ArrayList<Integer> list = new ArrayList<Integer>();
+        for ( int k=0; k<NVALS; ++k ) {
+            int v = descending ? NVALS-1-k : k;
+            if ( v < lo || v > hi ) continue;
+            IntIterator rows = t.rows();
+            while ( rows.hasNext() ) {
+                int r = rows.nextInt();
+                if ( t.getInt(r, "c") == v )
+                    list.add(Integer.valueOf(r));
+            }
+        }
+        int[] a = new int[list.size()];
+        for ( int i=0; i<a.length; ++i )
+            a[i] = list.get(i).intValue();
+        return a;
+    }
+
+    private int[] bruteFilter(Predicate p) {
+        ArrayList<Integer> list = new ArrayList<Integer>();
+        IntIterator rows = t.rows();
+        while ( rows.hasNext() ) {
+            int r = rows.nextInt();
+            if ( p.getBoolean(t.getTuple(r)) )
+                list.add(Integer.valueOf(r));
+        }
+        int[] a = new int[list.size()];
+        for ( int i=0; i<a.length; ++i )
+            a[i] = list.get(i).intValue();
+        return a;
+    }
+
+    private void assertIndexQueries() {
+        for ( int v=0; v<NVALS; ++v ) {
+            assertTrue(Arrays.equals(bruteRange(v, v, false),
+                                     toArray(cidx.rows(v))));
+        }
+        assertTrue(Arrays.equals(bruteRange(1, 3, false),
+                                 toArray(cidx.rows(1, 3, Index.TYPE_AII))));
+        assertTrue(Arrays.equals(bruteRange(2, 3, false),
+                                 toArray(cidx.rows(1, 3, Index.TYPE_AEI))));
+        assertTrue(Arrays.equals(bruteRange(1, 3, true),
+                                 toArray(cidx.rows(1, 3, Index.TYPE_DII))));
+        assertTrue(Arrays.equals(bruteRange(0, NVALS, true),
+                                 toArray(cidx.allRows(Index.TYPE_DII))));
+        assertEquals(bruteRange(0, NVALS, false).length, cidx.size());
+
+        Predicate p = ExpressionParser.predicate("b");
+        assertTrue(Arrays.equals(bruteFilter(p),
+                                 toArray(bidx.rows(true))));
+    }
+
+    private void assertFilter(Predicate p) {
+        int[] rows = toArray(FilterIteratorFactory.rows(t, p));
+        Arrays.sort(rows);
+        assertTrue(p.toString(), Arrays.equals(bruteFilter(p), rows));
+    }
+
+    private void assertFilters() {
+        assertFilter(ExpressionParser.predicate("b"));
+        assertFilter(ExpressionParser.predicate("NOT b"));
+        assertFilter(ExpressionParser.predicate("c = 2"));
+        assertFilter(ExpressionParser.predicate("c != 2"));
+        assertFilter(ExpressionParser.predicate("c >= 3"));
+        assertFilter(ExpressionParser.predicate("b AND c < 2"));
+        assertFilter(ExpressionParser.predicate("NOT b OR c = 4"));
+        assertFilter(ExpressionParser.predicate("NOT (b AND c > 0)"));
+        assertFilter(ExpressionParser.predicate("b AND x > 0.5"));
+        assertFilter(ExpressionParser.predicate("c = 1 AND x < 0.25"));
+        assertFilter(new RangePredicate(new ColumnExpression("c"),
+            new NumericLiteral(1), new NumericLiteral(3)));
+        assertFilter(new RangePredicate(RangePredicate.EX_EX,
+            new ColumnExpression("c"),
+            new NumericLiteral(0), new NumericLiteral(4)));
+    }
+
+    public void testQueries() {
+        assertIndexQueries();
+        assertFilters();
+    }
+
+    public void testUpdates() {
+        Random rand = new Random(5);
+        for ( int i=0; i<500; ++i ) {
+            int r = rand.nextInt(NROWS);
+            if ( !t.isValidRow(r) ) continue;
+            t.setBoolean(r, "b", rand.nextBoolean());
+            t.setInt(r, "c", rand.nextInt(NVALS));
+        }
+        for ( int i=0; i<200; ++i ) {
+            t.removeRow(rand.nextInt(NROWS));
+        }
+        for ( int i=0; i<100; ++i ) {
+            int r = t.addRow();
+            t.setBoolean(r, "b", rand.nextBoolean());
+            t.setInt(r, "c", rand.nextInt(NVALS));
+        }
+        assertIndexQueries();
+        assertFilters();
+    }
+
+    public void testDefaultIndex() {
+        assertFalse(t.index("x") instanceof BitmapIndex);
+        Table s = new Table();
+        s.addColumn("b", boolean.class);
+        assertFalse(s.index("b") instanceof BitmapIndex);
+    }
+
+}
@@ -0,0 +1,141 @@
+package test.prefuse.data.util;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.data.Table;
+import prefuse.data.Tuple;
+import prefuse.data.expression.Predicate;
+import prefuse.data.expression.parser.ExpressionParser;
+import prefuse.data.util.FilterIteratorFactory;
+import prefuse.util.PrefuseConfig;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * Checks parallel table scans against a serial scan of the same rows.
+ */
+public class FilterIteratorFactoryTest extends TestCase {
+
+    private static final String THRESHOLD = "data.filter.parallelThreshold";
+    private static final String COMPILE = "data.expression.compile";
+    private static final int NROWS = 60000;
+
+    private static String[] predicates = {
+        "i < 500",
+        "d > 0.5 AND i % 3 = 0",
+        "s = 'a3' OR s = 'a7'",
+        "b XOR i > 900",
+        "NOT (i >= 100 AND i <= 800)",
+        "i > 5000",
+        "[i2] < 10",
+    };
+
+    private String m_threshold;
+    private String m_compile;
+    private Table m_table;
+
+    protected void setUp() throws Exception {
+        m_threshold = PrefuseConfig.get(THRESHOLD);
+        m_compile = PrefuseConfig.get(COMPILE);
+        PrefuseConfig.getConfig().setProperty(THRESHOLD, "1000");
+
+        m_table = new Table();
+        m_table.addColumn("i", int.class);
+        m_table.addColumn("d", double.class);
+        m_table.addColumn("s", String.class);
+        m_table.addColumn("b", boolean.class);
+        m_table.addRows(NROWS);
+        Random r = new Random(5);
+        for ( int row=0; row<NROWS; ++row ) {
+            m_table.setInt(row, "i", r.nextInt(1000));
+            m_table.setDouble(row, "d", r.nextDouble());
+            m_table.setString(row, "s", "a"+r.nextInt(10));
+            m_table.setBoolean(row, "b", r.nextBoolean());
+        }
+        // a derived column, which is not scanned in parallel
+        m_table.addColumn("i2", "i * 2");
+        // scattered removed rows, and an empty stretch spanning a task
+        for ( int row=0; row<NROWS; row+=7 )
+            m_table.removeRow(row);
+        for ( int row=20000; row<30000; ++row )
+            m_table.removeRow(row);
+    }
+
+    protected void tearDown() throws Exception {
+        PrefuseConfig.getConfig().setProperty(THRESHOLD, m_threshold);
+        PrefuseConfig.getConfig().setProperty(COMPILE, m_compile);
+        m_table = null;
+    }
+
+    public void testParallelScan() {
+        checkPredicates();
+    }
+
+    public void testCompiledParallelScan() {
+        PrefuseConfig.getConfig().setProperty(COMPILE, "true");
+        checkPredicates();
+    }
+
+    public void testSerialScan() {
+        PrefuseConfig.getConfig().setProperty(THRESHOLD, "0");
+        checkPredicates();
+    }
+
+    // ------------------------------------------------------------------------
+
+    private void checkPredicates() {
+        for ( int i=0; i<predicates.length; ++i ) {
+            Predicate p =
+                (Predicate)ExpressionParser.parse(predicates[i], true);
+            int[] expected = serialScan(p);
+
+            assertRows(predicates[i], expected,
+                       FilterIteratorFactory.rows(m_table, p));
+            assertRows(predicates[i], expected,
+                       FilterIteratorFactory.filterRows(m_table, p));
+
+            Iterator<?> tuples = FilterIteratorFactory.tuples(m_table, p);
+            int n = 0;
+            while ( tuples.hasNext() ) {
+                assertTrue(predicates[i], n < expected.length);
+                Tuple t = (Tuple)tuples.next();
+                assertEquals(predicates[i], expected[n++], t.getRow());
+            }
+            assertEquals(predicates[i], expected.length, n);
+        }
+    }
+
+    private int[] serialScan(Predicate p) {
+        int[] rows = new int[m_table.getRowCount()];
+        int n = 0;
+        for ( int row=0; row<=m_table.getMaximumRow(); ++row ) {
+            if ( m_table.isValidRow(row) &&
+                 p.getBoolean(m_table.getTuple(row)) )
+            {
+                rows[n++] = row;
+            }
+        }
+        int[] a = new int[n];
+        System.arraycopy(rows, 0, a, 0, n);
+        return a;
+    }
+
+    private static void assertRows(String msg, int[] expected,
+                                   IntIterator iter)
+    {
+        int n = 0;
+        while ( iter.hasNext() ) {
+            assertTrue(msg, n < expected.length);
+            assertEquals(msg, expected[n++], iter.nextInt());
+        }
+        assertEquals(msg, expected.length, n);
+    }
+
+    private static void assertRows(String msg, int[] expected, int[] rows) {
+        assertEquals(msg, expected.length, rows.length);
+        for ( int i=0; i<rows.length; ++i )
+            assertEquals(msg, expected[i], rows[i]);
+    }
+
+}
@@ -0,0 +1,303 @@
+package test.prefuse.data.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.Constants;
+import prefuse.data.Graph;
+import prefuse.data.Node;
+import prefuse.data.Tuple;
+import prefuse.data.util.BreadthFirstIterator;
+import prefuse.data.util.GraphTraversal;
+import prefuse.util.collections.IntIterator;
+
+public class GraphTraversalTest extends TestCase {
+
+    static final int NNODES = 300;
+    static final int NEDGES = 500;
+
+    static final int[] DIRECTIONS =
+        { Graph.OUTEDGES, Graph.INEDGES, Graph.UNDIRECTED };
+
+    Graph g;
+    Random rand;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        rand = new Random(23);
+        g = new Graph(true);
+        for ( int i=0; i<NNODES; ++i )
+            g.addNode();
+        for ( int i=0; i<NEDGES; ++i )
+            g.addEdge(rand.nextInt(NNODES), rand.nextInt(NNODES));
+        // leave holes in the node and edge tables
+        for ( int i=0; i<NNODES; i+=13 )
+            g.removeNode(i);
+        for ( int i=0; i<NEDGES; i+=17 ) {
+            if ( g.getEdgeTable().isValidRow(i) )
+                g.removeEdge(i);
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        g = null;
+    }
+
+    /**
+     * Node and edge depths match those of the BreadthFirstIterator.
+     */
+    public void testBreadthFirstDepths() {
+        GraphTraversal gt = new GraphTraversal(g);
+        for ( int depth=0; depth<5; ++depth ) {
+            for ( int s=1; s<NNODES; s+=29 ) {
+                if ( !g.getNodeTable().isValidRow(s) ) continue;
+                int[] src = { s };
+                int n = gt.breadthFirst(src, 1, depth,
+                                        Graph.UNDIRECTED, true, null);
+
+                BreadthFirstIterator bfs = new BreadthFirstIterator(
+                    g.getNode(s), depth, Constants.NODE_AND_EDGE_TRAVERSAL);
+                int nodes = 0, edges = 0;
+                while ( bfs.hasNext() ) {
+                    Tuple t = (Tuple)bfs.next();
+                    if ( t instanceof Node ) {
+                        ++nodes;
+                        assertEquals(bfs.getDepth(t), gt.getDepth(t.getRow()));
+                    } else {
+                        ++edges;
+                        assertEquals(bfs.getDepth(t),
+                                     gt.getEdgeDepth(t.getRow()));
+                    }
+                }
+                assertEquals(nodes, n);
+                assertEquals(nodes, gt.getNodeCount());
+                assertEquals(edges, gt.getEdgeCount());
+            }
+        }
+    }
+
+    /**
+     * Directed traversals follow only the requested links, and visit
+     * nodes in order of increasing depth.
+     */
+    public void testDirectedBreadthFirst() {
+        GraphTraversal gt = new GraphTraversal(g);
+        for ( int d=0; d<DIRECTIONS.length; ++d ) {
+            int dir = DIRECTIONS[d];
+            int[] src = { 1, 2, 3 };
+            gt.breadthFirst(src, src.length, 4, dir, false, null);
+            assertEquals(0, gt.getEdgeCount());
+            int[] expected = distances(src, dir);
+
+            int prev = 0;
+            for ( int i=0; i<gt.getNodeCount(); ++i ) {
+                int depth = gt.getDepth(gt.getNode(i));
+                assertTrue(depth >= prev);
+                prev = depth;
+            }
+            for ( int u=0; u<NNODES; ++u ) {
+                int e = expected[u] <= 4 ? expected[u] : -1;
+                assertEquals(e, gt.getDepth(u));
+            }
+        }
+    }
+
+    /**
+     * Each traversal reports only its own results, even though the
+     * state arrays are reused between traversals.
+     */
+    public void testReuse() {
+        GraphTraversal gt = new GraphTraversal(g);
+        GraphTraversal fresh;
+        for ( int i=0; i<20; ++i ) {
+            int s = 1 + rand.nextInt(NNODES-1);
+            if ( !g.getNodeTable().isValidRow(s) ) continue;
+            int depth = rand.nextInt(4);
+            int dir = DIRECTIONS[i % DIRECTIONS.length];
+            int[] src = { s };
+            if ( i % 2 == 0 ) {
+                gt.breadthFirst(src, 1, depth, dir, true, null);
+                fresh = new GraphTraversal(g);
+                fresh.breadthFirst(src, 1, depth, dir, true, null);
+            } else {
+                gt.depthFirst(s, depth, dir, null);
+                fresh = new GraphTraversal(g);
+                fresh.depthFirst(s, depth, dir, null);
+            }
+            assertSameResults(fresh, gt);
+
+            // grow the graph between some runs
+            if ( i % 5 == 4 ) {
+                Node n = g.addNode();
+                g.addEdge(n, g.getNode(s));
+            }
+        }
+
+        // an out of range source visits nothing
+        int[] src = { -1, NNODES * 10 };
+        assertEquals(0, gt.breadthFirst(src, 2, 3,
+                                        Graph.UNDIRECTED, true, null));
+        assertEquals(0, gt.getEdgeCount());
+        assertEquals(-1, gt.getDepth(1));
+        assertEquals(0, gt.depthFirst(-1, 3, Graph.UNDIRECTED, null));
+    }
+
+    /**
+     * Depth-first traversals visit each reachable node once, and each
+     * node is one deeper than an adjacent node visited before it.
+     */
+    public void testDepthFirst() {
+        GraphTraversal gt = new GraphTraversal(g);
+        for ( int d=0; d<DIRECTIONS.length; ++d ) {
+            int dir = DIRECTIONS[d];
+            int n = gt.depthFirst(1, Integer.MAX_VALUE, dir, null);
+            int[] expected = distances(new int[] { 1 }, dir);
+            int reachable = 0;
+            for ( int u=0; u<NNODES; ++u ) {
+                if ( expected[u] == Integer.MAX_VALUE ) {
+                    assertEquals(-1, gt.getDepth(u));
+                } else {
+                    ++reachable;
+                    assertTrue(gt.getDepth(u) >= expected[u]);
+                }
+            }
+            assertEquals(reachable, n);
+
+            BitSet seen = new BitSet();
+            seen.set(gt.getNode(0));
+            assertEquals(0, gt.getDepth(gt.getNode(0)));
+            for ( int i=1; i<n; ++i ) {
+                int u = gt.getNode(i);
+                assertFalse(seen.get(u));
+                boolean parent = false;
+                for ( IntIterator nb = neighbors(u, reverse(dir));
+                      nb.hasNext(); )
+                {
+                    int w = nb.nextInt();
+                    if ( seen.get(w) && gt.getDepth(w) == gt.getDepth(u)-1 )
+                        parent = true;
+                }
+                assertTrue(parent);
+                seen.set(u);
+            }
+
+            gt.depthFirst(1, 2, dir, null);
+            for ( int i=0; i<gt.getNodeCount(); ++i )
+                assertTrue(gt.getDepth(gt.getNode(i)) <= 2);
+        }
+    }
+
+    /**
+     * The bitset and visitor outputs match the queried results.
+     */
+    public void testOutputs() {
+        GraphTraversal gt = new GraphTraversal(g);
+        int[] src = { 1, 5 };
+        gt.breadthFirst(src, src.length, 3, Graph.UNDIRECTED, true, null);
+
+        BitSet nodes = gt.getVisitedNodes(null);
+        BitSet edges = gt.getVisitedEdges(new BitSet());
+        assertEquals(gt.getNodeCount(), nodes.cardinality());
+        assertEquals(gt.getEdgeCount(), edges.cardinality());
+        for ( int u=0; u<NNODES; ++u )
+            assertEquals(nodes.get(u), gt.getDepth(u) >= 0);
+        for ( int e=0; e<=g.getEdgeTable().getMaximumRow(); ++e )
+            assertEquals(edges.get(e), gt.getEdgeDepth(e) >= 0);
+
+        // bits are added to an existing set
+        BitSet bits = new BitSet();
+        bits.set(NNODES * 2);
+        gt.getVisitedNodes(bits);
+        assertEquals(nodes.cardinality()+1, bits.cardinality());
+
+        final int[] counts = new int[2];
+        final GraphTraversal t = gt;
+        GraphTraversal.Visitor v = new GraphTraversal.Visitor() {
+            public void visitNode(int node, int depth) {
+                assertEquals(t.getNode(counts[0]++), node);
+                assertEquals(t.getDepth(node), depth);
+            }
+            public void visitEdge(int edge, int depth) {
+                assertEquals(t.getEdge(counts[1]++), edge);
+                assertEquals(t.getEdgeDepth(edge), depth);
+            }
+        };
+        gt.breadthFirst(src, src.length, 3, Graph.UNDIRECTED, true, v);
+        assertEquals(gt.getNodeCount(), counts[0]);
+        assertEquals(gt.getEdgeCount(), counts[1]);
+
+        try {
+            gt.getNode(gt.getNodeCount());
+            fail();
+        } catch ( IndexOutOfBoundsException e ) {
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private void assertSameResults(GraphTraversal a, GraphTraversal b) {
+        assertEquals(a.getNodeCount(), b.getNodeCount());
+        assertEquals(a.getEdgeCount(), b.getEdgeCount());
+        for ( int i=0; i<a.getNodeCount(); ++i )
+            assertEquals(a.getNode(i), b.getNode(i));
+        for ( int i=0; i<a.getEdgeCount(); ++i )
+            assertEquals(a.getEdge(i), b.getEdge(i));
+        int max = g.getNodeTable().getMaximumRow();
+        for ( int u=0; u<=max; ++u )
+            assertEquals(a.getDepth(u), b.getDepth(u));
+        max = g.getEdgeTable().getMaximumRow();
+        for ( int e=0; e<=max; ++e )
+            assertEquals(a.getEdgeDepth(e), b.getEdgeDepth(e));
+        assertEquals(a.getVisitedNodes(null), b.getVisitedNodes(null));
+        assertEquals(a.getVisitedEdges(null), b.getVisitedEdges(null));
+    }
+
+    /**
+     * Reference shortest path distances, using the graph's own iterators.
+     */
+    private int[] distances(int[] src, int dir) {
+        int[] dist = new int[NNODES];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        int[] queue = new int[NNODES];
+        int head = 0, tail = 0;
+        for ( int i=0; i<src.length; ++i ) {
+            if ( g.getNodeTable().isValidRow(src[i]) && dist[src[i]] != 0 ) {
+                dist[src[i]] = 0;
+                queue[tail++] = src[i];
+            }
+        }
+        while ( head < tail ) {
+            int u = queue[head++];
+            for ( IntIterator nb = neighbors(u, dir); nb.hasNext(); ) {
+                int w = nb.nextInt();
+                if ( dist[w] == Integer.MAX_VALUE ) {
+                    dist[w] = dist[u] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return dist;
+    }
+
+    private IntIterator neighbors(final int u, int dir) {
+        final IntIterator edges = g.edgeRows(u, dir);
+        return new IntIterator() {
+            public boolean hasNext() {
+                return edges.hasNext();
+            }
+            public int nextInt() {
+                return g.getAdjacentNode(edges.nextInt(), u);
+            }
+        };
+    }
+
+    private static int reverse(int dir) {
+        if ( dir == Graph.OUTEDGES ) return Graph.INEDGES;
+        if ( dir == Graph.INEDGES ) return Graph.OUTEDGES;
+        return dir;
+    }
+
+}
@@ -0,0 +1,133 @@
+package test.prefuse.data.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.data.Table;
+import prefuse.data.column.ColumnFactory;
+import prefuse.data.column.DictionaryColumn;
+import prefuse.data.util.Index;
+import prefuse.util.collections.IntIterator;
+
+public class TreeIndexTest extends TestCase {
+
+    static final int NROWS = 500;
+    static final String[] WORDS =
+        { "apple", "banana", "cherry", "date", "elder", "fig", "grape" };
+
+    Table t;
+    Index dict, plain;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        t = new Table();
+        t.addColumn("d", String.class, null, ColumnFactory.DICTIONARY);
+        t.addColumn("s", String.class);
+        t.addColumn("n", Integer.class, null, ColumnFactory.DICTIONARY);
+        t.addRows(NROWS);
+        Random rand = new Random(42);
+        for ( int r=0; r<NROWS; ++r ) {
+            String w = WORDS[rand.nextInt(WORDS.length)];
+            t.set(r, "d", w);
+            t.set(r, "s", w);
+            t.set(r, "n", Integer.valueOf(rand.nextInt(20)));
+        }
+        dict = t.index("d");
+        plain = t.index("s");
+    }
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        t = null;
+    }
+
+    private static int[] sorted(IntIterator iter) {
+        int[] a = new int[NROWS];
+        int n = 0;
+        while ( iter.hasNext() )
+            a[n++] = iter.nextInt();
+        int[] b = new int[n];
+        System.arraycopy(a, 0, b, 0, n);
+        Arrays.sort(b);
+        return b;
+    }
+
+    private void assertSameRows(Object lo, Object hi, int type) {
+        assertTrue(Arrays.equals(sorted(plain.rows(lo, hi, type)),
+                                 sorted(dict.rows(lo, hi, type))));
+    }
+
+    public void testRangeQueries() {
+        assertSameRows("banana", "elder", Index.TYPE_AII);
+        assertSameRows("banana", "elder", Index.TYPE_AEE);
+        assertSameRows("b", "e", Index.TYPE_AII);
+        assertSameRows(null, "cherry", Index.TYPE_DII);
+        assertSameRows("fig", null, Index.TYPE_AIE);
+        assertSameRows("cherry", "cherry", Index.TYPE_AII);
+        assertSameRows("zebra", "zebra", Index.TYPE_AII);
+    }
+
+    public void testUpdates() {
+        Random rand = new Random(7);
+        for ( int i=0; i<2000; ++i ) {
+            int r = rand.nextInt(NROWS);
+            String w = WORDS[rand.nextInt(WORDS.length)] + rand.nextInt(3);
+            t.set(r, "d", w);
+            t.set(r, "s", w);
+        }
+        assertSameRows(null, null, Index.TYPE_AII);
+        assertSameRows("banana", "elder1", Index.TYPE_AII);
+        assertSameRows("cherry2", "cherry2", Index.TYPE_AII);
+    }
+
+    public void testGet() {
+        int row = dict.get("cherry");
+        assertTrue(row >= 0);
+        assertEquals("cherry", t.getString(row, "d"));
+        assertEquals(Integer.MIN_VALUE, dict.get("zebra"));
+    }
+
+    public void testIntegerValues() {
+        Index idx = t.index("n");
+        int[] rows = sorted(idx.rows(3, 5, Index.TYPE_AII));
+        int count = 0;
+        for ( int r=0; r<NROWS; ++r ) {
+            int v = ((Integer)t.get(r, "n")).intValue();
+            if ( v >= 3 && v <= 5 ) ++count;
+        }
+        assertEquals(count, rows.length);
+        for ( int i=0; i<rows.length; ++i ) {
+            int v = ((Integer)t.get(rows[i], "n")).intValue();
+            assertTrue(v >= 3 && v <= 5);
+        }
+        int row = idx.get(7);
+        assertTrue(row < 0 || ((Integer)t.get(row, "n")).intValue() == 7);
+    }
+
+    public void testCodeReuse() {
+        DictionaryColumn col = (DictionaryColumn)t.getColumn("d");
+        for ( int r=0; r<NROWS; ++r )
+            t.set(r, "d", "a"+r);
+        int size = col.getDictionarySize();
+        assertEquals(-1, col.getCode("apple"));
+        for ( int r=0; r<NROWS; ++r )
+            t.set(r, "d", "b"+r);
+        assertEquals(size, col.getDictionarySize());
+        for ( int r=0; r<NROWS; ++r ) {
+            t.set(r, "s", "b"+r);
+        }
+        assertSameRows("b1", "b3", Index.TYPE_AII);
+        assertSameRows(null, null, Index.TYPE_AII);
+    }
+
+    public void testRowBounds() {
+        DictionaryColumn col = (DictionaryColumn)t.getColumn("d");
+        try {
+            col.getCode(col.getRowCount());
+            fail("Row past the end of the column should be rejected");
+        } catch ( IllegalArgumentException success ) {
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+package test.prefuse.render;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+import prefuse.Constants;
+import prefuse.Display;
+import prefuse.Visualization;
+import prefuse.data.Table;
+import prefuse.render.DefaultRendererFactory;
+import prefuse.render.LabelRenderer;
+import prefuse.util.ColorLib;
+import prefuse.visual.VisualItem;
+import prefuse.visual.VisualTable;
+
+public class LabelRendererTest extends TestCase {
+
+    private static final int SIZE = 400;
+
+    private Visualization m_vis;
+    private LabelRenderer m_lr;
+
+    public void setUp() {
+        Table t = new Table();
+        t.addColumn("label", String.class);
+        t.addColumn("image", String.class);
+
+        m_vis = new Visualization();
+        m_lr = new LabelRenderer("label", "image");
+        m_lr.getImageFactory().addImage("icon", createIcon());
+        m_vis.setRendererFactory(new DefaultRendererFactory(m_lr));
+
+        VisualTable vt = m_vis.addTable("t", t);
+        for ( int i=0; i<400; ++i ) {
+            int row = t.addRow();
+            t.set(row, "label", "");
+            t.set(row, "image", "icon");
+            VisualItem item = vt.getItem(row);
+            item.setX(10 + (i%20)*19.3);
+            item.setY(10 + (i/20)*19.7);
+            // a fractional size forces the transformed image draw
+            item.setSize(1.5);
+            item.setFillColor(ColorLib.gray(255));
+            item.setStrokeColor(ColorLib.gray(0));
+        }
+    }
+
+    private static BufferedImage createIcon() {
+        BufferedImage icon =
+            new BufferedImage(6, 6, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = icon.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 6, 6);
+        g.setColor(Color.BLUE);
+        g.fillRect(0, 0, 3, 3);
+        g.dispose();
+        return icon;
+    }
+
+    private BufferedImage paint(int threads) {
+        Display d = new Display(m_vis);
+        d.setSize(SIZE, SIZE);
+        d.setHighQuality(false);
+        d.setRenderThreadCount(threads);
+        d.setRenderTileSize(32);
+
+        BufferedImage img =
+            new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        d.paintDisplay(g, new Dimension(SIZE, SIZE));
+        g.dispose();
+        return img;
+    }
+
+    private static int countDiffs(BufferedImage a, BufferedImage b) {
+        int diffs = 0;
+        for ( int x=0; x<SIZE; ++x )
+            for ( int y=0; y<SIZE; ++y )
+                if ( a.getRGB(x, y) != b.getRGB(x, y) ) ++diffs;
+        return diffs;
+    }
+
+    /**
+     * Image labels rendered by concurrent tiles must match a serial render.
+     */
+    public void testTiledImageLabels() {
+        BufferedImage serial = paint(1);
+
+        int red = 0;
+        for ( int x=0; x<SIZE; ++x )
+            for ( int y=0; y<SIZE; ++y )
+                if ( (serial.getRGB(x, y) & 0xffffff) == 0xff0000 ) ++red;
+        assertTrue(red > 0);
+
+        for ( int i=0; i<20; ++i ) {
+            assertEquals(0, countDiffs(serial, paint(4)));
+        }
+    }
+
+    /**
+     * Changing layout settings that are not part of the sprite key must
+     * discard the cached sprites.
+     */
+    public void testSpriteCacheInvalidation() {
+        Table t = new Table();
+        t.addColumn("label", String.class);
+        Visualization vis = new Visualization();
+        LabelRenderer lr = new LabelRenderer("label");
+        lr.setSpriteCacheSize(16);
+        vis.setRendererFactory(new DefaultRendererFactory(lr));
+        VisualTable vt = vis.addTable("t", t);
+        for ( int i=0; i<10; ++i ) {
+            int row = t.addRow();
+            t.set(row, "label", "abc");
+            VisualItem item = vt.getItem(row);
+            item.setX(20 + 30*i);
+            item.setY(20);
+            item.setTextColor(ColorLib.gray(0));
+            item.setFillColor(ColorLib.gray(200));
+            item.setStrokeColor(ColorLib.gray(0));
+        }
+
+        assertEquals(0.9, ShapeRendererTest.renderFrame(vis, "t"), 1e-9);
+        assertEquals(1.0, ShapeRendererTest.renderFrame(vis, "t"), 1e-9);
+
+        lr.setHorizontalTextAlignment(Constants.LEFT);
+        assertEquals(0.9, ShapeRendererTest.renderFrame(vis, "t"), 1e-9);
+        lr.setVerticalTextAlignment(Constants.TOP);
+        assertEquals(0.9, ShapeRendererTest.renderFrame(vis, "t"), 1e-9);
+        lr.setRoundedCorner(8, 8);
+        assertEquals(0.9, ShapeRendererTest.renderFrame(vis, "t"), 1e-9);
+        lr.setHorizontalPadding(6);
+        assertEquals(0.9, ShapeRendererTest.renderFrame(vis, "t"), 1e-9);
+        lr.setVerticalPadding(6);
+        assertEquals(0.9, ShapeRendererTest.renderFrame(vis, "t"), 1e-9);
+        assertEquals(1.0, ShapeRendererTest.renderFrame(vis, "t"), 1e-9);
+    }
+
+    // ------------------------------------------------------------------------
+    // Minimum Text Height
+
+    private static VisualItem createLabel(LabelRenderer lr) {
+        Table t = new Table();
+        t.addColumn("label", String.class);
+        Visualization vis = new Visualization();
+        vis.setRendererFactory(new DefaultRendererFactory(lr));
+        VisualTable vt = vis.addTable("t", t);
+        int row = t.addRow();
+        t.set(row, "label", "MMMM");
+        VisualItem item = vt.getItem(row);
+        item.setTextColor(ColorLib.gray(0));
+        item.setFillColor(ColorLib.gray(255));
+        item.setStrokeColor(ColorLib.rgb(255, 0, 0));
+        item.validateBounds();
+        return item;
+    }
+
+    /**
+     * Draw an item centered in an image, and count the text pixels.
+     */
+    private static int countText(VisualItem item, double scale,
+                                 double theta, Object minHeight)
+    {
+        BufferedImage img =
+            new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 200, 200);
+        if ( minHeight != null )
+            g.setRenderingHint(LabelRenderer.KEY_MIN_TEXT_HEIGHT, minHeight);
+        g.translate(100, 100);
+        g.rotate(theta);
+        g.scale(scale, scale);
+        item.getRenderer().render(g, item);
+        g.dispose();
+        return countText(img);
+    }
+
+    private static int countText(BufferedImage img) {
+        int n = 0;
+        for ( int x=0; x<img.getWidth(); ++x ) {
+            for ( int y=0; y<img.getHeight(); ++y ) {
+                int c = img.getRGB(x, y);
+                // dark pixels, as opposed to the white fill and red stroke
+                if ( ColorLib.red(c) < 128 && ColorLib.green(c) < 128 )
+                    ++n;
+            }
+        }
+        return n;
+    }
+
+    public void testMinimumTextHeight() {
+        LabelRenderer lr = new LabelRenderer("label");
+        assertEquals(0.0, lr.getMinimumTextHeight(), 0);
+        VisualItem item = createLabel(lr);
+        double half = 0.5; // 10 point text drawn 5 pixels high
+
+        // off by default, so even small text is drawn
+        assertTrue(countText(item, half, 0, null) > 0);
+
+        lr.setMinimumTextHeight(8);
+        assertEquals(0, countText(item, half, 0, null));
+        assertEquals(0, countText(item, half, Math.PI/2, null));
+        assertEquals(0, countText(item, half, Math.PI/6, null));
+        assertTrue(countText(item, 2, Math.PI/2, null) > 0);
+        lr.setMinimumTextHeight(4);
+        assertTrue(countText(item, half, 0, null) > 0);
+        assertTrue(countText(item, half, Math.PI/2, null) > 0);
+
+        // the rendering hint applies in addition to the renderer setting
+        lr.setMinimumTextHeight(0);
+        assertEquals(0, countText(item, half, 0, Double.valueOf(8)));
+        assertTrue(countText(item, half, 0, Double.valueOf(4)) > 0);
+        assertTrue(countText(item, 2, 0, Double.valueOf(8)) > 0);
+        lr.setMinimumTextHeight(8);
+        assertEquals(0, countText(item, half, 0, Double.valueOf(4)));
+    }
+
+    /**
+     * Labels skipped for their size never end up in the sprite cache, and
+     * cached sprites are not drawn for labels that are too small.
+     */
+    public void testMinimumTextHeightSprites() {
+        LabelRenderer lr = new LabelRenderer("label");
+        lr.setSpriteCacheSize(16);
+        VisualItem item = createLabel(lr);
+        Double min = Double.valueOf(8);
+
+        assertEquals(0, countText(item, 0.5, 0, min));
+        int full = countText(item, 0.5, 0, null);
+        assertTrue(full > 0);
+        assertEquals(0, countText(item, 0.5, 0, min));
+        assertEquals(full, countText(item, 0.5, 0, null));
+    }
+
+    public void testDisplayTextHeight() {
+        VisualItem item = createLabel(new LabelRenderer("label"));
+        item.setX(100);
+        item.setY(100);
+        item.validateBounds();
+        Display d = new Display(item.getVisualization());
+        d.setSize(200, 200);
+        d.setHighQuality(false);
+        d.zoom(new Point2D.Double(100, 100), 0.5);
+        assertEquals(0.0, d.getLevelOfDetailTextHeight(), 0);
+
+        assertTrue(countText(paint(d)) > 0);
+        d.setLevelOfDetailTextHeight(8);
+        assertEquals(8.0, d.getLevelOfDetailTextHeight(), 0);
+        assertEquals(0, countText(paint(d)));
+        d.zoom(new Point2D.Double(100, 100), 4);
+        assertTrue(countText(paint(d)) > 0);
+        d.setLevelOfDetailTextHeight(0);
+        d.zoom(new Point2D.Double(100, 100), 0.25);
+        assertTrue(countText(paint(d)) > 0);
+    }
+
+    private static BufferedImage paint(Display d) {
+        BufferedImage img =
+            new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        d.paintDisplay(g, new Dimension(200, 200));
+        g.dispose();
+        return img;
+    }
+
+}
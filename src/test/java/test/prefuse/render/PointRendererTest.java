@@ -0,0 +1,163 @@
+package test.prefuse.render;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+import prefuse.Display;
+import prefuse.Visualization;
+import prefuse.data.Table;
+import prefuse.render.PointRenderer;
+import prefuse.util.ColorLib;
+import prefuse.visual.VisualItem;
+import prefuse.visual.VisualTable;
+
+public class PointRendererTest extends TestCase {
+
+    private static final int SIZE = 200;
+    private static final int RED = ColorLib.rgb(255, 0, 0);
+
+    private Visualization m_vis;
+    private VisualTable m_items;
+
+    protected void setUp() throws Exception {
+        Table t = new Table();
+        m_vis = new Visualization();
+        m_items = m_vis.addTable("t", t);
+        for ( int i=0; i<9; ++i ) {
+            VisualItem item = m_items.getItem(t.addRow());
+            item.setX(40 + 60*(i%3));
+            item.setY(40 + 60*(i/3));
+            item.setFillColor(RED);
+            item.setStrokeColor(ColorLib.rgba(0, 0, 0, 0));
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        m_vis = null;
+        m_items = null;
+    }
+
+    /**
+     * Draw an item with the renderer at four times magnification, with
+     * the item at the center of the image.
+     */
+    private static BufferedImage draw(PointRenderer r, VisualItem item,
+                                      double theta)
+    {
+        BufferedImage img =
+            new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, SIZE, SIZE);
+        g.translate(SIZE/2, SIZE/2);
+        g.rotate(theta);
+        g.scale(4, 4);
+        g.translate(-item.getX(), -item.getY());
+        r.setBounds(item);
+        r.render(g, item);
+        g.dispose();
+        return img;
+    }
+
+    private static int count(BufferedImage img, int color) {
+        int n = 0;
+        for ( int x=0; x<img.getWidth(); ++x ) {
+            for ( int y=0; y<img.getHeight(); ++y ) {
+                if ( (img.getRGB(x, y) & 0xffffff) == (color & 0xffffff) )
+                    ++n;
+            }
+        }
+        return n;
+    }
+
+    public void testPointSize() {
+        VisualItem item = m_items.getItem(0);
+        PointRenderer r = new PointRenderer();
+        assertEquals(1.0, r.getPointSize(), 0);
+        assertEquals(1, count(draw(r, item, 0), RED));
+
+        // the point size is in pixels, whatever the transform
+        r.setPointSize(4);
+        assertEquals(16, count(draw(r, item, 0), RED));
+        assertEquals(16, count(draw(r, item, Math.PI/2), RED));
+        assertEquals(16, count(draw(r, item, Math.PI), RED));
+        assertEquals(16, count(draw(new PointRenderer(4), item, 0), RED));
+    }
+
+    public void testColors() {
+        VisualItem item = m_items.getItem(0);
+        PointRenderer r = new PointRenderer(2);
+        int blue = ColorLib.rgb(0, 0, 255);
+
+        // the stroke color is used when the fill is fully transparent
+        item.setFillColor(ColorLib.rgba(255, 0, 0, 0));
+        item.setStrokeColor(blue);
+        assertEquals(4, count(draw(r, item, 0), blue));
+
+        item.setStrokeColor(ColorLib.rgba(0, 0, 255, 0));
+        BufferedImage img = draw(r, item, 0);
+        assertEquals(SIZE*SIZE, count(img, ColorLib.rgb(255, 255, 255)));
+    }
+
+    public void testBounds() {
+        VisualItem item = m_items.getItem(0);
+        PointRenderer r = new PointRenderer();
+        r.setBounds(item);
+        // read the stored bounds, as the item is not validated
+        Rectangle2D b = m_items.getBounds(item.getRow());
+        assertEquals(40.0, b.getX(), 0);
+        assertEquals(40.0, b.getY(), 0);
+        assertEquals(0.0, b.getWidth(), 0);
+        assertEquals(0.0, b.getHeight(), 0);
+        assertFalse(r.locatePoint(new Point2D.Double(45, 45), item));
+
+        PointRenderer c = (PointRenderer)r.clone();
+        c.setPointSize(3);
+        assertEquals(1.0, r.getPointSize(), 0);
+        assertEquals(9, count(draw(c, item, 0), RED));
+        assertEquals(1, count(draw(r, item, 0), RED));
+    }
+
+    /**
+     * Items smaller on screen than the Display's level-of-detail threshold
+     * are drawn by the level-of-detail renderer.
+     */
+    public void testDisplayLevelOfDetail() {
+        Display d = new Display(m_vis);
+        d.setSize(SIZE, SIZE);
+        d.setHighQuality(false);
+        d.zoom(new Point2D.Double(0, 0), 0.25);
+        assertEquals(0.0, d.getLevelOfDetailThreshold(), 0);
+        assertTrue(d.getLevelOfDetailRenderer() instanceof PointRenderer);
+
+        d.setLevelOfDetailThreshold(5);
+        assertEquals(9, count(paint(d), RED));
+        d.setLevelOfDetailRenderer(new PointRenderer(3));
+        assertEquals(81, count(paint(d), RED));
+
+        // items larger than the threshold use their own renderer
+        d.zoom(new Point2D.Double(0, 0), 4);
+        assertTrue(count(paint(d), RED) > 81);
+
+        try {
+            d.setLevelOfDetailRenderer(null);
+            fail();
+        } catch ( IllegalArgumentException e ) {
+        }
+    }
+
+    private static BufferedImage paint(Display d) {
+        BufferedImage img =
+            new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        d.paintDisplay(g, new Dimension(SIZE, SIZE));
+        g.dispose();
+        return img;
+    }
+
+}
@@ -0,0 +1,90 @@
+package test.prefuse.render;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+import prefuse.Constants;
+import prefuse.Visualization;
+import prefuse.data.Table;
+import prefuse.render.DefaultRendererFactory;
+import prefuse.render.Renderer;
+import prefuse.render.ShapeRenderer;
+import prefuse.util.ColorLib;
+import prefuse.util.display.FrameMetrics;
+import prefuse.visual.VisualItem;
+import prefuse.visual.VisualTable;
+
+public class ShapeRendererTest extends TestCase {
+
+    /**
+     * Render the items of a visualization as a single frame, returning the
+     * sprite cache hit rate of the frame.
+     */
+    static double renderFrame(Visualization vis, String group) {
+        BufferedImage img =
+            new BufferedImage(400, 400, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        FrameMetrics metrics = new FrameMetrics();
+        FrameMetrics.setCurrent(metrics);
+        try {
+            metrics.beginFrame();
+            VisualTable vt = (VisualTable)vis.getGroup(group);
+            for ( int row=0; row<vt.getRowCount(); ++row ) {
+                VisualItem item = vt.getItem(row);
+                item.validateBounds();
+                item.getRenderer().render(g, item);
+            }
+            metrics.endFrame();
+        } finally {
+            FrameMetrics.setCurrent(null);
+            g.dispose();
+        }
+        return metrics.getSpriteCacheHitRate();
+    }
+
+    private static Visualization createVisualization(Renderer r) {
+        Table t = new Table();
+        Visualization vis = new Visualization();
+        vis.setRendererFactory(new DefaultRendererFactory(r));
+        VisualTable vt = vis.addTable("t", t);
+        for ( int i=0; i<10; ++i ) {
+            VisualItem item = vt.getItem(t.addRow());
+            item.setX(20 + 30*i);
+            item.setY(20);
+            item.setShape(Constants.SHAPE_ELLIPSE);
+            item.setFillColor(ColorLib.rgb(255, 0, 0));
+            item.setStrokeColor(ColorLib.gray(0));
+        }
+        return vis;
+    }
+
+    public void testSpriteCacheHit() {
+        ShapeRenderer r = new ShapeRenderer();
+        r.setSpriteCacheSize(16);
+        Visualization vis = createVisualization(r);
+
+        // identical items share a single sprite
+        assertEquals(0.9, renderFrame(vis, "t"), 1e-9);
+        assertEquals(1.0, renderFrame(vis, "t"), 1e-9);
+
+        // items with a different appearance get their own sprite
+        ((VisualTable)vis.getGroup("t")).getItem(0).setSize(2);
+        assertEquals(0.9, renderFrame(vis, "t"), 1e-9);
+
+        r.clearSpriteCache();
+        assertEquals(0.8, renderFrame(vis, "t"), 1e-9);
+    }
+
+    public void testSubclassNotCached() {
+        ShapeRenderer r = new ShapeRenderer() {
+            // a subclass may draw based on state missing from the key
+        };
+        r.setSpriteCacheSize(16);
+        Visualization vis = createVisualization(r);
+
+        // no sprite lookups take place
+        assertTrue(Double.isNaN(renderFrame(vis, "t")));
+    }
+
+}
@@ -0,0 +1,19 @@
+package test.prefuse.util.display;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class All_PrefuseUtilDisplay_Tests {
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite("Test for test.prefuse.util.display");
+        //$JUnit-BEGIN$
+        suite.addTestSuite(ClipTest.class);
+        suite.addTestSuite(FrameMetricsTest.class);
+        suite.addTestSuite(OffscreenRendererTest.class);
+        suite.addTestSuite(RenderingQueueTest.class);
+        //$JUnit-END$
+        return suite;
+    }
+
+}
@@ -0,0 +1,171 @@
+package test.prefuse.util.display;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import prefuse.util.display.Clip;
+
+public class ClipTest extends TestCase {
+
+    private Clip m_clip;
+
+    protected void setUp() throws Exception {
+        m_clip = new Clip();
+        m_clip.reset();
+    }
+
+    protected void tearDown() throws Exception {
+        m_clip = null;
+    }
+
+    public void testSingleRegion() {
+        m_clip.union(0, 0, 10, 10);
+        m_clip.union(100, 100, 10, 10);
+        assertEquals(1, m_clip.getRegionCount());
+        assertBounds(0, 0, 110, 110);
+        assertRegions(new double[][] {{0, 0, 110, 110}});
+    }
+
+    public void testOverlapMerge() {
+        m_clip.setMaxRegions(4);
+        m_clip.union(0, 0, 10, 10);
+        m_clip.union(100, 0, 10, 10);
+        assertEquals(2, m_clip.getRegionCount());
+
+        // overlaps the first region only
+        m_clip.union(5, 5, 10, 10);
+        assertRegions(new double[][] {{0, 0, 15, 15}, {100, 0, 110, 10}});
+
+        // bridges both regions, which are absorbed into one
+        m_clip.union(10, 2, 95, 2);
+        assertRegions(new double[][] {{0, 0, 110, 15}});
+        assertBounds(0, 0, 110, 15);
+
+        // a region grown by a merge absorbs the regions it now overlaps
+        m_clip.reset();
+        m_clip.union(0, 0, 10, 10);
+        m_clip.union(20, 20, 10, 10);
+        m_clip.union(40, 0, 10, 10);
+        m_clip.union(15, 5, 20, 20);
+        assertRegions(new double[][] {{0, 0, 10, 10}, {15, 5, 35, 30},
+                                      {40, 0, 50, 10}});
+        m_clip.union(0, 25, 45, 5);
+        assertRegions(new double[][] {{0, 0, 50, 30}});
+    }
+
+    public void testLeastAreaMerge() {
+        m_clip.setMaxRegions(3);
+        m_clip.union(0, 0, 10, 10);
+        m_clip.union(100, 0, 10, 10);
+        m_clip.union(0, 200, 10, 10);
+        assertEquals(3, m_clip.getRegionCount());
+
+        // the fourth region is closest to the second
+        m_clip.union(120, 0, 10, 10);
+        assertRegions(new double[][] {{0, 0, 10, 10}, {0, 200, 10, 210},
+                                      {100, 0, 130, 10}});
+        assertBounds(0, 0, 130, 210);
+
+        // the cheapest pair need not include the new region
+        m_clip.union(500, 500, 10, 10);
+        assertRegions(new double[][] {{0, 0, 130, 10}, {0, 200, 10, 210},
+                                      {500, 500, 510, 510}});
+
+        // lowering the limit merges regions
+        m_clip.setMaxRegions(2);
+        assertEquals(1, m_clip.getRegionCount());
+        assertBounds(0, 0, 510, 510);
+    }
+
+    public void testLimitDropsRegions() {
+        m_clip.setMaxRegions(4);
+        m_clip.union(0, 0, 10, 10);
+        m_clip.union(100, 0, 10, 10);
+        m_clip.union(200, 0, 10, 10);
+
+        // the first region is cut, the last is dropped
+        m_clip.limit(5, 0, 150, 100);
+        assertRegions(new double[][] {{5, 0, 10, 10}, {100, 0, 110, 10}});
+        assertBounds(5, 0, 110, 10);
+
+        // once all regions are dropped, the limited bounding box remains
+        m_clip.limit(20, 0, 90, 100);
+        assertEquals(1, m_clip.getRegionCount());
+        assertBounds(20, 0, 90, 10);
+    }
+
+    public void testIntersects() {
+        m_clip.setMaxRegions(2);
+        m_clip.union(0, 0, 10, 10);
+        m_clip.union(100, 100, 10, 10);
+        assertTrue(m_clip.intersects(new Rectangle2D.Double(5, 5, 1, 1), 0));
+        // inside the bounding box, but between the regions
+        Rectangle2D gap = new Rectangle2D.Double(50, 50, 1, 1);
+        assertFalse(m_clip.intersects(gap, 0));
+        assertTrue(m_clip.intersects(gap, 45));
+        m_clip.mergeRegions();
+        assertTrue(m_clip.intersects(gap, 0));
+    }
+
+    public void testTransform() {
+        m_clip.setMaxRegions(2);
+        m_clip.union(0, 0, 10, 10);
+        m_clip.union(100, 0, 10, 20);
+
+        AffineTransform at = AffineTransform.getTranslateInstance(5, 7);
+        at.scale(2, 3);
+        m_clip.transform(at);
+        assertRegions(new double[][] {{5, 7, 25, 37}, {205, 7, 225, 67}});
+        assertBounds(5, 7, 225, 67);
+
+        // each rotated region becomes its bounding box
+        m_clip.transform(AffineTransform.getRotateInstance(Math.PI/2));
+        assertRegions(new double[][] {{-37, 5, -7, 25},
+                                      {-67, 205, -7, 225}});
+        assertBounds(-67, 5, -7, 225);
+
+        // a single region clip is transformed as well
+        Clip c = new Clip();
+        c.reset();
+        c.union(0, 0, 10, 20);
+        c.transform(AffineTransform.getRotateInstance(Math.PI/2));
+        assertEquals(-20, c.getMinX(), 1e-9);
+        assertEquals(0,   c.getMinY(), 1e-9);
+        assertEquals(0,   c.getMaxX(), 1e-9);
+        assertEquals(10,  c.getMaxY(), 1e-9);
+    }
+
+    // ------------------------------------------------------------------------
+
+    private void assertBounds(double x1, double y1, double x2, double y2) {
+        assertEquals(x1, m_clip.getMinX(), 1e-9);
+        assertEquals(y1, m_clip.getMinY(), 1e-9);
+        assertEquals(x2, m_clip.getMaxX(), 1e-9);
+        assertEquals(y2, m_clip.getMaxY(), 1e-9);
+    }
+
+    /**
+     * Check the regions of the clip, in any order.
+     */
+    private void assertRegions(double[][] expected) {
+        assertEquals(expected.length, m_clip.getRegionCount());
+        Set<String> exp = new HashSet<String>(), act = new HashSet<String>();
+        Rectangle2D r = new Rectangle2D.Double();
+        for ( int i=0; i<expected.length; ++i ) {
+            exp.add(key(expected[i][0], expected[i][1],
+                        expected[i][2], expected[i][3]));
+            m_clip.getRegion(i, r);
+            act.add(key(r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY()));
+        }
+        assertEquals(exp, act);
+    }
+
+    private static String key(double x1, double y1, double x2, double y2) {
+        return Math.round(x1)+","+Math.round(y1)+","
+            +Math.round(x2)+","+Math.round(y2);
+    }
+
+}
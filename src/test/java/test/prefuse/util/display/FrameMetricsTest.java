@@ -0,0 +1,226 @@
+package test.prefuse.util.display;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+import prefuse.Display;
+import prefuse.Visualization;
+import prefuse.data.Table;
+import prefuse.util.ColorLib;
+import prefuse.util.display.FrameListener;
+import prefuse.util.display.FrameMetrics;
+import prefuse.util.display.FrameMetrics.Histogram;
+import prefuse.visual.VisualItem;
+import prefuse.visual.VisualTable;
+
+public class FrameMetricsTest extends TestCase {
+
+    public void testHistogram() {
+        Histogram h = new Histogram();
+        assertEquals(0, h.getPercentile(0.5));
+        assertEquals(0.0, h.getMean(), 0);
+
+        h.add(-5);      // clamped to zero
+        h.add(500);     // under a microsecond
+        h.add(1000);    // [1,2) us
+        h.add(3000);    // [2,4) us
+        h.add(3999);
+        h.add(1000000); // [512,1024) us
+        assertEquals(6, h.getCount());
+        assertEquals(2, h.getBucketCount(0));
+        assertEquals(1, h.getBucketCount(1));
+        assertEquals(2, h.getBucketCount(2));
+        assertEquals(1, h.getBucketCount(10));
+        assertEquals(1000000, h.getMax());
+        assertEquals((500+1000+3000+3999+1000000)/6.0, h.getMean(), 1e-9);
+
+        assertEquals(0, Histogram.getBucketMinimum(0));
+        assertEquals(1000, Histogram.getBucketMinimum(1));
+        assertEquals(512000, Histogram.getBucketMinimum(10));
+
+        // percentiles are bucket upper bounds, capped at the maximum
+        assertEquals(1000, h.getPercentile(0.25));
+        assertEquals(2000, h.getPercentile(0.5));
+        assertEquals(4000, h.getPercentile(0.8));
+        assertEquals(1000000, h.getPercentile(1.0));
+
+        // values past the last bucket are kept in it
+        h.add(Long.MAX_VALUE / 2);
+        assertEquals(1, h.getBucketCount(Histogram.BUCKETS-1));
+        assertEquals(Long.MAX_VALUE / 2, h.getPercentile(1.0));
+
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+        assertEquals(0, h.getBucketCount(0));
+    }
+
+    public void testRecording() {
+        FrameMetrics m = new FrameMetrics();
+        assertFalse(m.endFrame());
+        m.addTime(FrameMetrics.RENDER, 5000000); // no open frame
+        assertEquals(0, m.getHistogram(FrameMetrics.RENDER).getCount());
+        assertTrue(Double.isNaN(m.getSpriteCacheHitRate()));
+
+        m.beginFrame();
+        m.addTime(FrameMetrics.QUEUE, 1000000);
+        m.addTime(FrameMetrics.RENDER, 2000000);
+        m.addTime(FrameMetrics.RENDER, 3000000);
+        m.setItemCounts(40, 10);
+        m.countSprite(false);
+        m.countSprite(false);
+        m.countSprite(false);
+        m.countSprite(true);
+        assertTrue(m.endFrame());
+        assertFalse(m.endFrame());
+
+        assertEquals(1, m.getFrameCount());
+        assertEquals(1.0, m.getLastTime(FrameMetrics.QUEUE), 1e-9);
+        assertEquals(5.0, m.getLastTime(FrameMetrics.RENDER), 1e-9);
+        assertEquals(0.0, m.getLastTime(FrameMetrics.SORT), 1e-9);
+        assertEquals(5.0, m.getRenderTime(), 1e-9);
+        assertTrue(m.getLastTime(FrameMetrics.FRAME) >= 0);
+        assertEquals(40, m.getLastRenderedCount());
+        assertEquals(10, m.getLastCulledCount());
+        assertEquals(0.75, m.getSpriteCacheHitRate(), 1e-9);
+        assertEquals(5.0, m.getPercentile("Render", 1.0), 1e-9);
+        try {
+            m.getPercentile("paint", 0.5);
+            fail();
+        } catch ( IllegalArgumentException e ) {
+        }
+
+        // beginning a frame closes the open one
+        m.beginFrame();
+        m.addTime(FrameMetrics.RENDER, 1000000);
+        m.setItemCounts(20, 0);
+        m.beginFrame();
+        assertEquals(2, m.getFrameCount());
+        assertEquals(1.0, m.getLastTime(FrameMetrics.RENDER), 1e-9);
+        assertTrue(Double.isNaN(m.getSpriteCacheHitRate()));
+        m.endFrame();
+        assertEquals(3, m.getFrameCount());
+        assertEquals(0.0, m.getLastTime(FrameMetrics.RENDER), 1e-9);
+        assertEquals(60, m.getRenderedCount());
+        assertEquals(10, m.getCulledCount());
+        assertEquals(2.0, m.getRenderTime(), 1e-9);
+
+        m.reset();
+        assertEquals(0, m.getFrameCount());
+        assertEquals(0, m.getRenderedCount());
+        assertEquals(0, m.getHistogram(FrameMetrics.FRAME).getCount());
+        assertEquals(0.0, m.getLastTime(FrameMetrics.QUEUE), 1e-9);
+    }
+
+    /**
+     * Histograms handed out are copies, unaffected by later frames.
+     */
+    public void testHistogramCopies() {
+        FrameMetrics m = new FrameMetrics();
+        m.beginFrame();
+        m.addTime(FrameMetrics.SORT, 2000);
+        m.endFrame();
+
+        Histogram h = m.getHistogram(FrameMetrics.SORT);
+        assertEquals(1, h.getCount());
+        h.add(5000000);
+        assertEquals(1, m.getHistogram(FrameMetrics.SORT).getCount());
+        assertEquals(0.002, m.getSortTime(), 1e-9);
+
+        Histogram h2 = m.getHistogram(FrameMetrics.SORT);
+        m.beginFrame();
+        m.addTime(FrameMetrics.SORT, 8000);
+        m.endFrame();
+        assertEquals(1, h2.getCount());
+        assertEquals(2000, h2.getMax());
+        assertEquals(2, m.getHistogram(FrameMetrics.SORT).getCount());
+
+        Histogram copy = new Histogram(h2);
+        copy.reset();
+        assertEquals(1, h2.getCount());
+        assertEquals(1, h2.getBucketCount(2));
+    }
+
+    public void testFrameListener() {
+        Display d = createDisplay();
+        assertFalse(d.isFrameMetricsEnabled());
+
+        final ArrayList<Object> events = new ArrayList<Object>();
+        FrameListener fl = new FrameListener() {
+            public void frameRendered(Display d, FrameMetrics metrics) {
+                events.add(d);
+                events.add(metrics);
+                events.add(Long.valueOf(metrics.getFrameCount()));
+            }
+        };
+        // a failing listener does not keep others from being notified
+        d.addFrameListener(new FrameListener() {
+            public void frameRendered(Display d, FrameMetrics metrics) {
+                throw new IllegalStateException();
+            }
+        });
+        d.addFrameListener(fl);
+        assertTrue(d.isFrameMetricsEnabled());
+        FrameMetrics m = d.getFrameMetrics();
+
+        assertTrue(d.saveImage(new ByteArrayOutputStream(), "png", 1.0));
+        assertEquals(3, events.size());
+        assertSame(d, events.get(0));
+        assertSame(m, events.get(1));
+        assertEquals(Long.valueOf(1), events.get(2));
+        assertEquals(25, m.getLastRenderedCount());
+        assertEquals(0, m.getLastCulledCount());
+        assertEquals(1, m.getHistogram(FrameMetrics.RENDER).getCount());
+
+        d.removeFrameListener(fl);
+        assertTrue(d.saveImage(new ByteArrayOutputStream(), "png", 1.0));
+        assertEquals(3, events.size());
+        assertTrue(d.isFrameMetricsEnabled());
+        assertEquals(2, m.getFrameCount());
+
+        d.setFrameMetricsEnabled(false);
+        assertNull(d.getFrameMetrics());
+    }
+
+    public void testRegister() throws Exception {
+        FrameMetrics m = new FrameMetrics();
+        m.beginFrame();
+        m.setItemCounts(7, 2);
+        m.endFrame();
+
+        ObjectName name = m.register("prefuse.test:type=Display,name=metrics");
+        try {
+            assertEquals(Long.valueOf(1), ManagementFactory
+                .getPlatformMBeanServer().getAttribute(name, "FrameCount"));
+            assertEquals(Integer.valueOf(7), ManagementFactory
+                .getPlatformMBeanServer()
+                .getAttribute(name, "LastRenderedCount"));
+        } finally {
+            FrameMetrics.unregister(name);
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer()
+                    .isRegistered(name));
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static Display createDisplay() {
+        Table t = new Table();
+        Visualization vis = new Visualization();
+        VisualTable vt = vis.addTable("t", t);
+        for ( int i=0; i<25; ++i ) {
+            VisualItem item = vt.getItem(t.addRow());
+            item.setX(10 + 20*(i%5));
+            item.setY(10 + 20*(i/5));
+            item.setFillColor(ColorLib.rgb(255, 0, 0));
+        }
+        Display d = new Display(vis);
+        d.setSize(120, 120);
+        return d;
+    }
+
+}
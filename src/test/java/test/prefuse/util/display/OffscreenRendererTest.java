@@ -0,0 +1,121 @@
+package test.prefuse.util.display;
+
+import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+import prefuse.Visualization;
+import prefuse.data.Table;
+import prefuse.render.DefaultRendererFactory;
+import prefuse.render.LabelRenderer;
+import prefuse.util.ColorLib;
+import prefuse.util.FontLib;
+import prefuse.util.display.OffscreenRenderer;
+import prefuse.visual.VisualItem;
+import prefuse.visual.VisualTable;
+
+public class OffscreenRendererTest extends TestCase {
+
+    private static final int COUNT = 12;
+
+    private OffscreenRenderer m_osr;
+    private Visualization[] m_vis;
+
+    public void setUp() {
+        m_osr = new OffscreenRenderer(200, 150);
+        m_osr.setBackground(Color.WHITE);
+        m_osr.setThreadCount(4);
+        m_vis = new Visualization[COUNT];
+        for ( int i=0; i<COUNT; ++i ) {
+            m_vis[i] = createVisualization(i);
+        }
+    }
+
+    /**
+     * Create a visualization of text labels. Each visualization gets its
+     * own renderer, and the labels are scaled so that rendering goes
+     * through the shared font cache.
+     */
+    private static Visualization createVisualization(int seed) {
+        Table t = new Table();
+        t.addColumn("label", String.class);
+
+        Visualization vis = new Visualization();
+        vis.setRendererFactory(
+            new DefaultRendererFactory(new LabelRenderer("label")));
+        VisualTable vt = vis.addTable("t", t);
+        for ( int i=0; i<40; ++i ) {
+            int row = t.addRow();
+            t.set(row, "label", "n" + (seed*40+i));
+            VisualItem item = vt.getItem(row);
+            item.setX(20 + (i%8)*22);
+            item.setY(15 + (i/8)*25);
+            item.setSize(0.5 + ((seed+i)%7)*0.25);
+            item.setTextColor(ColorLib.gray(0));
+            item.setFillColor(ColorLib.rgb(200, 220-seed*10, 255));
+        }
+        return vis;
+    }
+
+    private static int[] decode(byte[] png) throws IOException {
+        BufferedImage img = ImageIO.read(new ByteArrayInputStream(png));
+        return img.getRGB(0, 0, img.getWidth(), img.getHeight(),
+                          null, 0, img.getWidth());
+    }
+
+    /**
+     * Parallel exports of several visualizations must match serial ones.
+     */
+    public void testExportImages() throws IOException {
+        Rectangle2D view = new Rectangle2D.Double(0, 0, 200, 150);
+
+        int[][] serial = new int[COUNT][];
+        for ( int i=0; i<COUNT; ++i ) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            m_osr.export(m_vis[i], view, "PNG", out);
+            serial[i] = decode(out.toByteArray());
+        }
+
+        Rectangle2D[] views = new Rectangle2D[COUNT];
+        for ( int i=0; i<COUNT; ++i ) {
+            views[i] = view;
+        }
+
+        for ( int run=0; run<5; ++run ) {
+            // start each run with a cold font cache
+            FontLib.clearCache();
+            ByteArrayOutputStream[] bytes = new ByteArrayOutputStream[COUNT];
+            OutputStream[] out = new OutputStream[COUNT];
+            for ( int i=0; i<COUNT; ++i ) {
+                out[i] = bytes[i] = new ByteArrayOutputStream();
+            }
+            m_osr.exportImages(m_vis, views, "PNG", out);
+            for ( int i=0; i<COUNT; ++i ) {
+                int[] pixels = decode(bytes[i].toByteArray());
+                assertEquals(serial[i].length, pixels.length);
+                for ( int p=0; p<pixels.length; ++p ) {
+                    assertEquals(serial[i][p], pixels[p]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Mismatched argument arrays are rejected.
+     */
+    public void testExportImagesArgs() throws IOException {
+        try {
+            m_osr.exportImages(m_vis, null, "PNG", new OutputStream[1]);
+            fail();
+        } catch ( IllegalArgumentException expected ) {
+        }
+    }
+
+}
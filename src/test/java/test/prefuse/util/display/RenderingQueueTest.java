@@ -0,0 +1,152 @@
+package test.prefuse.util.display;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.Visualization;
+import prefuse.data.Table;
+import prefuse.util.display.RenderingQueue;
+import prefuse.visual.VisualItem;
+import prefuse.visual.VisualTable;
+import prefuse.visual.sort.ItemSorter;
+
+/**
+ * Checks the ordering retained by a RenderingQueue across passes against a
+ * full stable sort of each pass.
+ */
+public class RenderingQueueTest extends TestCase {
+
+    private static final int NITEMS = 300;
+
+    private VisualItem[] m_items;
+    private int[] m_scores;
+    private RenderingQueue m_queue;
+    private Random m_rand;
+
+    protected void setUp() throws Exception {
+        Table t = new Table();
+        t.addRows(NITEMS);
+        VisualTable vt = new Visualization().addTable("t", t);
+        m_items = new VisualItem[NITEMS];
+        m_scores = new int[NITEMS];
+        m_rand = new Random(42);
+        for ( int i=0; i<NITEMS; ++i ) {
+            m_items[i] = vt.getItem(i);
+            // few distinct scores, so that stability matters
+            m_scores[i] = m_rand.nextInt(8);
+        }
+        m_queue = new RenderingQueue();
+        m_queue.sort = new ItemSorter() {
+            public int score(VisualItem item) {
+                return m_scores[item.getRow()];
+            }
+        };
+    }
+
+    protected void tearDown() throws Exception {
+        m_items = null;
+        m_queue = null;
+    }
+
+    public void testScoreChanges() {
+        List<VisualItem> present = initialItems();
+        for ( int pass=0; pass<50; ++pass ) {
+            changeScores(present, 1 + m_rand.nextInt(20), true);
+            assertOrder(present);
+        }
+    }
+
+    public void testAddRemove() {
+        List<VisualItem> present = initialItems();
+        for ( int pass=0; pass<50; ++pass ) {
+            addRemove(present);
+            assertOrder(present);
+        }
+    }
+
+    public void testMixed() {
+        List<VisualItem> present = initialItems();
+        for ( int pass=0; pass<100; ++pass ) {
+            if ( m_rand.nextBoolean() )
+                changeScores(present, m_rand.nextInt(30), true);
+            if ( m_rand.nextBoolean() )
+                addRemove(present);
+            assertOrder(present);
+        }
+    }
+
+    public void testInvalidateScores() {
+        List<VisualItem> present = initialItems();
+        assertOrder(present);
+        // unreported changes take effect once scores are invalidated
+        changeScores(present, 50, false);
+        m_queue.invalidateScores();
+        assertOrder(present);
+    }
+
+    // ------------------------------------------------------------------------
+
+    private List<VisualItem> initialItems() {
+        List<VisualItem> present = new ArrayList<VisualItem>();
+        for ( int i=0; i<NITEMS; ++i ) {
+            if ( i % 3 != 0 ) present.add(m_items[i]);
+        }
+        return present;
+    }
+
+    private void changeScores(List<VisualItem> present, int n, boolean mark) {
+        for ( int i=0; i<n && present.size() > 0; ++i ) {
+            VisualItem item = present.get(m_rand.nextInt(present.size()));
+            m_scores[item.getRow()] = m_rand.nextInt(8);
+            if ( mark )
+                m_queue.markDirty(item);
+        }
+    }
+
+    private void addRemove(List<VisualItem> present) {
+        // remove a few items, shifting the later ones forward
+        int nrem = m_rand.nextInt(5);
+        for ( int i=0; i<nrem && present.size() > 0; ++i )
+            present.remove(m_rand.nextInt(present.size()));
+        // insert a few absent items at random positions
+        int nadd = m_rand.nextInt(5);
+        for ( int i=0; i<nadd; ++i ) {
+            VisualItem item = m_items[m_rand.nextInt(NITEMS)];
+            if ( !present.contains(item) )
+                present.add(m_rand.nextInt(present.size()+1), item);
+        }
+    }
+
+    private void assertOrder(List<VisualItem> present) {
+        m_queue.clear();
+        for ( int i=0; i<present.size(); ++i ) {
+            m_queue.addToRenderQueue(present.get(i));
+            m_queue.addToPickingQueue(present.get(i));
+        }
+        m_queue.sortRenderQueue();
+        m_queue.sortPickingQueue();
+
+        // Collections.sort is a stable merge sort
+        List<VisualItem> expected = new ArrayList<VisualItem>(present);
+        Collections.sort(expected, new Comparator<VisualItem>() {
+            public int compare(VisualItem a, VisualItem b) {
+                int sa = m_scores[a.getRow()], sb = m_scores[b.getRow()];
+                return sa < sb ? -1 : sa > sb ? 1 : 0;
+            }
+        });
+
+        assertEquals(expected.size(), m_queue.rsize);
+        assertEquals(expected.size(), m_queue.psize);
+        for ( int i=0; i<expected.size(); ++i ) {
+            VisualItem item = expected.get(i);
+            assertSame(item, m_queue.ritems[i]);
+            assertSame(item, m_queue.pitems[i]);
+            assertEquals(m_scores[item.getRow()], m_queue.rscores[i]);
+        }
+    }
+
+}
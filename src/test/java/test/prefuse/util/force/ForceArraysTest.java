@@ -0,0 +1,146 @@
+package test.prefuse.util.force;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.util.force.DragForce;
+import prefuse.util.force.EulerIntegrator;
+import prefuse.util.force.ForceItem;
+import prefuse.util.force.ForceSimulator;
+import prefuse.util.force.GravitationalForce;
+import prefuse.util.force.Integrator;
+import prefuse.util.force.NBodyForce;
+import prefuse.util.force.RungeKuttaIntegrator;
+import prefuse.util.force.SpringForce;
+
+public class ForceArraysTest extends TestCase {
+
+    static final int NITEMS = 300;
+    static final int NSPRINGS = 400;
+    static final int NSTEPS = 30;
+    static final float TOLERANCE = 1e-3f;
+
+    /**
+     * Create a simulator, in array or object mode, over copies of the
+     * same randomly placed items and springs.
+     */
+    private static ForceSimulator create(Integrator integrator,
+                                         boolean nbody, boolean arrays)
+    {
+        ForceSimulator fsim = new ForceSimulator(integrator);
+        if ( nbody )
+            fsim.addForce(new NBodyForce());
+        fsim.addForce(new SpringForce());
+        fsim.addForce(new DragForce());
+        fsim.addForce(new GravitationalForce());
+        fsim.setArrayMode(arrays);
+
+        Random rand = new Random(42);
+        ForceItem[] items = new ForceItem[NITEMS];
+        for ( int i=0; i<NITEMS; ++i ) {
+            items[i] = new ForceItem();
+            items[i].mass = 1.0f + rand.nextInt(3);
+            items[i].location[0] = 500*rand.nextFloat();
+            items[i].location[1] = 500*rand.nextFloat();
+            fsim.addItem(items[i]);
+        }
+        for ( int j=0; j<NSPRINGS; ++j ) {
+            int i1 = rand.nextInt(NITEMS), i2 = rand.nextInt(NITEMS);
+            if ( i1 != i2 ) fsim.addSpring(items[i1], items[i2]);
+        }
+        // a spring to an item that is not registered with the simulator
+        ForceItem anchor = new ForceItem();
+        anchor.location[0] = anchor.location[1] = 250;
+        fsim.addSpring(items[0], anchor, 0.0005f, 50);
+        return fsim;
+    }
+
+    private static ArrayList<ForceItem> items(ForceSimulator fsim) {
+        ArrayList<ForceItem> list = new ArrayList<ForceItem>();
+        Iterator<?> iter = fsim.getItems();
+        while ( iter.hasNext() )
+            list.add((ForceItem)iter.next());
+        return list;
+    }
+
+    private static void assertClose(String msg, float a, float b,
+                                    float tolerance)
+    {
+        float scale = Math.max(1.0f, Math.max(Math.abs(a), Math.abs(b)));
+        assertTrue(msg+": "+a+" vs "+b, Math.abs(a-b) <= tolerance*scale);
+    }
+
+    private static void assertSameState(ForceSimulator a, ForceSimulator b,
+                                        int step, float tolerance)
+    {
+        ArrayList<ForceItem> ia = items(a), ib = items(b);
+        assertEquals(ia.size(), ib.size());
+        for ( int i=0; i<ia.size(); ++i ) {
+            ForceItem fa = ia.get(i), fb = ib.get(i);
+            for ( int k=0; k<2; ++k ) {
+                String msg = "step "+step+", item "+i;
+                assertClose(msg, fa.location[k], fb.location[k], tolerance);
+                assertClose(msg, fa.velocity[k], fb.velocity[k], tolerance);
+                assertClose(msg, fa.force[k], fb.force[k], tolerance);
+            }
+        }
+    }
+
+    /**
+     * Check that the spring, drag and gravitational forces give the same
+     * results in both modes, including after items are removed.
+     */
+    private void assertEquivalent(Integrator ia, Integrator ib) {
+        ForceSimulator objects = create(ia, false, false);
+        ForceSimulator arrays = create(ib, false, true);
+        for ( int s=0; s<NSTEPS; ++s ) {
+            if ( s == NSTEPS/2 ) {
+                // change the items, so that the arrays are re-indexed
+                removeEvery(objects, 7);
+                removeEvery(arrays, 7);
+            }
+            objects.runSimulator(20);
+            arrays.runSimulator(20);
+            assertSameState(objects, arrays, s, 0.0f);
+        }
+    }
+
+    private static void removeEvery(ForceSimulator fsim, int k) {
+        ArrayList<ForceItem> list = items(fsim);
+        for ( int i=0; i<list.size(); i+=k )
+            fsim.removeItem(list.get(i));
+    }
+
+    public void testRungeKutta() {
+        assertEquivalent(new RungeKuttaIntegrator(),
+                         new RungeKuttaIntegrator());
+    }
+
+    public void testEuler() {
+        assertEquivalent(new EulerIntegrator(), new EulerIntegrator());
+    }
+
+    /**
+     * The n-body force sums contributions in a different order in array
+     * mode, and the simulation amplifies the rounding differences, so
+     * only the first few steps are compared, within a tolerance.
+     */
+    public void testNBodyForce() {
+        ForceSimulator objects =
+            create(new RungeKuttaIntegrator(), true, false);
+        ForceSimulator arrays =
+            create(new RungeKuttaIntegrator(), true, true);
+        for ( int s=0; s<3; ++s ) {
+            objects.runSimulator(20);
+            arrays.runSimulator(20);
+            assertSameState(objects, arrays, s, TOLERANCE);
+        }
+    }
+
+    public void testDefaultMode() {
+        assertFalse(new ForceSimulator().isArrayMode());
+    }
+
+}
@@ -0,0 +1,103 @@
+package test.prefuse.util.force;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import prefuse.util.force.DragForce;
+import prefuse.util.force.ForceItem;
+import prefuse.util.force.ForceSimulator;
+import prefuse.util.force.NBodyForce;
+import prefuse.util.force.RungeKuttaIntegrator;
+import prefuse.util.force.SpringForce;
+
+public class NBodyForceTest extends TestCase {
+
+    static final int NITEMS = 5000;
+    static final int NSTEPS = 10;
+
+    private static ForceItem[] createItems(int n, long seed) {
+        Random rand = new Random(seed);
+        ForceItem[] items = new ForceItem[n];
+        for ( int i=0; i<n; ++i ) {
+            items[i] = new ForceItem();
+            items[i].mass = 1.0f + rand.nextInt(3);
+            items[i].location[0] = 1000*rand.nextFloat() - 500;
+            items[i].location[1] = 1000*rand.nextFloat() - 500;
+        }
+        return items;
+    }
+
+    private static ForceSimulator create(ForceItem[] items, int threshold) {
+        NBodyForce nbody = new NBodyForce();
+        nbody.setParallelThreshold(threshold);
+        ForceSimulator fsim = new ForceSimulator(new RungeKuttaIntegrator());
+        fsim.addForce(nbody);
+        fsim.addForce(new SpringForce());
+        fsim.addForce(new DragForce());
+        fsim.setArrayMode(true);
+        for ( int i=0; i<items.length; ++i )
+            fsim.addItem(items[i]);
+        // springs between items in the same location add random noise
+        for ( int i=5; i<items.length; ++i )
+            fsim.addSpring(items[i-1], items[i]);
+        return fsim;
+    }
+
+    /**
+     * Forces computed in parallel must be identical to those computed
+     * serially, regardless of how the work is scheduled.
+     */
+    public void testParallelDeterminism() {
+        ForceItem[] serial = createItems(NITEMS, 7);
+        ForceItem[] parallel = createItems(NITEMS, 7);
+        // a few items in the same location, to exercise the n-body noise
+        for ( int i=1; i<4; ++i ) {
+            serial[i].location[0] = serial[0].location[0];
+            serial[i].location[1] = serial[0].location[1];
+            parallel[i].location[0] = parallel[0].location[0];
+            parallel[i].location[1] = parallel[0].location[1];
+        }
+        ForceSimulator a = create(serial, 0);
+        ForceSimulator b = create(parallel, 1);
+        for ( int s=0; s<NSTEPS; ++s ) {
+            a.runSimulator(20);
+            b.runSimulator(20);
+            for ( int i=0; i<NITEMS; ++i ) {
+                for ( int k=0; k<2; ++k ) {
+                    assertEquals(serial[i].location[k],
+                                 parallel[i].location[k], 0.0f);
+                    assertEquals(serial[i].velocity[k],
+                                 parallel[i].velocity[k], 0.0f);
+                    assertEquals(serial[i].force[k],
+                                 parallel[i].force[k], 0.0f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Many items in the same location must not exhaust the stack when
+     * computing forces on force items.
+     */
+    public void testCoincidentItems() {
+        NBodyForce nbody = new NBodyForce();
+        ForceSimulator fsim = new ForceSimulator();
+        fsim.addForce(nbody);
+        fsim.setArrayMode(false);
+        ForceItem[] items = new ForceItem[50000];
+        for ( int i=0; i<items.length; ++i ) {
+            items[i] = new ForceItem();
+            items[i].location[0] = -10;
+            items[i].location[1] = -20;
+            fsim.addItem(items[i]);
+        }
+        nbody.init(fsim);
+        for ( int i=0; i<items.length; i+=5000 ) {
+            nbody.getForce(items[i]);
+            assertFalse(Float.isNaN(items[i].force[0]));
+            assertFalse(Float.isNaN(items[i].force[1]));
+            assertTrue(items[i].force[0] != 0 || items[i].force[1] != 0);
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package test.prefuse.util.io;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class All_PrefuseUtilIO_Tests {
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite("Test for test.prefuse.util.io");
+        //$JUnit-BEGIN$
+        suite.addTestSuite(VectorGraphicsTest.class);
+        //$JUnit-END$
+        return suite;
+    }
+
+}
@@ -0,0 +1,246 @@
+package test.prefuse.util.io;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.zip.InflaterInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import prefuse.Visualization;
+import prefuse.data.Graph;
+import prefuse.data.Node;
+import prefuse.render.DefaultRendererFactory;
+import prefuse.render.LabelRenderer;
+import prefuse.util.ColorLib;
+import prefuse.util.display.OffscreenRenderer;
+import prefuse.util.io.PDFGraphics2D;
+import prefuse.util.io.SVGGraphics2D;
+import prefuse.util.io.VectorGraphics2D;
+import prefuse.visual.VisualGraph;
+import prefuse.visual.VisualItem;
+
+public class VectorGraphicsTest extends TestCase {
+
+    private static final String ISO = "ISO-8859-1";
+
+    private Visualization m_vis;
+    private OffscreenRenderer m_osr;
+
+    protected void setUp() throws Exception {
+        Graph g = new Graph();
+        g.addColumn("label", String.class);
+        for ( int i=0; i<6; ++i )
+            g.addNode().setString("label", "n<"+i+"> & \"q\"");
+        for ( int i=0; i<6; ++i )
+            g.addEdge(i, (i+1)%6);
+
+        m_vis = new Visualization();
+        LabelRenderer lr = new LabelRenderer("label");
+        lr.setRoundedCorner(8, 8);
+        m_vis.setRendererFactory(new DefaultRendererFactory(lr));
+        VisualGraph vg = m_vis.addGraph("graph", g);
+        for ( int i=0; i<6; ++i ) {
+            VisualItem item = (VisualItem)vg.getNode(i);
+            double a = i*Math.PI/3;
+            item.setX(100 + 60*Math.cos(a));
+            item.setY(75 + 50*Math.sin(a));
+            item.setTextColor(ColorLib.gray(0));
+            item.setFillColor(ColorLib.rgba(200, 220, 255, 128));
+            item.setStrokeColor(ColorLib.gray(50));
+        }
+        for ( int i=0; i<6; ++i )
+            ((VisualItem)vg.getEdge(i)).setStrokeColor(ColorLib.gray(100));
+
+        m_osr = new OffscreenRenderer(200, 150);
+        m_osr.setBackground(Color.WHITE);
+    }
+
+    protected void tearDown() throws Exception {
+        m_vis = null;
+        m_osr = null;
+    }
+
+    /**
+     * An exported scene is a well-formed SVG document.
+     */
+    public void testExportSVG() throws Exception {
+        StringWriter out = new StringWriter();
+        m_osr.exportSVG(m_vis, new Rectangle2D.Double(0, 0, 200, 150), out);
+
+        Element svg = parse(out.toString()).getDocumentElement();
+        assertEquals("svg", svg.getTagName());
+        assertEquals("200", svg.getAttribute("width"));
+        assertEquals("150", svg.getAttribute("height"));
+        // background, node shapes, label outlines and edges
+        assertTrue(svg.getElementsByTagName("path").getLength() > 18);
+    }
+
+    /**
+     * Text, clips, strokes and images written directly to the graphics.
+     */
+    public void testSVGElements() throws Exception {
+        StringWriter out = new StringWriter();
+        SVGGraphics2D g = new SVGGraphics2D(out, 100, 80);
+        draw(g, createImage(true));
+        g.finish();
+        assertFalse(g.checkError());
+
+        Document doc = parse(out.toString());
+        assertEquals(3, doc.getElementsByTagName("image").getLength());
+        assertTrue(doc.getElementsByTagName("path").getLength() >= 3);
+    }
+
+    /**
+     * An exported scene is a structurally valid PDF file.
+     */
+    public void testExportPDF() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        m_osr.exportPDF(m_vis, new Rectangle2D.Double(0, 0, 200, 150), out);
+
+        String pdf = out.toString(ISO);
+        checkPDF(pdf);
+        assertTrue(pdf.indexOf("/MediaBox [0 0 200 150]") > 0);
+        String content = content(pdf);
+        assertTrue(content.indexOf(" rg\n") > 0);
+        assertTrue(content.indexOf(" RG\n") > 0);
+        assertTrue(content.indexOf("/GS128 gs") > 0);
+    }
+
+    /**
+     * An image drawn several times is written as one image object.
+     */
+    public void testPDFImages() throws Exception {
+        for ( int k=0; k<2; ++k ) {
+            boolean alpha = ( k == 1 );
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            PDFGraphics2D g = new PDFGraphics2D(out, 100, 80);
+            draw(g, createImage(alpha));
+            // a second image with the same contents is another object
+            g.drawImage(createImage(alpha), 50, 50, null);
+            g.finish();
+            assertFalse(g.checkError());
+
+            String pdf = out.toString(ISO);
+            checkPDF(pdf);
+            assertEquals(alpha ? 4 : 2, count(pdf, "/Subtype /Image"));
+            assertEquals(alpha ? 2 : 0, count(pdf, "/SMask"));
+            assertEquals(4, count(content(pdf), " Do\n"));
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static BufferedImage createImage(boolean alpha) {
+        BufferedImage img = new BufferedImage(8, 6, alpha ?
+            BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        for ( int y=0; y<6; ++y ) {
+            for ( int x=0; x<8; ++x )
+                img.setRGB(x, y, ColorLib.rgba(30*x, 40*y, 90, 60+30*y));
+        }
+        return img;
+    }
+
+    private static void draw(VectorGraphics2D g, BufferedImage img) {
+        g.setColor(Color.RED);
+        g.fill(new Rectangle2D.Double(5, 5, 30, 20));
+        g.setStroke(new BasicStroke(2f, BasicStroke.CAP_ROUND,
+                BasicStroke.JOIN_ROUND, 1f, new float[] { 4f, 2f }, 0f));
+        g.setColor(Color.BLUE);
+        g.draw(new Ellipse2D.Double(40, 10, 30, 30));
+        g.setFont(new Font("SansSerif", Font.PLAIN, 10));
+        g.drawString("a < b", 10, 60);
+        g.clipRect(0, 0, 90, 70);
+        g.drawImage(img, 10, 10, null);
+        g.drawImage(img, 30, 10, 16, 12, null);
+        g.rotate(0.3);
+        g.drawImage(img, 60, 5, null);
+    }
+
+    private static Document parse(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+            .parse(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+    }
+
+    private static int count(String s, String sub) {
+        int n = 0;
+        for ( int i=s.indexOf(sub); i>=0; i=s.indexOf(sub, i+1) )
+            ++n;
+        return n;
+    }
+
+    /**
+     * Check the header, the cross-reference table and the stream lengths.
+     */
+    private static void checkPDF(String pdf) {
+        assertTrue(pdf.startsWith("%PDF-1.4\n"));
+        assertTrue(pdf.endsWith("%%EOF\n"));
+
+        int sx = pdf.lastIndexOf("startxref\n");
+        int xref = Integer.parseInt(
+            pdf.substring(sx+10, pdf.indexOf('\n', sx+10)));
+        assertTrue(pdf.startsWith("xref\n0 ", xref));
+        int nl = pdf.indexOf('\n', xref+5);
+        int size = Integer.parseInt(pdf.substring(xref+7, nl));
+        assertTrue(pdf.indexOf("/Size "+size+" ", sx-100) > 0);
+
+        int[] offsets = new int[size];
+        for ( int i=1; i<size; ++i ) {
+            int entry = nl + 1 + 20*i;
+            assertEquals(" 00000 n \n", pdf.substring(entry+10, entry+20));
+            offsets[i] = Integer.parseInt(pdf.substring(entry, entry+10));
+            assertTrue(pdf.startsWith(i+" 0 obj\n", offsets[i]));
+        }
+
+        // each stream's data is as long as its length object says
+        for ( int i=1; i<size; ++i ) {
+            int end = pdf.indexOf("endobj", offsets[i]);
+            int dict = pdf.indexOf(">>\nstream\n", offsets[i]);
+            if ( dict < 0 || dict > end ) continue;
+            int l = pdf.indexOf("/Length ", offsets[i]) + 8;
+            int ref = Integer.parseInt(pdf.substring(l, pdf.indexOf(' ', l)));
+            int lo = offsets[ref] + (ref+" 0 obj\n").length();
+            int len = Integer.parseInt(
+                pdf.substring(lo, pdf.indexOf('\n', lo)));
+            int data = dict + 10;
+            assertTrue(pdf.startsWith("\nendstream\n", data+len));
+        }
+    }
+
+    /**
+     * Get the decompressed page content, in content stream order.
+     */
+    private static String content(String pdf) throws IOException {
+        int c = pdf.indexOf("/Contents [") + 11;
+        String[] refs = pdf.substring(c, pdf.indexOf(']', c))
+                           .trim().split(" 0 R ?");
+        StringBuffer sb = new StringBuffer();
+        for ( int i=0; i<refs.length; ++i ) {
+            int obj = pdf.indexOf("\n"+refs[i].trim()+" 0 obj\n") + 1;
+            int data = pdf.indexOf(">>\nstream\n", obj) + 10;
+            int end = pdf.indexOf("\nendstream\n", data);
+            InflaterInputStream in = new InflaterInputStream(
+                new ByteArrayInputStream(
+                    pdf.substring(data, end).getBytes(ISO)));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] b = new byte[4096];
+            for ( int n; (n = in.read(b)) > 0; )
+                out.write(b, 0, n);
+            sb.append(out.toString(ISO));
+        }
+        return sb.toString();
+    }
+
+}
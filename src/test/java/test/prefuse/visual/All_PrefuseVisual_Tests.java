@@ -10,6 +10,7 @@ public class All_PrefuseVisual_Tests {
         //$JUnit-BEGIN$
         suite.addTestSuite(VisualizationTest.class);
         suite.addTestSuite(VisualAggregateTableTest.class);
+        suite.addTestSuite(SpatialIndexTest.class);
         //$JUnit-END$
         return suite;
     }
@@ -0,0 +1,242 @@
+package test.prefuse.visual;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import prefuse.Display;
+import prefuse.Visualization;
+import prefuse.data.Table;
+import prefuse.util.ColorLib;
+import prefuse.util.display.SpatialIndex;
+import prefuse.visual.VisualItem;
+import prefuse.visual.VisualTable;
+
+public class SpatialIndexTest extends TestCase {
+
+    private static final int SIZE = 200;
+
+    private Table m_table;
+    private Visualization m_vis;
+    private VisualTable m_vt;
+
+    protected void setUp() throws Exception {
+        m_table = new Table();
+        m_vis = new Visualization();
+        m_vt = m_vis.addTable("t", m_table);
+        // a 10 x 10 grid of items, 20 pixels apart
+        for ( int i=0; i<100; ++i ) {
+            VisualItem item = m_vt.getItem(m_table.addRow());
+            item.setX(10 + 20*(i%10));
+            item.setY(10 + 20*(i/10));
+            item.setFillColor(ColorLib.rgb(255, 0, 0));
+            item.setStrokeColor(ColorLib.gray(0));
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        m_table = null;
+        m_vis = null;
+        m_vt = null;
+    }
+
+    // ------------------------------------------------------------------------
+    // Index Operations
+
+    public void testInsertAndQuery() {
+        SpatialIndex index = new SpatialIndex(10);
+        VisualItem a = m_vt.getItem(0), b = m_vt.getItem(1);
+        index.update(a, new Rectangle2D.Double(0, 0, 5, 5));
+        // spans four cells, but is returned once
+        index.update(b, new Rectangle2D.Double(15, 15, 10, 10));
+        assertEquals(2, index.size());
+
+        assertEquals(set(a), query(index, 1, 1, 2, 2));
+        assertEquals(set(b), query(index, 21, 21, 22, 22));
+        assertEquals(set(a, b), query(index, 0, 0, 30, 30));
+        assertEquals(set(), query(index, 50, 50, 60, 60));
+        // a query covering more cells than are occupied
+        assertEquals(set(a, b), query(index, -1e6, -1e6, 1e6, 1e6));
+
+        // unusable bounds are not indexed
+        index.update(m_vt.getItem(2),
+            new Rectangle2D.Double(Double.NaN, 0, 1, 1));
+        assertEquals(2, index.size());
+    }
+
+    public void testMove() {
+        SpatialIndex index = new SpatialIndex(10);
+        VisualItem a = m_vt.getItem(0);
+        index.update(a, new Rectangle2D.Double(0, 0, 5, 5));
+        index.update(a, new Rectangle2D.Double(100, 100, 5, 5));
+        assertEquals(1, index.size());
+        assertEquals(set(), query(index, 0, 0, 9, 9));
+        assertEquals(set(a), query(index, 101, 101, 102, 102));
+    }
+
+    public void testRemove() {
+        SpatialIndex index = new SpatialIndex(10);
+        VisualItem a = m_vt.getItem(0), b = m_vt.getItem(1);
+        index.update(a, new Rectangle2D.Double(0, 0, 5, 5));
+        index.update(b, new Rectangle2D.Double(2, 2, 5, 5));
+        assertTrue(index.remove(a));
+        assertFalse(index.remove(a));
+        assertEquals(1, index.size());
+        assertEquals(set(b), query(index, 0, 0, 9, 9));
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(set(), query(index, 0, 0, 9, 9));
+    }
+
+    public void testLargeItems() {
+        SpatialIndex index = new SpatialIndex(10);
+        VisualItem a = m_vt.getItem(0), big = m_vt.getItem(1);
+        index.update(a, new Rectangle2D.Double(0, 0, 5, 5));
+        index.update(big, new Rectangle2D.Double(0, 0, 1000, 1000));
+        // items spanning many cells are included in every query
+        assertEquals(set(big), query(index, 5000, 5000, 5001, 5001));
+        assertEquals(set(a, big), query(index, 1, 1, 2, 2));
+        assertTrue(index.remove(big));
+        assertEquals(set(), query(index, 5000, 5000, 5001, 5001));
+    }
+
+    public void testPending() {
+        SpatialIndex index = new SpatialIndex(10);
+        VisualItem a = m_vt.getItem(0), b = m_vt.getItem(1);
+        index.update(a, new Rectangle2D.Double(0, 0, 5, 5));
+        index.invalidate(a);
+        index.invalidate(b);
+        assertEquals(0, index.size());
+        assertEquals(set(), query(index, 0, 0, 9, 9));
+        // removed and re-indexed items are no longer pending
+        index.remove(b);
+        assertEquals(set(a), set(index.takePending()));
+        assertEquals(0, index.takePending().length);
+        index.invalidate(a);
+        index.update(a, new Rectangle2D.Double(0, 0, 5, 5));
+        assertEquals(0, index.takePending().length);
+    }
+
+    public void testVisualizationUpdates() {
+        SpatialIndex index = new SpatialIndex(50);
+        m_vis.setSpatialIndex(index);
+        // unvalidated items are pending
+        assertEquals(0, index.size());
+        VisualItem[] pending = index.takePending();
+        assertEquals(100, pending.length);
+        for ( int i=0; i<pending.length; ++i )
+            pending[i].validateBounds();
+        assertEquals(100, index.size());
+
+        // moving an item invalidates it until its bounds are validated
+        VisualItem a = m_vt.getItem(0);
+        a.setX(150);
+        assertEquals(99, index.size());
+        assertEquals(set(a), set(index.takePending()));
+        a.validateBounds();
+        assertTrue(query(index, 150, 10, 150, 10).contains(a));
+
+        // deleted items leave the index
+        m_table.removeRow(0);
+        assertEquals(99, index.size());
+        assertFalse(query(index, 150, 10, 150, 10).contains(a));
+    }
+
+    // ------------------------------------------------------------------------
+    // Display Integration
+
+    public void testDamageQuery() {
+        m_vis.setSpatialIndex(new SpatialIndex(50));
+        Display d = createDisplay();
+        d.setFrameMetricsEnabled(true);
+        // incremental frames are drawn over the previous frame
+        BufferedImage img = createImage();
+        paint(d, img);
+        assertEquals(100, d.getFrameMetrics().getLastRenderedCount());
+
+        // only the items near the damaged regions are rendered
+        VisualItem a = m_vt.getItem(0);
+        a.setX(a.getX() + 4);
+        paint(d, img);
+        int n = d.getFrameMetrics().getLastRenderedCount();
+        assertTrue(n > 0 && n < 10);
+
+        // the result matches a full redraw
+        BufferedImage full = createImage();
+        paint(createDisplay(), full);
+        assertEquals(0, countDiffs(img, full));
+    }
+
+    public void testFindItem() {
+        m_vis.setSpatialIndex(new SpatialIndex(50));
+        Display d = createDisplay();
+        paint(d, createImage());
+
+        assertSame(m_vt.getItem(0), d.findItem(new Point(10, 10)));
+        assertSame(m_vt.getItem(55), d.findItem(new Point(110, 110)));
+        assertNull(d.findItem(new Point(20, 20)));
+
+        // picking follows moved items once their bounds are validated
+        VisualItem a = m_vt.getItem(0);
+        a.setX(20);
+        a.setY(20);
+        paint(d, createImage());
+        assertSame(a, d.findItem(new Point(20, 20)));
+        assertNull(d.findItem(new Point(10, 10)));
+
+        // non-interactive items are not picked
+        a.setInteractive(false);
+        assertNull(d.findItem(new Point(20, 20)));
+    }
+
+    // ------------------------------------------------------------------------
+
+    private Display createDisplay() {
+        Display d = new Display(m_vis);
+        d.setSize(SIZE, SIZE);
+        d.setHighQuality(false);
+        return d;
+    }
+
+    private static BufferedImage createImage() {
+        return new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private static void paint(Display d, BufferedImage img) {
+        Graphics2D g = img.createGraphics();
+        d.paintDisplay(g, new Dimension(SIZE, SIZE));
+        g.dispose();
+    }
+
+    private static int countDiffs(BufferedImage a, BufferedImage b) {
+        int diffs = 0;
+        for ( int x=0; x<SIZE; ++x )
+            for ( int y=0; y<SIZE; ++y )
+                if ( a.getRGB(x, y) != b.getRGB(x, y) ) ++diffs;
+        return diffs;
+    }
+
+    private static Set<VisualItem> query(SpatialIndex index, double x1,
+                                         double y1, double x2, double y2)
+    {
+        Set<VisualItem> s = new HashSet<VisualItem>();
+        Iterator<VisualItem> iter = index.items(x1, y1, x2, y2);
+        while ( iter.hasNext() )
+            assertTrue(s.add(iter.next()));
+        return s;
+    }
+
+    private static Set<VisualItem> set(VisualItem... items) {
+        Set<VisualItem> s = new HashSet<VisualItem>();
+        for ( int i=0; i<items.length; ++i )
+            s.add(items[i]);
+        return s;
+    }
+
+}